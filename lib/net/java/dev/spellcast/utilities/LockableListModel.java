@@ -66,6 +66,10 @@ public class LockableListModel<E>
 	private ArrayList<E> visibleElements;
 	private ArrayList<WeakReference<LockableListModel<E>>> mirrorList;
 
+	// A mirror shares the elements of the list it was made from, so any
+	// change made through it is made through that list instead.
+	private LockableListModel<E> mirrorSource = null;
+
 	E selectedValue;
 	protected ListElementFilter currentFilter;
 
@@ -100,6 +104,7 @@ public class LockableListModel<E>
 		{
 			this.actualElements = l.actualElements;
 			this.visibleElements = new ArrayList<E>();
+			this.mirrorSource = l;
 
 			this.selectedValue = null;
 			this.currentFilter = f == null ? LockableListModel.NO_FILTER : f;
@@ -242,6 +247,12 @@ public class LockableListModel<E>
 			return;
 		}
 
+		if ( this.mirrorSource != null )
+		{
+			this.mirrorSource.add( index, element );
+			return;
+		}
+
 		synchronized ( this.actualElements )
 		{
 			if ( this.currentFilter != LockableListModel.NO_FILTER || !this.mirrorList.isEmpty() )
@@ -316,6 +327,11 @@ public class LockableListModel<E>
 
 	public boolean addAll( final int index, final Collection<? extends E> c )
 	{
+		if ( this.mirrorSource != null )
+		{
+			return this.mirrorSource.addAll( index, c );
+		}
+
 		synchronized ( this.actualElements )
 		{
 			boolean result = this.actualElements.addAll( index, c );
@@ -330,6 +346,12 @@ public class LockableListModel<E>
 
 	public void clear()
 	{
+		if ( this.mirrorSource != null )
+		{
+			this.mirrorSource.clear();
+			return;
+		}
+
 		synchronized ( this.actualElements )
 		{
 			this.actualElements.clear();
@@ -574,6 +596,11 @@ public class LockableListModel<E>
 
 	public E remove( final int index )
 	{
+		if ( this.mirrorSource != null )
+		{
+			return this.mirrorSource.remove( index );
+		}
+
 		synchronized ( this.actualElements )
 		{
 			if ( index < 0 || index >= this.actualElements.size() )
@@ -684,6 +711,11 @@ public class LockableListModel<E>
 
 	public E set( final int index, final E element )
 	{
+		if ( this.mirrorSource != null )
+		{
+			return this.mirrorSource.set( index, element );
+		}
+
 		synchronized ( this.actualElements )
 		{
 			if ( element == null )
@@ -1058,6 +1090,7 @@ public class LockableListModel<E>
 		cloneCopy.visibleElements.addAll( this.visibleElements );
 
 		cloneCopy.mirrorList = new ArrayList<WeakReference<LockableListModel<E>>>();
+		cloneCopy.mirrorSource = null;
 
 		cloneCopy.currentFilter = this.currentFilter;
 		cloneCopy.selectedValue = null;
@@ -56,6 +56,7 @@ import net.sourceforge.kolmafia.request.UneffectRequest;
 import net.sourceforge.kolmafia.session.GoalManager;
 import net.sourceforge.kolmafia.session.InventoryManager;
 
+import net.sourceforge.kolmafia.utilities.ItemIndex;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public class AdventureResult
@@ -1267,6 +1268,13 @@ public class AdventureResult
 
 	public int getCount( final List<AdventureResult> list )
 	{
+		ItemIndex itemIndex = ItemIndex.of( list );
+		if ( itemIndex != null && itemIndex.covers( this ) )
+		{
+			AdventureResult item = itemIndex.find( this );
+			return item == null ? 0 : item.getCount();
+		}
+
 		int index = list.indexOf( this );
 		return index == -1 ? 0 : list.get( index ).getCount();
 	}
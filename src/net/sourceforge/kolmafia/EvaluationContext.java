@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia;
+
+/**
+ * The character state that modifier expressions read besides what
+ * KoLCharacter knows: where the character is adventuring, which familiar
+ * is out and how heavy it is, and what is held in the main hand.
+ *
+ * A context never changes once made.  <code>CURRENT</code> reads the
+ * statics in Modifiers, which describe the character as it really is;
+ * every other context is a snapshot, usually of some hypothetical
+ * outfit or familiar, and can be handed to another thread safely.
+ */
+
+public class EvaluationContext
+{
+	public static final EvaluationContext CURRENT = new Current();
+
+	private final String location;
+	private final String zone;
+	private final String environment;
+	private final double ml;
+	private final String familiar;
+	private final double weight;
+	private final String mainhandClass;
+	private final double hoboPower;
+	private final double smithsness;
+	private final boolean unarmed;
+
+	public EvaluationContext( final String location, final String zone, final String environment, final double ml,
+		final String familiar, final double weight, final String mainhandClass,
+		final double hoboPower, final double smithsness, final boolean unarmed )
+	{
+		this.location = location;
+		this.zone = zone;
+		this.environment = environment;
+		this.ml = ml;
+		this.familiar = familiar;
+		this.weight = weight;
+		this.mainhandClass = mainhandClass;
+		this.hoboPower = hoboPower;
+		this.smithsness = smithsness;
+		this.unarmed = unarmed;
+	}
+
+	/**
+	 * Returns a context holding the values the statics in Modifiers have
+	 * right now.
+	 */
+
+	public static EvaluationContext snapshot()
+	{
+		return new EvaluationContext( Modifiers.currentLocation, Modifiers.currentZone, Modifiers.currentEnvironment, Modifiers.currentML,
+			Modifiers.currentFamiliar, Modifiers.currentWeight, Modifiers.mainhandClass,
+			Modifiers.hoboPower, Modifiers.smithsness, Modifiers.unarmed );
+	}
+
+	public String getLocation()
+	{
+		return this.location;
+	}
+
+	public String getZone()
+	{
+		return this.zone;
+	}
+
+	public String getEnvironment()
+	{
+		return this.environment;
+	}
+
+	public double getML()
+	{
+		return this.ml;
+	}
+
+	public String getFamiliar()
+	{
+		return this.familiar;
+	}
+
+	public double getWeight()
+	{
+		return this.weight;
+	}
+
+	public String getMainhandClass()
+	{
+		return this.mainhandClass;
+	}
+
+	public double getHoboPower()
+	{
+		return this.hoboPower;
+	}
+
+	public double getSmithsness()
+	{
+		return this.smithsness;
+	}
+
+	public boolean isUnarmed()
+	{
+		return this.unarmed;
+	}
+
+	public EvaluationContext withFamiliar( final String familiar )
+	{
+		return new EvaluationContext( this.getLocation(), this.getZone(), this.getEnvironment(), this.getML(),
+			familiar, this.getWeight(), this.getMainhandClass(),
+			this.getHoboPower(), this.getSmithsness(), this.isUnarmed() );
+	}
+
+	public EvaluationContext withWeight( final double weight )
+	{
+		return new EvaluationContext( this.getLocation(), this.getZone(), this.getEnvironment(), this.getML(),
+			this.getFamiliar(), weight, this.getMainhandClass(),
+			this.getHoboPower(), this.getSmithsness(), this.isUnarmed() );
+	}
+
+	public EvaluationContext withMainhand( final String mainhandClass, final boolean unarmed )
+	{
+		return new EvaluationContext( this.getLocation(), this.getZone(), this.getEnvironment(), this.getML(),
+			this.getFamiliar(), this.getWeight(), mainhandClass,
+			this.getHoboPower(), this.getSmithsness(), unarmed );
+	}
+
+	public EvaluationContext withHoboPower( final double hoboPower )
+	{
+		return new EvaluationContext( this.getLocation(), this.getZone(), this.getEnvironment(), this.getML(),
+			this.getFamiliar(), this.getWeight(), this.getMainhandClass(),
+			hoboPower, this.getSmithsness(), this.isUnarmed() );
+	}
+
+	public EvaluationContext withSmithsness( final double smithsness )
+	{
+		return new EvaluationContext( this.getLocation(), this.getZone(), this.getEnvironment(), this.getML(),
+			this.getFamiliar(), this.getWeight(), this.getMainhandClass(),
+			this.getHoboPower(), smithsness, this.isUnarmed() );
+	}
+
+	/**
+	 * Returns true if this context describes the character as it really
+	 * is, so that results computed from the statics can be shared.
+	 */
+
+	public boolean isCurrent()
+	{
+		return this == EvaluationContext.CURRENT ||
+			EvaluationContext.same( this.location, Modifiers.currentLocation ) &&
+			EvaluationContext.same( this.zone, Modifiers.currentZone ) &&
+			EvaluationContext.same( this.environment, Modifiers.currentEnvironment ) &&
+			this.ml == Modifiers.currentML &&
+			EvaluationContext.same( this.familiar, Modifiers.currentFamiliar ) &&
+			this.weight == Modifiers.currentWeight &&
+			EvaluationContext.same( this.mainhandClass, Modifiers.mainhandClass ) &&
+			this.hoboPower == Modifiers.hoboPower &&
+			this.smithsness == Modifiers.smithsness &&
+			this.unarmed == Modifiers.unarmed;
+	}
+
+	private static boolean same( final String a, final String b )
+	{
+		return a == b || a != null && a.equals( b );
+	}
+
+	// The default context.  Its getters read the statics each time, so
+	// code that sets them and then evaluates sees the new values.
+
+	private static class Current
+		extends EvaluationContext
+	{
+		Current()
+		{
+			super( "", "", "", 4.0, "", 0.0, "", 0.0, 0.0, false );
+		}
+
+		@Override
+		public String getLocation()
+		{
+			return Modifiers.currentLocation;
+		}
+
+		@Override
+		public String getZone()
+		{
+			return Modifiers.currentZone;
+		}
+
+		@Override
+		public String getEnvironment()
+		{
+			return Modifiers.currentEnvironment;
+		}
+
+		@Override
+		public double getML()
+		{
+			return Modifiers.currentML;
+		}
+
+		@Override
+		public String getFamiliar()
+		{
+			return Modifiers.currentFamiliar;
+		}
+
+		@Override
+		public double getWeight()
+		{
+			return Modifiers.currentWeight;
+		}
+
+		@Override
+		public String getMainhandClass()
+		{
+			return Modifiers.mainhandClass;
+		}
+
+		@Override
+		public double getHoboPower()
+		{
+			return Modifiers.hoboPower;
+		}
+
+		@Override
+		public double getSmithsness()
+		{
+			return Modifiers.smithsness;
+		}
+
+		@Override
+		public boolean isUnarmed()
+		{
+			return Modifiers.unarmed;
+		}
+	}
+}
@@ -68,6 +68,7 @@ public class Expression
 
 	private char[] bytecode;	// Compiled expression
 	private ArrayList<Object> literals;	// Strings & floats needed by expression
+	private Term term;	// Bytecode with literals resolved, or null to interpret it
 	protected AdventureResult effect;
 
 	// If non-null, contains concatenated error strings from compiling bytecode
@@ -106,25 +107,24 @@ public class Expression
 		return buf.toString();
 	}
 
-	private static double[] cachedStack;
+	// Each thread keeps a spare stack for interpreting bytecode
+	private static final ThreadLocal<double[]> cachedStack = new ThreadLocal<double[]>();
 
-	private synchronized static double[] stackFactory( double[] recycle )
+	private static double[] stackFactory( double[] recycle )
 	{
 		if ( recycle != null )
 		{	// Reuse this stack for the next evaluation.
-			cachedStack = recycle;
+			cachedStack.set( recycle );
 			return null;
 		}
-		else if ( cachedStack != null )
+		double[] rv = cachedStack.get();
+		if ( rv != null )
 		{	// We have a stack handy; it's yours now.
-			double[] rv = cachedStack;
-			cachedStack = null;
+			cachedStack.set( null );
 			return rv;
 		}
-		else
-		{	// We're all out of stacks.
-			return new double[ STACK_SIZE ];
-		}
+		// We're all out of stacks.
+		return new double[ STACK_SIZE ];
 	}
 
 	public Expression( String text, String name )
@@ -153,6 +153,11 @@ public class Expression
 			buf.append( this.text );
 		}
 		this.text = null;
+
+		if ( this.error == null )
+		{
+			this.term = this.compile();
+		}
 	}
 
 	public static Expression getInstance( String text, String name )
@@ -170,11 +175,54 @@ public class Expression
 	{
 	}
 
+	/**
+	 * Returns true if the compiled expression calls any of the given
+	 * functions, identified by their bytecode.
+	 */
+	public boolean uses( String functions )
+	{
+		for ( int i = 0; i < this.bytecode.length; ++i )
+		{
+			char inst = this.bytecode[ i ];
+			if ( inst <= '\u00FF' && functions.indexOf( inst ) != -1 )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the compiled expression calls no functions other
+	 * than the given ones, besides arithmetic.
+	 */
+	public boolean usesOnly( String functions )
+	{
+		for ( int i = 0; i < this.bytecode.length; ++i )
+		{
+			char inst = this.bytecode[ i ];
+			if ( inst <= '\u00FF' && ARITHMETIC_OPS.indexOf( inst ) == -1 && functions.indexOf( inst ) == -1 )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public double eval()
+	{
+		return this.eval( EvaluationContext.CURRENT );
+	}
+
+	/**
+	 * Evaluates the expression as it would be for the character described
+	 * by the given context, rather than the current one.
+	 */
+	public double eval( final EvaluationContext context )
 	{
 		try
 		{
-			return this.evalInternal();
+			return this.evalInternal( context );
 		}
 		catch ( ArrayIndexOutOfBoundsException e )
 		{
@@ -192,6 +240,30 @@ public class Expression
 	}
 
 	public double evalInternal()
+	{
+		return this.evalInternal( EvaluationContext.CURRENT );
+	}
+
+	public double evalInternal( final EvaluationContext context )
+	{
+		if ( this.term != null )
+		{
+			return this.term.eval( context );
+		}
+		return this.interpret( context );
+	}
+
+	boolean isCompiled()
+	{
+		return this.term != null;
+	}
+
+	double interpret()
+	{
+		return this.interpret( EvaluationContext.CURRENT );
+	}
+
+	double interpret( final EvaluationContext context )
 	{
 		double[] s = stackFactory( null );
 		int sp = 0;
@@ -374,25 +446,25 @@ public class Expression
 				v = KoLCharacter.hasEquipped( item ) ? 1 : 0;
 				break;
 			case 'h':
-				v = Modifiers.mainhandClass.equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
+				v = context.getMainhandClass().equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
 				break;
 			case 'i':
-				v = FamiliarDatabase.hasAttribute( Modifiers.currentFamiliar, (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
+				v = FamiliarDatabase.hasAttribute( context.getFamiliar(), (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
 				break;
 			case 'j':
-				v = Modifiers.currentEnvironment.equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
+				v = context.getEnvironment().equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
 				break;
 			case 'l':
-				v = Modifiers.currentLocation.equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
+				v = context.getLocation().equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
 				break;
 			case 'n':
 				v = KoLCharacter.getClassName().equals( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
 				break;
 			case 'w':
-				v = Modifiers.currentFamiliar.equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
+				v = context.getFamiliar().equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
 				break;
 			case 'z':
-				v = Modifiers.currentZone.equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
+				v = context.getZone().equalsIgnoreCase( (String) this.literals.get( (int) s[ --sp ] ) ) ? 1 : 0;
 				break;
 			case 'v':
 				Calendar date = Calendar.getInstance( TimeZone.getTimeZone( "GMT-0700" ) );
@@ -459,7 +531,7 @@ public class Expression
 				v = HolidayDatabase.getGrimaciteEffect() / 10.0;
 				break;
 			case 'H':
-				v = Modifiers.hoboPower;
+				v = context.getHoboPower();
 				break;
 			case 'I':
 				v = KoLCharacter.getDiscoMomentum();
@@ -468,7 +540,7 @@ public class Expression
 				v = HolidayDatabase.getHoliday().contains( "Festival of Jarlsberg" ) ? 1.0 : 0.0;
 				break;
 			case 'K':
-				v = Modifiers.smithsness;
+				v = context.getSmithsness();
 				break;
 			case 'L':
 				v = KoLCharacter.getLevel();
@@ -496,7 +568,7 @@ public class Expression
 				v = KoLCharacter.getTelescopeUpgrades();
 				break;
 			case 'W':
-				v = Modifiers.currentWeight;
+				v = context.getWeight();
 				break;
 			case 'X':
 				v = KoLCharacter.getGender();
@@ -558,6 +630,529 @@ public class Expression
 		}
 	}
 
+	// Operations that only depend on their operands
+	private static final String ARITHMETIC_OPS = "+-*/%^acfmsx#r";
+
+	// Operations that take the index of a literal from the stack
+	private static final String LITERAL_OPS = "#bdeghijlnpvwz\u0092\u0093";
+
+	// Operations that only push a value
+	private static final String VARIABLE_OPS = "ABCDEFGHIJKLMNPRSTUWXY\u0080\u0081\u0082\u0083\u0084\u0085\u0086\u0087\u0088\u0089\u0090\u0091\u0094";
+
+	/**
+	 * Runs the bytecode symbolically, building the tree of terms that the
+	 * interpreter would have computed.  Returns null for anything the
+	 * interpreter would fail on, so that it is left to report the error.
+	 */
+	private Term compile()
+	{
+		Term[] stack = new Term[ STACK_SIZE ];
+		int sp = 0;
+
+		for ( int pc = 0; pc < this.bytecode.length; ++pc )
+		{
+			char inst = this.bytecode[ pc ];
+			Term term;
+			switch ( inst )
+			{
+			case 'r':
+				return sp > 0 ? stack[ sp - 1 ] : null;
+
+			case '+':
+			case '-':
+			case '*':
+			case '/':
+			case '%':
+			case '^':
+			case 'm':
+			case 'x':
+				if ( sp < 2 )
+				{
+					return null;
+				}
+				Term top = stack[ --sp ];
+				term = new Operation( inst, top, stack[ --sp ] );
+				break;
+
+			case 'a':
+			case 'c':
+			case 'f':
+			case 's':
+				if ( sp < 1 )
+				{
+					return null;
+				}
+				term = new Operation( inst, stack[ --sp ], null );
+				break;
+
+			default:
+				if ( inst > '\u00FF' )
+				{
+					term = new Constant( inst - 0x8000 );
+				}
+				else if ( VARIABLE_OPS.indexOf( inst ) != -1 )
+				{
+					term = new Variable( inst );
+				}
+				else if ( LITERAL_OPS.indexOf( inst ) != -1 && sp > 0 )
+				{
+					term = this.function( inst, stack[ --sp ] );
+					if ( term == null )
+					{
+						return null;
+					}
+				}
+				else
+				{
+					return null;
+				}
+			}
+
+			if ( sp == STACK_SIZE )
+			{
+				return null;
+			}
+			stack[ sp++ ] = term;
+		}
+
+		return null;
+	}
+
+	private Term function( char inst, Term index )
+	{
+		if ( !( index instanceof Constant ) )
+		{
+			return null;
+		}
+		double value = ((Constant) index).value;
+		if ( this.literals == null || value < 0 || value >= this.literals.size() )
+		{
+			return null;
+		}
+
+		Object literal = this.literals.get( (int) value );
+		if ( inst == '#' )
+		{
+			return literal instanceof Double ? new Constant( ((Double) literal).doubleValue() ) : null;
+		}
+		if ( !( literal instanceof String ) )
+		{
+			return null;
+		}
+
+		String arg = (String) literal;
+		switch ( inst )
+		{
+		case 'b':
+			return new Resistance( arg );
+		case 'd':
+			return new HasSkill( arg );
+		case 'e':
+			return new EffectCount( arg );
+		case 'g':
+			return new Equipped( arg );
+		case 'p':
+			return new Pref( arg );
+		case 'v':
+			if ( !arg.equals( "Crimbo2015" ) && !arg.equals( "December" ) )
+			{
+				// The interpreter leaves the literal index as the value
+				return null;
+			}
+			break;
+		}
+		return new Function( inst, arg );
+	}
+
+	private static abstract class Term
+	{
+		abstract double eval( EvaluationContext context );
+	}
+
+	private static class Constant
+		extends Term
+	{
+		final double value;
+
+		Constant( double value )
+		{
+			this.value = value;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			return this.value;
+		}
+	}
+
+	private static class Operation
+		extends Term
+	{
+		private final char inst;
+		private final Term top, below;
+
+		Operation( char inst, Term top, Term below )
+		{
+			this.inst = inst;
+			this.top = top;
+			this.below = below;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			// Evaluate in the same order as the bytecode
+			double y = this.below == null ? 0.0 : this.below.eval( context );
+			double x = this.top.eval( context );
+			double v;
+			switch ( this.inst )
+			{
+			case '+':
+				return x + y;
+			case '-':
+				return x - y;
+			case '*':
+				return x * y;
+			case '/':
+				if ( y == 0.0 )
+				{
+					throw new ArithmeticException( "Can't divide by zero" );
+				}
+				return x / y;
+			case '%':
+				return x % y;
+			case '^':
+				v = (double) Math.pow( x, y );
+				if ( Double.isNaN( v ) || Double.isInfinite( v ) )
+				{
+					throw new ArithmeticException( "Invalid exponentiation: cannot take " + x + " ** " + y );
+				}
+				return v;
+			case 'm':
+				return Math.min( x, y );
+			case 'x':
+				return Math.max( x, y );
+			case 'a':
+				return Math.abs( x );
+			case 'c':
+				return (double) Math.ceil( x );
+			case 'f':
+				return (double) Math.floor( x );
+			case 's':
+				v = (double) Math.sqrt( x );
+				if ( Double.isNaN( v ) )
+				{
+					throw new ArithmeticException( "Can't take square root of a negative value" );
+				}
+				return v;
+			}
+			return 0.0;
+		}
+	}
+
+	private static class Resistance
+		extends Term
+	{
+		private final int element;
+
+		Resistance( String elem )
+		{
+			this.element =
+				elem.equalsIgnoreCase( "cold" ) ? Modifiers.COLD_RESISTANCE :
+				elem.equalsIgnoreCase( "hot" ) ? Modifiers.HOT_RESISTANCE :
+				elem.equalsIgnoreCase( "sleaze" ) ? Modifiers.SLEAZE_RESISTANCE :
+				elem.equalsIgnoreCase( "spooky" ) ? Modifiers.SPOOKY_RESISTANCE :
+				elem.equalsIgnoreCase( "stench" ) ? Modifiers.STENCH_RESISTANCE :
+				elem.equalsIgnoreCase( "slime" ) ? Modifiers.SLIME_RESISTANCE :
+				elem.equalsIgnoreCase( "supercold" ) ? Modifiers.SUPERCOLD_RESISTANCE :
+				-1;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			return KoLCharacter.currentNumericModifier( this.element );
+		}
+	}
+
+	// Names are resolved on first use, since expressions can be
+	// compiled while the databases are still loading.
+
+	private static class HasSkill
+		extends Term
+	{
+		private final String arg;
+		private String skillName;
+
+		HasSkill( String arg )
+		{
+			this.arg = arg;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			if ( this.skillName == null )
+			{
+				this.skillName = StringUtilities.isNumeric( this.arg ) ?
+					SkillDatabase.getSkillName( StringUtilities.parseInt( this.arg ) ) :
+					this.arg;
+			}
+			return KoLCharacter.hasSkill( this.skillName ) ? 1 : 0;
+		}
+	}
+
+	private static class EffectCount
+		extends Term
+	{
+		private final String arg;
+		private AdventureResult effect;
+
+		EffectCount( String arg )
+		{
+			this.arg = arg;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			AdventureResult eff = this.effect;
+			if ( eff == null )
+			{
+				// If effect name is a number, convert to name
+				int effectId = StringUtilities.isNumeric( this.arg ) ?
+					StringUtilities.parseInt( this.arg ) :
+					EffectDatabase.getEffectId( this.arg );
+				eff = EffectPool.get( effectId );
+				if ( eff == null )
+				{
+					return 0.0;
+				}
+				if ( effectId != -1 )
+				{
+					this.effect = eff;
+				}
+			}
+			return Math.max( 0, eff.getCount( KoLConstants.activeEffects ) );
+		}
+	}
+
+	private static class Equipped
+		extends Term
+	{
+		private final String arg;
+		private AdventureResult item;
+
+		Equipped( String arg )
+		{
+			this.arg = arg;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			AdventureResult item = this.item;
+			if ( item == null )
+			{
+				int itemId = ItemDatabase.getItemId( this.arg );
+				item = ItemPool.get( itemId );
+				if ( itemId != -1 )
+				{
+					this.item = item;
+				}
+			}
+			return KoLCharacter.hasEquipped( item ) ? 1 : 0;
+		}
+	}
+
+	private static class Pref
+		extends Term
+	{
+		private final String name, value;
+
+		Pref( String arg )
+		{
+			int commaIndex = arg.indexOf( "," );
+			this.name = commaIndex > -1 ? arg.substring( 0, commaIndex ) : arg;
+			this.value = commaIndex > -1 ? arg.substring( commaIndex + 1 ) : null;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			String prefString = Preferences.getString( this.name );
+			if ( this.value != null )
+			{
+				return prefString.contains( this.value ) ? 1 : 0;
+			}
+			return
+				prefString.contains( "true" ) ? 1 :
+				prefString.contains( "false" ) ? 0 :
+				StringUtilities.parseDouble( prefString );
+		}
+	}
+
+	private static class Function
+		extends Term
+	{
+		private final char inst;
+		private final String arg;
+
+		Function( char inst, String arg )
+		{
+			this.inst = inst;
+			this.arg = arg;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			switch ( this.inst )
+			{
+			case 'h':
+				return context.getMainhandClass().equalsIgnoreCase( this.arg ) ? 1 : 0;
+			case 'i':
+				return FamiliarDatabase.hasAttribute( context.getFamiliar(), this.arg ) ? 1 : 0;
+			case 'j':
+				return context.getEnvironment().equalsIgnoreCase( this.arg ) ? 1 : 0;
+			case 'l':
+				return context.getLocation().equalsIgnoreCase( this.arg ) ? 1 : 0;
+			case 'n':
+				return KoLCharacter.getClassName().equals( this.arg ) ? 1 : 0;
+			case 'w':
+				return context.getFamiliar().equalsIgnoreCase( this.arg ) ? 1 : 0;
+			case 'z':
+				return context.getZone().equalsIgnoreCase( this.arg ) ? 1 : 0;
+			case 'v':
+				Calendar date = Calendar.getInstance( TimeZone.getTimeZone( "GMT-0700" ) );
+				if ( this.arg.equals( "Crimbo2015" ) )
+				{
+					// Event ends just after rollover on 3rd January 2016
+					GregorianCalendar eventEnd = new GregorianCalendar( 2016, Calendar.JANUARY, 3, 20, 30 );
+					eventEnd.setTimeZone( TimeZone.getTimeZone( "GMT-0700" ) );
+					return date.before( eventEnd ) ? 1 : 0;
+				}
+				if ( this.arg.equals( "December" ) )
+				{
+					int month = date.get( Calendar.MONTH );
+					return ( month == Calendar.DECEMBER ) ? 1 : 0;
+				}
+				return 0.0;
+			case '\u0092':
+				return KoLCharacter.getPath().equals( this.arg ) ? 1 : 0;
+			case '\u0093':
+				return KoLCharacter.getCurrentModifiers().getExtra( this.arg );
+			}
+			return 0.0;
+		}
+	}
+
+	private class Variable
+		extends Term
+	{
+		private final char inst;
+
+		Variable( char inst )
+		{
+			this.inst = inst;
+		}
+
+		@Override
+		double eval( final EvaluationContext context )
+		{
+			switch ( this.inst )
+			{
+			case 'A':
+				return KoLCharacter.getAscensions();
+			case 'B':
+				return HolidayDatabase.getBloodEffect();
+			case 'C':
+				return KoLCharacter.getMinstrelLevel();
+			case 'D':
+				return KoLCharacter.getInebriety();
+			case 'E':
+			{
+				int size = KoLConstants.activeEffects.size();
+				AdventureResult[] effectsArray = new AdventureResult[ size ];
+				KoLConstants.activeEffects.toArray( effectsArray );
+
+				double v = 0;
+				for ( int i = 0; i < size; i++ )
+				{
+					if ( effectsArray[ i ].getCount() != Integer.MAX_VALUE )
+					{
+						v++;
+					}
+				}
+				return v;
+			}
+			case 'F':
+				return KoLCharacter.getFullness();
+			case 'G':
+				return HolidayDatabase.getGrimaciteEffect() / 10.0;
+			case 'H':
+				return context.getHoboPower();
+			case 'I':
+				return KoLCharacter.getDiscoMomentum();
+			case 'J':
+				return HolidayDatabase.getHoliday().contains( "Festival of Jarlsberg" ) ? 1.0 : 0.0;
+			case 'K':
+				return context.getSmithsness();
+			case 'L':
+				return KoLCharacter.getLevel();
+			case 'M':
+				return HolidayDatabase.getMoonlight();
+			case 'N':
+				return KoLCharacter.getAudience();
+			case 'P':
+				return KoLCharacter.currentPastaThrall.getLevel();
+			case 'R':
+				return KoLCharacter.getReagentPotionDuration();
+			case 'S':
+				return KoLCharacter.getSpleenUse();
+			case 'T':
+				return Expression.this.effect == null ? 0.0 :
+					Math.max( 1, Expression.this.effect.getCount( KoLConstants.activeEffects ) );
+			case 'U':
+				return KoLCharacter.getTelescopeUpgrades();
+			case 'W':
+				return context.getWeight();
+			case 'X':
+				return KoLCharacter.getGender();
+			case 'Y':
+				return KoLCharacter.getFury();
+			case '\u0080':
+				return KoLCharacter.getAdjustedMuscle();
+			case '\u0081':
+				return KoLCharacter.getAdjustedMysticality();
+			case '\u0082':
+				return KoLCharacter.getAdjustedMoxie();
+			case '\u0083':
+				return KoLCharacter.getMonsterLevelAdjustment();
+			case '\u0084':
+				return KoLCharacter.getMindControlLevel();
+			case '\u0085':
+				return KoLCharacter.getMaximumHP();
+			case '\u0086':
+				return BasementRequest.getBasementLevel();
+			case '\u0087':
+				return FightRequest.dreadKisses( "Woods" );
+			case '\u0088':
+				return FightRequest.dreadKisses( "Village" );
+			case '\u0089':
+				return FightRequest.dreadKisses( "Castle" );
+			case '\u0090':
+				return KoLCharacter.getAdjustedHighestStat();
+			case '\u0091':
+				return KoLCharacter.getMaximumMP();
+			case '\u0094':
+				return KoLCharacter.canInteract() ? 1 : 0;
+			}
+			return 0.0;
+		}
+	}
+
 	protected String validBytecodes()
 	{	// Allowed operations in the A-Z range.
 		return "";
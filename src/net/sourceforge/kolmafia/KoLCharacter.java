@@ -5839,29 +5839,43 @@ public abstract class KoLCharacter
 		int taoFactor = KoLCharacter.hasSkill( "Tao of the Terrapin" ) ? 2 : 1;
 
 		Modifiers newModifiers = debug ? new DebugModifiers() : new Modifiers();
-		Modifiers.setFamiliar( familiar );
 		AdventureResult weapon = equipment[ EquipmentManager.WEAPON ];
-		Modifiers.mainhandClass = weapon == null ? ""
+		String mainhandClass = weapon == null ? ""
 			: EquipmentDatabase.getItemType( weapon.getItemId() );
 		AdventureResult offhand = equipment[ EquipmentManager.OFFHAND ];
-		Modifiers.unarmed = (weapon == null || weapon == EquipmentRequest.UNEQUIP)
+		boolean unarmed = (weapon == null || weapon == EquipmentRequest.UNEQUIP)
 			&& (offhand == null || offhand == EquipmentRequest.UNEQUIP);
 
-		// Area-specific adjustments
-		newModifiers.add( Modifiers.getModifiers( "Loc", Modifiers.currentLocation ) );
-		newModifiers.add( Modifiers.getModifiers( "Zone", Modifiers.currentZone ) );
+		// A speculation describes its own character and leaves the
+		// statics, which describe the real one, alone.
+		if ( speculation )
+		{
+			newModifiers.setContext( EvaluationContext.snapshot()
+				.withFamiliar( familiar == null ? "" : familiar.getRace() )
+				.withMainhand( mainhandClass, unarmed ) );
+		}
+		else
+		{
+			Modifiers.setFamiliar( familiar );
+			Modifiers.mainhandClass = mainhandClass;
+			Modifiers.unarmed = unarmed;
+		}
+
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_AREA, speculation );
 
-		// Look at sign-specific adjustments
 		newModifiers.add( Modifiers.MONSTER_LEVEL, MCD, "MCD:MCD" );
-		newModifiers.add( Modifiers.getModifiers( "Sign", KoLCharacter.ascensionSign ) );
 
-		// If we are out of ronin/hardcore, look at stat day adjustments
-		if ( KoLCharacter.canInteract() && !KoLmafia.statDay.equals( "None" ) )
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_SIGN, speculation );
+
+		double smithsness = KoLCharacter.getSmithsnessModifier( equipment, effects );
+		if ( speculation )
 		{
-			newModifiers.add( Modifiers.getModifiers( "StatDay", KoLmafia.statDay ) );
+			newModifiers.setContext( newModifiers.getContext().withSmithsness( smithsness ) );
+		}
+		else
+		{
+			Modifiers.smithsness = smithsness;
 		}
-
-		Modifiers.smithsness = KoLCharacter.getSmithsnessModifier( equipment, effects );
 
 		// Certain outfits give benefits to the character
 		// Need to do this before the individual items, so that Hobo Power
@@ -5870,7 +5884,7 @@ public abstract class KoLCharacter
 		if ( outfit != null )
 		{
 			newModifiers.set( Modifiers.OUTFIT, outfit.getName() );
-			newModifiers.add( Modifiers.getModifiers( "Outfit", outfit.getName() ) );
+			newModifiers.add( Modifiers.getModifiers( "Outfit", outfit.getName(), newModifiers.getContext() ) );
 			// El Vibrato Relics may have additional benefits based on
 			// punchcards inserted into the helmet:
 			if ( outfit.getOutfitId() == OutfitPool.VIBRATO_RELICS &&
@@ -5906,7 +5920,7 @@ public abstract class KoLCharacter
 						newModifiers.add( Modifiers.INITIATIVE, level * 20, "El Vibrato:SELF" );
 						break;
 					case 8:
-						if ( Modifiers.currentFamiliar.contains( "megadrone" ) )
+						if ( newModifiers.getContext().getFamiliar().contains( "megadrone" ) )
 						{
 							newModifiers.add( Modifiers.FAMILIAR_WEIGHT, level * 10, "El Vibrato:DRONE" );
 						}
@@ -5955,62 +5969,27 @@ public abstract class KoLCharacter
 			newModifiers.add( Modifiers.ITEMDROP, cloathingLevel / 2, "Outfit:cloathing" );
 		}
 
-		// Add modifiers from Passive Skills
-		newModifiers.applyPassiveModifiers();
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_SKILLS, speculation );
 
 		// For the sake of easier maintenance, execute a lot of extra
 		// string comparisons when looking at status effects.
 
 		for ( int i = 0; i < effects.size(); ++i )
 		{
-			newModifiers.add( Modifiers.getEffectModifiers( effects.get( i ).getEffectId() ) );
-		}
-
-		Modifiers.hoboPower = newModifiers.get( Modifiers.HOBO_POWER );
-
-		// Add modifiers from campground equipment.
-		for ( int i = 0; i< KoLConstants.campground.size(); ++i )
-		{
-			AdventureResult item = (AdventureResult) KoLConstants.campground.get( i );
-			// Skip ginormous pumpkin growing in garden
-			if ( item.getItemId() == ItemPool.GINORMOUS_PUMPKIN )
-			{
-				continue;
-			}
-			for ( int count = item.getCount(); count > 0; --count )
-			{
-				newModifiers.add( Modifiers.getItemModifiers( item.getItemId() ) );
-			}
-		}
-
-		// Add modifiers from dwelling
-		AdventureResult dwelling = CampgroundRequest.getCurrentDwelling();
-		newModifiers.add( Modifiers.getItemModifiers( dwelling.getItemId() ) );
-
-		if ( KoLConstants.inventory.contains( ItemPool.get( ItemPool.COMFY_BLANKET, 1 ) ) )
-		{
-			newModifiers.add( Modifiers.getItemModifiers( ItemPool.COMFY_BLANKET ) );
-		}
-
-		if ( HolidayDatabase.getRonaldPhase() == 5 )
-		{
-			newModifiers.add( Modifiers.RESTING_MP_PCT, 100, "Moons:Ronald full" );
+			newModifiers.add( Modifiers.getEffectModifiers( effects.get( i ).getEffectId(), newModifiers.getContext() ) );
 		}
 
-		if ( HolidayDatabase.getGrimacePhase() == 5 )
+		double hoboPower = newModifiers.get( Modifiers.HOBO_POWER );
+		if ( speculation )
 		{
-			newModifiers.add( Modifiers.RESTING_HP_PCT, 100, "Moons:Grimace full" );
+			newModifiers.setContext( newModifiers.getContext().withHoboPower( hoboPower ) );
 		}
-
-		if ( ChateauRequest.ceiling != null )
+		else
 		{
-			newModifiers.add( Modifiers.getModifiers( "Item", ChateauRequest.ceiling ) );
+			Modifiers.hoboPower = hoboPower;
 		}
 
-		for ( String equip : ClanManager.getClanRumpus() )
-		{
-			newModifiers.add( Modifiers.getModifiers( "Rumpus", equip ) );
-		}
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_CAMPGROUND, speculation );
 
 		// Add other oddball interactions
 		newModifiers.applySynergies();
@@ -6019,64 +5998,17 @@ public abstract class KoLCharacter
 
 		newModifiers.applyFamiliarModifiers( familiar, equipment[ EquipmentManager.FAMILIAR ] );
 
-		// Add Pasta Thrall effects
-
-		if ( KoLCharacter.classtype == KoLCharacter.PASTAMANCER )
-		{
-			PastaThrallData thrall = KoLCharacter.currentPastaThrall;
-			if ( thrall != PastaThrallData.NO_THRALL )
-			{
-				newModifiers.add( Modifiers.getModifiers( "Thrall", thrall.getType() ) );
-			}
-		}
-
-		// Add in strung-up quartet.
-
-		if ( KoLCharacter.getAscensions() == Preferences.getInteger( "lastQuartetAscension" ) )
-		{
-			switch ( Preferences.getInteger( "lastQuartetRequest" ) )
-			{
-			case 1:
-				newModifiers.add( Modifiers.MONSTER_LEVEL, 5, "Ballroom:quartet" );
-				break;
-			case 2:
-				newModifiers.add( Modifiers.COMBAT_RATE, -5, "Ballroom:quartet" );
-				break;
-			case 3:
-				newModifiers.add( Modifiers.ITEMDROP, 5, "Ballroom:quartet" );
-				break;
-			}
-		}
-
-		// Mummery
-		newModifiers.add( new Modifiers( "Mummery", Modifiers.evaluateModifiers( "Mummery", Preferences.getString( "_mummeryMods" ) ) ) );
-
-		// Add modifiers from inventory
-		if ( InventoryManager.hasItem( ItemPool.FISHING_POLE ) )
-		{
-			newModifiers.add( Modifiers.FISHING_SKILL, 20, "Inventory Item:fishin' pole" );
-		}
-		if ( InventoryManager.hasItem( ItemPool.ANTIQUE_TACKLE_BOX ) )
-		{
-			newModifiers.add( Modifiers.FISHING_SKILL, 5, "Inventory Item:antique tacklebox" );
-		}
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_MISC, speculation );
 
 		// Boombox, no check for having one so it can work with Maximizer "show things you don't have"
-		newModifiers.add( Modifiers.getModifiers( "BoomBox", boomBox ) );
+		newModifiers.add( Modifiers.getModifiers( "BoomBox", boomBox, newModifiers.getContext() ) );
 
-		// Add modifiers from Florist Friar plants
-		newModifiers.applyFloristModifiers();
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_FLORIST, speculation );
 
 		// Horsery
-		newModifiers.add( Modifiers.getModifiers( "Horsery", horsery ) );
-
-		// Voting Booth
-		newModifiers.add( new Modifiers( "Local Vote:Local Vote", Modifiers.evaluateModifiers( "Local Vote:Local Vote", Preferences.getString( "_voteModifier" ) ) ) );
-
-		// Miscellaneous
+		newModifiers.add( Modifiers.getModifiers( "Horsery", horsery, newModifiers.getContext() ) );
 
-		newModifiers.add( Modifiers.getModifiers( "Generated", "_userMods" ) );
-		newModifiers.add( Modifiers.getModifiers( "Generated", "fightMods" ) );
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_VOTE, speculation );
 
 		// Temporary custom modifier
 		if ( custom != null )
@@ -6084,7 +6016,8 @@ public abstract class KoLCharacter
 			newModifiers.add( Modifiers.parseModifiers( "Generated:custom", custom ) );
 		}
 
-		if ( Modifiers.currentLocation.equals( "The Slime Tube" ) )
+		String location = newModifiers.getContext().getLocation();
+		if ( location.equals( "The Slime Tube" ) )
 		{
 			int hatred = (int) newModifiers.get( Modifiers.SLIME_HATES_IT );
 			if ( hatred > 0 )
@@ -6094,61 +6027,7 @@ public abstract class KoLCharacter
 			}
 		}
 
-		// Path specific modifiers
-
-		// Add modifiers from Current Path
-		newModifiers.add( Modifiers.getModifiers( "Path", KoLCharacter.ascensionPath ) );
-
-		// If Sneaky Pete, add Motorbike effects
-
-		if ( KoLCharacter.isSneakyPete() )
-		{
-			newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeTires" ) ) );
-			newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeGasTank" ) ) );
-			newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeHeadlight" ) ) );
-			newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeCowling" ) ) );
-			newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeMuffler" ) ) );
-			newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeSeat" ) ) );
-		}
-
-		// If in Nuclear Autumn, add Radiation Sickness
-
-		if ( KoLCharacter.inNuclearAutumn() && KoLCharacter.getRadSickness() > 0 )
-		{
-			newModifiers.add( Modifiers.MUS, -KoLCharacter.getRadSickness(), "Path:Rads" );
-			newModifiers.add( Modifiers.MYS, -KoLCharacter.getRadSickness(), "Path:Rads" );
-			newModifiers.add( Modifiers.MOX, -KoLCharacter.getRadSickness(), "Path:Rads" );
-		}
-
-		if ( KoLCharacter.inAxecore() && KoLCharacter.currentInstrument != null )
-		{
-			newModifiers.applyMinstrelModifiers( KoLCharacter.minstrelLevel, KoLCharacter.currentInstrument );
-		}
-
-		if ( KoLCharacter.isJarlsberg() && KoLCharacter.companion != null )
-		{
-			newModifiers.applyCompanionModifiers( KoLCharacter.companion );
-		}
-
-		if ( KoLCharacter.isEd() && EdServantData.currentServant() != null )
-		{
-			newModifiers.applyServantModifiers( EdServantData.currentServant() );
-		}
-
-		if ( KoLCharacter.inNoobcore() )
-		{
-			newModifiers.add( Modifiers.getModifiers( "Generated", "Enchantments Absorbed" ) );
-		}
-
-		if ( KoLCharacter.inDisguise() && KoLCharacter.getMask() != null )
-		{
-			newModifiers.add( Modifiers.getModifiers( "Mask", KoLCharacter.getMask() ) );
-		}
-
-		if ( VYKEACompanionData.currentCompanion() != VYKEACompanionData.NO_COMPANION )
-		{
-			newModifiers.applyCompanionModifiers( VYKEACompanionData.currentCompanion() );
-		}
+		KoLCharacter.addFixedAdjustments( newModifiers, KoLCharacter.FIXED_PATH, speculation );
 
 		// Lastly, experience adjustment also implicitly depends on
 		// monster level.  Add that information.
@@ -6168,12 +6047,12 @@ public abstract class KoLCharacter
 		if ( KoLCharacter.inRaincore() )
 		{
 			int WL = 1;
-			if ( Modifiers.currentLocation != null )
+			if ( location != null )
 			{
-				KoLAdventure location = AdventureDatabase.getAdventure( Modifiers.currentLocation );
-				if ( location != null )
+				KoLAdventure adventure = AdventureDatabase.getAdventure( location );
+				if ( adventure != null )
 				{
-					WL = location.getWaterLevel();
+					WL = adventure.getWaterLevel();
 				}
 			}
 			if ( WL > 0 )
@@ -6184,7 +6063,7 @@ public abstract class KoLCharacter
 			}
 		}
 
-		double baseExp = ( Modifiers.getCurrentML() - monsterLevel ) / 4.0f;
+		double baseExp = ( newModifiers.getContext().getML() - monsterLevel ) / 4.0f;
 
 		double exp = newModifiers.get( Modifiers.EXPERIENCE );
 
@@ -6284,6 +6163,252 @@ public abstract class KoLCharacter
 		return newModifiers;
 	}
 
+	// Sections of recalculateAdjustments that don't depend on anything
+	// that can be speculated on
+	private static final int FIXED_AREA = 0;
+	private static final int FIXED_SIGN = 1;
+	private static final int FIXED_SKILLS = 2;
+	private static final int FIXED_CAMPGROUND = 3;
+	private static final int FIXED_MISC = 4;
+	private static final int FIXED_FLORIST = 5;
+	private static final int FIXED_VOTE = 6;
+	private static final int FIXED_PATH = 7;
+	private static final int FIXED_SECTIONS = 8;
+
+	// While enabled, each fixed section is recorded the first time
+	// a speculation needs it and replayed after that.
+	private static RecordedModifiers[] fixedAdjustments = null;
+
+	public static final void cacheFixedAdjustments( final boolean enable )
+	{
+		KoLCharacter.fixedAdjustments = enable ? new RecordedModifiers[ KoLCharacter.FIXED_SECTIONS ] : null;
+	}
+
+	private static final void addFixedAdjustments( final Modifiers newModifiers, final int section, final boolean speculation )
+	{
+		RecordedModifiers[] fixed = KoLCharacter.fixedAdjustments;
+		if ( !speculation || fixed == null || newModifiers instanceof DebugModifiers )
+		{
+			KoLCharacter.addFixedSection( newModifiers, section );
+			return;
+		}
+
+		RecordedModifiers recorded;
+		synchronized ( fixed )
+		{
+			recorded = fixed[ section ];
+			if ( recorded == null )
+			{
+				recorded = new RecordedModifiers();
+				recorded.setContext( newModifiers.getContext() );
+				KoLCharacter.addFixedSection( recorded, section );
+				fixed[ section ] = recorded;
+			}
+		}
+
+		if ( recorded.isReplayable() )
+		{
+			recorded.replay( newModifiers );
+		}
+		else
+		{
+			KoLCharacter.addFixedSection( newModifiers, section );
+		}
+	}
+
+	private static final void addFixedSection( final Modifiers newModifiers, final int section )
+	{
+		EvaluationContext context = newModifiers.getContext();
+
+		switch ( section )
+		{
+		case FIXED_AREA:
+			// Area-specific adjustments
+			newModifiers.add( Modifiers.getModifiers( "Loc", context.getLocation(), context ) );
+			newModifiers.add( Modifiers.getModifiers( "Zone", context.getZone(), context ) );
+			break;
+
+		case FIXED_SIGN:
+			// Look at sign-specific adjustments
+			newModifiers.add( Modifiers.getModifiers( "Sign", KoLCharacter.ascensionSign, context ) );
+
+			// If we are out of ronin/hardcore, look at stat day adjustments
+			if ( KoLCharacter.canInteract() && !KoLmafia.statDay.equals( "None" ) )
+			{
+				newModifiers.add( Modifiers.getModifiers( "StatDay", KoLmafia.statDay, context ) );
+			}
+			break;
+
+		case FIXED_SKILLS:
+			// Add modifiers from Passive Skills
+			newModifiers.applyPassiveModifiers();
+			break;
+
+		case FIXED_CAMPGROUND:
+			// Add modifiers from campground equipment.
+			for ( int i = 0; i< KoLConstants.campground.size(); ++i )
+			{
+				AdventureResult item = (AdventureResult) KoLConstants.campground.get( i );
+				// Skip ginormous pumpkin growing in garden
+				if ( item.getItemId() == ItemPool.GINORMOUS_PUMPKIN )
+				{
+					continue;
+				}
+				for ( int count = item.getCount(); count > 0; --count )
+				{
+					newModifiers.add( Modifiers.getItemModifiers( item.getItemId(), context ) );
+				}
+			}
+
+			// Add modifiers from dwelling
+			AdventureResult dwelling = CampgroundRequest.getCurrentDwelling();
+			newModifiers.add( Modifiers.getItemModifiers( dwelling.getItemId(), context ) );
+
+			if ( KoLConstants.inventory.contains( ItemPool.get( ItemPool.COMFY_BLANKET, 1 ) ) )
+			{
+				newModifiers.add( Modifiers.getItemModifiers( ItemPool.COMFY_BLANKET, context ) );
+			}
+
+			if ( HolidayDatabase.getRonaldPhase() == 5 )
+			{
+				newModifiers.add( Modifiers.RESTING_MP_PCT, 100, "Moons:Ronald full" );
+			}
+
+			if ( HolidayDatabase.getGrimacePhase() == 5 )
+			{
+				newModifiers.add( Modifiers.RESTING_HP_PCT, 100, "Moons:Grimace full" );
+			}
+
+			if ( ChateauRequest.ceiling != null )
+			{
+				newModifiers.add( Modifiers.getModifiers( "Item", ChateauRequest.ceiling, context ) );
+			}
+
+			for ( String equip : ClanManager.getClanRumpus() )
+			{
+				newModifiers.add( Modifiers.getModifiers( "Rumpus", equip, context ) );
+			}
+			break;
+
+		case FIXED_MISC:
+			// Add Pasta Thrall effects
+
+			if ( KoLCharacter.classtype == KoLCharacter.PASTAMANCER )
+			{
+				PastaThrallData thrall = KoLCharacter.currentPastaThrall;
+				if ( thrall != PastaThrallData.NO_THRALL )
+				{
+					newModifiers.add( Modifiers.getModifiers( "Thrall", thrall.getType(), context ) );
+				}
+			}
+
+			// Add in strung-up quartet.
+
+			if ( KoLCharacter.getAscensions() == Preferences.getInteger( "lastQuartetAscension" ) )
+			{
+				switch ( Preferences.getInteger( "lastQuartetRequest" ) )
+				{
+				case 1:
+					newModifiers.add( Modifiers.MONSTER_LEVEL, 5, "Ballroom:quartet" );
+					break;
+				case 2:
+					newModifiers.add( Modifiers.COMBAT_RATE, -5, "Ballroom:quartet" );
+					break;
+				case 3:
+					newModifiers.add( Modifiers.ITEMDROP, 5, "Ballroom:quartet" );
+					break;
+				}
+			}
+
+			// Mummery
+			newModifiers.add( new Modifiers( "Mummery", Modifiers.evaluateModifiers( "Mummery", Preferences.getString( "_mummeryMods" ) ) ) );
+
+			// Add modifiers from inventory
+			if ( InventoryManager.hasItem( ItemPool.FISHING_POLE ) )
+			{
+				newModifiers.add( Modifiers.FISHING_SKILL, 20, "Inventory Item:fishin' pole" );
+			}
+			if ( InventoryManager.hasItem( ItemPool.ANTIQUE_TACKLE_BOX ) )
+			{
+				newModifiers.add( Modifiers.FISHING_SKILL, 5, "Inventory Item:antique tacklebox" );
+			}
+			break;
+
+		case FIXED_FLORIST:
+			// Add modifiers from Florist Friar plants
+			newModifiers.applyFloristModifiers();
+			break;
+
+		case FIXED_VOTE:
+			// Voting Booth
+			newModifiers.add( new Modifiers( "Local Vote:Local Vote", Modifiers.evaluateModifiers( "Local Vote:Local Vote", Preferences.getString( "_voteModifier" ) ) ) );
+
+			// Miscellaneous
+
+			newModifiers.add( Modifiers.getModifiers( "Generated", "_userMods", context ) );
+			newModifiers.add( Modifiers.getModifiers( "Generated", "fightMods", context ) );
+			break;
+
+		case FIXED_PATH:
+			// Path specific modifiers
+
+			// Add modifiers from Current Path
+			newModifiers.add( Modifiers.getModifiers( "Path", KoLCharacter.ascensionPath, context ) );
+
+			// If Sneaky Pete, add Motorbike effects
+
+			if ( KoLCharacter.isSneakyPete() )
+			{
+				newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeTires" ), context ) );
+				newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeGasTank" ), context ) );
+				newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeHeadlight" ), context ) );
+				newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeCowling" ), context ) );
+				newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeMuffler" ), context ) );
+				newModifiers.add( Modifiers.getModifiers( "Motorbike", Preferences.getString( "peteMotorbikeSeat" ), context ) );
+			}
+
+			// If in Nuclear Autumn, add Radiation Sickness
+
+			if ( KoLCharacter.inNuclearAutumn() && KoLCharacter.getRadSickness() > 0 )
+			{
+				newModifiers.add( Modifiers.MUS, -KoLCharacter.getRadSickness(), "Path:Rads" );
+				newModifiers.add( Modifiers.MYS, -KoLCharacter.getRadSickness(), "Path:Rads" );
+				newModifiers.add( Modifiers.MOX, -KoLCharacter.getRadSickness(), "Path:Rads" );
+			}
+
+			if ( KoLCharacter.inAxecore() && KoLCharacter.currentInstrument != null )
+			{
+				newModifiers.applyMinstrelModifiers( KoLCharacter.minstrelLevel, KoLCharacter.currentInstrument );
+			}
+
+			if ( KoLCharacter.isJarlsberg() && KoLCharacter.companion != null )
+			{
+				newModifiers.applyCompanionModifiers( KoLCharacter.companion );
+			}
+
+			if ( KoLCharacter.isEd() && EdServantData.currentServant() != null )
+			{
+				newModifiers.applyServantModifiers( EdServantData.currentServant() );
+			}
+
+			if ( KoLCharacter.inNoobcore() )
+			{
+				newModifiers.add( Modifiers.getModifiers( "Generated", "Enchantments Absorbed", context ) );
+			}
+
+			if ( KoLCharacter.inDisguise() && KoLCharacter.getMask() != null )
+			{
+				newModifiers.add( Modifiers.getModifiers( "Mask", KoLCharacter.getMask(), context ) );
+			}
+
+			if ( VYKEACompanionData.currentCompanion() != VYKEACompanionData.NO_COMPANION )
+			{
+				newModifiers.applyCompanionModifiers( VYKEACompanionData.currentCompanion() );
+			}
+			break;
+		}
+	}
+
 	private static final void addItemAdjustment( Modifiers newModifiers, int slot, AdventureResult item,
 						     AdventureResult[] equipment, FamiliarData enthroned, FamiliarData bjorned,
 							 String edPiece, String snowsuit, boolean speculation, int taoFactor )
@@ -6292,6 +6417,8 @@ public abstract class KoLCharacter
 		{
 			return;
 		}
+
+		EvaluationContext context = newModifiers.getContext();
 		
 		int itemId = item.getItemId();
 		int consume = ItemDatabase.getConsumptionType( itemId );
@@ -6304,7 +6431,7 @@ public abstract class KoLCharacter
 			return;
 		}
 
-		Modifiers imod = Modifiers.getItemModifiers( itemId );
+		Modifiers imod = Modifiers.getItemModifiers( itemId, context );
 
 		if ( slot == EquipmentManager.FAMILIAR && consume == KoLConstants.EQUIP_WEAPON )
 		{
@@ -6331,7 +6458,7 @@ public abstract class KoLCharacter
 				String intrinsic = imod.getString( Modifiers.INTRINSIC_EFFECT );
 				if ( intrinsic.length() > 0 )
 				{
-					newModifiers.add( Modifiers.getModifiers( "Effect", intrinsic ) );
+					newModifiers.add( Modifiers.getModifiers( "Effect", intrinsic, context ) );
 				}
 			}
 
@@ -6372,7 +6499,7 @@ public abstract class KoLCharacter
 					AdventureResult sticker = equipment[ i ];
 					if ( sticker != null && sticker != EquipmentRequest.UNEQUIP )
 					{
-						newModifiers.add( Modifiers.getItemModifiers( sticker.getItemId() ) );
+						newModifiers.add( Modifiers.getItemModifiers( sticker.getItemId(), context ) );
 					}
 				}
 				break;
@@ -6383,7 +6510,7 @@ public abstract class KoLCharacter
 				AdventureResult card = equipment[ EquipmentManager.CARDSLEEVE ];
 				if ( card != null && card != EquipmentRequest.UNEQUIP )
 				{
-					newModifiers.add( Modifiers.getItemModifiers( card.getItemId() ) );
+					newModifiers.add( Modifiers.getItemModifiers( card.getItemId(), context ) );
 				}
 				break;
 			}
@@ -6395,7 +6522,7 @@ public abstract class KoLCharacter
 					AdventureResult folder = equipment[ i ];
 					if ( folder != null && folder != EquipmentRequest.UNEQUIP )
 					{
-						newModifiers.add( Modifiers.getItemModifiers( folder.getItemId() ) );
+						newModifiers.add( Modifiers.getItemModifiers( folder.getItemId(), context ) );
 					}
 				}
 				break;
@@ -6405,30 +6532,30 @@ public abstract class KoLCharacter
 				AdventureResult spur = equipment[ EquipmentManager.BOOTSPUR ];
 				if ( skin != null && skin != EquipmentRequest.UNEQUIP )
 				{
-					newModifiers.add( Modifiers.getItemModifiers( skin.getItemId() ) );
+					newModifiers.add( Modifiers.getItemModifiers( skin.getItemId(), context ) );
 				}
 				if ( spur != null && spur != EquipmentRequest.UNEQUIP )
 				{
-					newModifiers.add( Modifiers.getItemModifiers( spur.getItemId() ) );
+					newModifiers.add( Modifiers.getItemModifiers( spur.getItemId(), context ) );
 				}
 				break;
 
 			case ItemPool.HATSEAT:
 				// Apply enthroned familiar
-				newModifiers.add( Modifiers.getModifiers( "Throne", enthroned.getRace() ) );
+				newModifiers.add( Modifiers.getModifiers( "Throne", enthroned.getRace(), context ) );
 				break;
 
 			case ItemPool.BUDDY_BJORN:
 				// Apply bjorned familiar
-				newModifiers.add( Modifiers.getModifiers( "Bjorn", bjorned.getRace() ) );
+				newModifiers.add( Modifiers.getModifiers( "Bjorn", bjorned.getRace(), context ) );
 				break;
 
 			case ItemPool.CROWN_OF_ED:
-				newModifiers.add( Modifiers.getModifiers( "Edpiece", edPiece ) );
+				newModifiers.add( Modifiers.getModifiers( "Edpiece", edPiece, context ) );
 				break;
 
 			case ItemPool.SNOW_SUIT:
-				newModifiers.add( Modifiers.getModifiers( "Snowsuit", snowsuit ) );
+				newModifiers.add( Modifiers.getModifiers( "Snowsuit", snowsuit, context ) );
 				break;
 
 			}
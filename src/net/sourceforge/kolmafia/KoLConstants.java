@@ -719,9 +719,9 @@ public interface KoLConstants
 
 	public static final List<String> saveStateNames = LockableListFactory.getSortedInstance( String.class );
 
-	public static final List<AdventureResult> inventory = LockableListFactory.getSortedInstance( AdventureResult.class );
-	public static final List<AdventureResult> closet = LockableListFactory.getSortedInstance( AdventureResult.class );
-	public static final List<AdventureResult> storage = LockableListFactory.getSortedInstance( AdventureResult.class );
+	public static final List<AdventureResult> inventory = LockableListFactory.getIndexedInstance();
+	public static final List<AdventureResult> closet = LockableListFactory.getIndexedInstance();
+	public static final List<AdventureResult> storage = LockableListFactory.getIndexedInstance();
 	public static final List<AdventureResult> unlimited = LockableListFactory.getSortedInstance( AdventureResult.class );
 	public static final List<AdventureResult> freepulls = LockableListFactory.getSortedInstance( AdventureResult.class );
 	public static final List<AdventureResult> nopulls = LockableListFactory.getSortedInstance( AdventureResult.class );
@@ -74,12 +74,14 @@ import net.sourceforge.kolmafia.objectpool.ItemPool;
 
 import net.sourceforge.kolmafia.persistence.BountyDatabase;
 import net.sourceforge.kolmafia.persistence.ConcoctionDatabase;
+import net.sourceforge.kolmafia.persistence.DatabaseLoader;
 import net.sourceforge.kolmafia.persistence.EffectDatabase;
 import net.sourceforge.kolmafia.persistence.EquipmentDatabase;
 import net.sourceforge.kolmafia.persistence.FamiliarDatabase;
 import net.sourceforge.kolmafia.persistence.FlaggedItems;
 import net.sourceforge.kolmafia.persistence.HolidayDatabase;
 import net.sourceforge.kolmafia.persistence.ItemDatabase;
+import net.sourceforge.kolmafia.persistence.MallPriceJournal;
 import net.sourceforge.kolmafia.persistence.QuestDatabase;
 import net.sourceforge.kolmafia.persistence.QuestDatabase.Quest;
 
@@ -341,6 +343,11 @@ public abstract class KoLmafia
 
 		KoLmafia.checkDataOverrides();
 
+		// Now that stale overrides are gone, load the databases in
+		// the background while the rest of startup proceeds.
+
+		DatabaseLoader.startLoading();
+
 		// Create an images directory if necessary
 		KoLConstants.IMAGE_LOCATION.mkdirs();
 
@@ -363,6 +370,11 @@ public abstract class KoLmafia
 			System.exit( -1 );
 		}
 
+		// Nothing from here on may touch a database before it has
+		// finished loading on the loader threads.
+
+		DatabaseLoader.waitForLoading();
+
 		FlaggedItems.initializeLists();
 
 		// Now run the main routines for each, so that
@@ -480,6 +492,8 @@ public abstract class KoLmafia
 
 		if ( StaticEntity.usesSystemTray() )
 		{
+			// The tray icon's tooltip reads from KoLCharacter
+			DatabaseLoader.waitForLoading();
 			SystemTrayFrame.addTrayIcon();
 		}
 
@@ -2165,6 +2179,7 @@ public abstract class KoLmafia
 
 			Preferences.reset( null );
 			FlaggedItems.saveFlaggedItemList();
+			MallPriceJournal.flush();
 
 			RequestLogger.closeSessionLog();
 			RequestLogger.closeDebugLog();
@@ -52,6 +52,8 @@ import net.sourceforge.kolmafia.textui.parsetree.Function;
 import net.sourceforge.kolmafia.textui.parsetree.FunctionList;
 import net.sourceforge.kolmafia.textui.parsetree.VariableReference;
 
+import net.sourceforge.kolmafia.utilities.ScriptIndex;
+
 public abstract class KoLmafiaASH
 {
 	private static final HashMap<String, File> relayScriptMap = new HashMap<String, File>();
@@ -281,7 +283,7 @@ public abstract class KoLmafiaASH
 				Entry entry = (Entry) it.next();
 				File file = (File) entry.getKey();
 				Long timestamp = (Long) entry.getValue();
-				createInterpreter = timestamp != file.lastModified();
+				createInterpreter = timestamp != ScriptIndex.lastModified( file );
 			}
 		}
 
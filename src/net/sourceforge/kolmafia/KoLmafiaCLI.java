@@ -67,6 +67,7 @@ import net.sourceforge.kolmafia.utilities.CharacterEntities;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
 import net.sourceforge.kolmafia.utilities.PauseObject;
 import net.sourceforge.kolmafia.utilities.PrefixMap;
+import net.sourceforge.kolmafia.utilities.ScriptIndex;
 
 public class KoLmafiaCLI
 {
@@ -868,6 +869,7 @@ public class KoLmafiaCLI
 		new SpacegateCommand().register( "spacegate" );
 		new SpeculateCommand().register( "speculate" ).register( "whatif" );
 		new SpookyravenCommand().register( "spookyraven" );
+		new StartupTimesCommand().register( "startup" );
 		new StickersCommand().registerPrefix( "sticker" );
 		new StorageCommand().register( "hagnk" ).register( "pull" );
 		new StyxPixieCommand().register( "styx" );
@@ -967,7 +969,17 @@ public class KoLmafiaCLI
 			return matches;
 		}
 
-		return findScriptFile( filename, matches );
+		findScriptFile( filename, matches );
+
+		// The index of script directories may not have seen a script
+		// which was only just written.
+
+		if ( matches.isEmpty() && ScriptIndex.refresh() )
+		{
+			findScriptFile( filename, matches );
+		}
+
+		return matches;
 	}
 
 	private static final List<File> findScriptFile( final String filename, List<File> matches )
@@ -980,10 +992,7 @@ public class KoLmafiaCLI
 				matches.add( scriptFile );
 		}
 
-		if ( KoLConstants.SCRIPT_LOCATION.exists() )
-		{
-			KoLmafiaCLI.findScriptFile( KoLConstants.SCRIPT_LOCATION, filename, matches );
-		}
+		ScriptIndex.find( KoLConstants.SCRIPT_LOCATION, filename, matches );
 
 		if ( KoLConstants.PLOTS_LOCATION.exists() )
 		{
@@ -995,10 +1004,7 @@ public class KoLmafiaCLI
 			}
 		}
 
-		if ( KoLConstants.RELAY_LOCATION.exists() )
-		{
-			KoLmafiaCLI.findScriptFile( KoLConstants.RELAY_LOCATION, filename, matches );
-		}
+		ScriptIndex.find( KoLConstants.RELAY_LOCATION, filename, matches );
 
 		// Only if we get here and there are no matches do we recursively try again, adding some extensions.
 		// Stop recursion once an extension has been added (alternatively, don't even try if an extension was specified in the first place)
@@ -1012,26 +1018,6 @@ public class KoLmafiaCLI
 		return matches;
 	}
 
-	private static final void findScriptFile( final File directory, final String filename, List<File> matches )
-	{
-		File scriptFile = new File( directory, filename );
-
-		if ( scriptFile.exists() )
-		{
-			if ( !scriptFile.isDirectory() )
-				matches.add( scriptFile );
-		}
-
-		File[] contents = DataUtilities.listFiles( directory );
-		for ( int i = 0; i < contents.length; ++i )
-		{
-			if ( contents[ i ].isDirectory() )
-			{
-				KoLmafiaCLI.findScriptFile( contents[ i ], filename, matches );
-			}
-		}
-	}
-
 	static public String buildRelayScriptMenu()
 	{
 		boolean any = false;
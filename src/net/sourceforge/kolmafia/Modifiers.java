@@ -49,6 +49,8 @@ import java.util.Map.Entry;
 import java.util.TimeZone;
 import java.util.TreeMap;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -83,7 +85,9 @@ import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public class Modifiers
 {
-	private static final HashMap<String, Object> modifiersByName = new HashMap<String, Object>();
+	// Entries are parsed on first use, possibly by several maximizer
+	// threads at once.
+	private static final ConcurrentHashMap<String, Object> modifiersByName = new ConcurrentHashMap<String, Object>();
 	private static final HashMap<String,String> familiarEffectByName = new HashMap<String,String>();
 	private static final HashMap<String,Integer> modifierIndicesByName = new HashMap<String,Integer>();
 	private static final ArrayList<UseSkillRequest> passiveSkills = new ArrayList<UseSkillRequest>();
@@ -1587,6 +1591,8 @@ public class Modifiers
 	private ModifierExpression[] expressions;
 	// These are used for Steely-Eyed Squint and so on
 	private final double[] extras;
+	// The character these modifiers are being totalled for
+	private EvaluationContext context = EvaluationContext.CURRENT;
 
 	public Modifiers()
 	{
@@ -1625,6 +1631,20 @@ public class Modifiers
 		return this.name;
 	};
 
+	/**
+	 * Returns the context that modifiers added to this object are looked
+	 * up and evaluated in.
+	 */
+	public EvaluationContext getContext()
+	{
+		return this.context;
+	}
+
+	public void setContext( final EvaluationContext context )
+	{
+		this.context = context;
+	}
+
 	public final void reset()
 	{
 		Arrays.fill( this.doubles, 0.0 );
@@ -2030,7 +2050,7 @@ public class Modifiers
 
 		// Unarmed modifiers apply only if the character has no weapon or offhand
 		boolean unarmed = mods.getBoolean( Modifiers.UNARMED );
-		if ( unarmed && !Modifiers.unarmed )
+		if ( unarmed && !this.context.isUnarmed() )
 		{
 			return;
 		}
@@ -2136,16 +2156,26 @@ public class Modifiers
 	}
 
 	public static final Modifiers getItemModifiers( final int id )
+	{
+		return Modifiers.getItemModifiers( id, EvaluationContext.CURRENT );
+	}
+
+	public static final Modifiers getItemModifiers( final int id, final EvaluationContext context )
 	{
 		if ( id <= 0 )
 		{
 			return null;
 		}
 		String name = "[" + id + "]";
-		return Modifiers.getModifiers( "Item", name );
+		return Modifiers.getModifiers( "Item", name, context );
 	}
 
 	public static final Modifiers getEffectModifiers( final int id )
+	{
+		return Modifiers.getEffectModifiers( id, EvaluationContext.CURRENT );
+	}
+
+	public static final Modifiers getEffectModifiers( final int id, final EvaluationContext context )
 	{
 		if ( id <= 0 )
 		{
@@ -2160,10 +2190,27 @@ public class Modifiers
 			}
 		}
 		String name = "[" + id + "]";
-		return Modifiers.getModifiers( "Effect", name );
+		return Modifiers.getModifiers( "Effect", name, context );
 	}
 
-	public static final Modifiers getModifiers( String type, final String name )
+	public static final Modifiers getModifiers( final String type, final String name )
+	{
+		return Modifiers.getModifiers( type, name, EvaluationContext.CURRENT );
+	}
+
+	/**
+	 * Returns the modifiers with the given name, with any expressions
+	 * evaluated for the character described by the context.  The shared
+	 * instance holds the values for the character as it is; if the context
+	 * describes some other character and the expressions depend on the
+	 * difference, they are evaluated into a copy instead, so that lookups
+	 * for different contexts can run side by side.  Only lookups for the
+	 * character as it really is re-evaluate the shared instance; any other
+	 * context that finds it out of date gets a copy, since speculations may
+	 * be scored on several threads at once.  For the same reason, the
+	 * shared instance is never renamed; Bjorn lookups get a renamed copy.
+	 */
+	public static final Modifiers getModifiers( String type, final String name, final EvaluationContext context )
 	{
 		String changeType = null;
 		if ( name == null || name.equals( "" ) )
@@ -2190,11 +2237,25 @@ public class Modifiers
 			Modifiers mods = (Modifiers) modifier;
 			if ( mods.variable )
 			{
-				mods.override( lookup );
-				if ( changeType != null )
+				if ( mods.readsContext() && !context.isCurrent() )
 				{
-					mods.name = changeType + ":" + name;
+					mods = mods.evaluateIn( lookup, context );
 				}
+				else if ( !mods.isCurrent() )
+				{
+					if ( context == EvaluationContext.CURRENT )
+					{
+						mods.override( lookup );
+					}
+					else
+					{
+						mods = mods.evaluateIn( lookup, context );
+					}
+				}
+			}
+			if ( changeType != null )
+			{
+				mods = mods.renamed( changeType + ":" + name );
 			}
 			return mods;
 		}
@@ -2205,17 +2266,21 @@ public class Modifiers
 		}
 
 		Modifiers newMods = Modifiers.parseModifiers( lookup, (String) modifier );
+		newMods.variable = newMods.override( lookup );
 
-		if ( changeType != null )
-		{
-			newMods.name = changeType + ":" + name;
-		}
-
-		newMods.variable = newMods.override( lookup ) || type.equals( "Loc" ) || type.equals( "Zone" );
-
-		Modifiers.modifiersByName.put( lookup, newMods );
+		// If another thread parsed it first, use theirs.
+		Modifiers.modifiersByName.replace( lookup, modifier, newMods );
+		return Modifiers.getModifiers( changeType != null ? changeType : type, name, context );
+	}
 
-		return newMods;
+	private Modifiers renamed( final String name )
+	{
+		Modifiers copy = new Modifiers( this );
+		copy.name = name;
+		copy.variable = this.variable;
+		copy.expressions = this.expressions;
+		copy.inputs = this.inputs;
+		return copy;
 	}
 
 	public final static Modifiers parseModifiers( final String lookup, final String string )
@@ -2725,16 +2790,252 @@ public class Modifiers
 		return list.toString();
 	}
 
+	// Expression functions whose value depends on the rest of the
+	// equipment: main hand weapon type, hobo power, smithsness and
+	// familiar weight.
+	public static final String EQUIPMENT_FUNCTIONS = "hHKW";
+
+	// Expression functions whose value depends on anything that can be
+	// speculated on: the equipment, as above, and the familiar.
+	public static final String SPECULATION_FUNCTIONS = EQUIPMENT_FUNCTIONS + "wi";
+
+	/**
+	 * Returns true if any of these modifiers is computed by an
+	 * expression that calls one of the given functions.
+	 */
+	public boolean expressionsUse( final String functions )
+	{
+		if ( this.expressions == null )
+		{
+			return false;
+		}
+		for ( int i = 0; i < this.expressions.length; ++i )
+		{
+			ModifierExpression expr = this.expressions[ i ];
+			if ( expr != null && expr.uses( functions ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if any modifiers parsed so far are computed by an
+	 * expression that calls one of the given functions.
+	 */
+	public static boolean anyExpressionsUse( final String functions )
+	{
+		Object[] values = Modifiers.modifiersByName.values().toArray();
+		for ( int i = 0; i < values.length; ++i )
+		{
+			if ( values[ i ] instanceof Modifiers &&
+			     ((Modifiers) values[ i ]).expressionsUse( functions ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Expressions are only evaluated again when something they read has
+	// changed.  These are the inputs that are tracked; an expression that
+	// reads anything else is evaluated on every lookup.
+	private static final String LOCATION_FUNCTIONS = "lzj";
+	private static final String FAMILIAR_FUNCTIONS = "wiW";
+	private static final String MAINHAND_FUNCTIONS = "hHK";
+	private static final String PREFERENCE_FUNCTIONS = "p";
+
+	private static final int INPUT_LOCATION = 1;
+	private static final int INPUT_FAMILIAR = 2;
+	private static final int INPUT_MAINHAND = 4;
+	private static final int INPUT_PREFERENCES = 8;
+	private static final int INPUT_ANYTHING = 16;
+	private static final int INPUT_CONTEXT = INPUT_LOCATION | INPUT_FAMILIAR | INPUT_MAINHAND;
+
+	private static int locationGeneration = 0;
+	private static int familiarGeneration = 0;
+	private static int mainhandGeneration = 0;
+
+	private static String lastLocation = "";
+	private static String lastZone = "";
+	private static String lastEnvironment = "";
+	private static String lastFamiliar = "";
+	private static double lastWeight = 0.0;
+	private static String lastMainhand = "";
+	private static double lastHoboPower = 0.0;
+	private static double lastSmithsness = 0.0;
+
+	// The inputs read by this object's expressions, or -1 if not yet known
+	private int inputs = -1;
+	private boolean evaluated = false;
+	private int evaluatedStamp = 0;
+
+	private static boolean same( final String a, final String b )
+	{
+		return a == b || a != null && a.equals( b );
+	}
+
+	// The tracked inputs are statics that are assigned from many places,
+	// so changes are noticed by comparing them to their last known values.
+	private static synchronized void checkInputs()
+	{
+		if ( !Modifiers.same( Modifiers.currentLocation, Modifiers.lastLocation ) ||
+		     !Modifiers.same( Modifiers.currentZone, Modifiers.lastZone ) ||
+		     !Modifiers.same( Modifiers.currentEnvironment, Modifiers.lastEnvironment ) )
+		{
+			Modifiers.lastLocation = Modifiers.currentLocation;
+			Modifiers.lastZone = Modifiers.currentZone;
+			Modifiers.lastEnvironment = Modifiers.currentEnvironment;
+			++Modifiers.locationGeneration;
+		}
+		if ( !Modifiers.same( Modifiers.currentFamiliar, Modifiers.lastFamiliar ) ||
+		     Modifiers.currentWeight != Modifiers.lastWeight )
+		{
+			Modifiers.lastFamiliar = Modifiers.currentFamiliar;
+			Modifiers.lastWeight = Modifiers.currentWeight;
+			++Modifiers.familiarGeneration;
+		}
+		if ( !Modifiers.same( Modifiers.mainhandClass, Modifiers.lastMainhand ) ||
+		     Modifiers.hoboPower != Modifiers.lastHoboPower ||
+		     Modifiers.smithsness != Modifiers.lastSmithsness )
+		{
+			Modifiers.lastMainhand = Modifiers.mainhandClass;
+			Modifiers.lastHoboPower = Modifiers.hoboPower;
+			Modifiers.lastSmithsness = Modifiers.smithsness;
+			++Modifiers.mainhandGeneration;
+		}
+	}
+
+	// Generations only increase, so the sum changes whenever any of
+	// the given inputs does.
+	private static int inputStamp( final int inputs )
+	{
+		int stamp = 0;
+		if ( ( inputs & Modifiers.INPUT_LOCATION ) != 0 )
+		{
+			stamp += Modifiers.locationGeneration;
+		}
+		if ( ( inputs & Modifiers.INPUT_FAMILIAR ) != 0 )
+		{
+			stamp += Modifiers.familiarGeneration;
+		}
+		if ( ( inputs & Modifiers.INPUT_MAINHAND ) != 0 )
+		{
+			stamp += Modifiers.mainhandGeneration;
+		}
+		if ( ( inputs & Modifiers.INPUT_PREFERENCES ) != 0 )
+		{
+			stamp += Preferences.getGeneration();
+		}
+		return stamp;
+	}
+
+	private int getInputs()
+	{
+		if ( this.inputs != -1 )
+		{
+			return this.inputs;
+		}
+
+		int inputs = 0;
+		if ( this.expressions != null )
+		{
+			String tracked = LOCATION_FUNCTIONS + FAMILIAR_FUNCTIONS + MAINHAND_FUNCTIONS + PREFERENCE_FUNCTIONS;
+			for ( int i = 0; i < this.expressions.length; ++i )
+			{
+				ModifierExpression expr = this.expressions[ i ];
+				if ( expr == null )
+				{
+					continue;
+				}
+				if ( !expr.usesOnly( tracked ) )
+				{
+					inputs |= Modifiers.INPUT_ANYTHING;
+				}
+				if ( expr.uses( LOCATION_FUNCTIONS ) )
+				{
+					inputs |= Modifiers.INPUT_LOCATION;
+				}
+				if ( expr.uses( FAMILIAR_FUNCTIONS ) )
+				{
+					inputs |= Modifiers.INPUT_FAMILIAR;
+				}
+				if ( expr.uses( MAINHAND_FUNCTIONS ) )
+				{
+					inputs |= Modifiers.INPUT_MAINHAND;
+				}
+				if ( expr.uses( PREFERENCE_FUNCTIONS ) )
+				{
+					inputs |= Modifiers.INPUT_PREFERENCES;
+				}
+			}
+		}
+		this.inputs = inputs;
+		return inputs;
+	}
+
+	/**
+	 * Returns true if evaluating the expressions again would give the
+	 * same values as last time.
+	 */
+	private boolean isCurrent()
+	{
+		if ( !this.evaluated || this.getBoolean( Modifiers.VARIABLE ) )
+		{
+			return false;
+		}
+		int inputs = this.getInputs();
+		if ( ( inputs & Modifiers.INPUT_ANYTHING ) != 0 )
+		{
+			return false;
+		}
+		Modifiers.checkInputs();
+		return this.evaluatedStamp == Modifiers.inputStamp( inputs );
+	}
+
+	/**
+	 * Returns true if any expression reads something that an
+	 * EvaluationContext holds.
+	 */
+	private boolean readsContext()
+	{
+		return ( this.getInputs() & Modifiers.INPUT_CONTEXT ) != 0;
+	}
+
+	private Modifiers evaluateIn( final String lookup, final EvaluationContext context )
+	{
+		Modifiers copy = new Modifiers( this );
+		copy.variable = true;
+		copy.expressions = this.expressions;
+		copy.inputs = this.inputs;
+		copy.override( lookup, context );
+		return copy;
+	}
+
 	private boolean override( final String lookup )
+	{
+		return this.override( lookup, EvaluationContext.CURRENT );
+	}
+
+	private boolean override( final String lookup, final EvaluationContext context )
 	{
 		if ( this.expressions != null )
 		{
+			// Only values computed from the statics can be compared
+			// with them later
+			if ( context == EvaluationContext.CURRENT )
+			{
+				Modifiers.checkInputs();
+				this.evaluatedStamp = Modifiers.inputStamp( this.getInputs() );
+				this.evaluated = true;
+			}
 			for ( int i = 0; i < this.expressions.length; ++i )
 			{
 				ModifierExpression expr = this.expressions[ i ];
 				if ( expr != null )
 				{
-					this.doubles[ i ] = expr.eval();
+					this.doubles[ i ] = expr.eval( context );
 				}
 			}
 		}
@@ -3088,7 +3389,7 @@ public class Modifiers
 			if ( KoLCharacter.hasSkill( skill ) )
 			{
 				String name = skill.getSkillName();
-				this.add( Modifiers.getModifiers( "Skill", name ) );
+				this.add( Modifiers.getModifiers( "Skill", name, this.context ) );
 			}
 		}
 
@@ -3105,12 +3406,13 @@ public class Modifiers
 			return;
 		}
 
-		if ( Modifiers.currentLocation == null )
+		String location = this.context.getLocation();
+		if ( location == null )
 		{
 			return;
 		}
 
-		ArrayList<Florist> plants = FloristRequest.getPlants( Modifiers.currentLocation );
+		ArrayList<Florist> plants = FloristRequest.getPlants( location );
 		if ( plants == null )
 		{
 			return;
@@ -3118,7 +3420,7 @@ public class Modifiers
 
 		for ( Florist plant : plants )
 		{
-			this.add( Modifiers.getModifiers( "Florist", plant.toString() ) );
+			this.add( Modifiers.getModifiers( "Florist", plant.toString(), this.context ) );
 		}
 	}
 
@@ -3133,7 +3435,7 @@ public class Modifiers
 			int mask = ((Integer) i.next()).intValue();
 			if ( (synergetic & mask) == mask )
 			{
-				this.add( Modifiers.getModifiers( "Synergy", name ) );
+				this.add( Modifiers.getModifiers( "Synergy", name, this.context ) );
 			}
 		}
 	}
@@ -3174,7 +3476,14 @@ public class Modifiers
 	{
 		int familiarId = familiar.getId();
 		weight = Math.max( 1, weight );
-		Modifiers.currentWeight = weight;
+		if ( this.context == EvaluationContext.CURRENT )
+		{
+			Modifiers.currentWeight = weight;
+		}
+		else
+		{
+			this.context = this.context.withWeight( weight );
+		}
 
 		String race = familiar.getRace();
 
@@ -3188,12 +3497,12 @@ public class Modifiers
 				familiarId = FamiliarDatabase.getFamiliarId( race );
 			}
 		}
-		this.add( Modifiers.getModifiers( "Familiar", race ) );
+		this.add( Modifiers.getModifiers( "Familiar", race, this.context ) );
 		if ( famItem != null )
 		{
 			// "fameq" modifiers are generated when "Familiar Effect" is parsed
 			// from modifiers.txt
-			this.add( Modifiers.getModifiers( "FamEq", famItem.getName() ) );
+			this.add( Modifiers.getModifiers( "FamEq", famItem.getName(), this.context ) );
 		}
 
 		int cap = (int)this.get( Modifiers.FAMILIAR_WEIGHT_CAP );
@@ -3254,7 +3563,7 @@ public class Modifiers
 			// currentML is always >= 4, so we don't need to check for negatives
 			int maxStats = 230;
 			this.add( Modifiers.EXPERIENCE, Math.min( 
-				  Math.max( factor * ( Modifiers.currentML / 4 ) * ( 0.1 + 0.005 * effective ), 1 ),
+				  Math.max( factor * ( this.context.getML() / 4 ) * ( 0.1 + 0.005 * effective ), 1 ),
 				  maxStats ),
 				  "Familiar:" + race );
 		}
@@ -3311,7 +3620,7 @@ public class Modifiers
 	public void applyMinstrelModifiers( final int level, AdventureResult instrument )
 	{
 		String name = instrument.getName();
-		Modifiers imods = Modifiers.getModifiers( "Clancy", name );
+		Modifiers imods = Modifiers.getModifiers( "Clancy", name, this.context );
 
 		double effective = imods.get( Modifiers.VOLLEYBALL_WEIGHT );
 		if ( effective != 0.0 )
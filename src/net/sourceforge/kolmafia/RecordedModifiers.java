@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia;
+
+import java.util.ArrayList;
+
+/**
+ * Records the adjustments made to it, so that they can be applied again
+ * to other Modifiers in the same order, without looking anything up.
+ */
+
+public class RecordedModifiers
+	extends Modifiers
+{
+	private final ArrayList<Object> adjustments = new ArrayList<Object>();
+	private boolean replayable = true;
+
+	private static class Adjustment
+	{
+		final int index;
+		final double mod;
+		final String desc;
+
+		Adjustment( final int index, final double mod, final String desc )
+		{
+			this.index = index;
+			this.mod = mod;
+			this.desc = desc;
+		}
+	}
+
+	@Override
+	public void add( final int index, final double mod, final String desc )
+	{
+		this.adjustments.add( new Adjustment( index, mod, desc ) );
+	}
+
+	@Override
+	public void add( Modifiers mods )
+	{
+		if ( mods == null )
+		{
+			return;
+		}
+
+		if ( mods.variable )
+		{
+			// The shared instance is re-evaluated on every lookup, so
+			// keep a copy of its current values - unless those values
+			// depend on what is being speculated on.
+			if ( mods.expressionsUse( Modifiers.SPECULATION_FUNCTIONS ) )
+			{
+				this.replayable = false;
+			}
+			mods = new Modifiers( mods );
+		}
+
+		this.adjustments.add( mods );
+	}
+
+	/**
+	 * Returns false if the recorded adjustments can't stand in for
+	 * computing them again.
+	 */
+	public boolean isReplayable()
+	{
+		return this.replayable;
+	}
+
+	public void replay( final Modifiers target )
+	{
+		for ( int i = 0; i < this.adjustments.size(); ++i )
+		{
+			Object adjustment = this.adjustments.get( i );
+			if ( adjustment instanceof Adjustment )
+			{
+				Adjustment a = (Adjustment) adjustment;
+				target.add( a.index, a.mod, a.desc );
+			}
+			else
+			{
+				target.add( (Modifiers) adjustment );
+			}
+		}
+	}
+}
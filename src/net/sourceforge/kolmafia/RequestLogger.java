@@ -221,6 +221,7 @@ import net.sourceforge.kolmafia.session.DvorakManager;
 import net.sourceforge.kolmafia.session.SorceressLairManager;
 
 import net.sourceforge.kolmafia.utilities.LogStream;
+import net.sourceforge.kolmafia.utilities.LogWriter;
 import net.sourceforge.kolmafia.utilities.NullStream;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
@@ -350,7 +351,15 @@ public class RequestLogger
 		RequestLogger.outputStream.println( message );
 		RequestLogger.mirrorStream.println( message );
 		RequestLogger.debugStream.println( message );
-		
+
+		// Whatever led up to an abort should be on disk before
+		// anything else happens.
+
+		if ( state == MafiaState.ABORT )
+		{
+			LogWriter.flushAll( LogWriter.FLUSH_TIMEOUT );
+		}
+
 		if ( StaticEntity.backtraceTrigger != null &&
 			message.contains( StaticEntity.backtraceTrigger ) )
 		{
@@ -451,7 +460,7 @@ public class RequestLogger
 			RequestLogger.closeStream( originalStream );
 		}
 
-		return LogStream.openStream( filename, false );
+		return LogStream.openAsyncStream( filename );
 	}
 
 	public static final void closeStream( final PrintStream stream )
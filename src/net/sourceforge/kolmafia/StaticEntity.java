@@ -798,6 +798,13 @@ public abstract class StaticEntity
 			return false;
 		}
 
+		// This is checked on every ASH built-in call, and the list
+		// is nearly always empty.
+		if ( KoLConstants.disabledScripts.isEmpty() )
+		{
+			return false;
+		}
+
 		return KoLConstants.disabledScripts.contains( "all" ) || KoLConstants.disabledScripts.contains( name );
 	}
 
@@ -46,8 +46,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sourceforge.kolmafia.AdventureResult;
+import net.sourceforge.kolmafia.EvaluationContext;
 import net.sourceforge.kolmafia.FamiliarData;
 import net.sourceforge.kolmafia.KoLCharacter;
+import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.KoLConstants.WeaponType;
 import net.sourceforge.kolmafia.KoLmafia;
 import net.sourceforge.kolmafia.Modifiers;
@@ -59,6 +61,7 @@ import net.sourceforge.kolmafia.textui.command.SnowsuitCommand;
 import net.sourceforge.kolmafia.objectpool.EffectPool;
 import net.sourceforge.kolmafia.objectpool.FamiliarPool;
 import net.sourceforge.kolmafia.objectpool.ItemPool;
+import net.sourceforge.kolmafia.persistence.EffectDatabase;
 import net.sourceforge.kolmafia.persistence.EquipmentDatabase;
 import net.sourceforge.kolmafia.persistence.FamiliarDatabase;
 import net.sourceforge.kolmafia.persistence.ItemDatabase;
@@ -72,6 +75,7 @@ import net.sourceforge.kolmafia.utilities.BooleanArray;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public class Evaluator
+	implements Cloneable
 {
 	public boolean failed;
 	boolean exceeded;
@@ -83,6 +87,7 @@ public class Evaluator
 	private int raveosity = 0;
 	private int beeosity = 2;
 	private int booleanMask, booleanValue;
+	private boolean doubledExtras = false;
 	private ArrayList<FamiliarData> familiars;
 	private ArrayList<FamiliarData> carriedFamiliars;
 	private int carriedFamiliarsNeeded = 0;
@@ -210,6 +215,13 @@ public class Evaluator
 		this.min = (double[]) tiebreaker.min.clone();
 		this.max = (double[]) tiebreaker.max.clone();
 		this.parse( expr );
+
+		// Effects don't change while we search, so decide now whether
+		// the bounds on equipment must allow for them doubling it.
+		this.doubledExtras =
+			KoLConstants.activeEffects.contains( EffectPool.get( EffectPool.STEELY_EYED_SQUINT ) ) ||
+			KoLConstants.activeEffects.contains( EffectPool.get( EffectPool.BENDIN_HELL ) ) ||
+			KoLConstants.activeEffects.contains( EffectPool.get( EffectPool.BOWLEGGED_SWAGGER ) );
 	}
 
 	private void parse( String expr )
@@ -694,6 +706,30 @@ public class Evaluator
 		this.weight[ Modifiers.MEAT_BONUS ] += fudge;
 	}
 
+	/**
+	 * Returns an evaluator for the same expression with its own failed and
+	 * exceeded flags, so that another thread can score speculations with
+	 * it.  Everything else is shared, and must not change while the copy
+	 * is in use.
+	 */
+
+	Evaluator copy()
+	{
+		try
+		{
+			Evaluator copy = (Evaluator) super.clone();
+			if ( this.tiebreaker != null )
+			{
+				copy.tiebreaker = this.tiebreaker.copy();
+			}
+			return copy;
+		}
+		catch ( CloneNotSupportedException e )
+		{
+			return null;
+		}
+	}
+
 	public double getScore( Modifiers mods )
 	{
 		this.failed = false;
@@ -810,6 +846,220 @@ public class Evaluator
 		return score;
 	}
 
+	// Upper bounds on how much equipment can add to the score, used to
+	// prune the equipment search.  Score terms that aren't simply a
+	// weighted sum of modifiers can't be bounded this way.
+
+	boolean canBound()
+	{
+		if ( this.clownosity > 0 || this.raveosity > 0 )
+		{
+			return false;
+		}
+
+		for ( int i = 0; i < Modifiers.DOUBLE_MODIFIERS; ++i )
+		{
+			if ( this.weight[ i ] == 0.0 )
+			{
+				continue;
+			}
+			switch ( i )
+			{
+			case Modifiers.MUS:
+			case Modifiers.MYS:
+			case Modifiers.MOX:
+			case Modifiers.HP:
+			case Modifiers.MP:
+			case Modifiers.FAMILIAR_WEIGHT:
+			case Modifiers.EXPERIENCE:
+			case Modifiers.MUS_EXPERIENCE:
+			case Modifiers.MYS_EXPERIENCE:
+			case Modifiers.MOX_EXPERIENCE:
+			case Modifiers.COLD_RESISTANCE:
+			case Modifiers.HOT_RESISTANCE:
+			case Modifiers.SLEAZE_RESISTANCE:
+			case Modifiers.SPOOKY_RESISTANCE:
+			case Modifiers.STENCH_RESISTANCE:
+			case Modifiers.PRISMATIC_DAMAGE:
+				return false;
+			}
+		}
+
+		// A weapon can change modifiers from other sources
+		return !Modifiers.anyExpressionsUse( "h" );
+	}
+
+	private double gain( int index, double delta )
+	{
+		double gain = Math.max( 0.0, this.weight[ index ] * delta );
+		if ( !this.doubledExtras )
+		{
+			return gain;
+		}
+		switch ( index )
+		{
+		case Modifiers.ITEMDROP:
+		case Modifiers.INITIATIVE:
+		case Modifiers.HOT_DAMAGE:
+		case Modifiers.COLD_DAMAGE:
+		case Modifiers.STENCH_DAMAGE:
+		case Modifiers.SPOOKY_DAMAGE:
+		case Modifiers.SLEAZE_DAMAGE:
+		case Modifiers.HOT_SPELL_DAMAGE:
+		case Modifiers.COLD_SPELL_DAMAGE:
+		case Modifiers.STENCH_SPELL_DAMAGE:
+		case Modifiers.SPOOKY_SPELL_DAMAGE:
+		case Modifiers.SLEAZE_SPELL_DAMAGE:
+			// Steely-Eyed Squint, Bendin' Hell and Bow-Legged Swagger
+			// double these
+			gain *= 2.0;
+			break;
+		}
+		return gain;
+	}
+
+	double getBound( Modifiers mods )
+	{
+		if ( mods == null )
+		{
+			return 0.0;
+		}
+
+		if ( mods.expressionsUse( Modifiers.EQUIPMENT_FUNCTIONS ) ||
+		     mods.get( Modifiers.FAMILIAR_WEIGHT ) != 0.0 ||
+		     mods.get( Modifiers.HIDDEN_FAMILIAR_WEIGHT ) != 0.0 ||
+		     mods.get( Modifiers.FAMILIAR_WEIGHT_PCT ) != 0.0 ||
+		     mods.get( Modifiers.HOBO_POWER ) != 0.0 ||
+		     mods.get( Modifiers.SMITHSNESS ) != 0.0 ||
+		     mods.get( Modifiers.SLIME_HATES_IT ) != 0.0 ||
+		     mods.getRawBitmap( Modifiers.BRIMSTONE ) != 0 ||
+		     mods.getRawBitmap( Modifiers.CLOATHING ) != 0 ||
+		     mods.getRawBitmap( Modifiers.SYNERGETIC ) != 0 )
+		{
+			// These change other modifiers as well as their own
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double bound = 0.0;
+		for ( int i = 0; i < Modifiers.DOUBLE_MODIFIERS; ++i )
+		{
+			if ( this.weight[ i ] == 0.0 )
+			{
+				continue;
+			}
+			// Mirrors the adjustments made in getScore
+			switch ( i )
+			{
+			case Modifiers.MANA_COST:
+				bound += this.gain( i, mods.get( i ) ) +
+					this.gain( i, mods.get( Modifiers.STACKABLE_MANA_COST ) );
+				break;
+			case Modifiers.INITIATIVE:
+				bound += this.gain( i, mods.get( i ) ) +
+					this.gain( i, mods.get( Modifiers.INITIATIVE_PENALTY ) );
+				break;
+			case Modifiers.MEATDROP:
+				bound += this.gain( i, mods.get( i ) ) +
+					this.gain( i, mods.get( Modifiers.MEATDROP_PENALTY ) ) +
+					this.gain( i, mods.get( Modifiers.SPORADIC_MEATDROP ) ) +
+					this.gain( i, mods.get( Modifiers.MEAT_BONUS ) / 10000.0 );
+				break;
+			case Modifiers.ITEMDROP:
+				bound += this.gain( i, mods.get( i ) ) +
+					this.gain( i, mods.get( Modifiers.ITEMDROP_PENALTY ) ) +
+					this.gain( i, mods.get( Modifiers.SPORADIC_ITEMDROP ) );
+				break;
+			case Modifiers.WEAPON_DAMAGE:
+				bound += this.gain( i, mods.get( i ) ) +
+					this.gain( i, mods.get( Modifiers.WEAPON_DAMAGE_PCT ) );
+				break;
+			case Modifiers.RANGED_DAMAGE:
+				bound += this.gain( i, mods.get( i ) ) +
+					this.gain( i, mods.get( Modifiers.RANGED_DAMAGE_PCT ) );
+				break;
+			case Modifiers.SPELL_DAMAGE:
+				bound += this.gain( i, mods.get( i ) ) +
+					this.gain( i, mods.get( Modifiers.SPELL_DAMAGE_PCT ) );
+				break;
+			default:
+				bound += this.gain( i, mods.get( i ) );
+				break;
+			}
+		}
+		return bound;
+	}
+
+	double getItemBound( AdventureResult item, int slot, AdventureResult card )
+	{
+		int itemId = item.getItemId();
+		switch ( itemId )
+		{
+		case ItemPool.STICKER_SWORD:
+		case ItemPool.STICKER_CROSSBOW:
+		case ItemPool.FOLDER_HOLDER:
+		case ItemPool.COWBOY_BOOTS:
+		case ItemPool.HATSEAT:
+		case ItemPool.BUDDY_BJORN:
+		case ItemPool.CROWN_OF_ED:
+		case ItemPool.SNOW_SUIT:
+		case ItemPool.MAKESHIFT_GARBAGE_SHIRT:
+		case ItemPool.BROKEN_CHAMPAGNE:
+			// These bring in modifiers from elsewhere, or double others
+			return Double.POSITIVE_INFINITY;
+		}
+
+		Modifiers mods = Modifiers.getItemModifiers( itemId );
+		double bound = this.getBound( mods );
+		if ( mods != null )
+		{
+			String intrinsic = mods.getString( Modifiers.INTRINSIC_EFFECT );
+			if ( intrinsic.length() > 0 )
+			{
+				switch ( EffectDatabase.getEffectId( intrinsic ) )
+				{
+				case EffectPool.STEELY_EYED_SQUINT:
+				case EffectPool.BENDIN_HELL:
+				case EffectPool.BOWLEGGED_SWAGGER:
+					return Double.POSITIVE_INFINITY;
+				}
+				bound += this.getBound( Modifiers.getModifiers( "Effect", intrinsic ) );
+			}
+		}
+
+		// Completing an outfit adds its bonus
+		int outfitId = EquipmentDatabase.getOutfitWithItem( itemId );
+		SpecialOutfit outfit = outfitId > 0 ? EquipmentDatabase.getOutfit( outfitId ) : null;
+		if ( outfit != null )
+		{
+			bound += this.getBound( Modifiers.getModifiers( "Outfit", outfit.getName() ) );
+		}
+
+		if ( itemId == ItemPool.CARD_SLEEVE && card != null )
+		{
+			bound += this.getItemBound( card, EquipmentManager.CARDSLEEVE, null );
+		}
+
+		// Modifiers that depend on equipment power
+		int power = EquipmentDatabase.getPower( itemId );
+		switch ( slot )
+		{
+		case EquipmentManager.WEAPON:
+		case EquipmentManager.OFFHAND:
+			bound += this.gain( Modifiers.WEAPON_DAMAGE, power * 0.15 );
+			break;
+		case EquipmentManager.HAT:
+		case EquipmentManager.PANTS:
+			int taoFactor = KoLCharacter.hasSkill( "Tao of the Terrapin" ) ? 2 : 1;
+			bound += this.gain( Modifiers.DAMAGE_ABSORPTION, taoFactor * power );
+			break;
+		case EquipmentManager.SHIRT:
+			bound += this.gain( Modifiers.DAMAGE_ABSORPTION, power );
+			break;
+		}
+
+		return bound;
+	}
+
 	void checkEquipment( Modifiers mods, AdventureResult[] equipment,
 		int beeosity )
 	{
@@ -1074,6 +1324,10 @@ public class Evaluator
 		// than any chefstaff.
 		boolean gloveAvailable = false;
 
+		// Once a Hodgman's offhand turns up, later items are scored
+		// as if it were worn at full power.
+		EvaluationContext context = EvaluationContext.CURRENT;
+
 		int id = 0;
 		while ( (id = EquipmentDatabase.nextEquipmentItemId( id )) != -1 )
 		{
@@ -1102,7 +1356,7 @@ public class Evaluator
 				else
 				// Normal item modifiers when used by Disembodied Hand
 				{
-					familiarMods = Modifiers.getItemModifiers( id );
+					familiarMods = Modifiers.getItemModifiers( id, context );
 					if ( familiarMods == null )	// no enchantments
 					{
 						familiarMods = new Modifiers();
@@ -1139,7 +1393,7 @@ public class Evaluator
 				else
 				// Normal item modifiers when used by Disembodied Hand
 				{
-					familiarMods = Modifiers.getItemModifiers( id );
+					familiarMods = Modifiers.getItemModifiers( id, context );
 					if ( familiarMods == null )	// no enchantments
 					{
 						familiarMods = new Modifiers();
@@ -1288,7 +1542,7 @@ public class Evaluator
 					}
 					if ( hoboPowerUseful && name.startsWith( "Hodgman's" ) )
 					{
-						Modifiers.hoboPower = 100.0;
+						context = context.withHoboPower( 100.0 );
 						item.automaticFlag = true;
 					}
 					break;
@@ -1400,7 +1654,7 @@ public class Evaluator
 					item.automaticFlag = true;
 				}
 
-				Modifiers mods = Modifiers.getItemModifiers( id );
+				Modifiers mods = Modifiers.getItemModifiers( id, context );
 				if ( mods == null )	// no enchantments
 				{
 					mods = new Modifiers();
@@ -1512,7 +1766,7 @@ public class Evaluator
 				{
 					Modifiers newMods = new Modifiers();
 					newMods.add( mods );
-					newMods.add( Modifiers.getModifiers( "Effect", intrinsic ) );
+					newMods.add( Modifiers.getModifiers( "Effect", intrinsic, context ) );
 					mods = newMods;
 				}
 				double delta = this.getScore( mods ) - nullScore;
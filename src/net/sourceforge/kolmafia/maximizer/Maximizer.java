@@ -36,6 +36,8 @@ package net.sourceforge.kolmafia.maximizer;
 import java.util.Collections;
 import java.util.Iterator;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.java.dev.spellcast.utilities.LockableListModel;
 
 import net.sourceforge.kolmafia.AdventureResult;
@@ -109,8 +111,9 @@ public class Maximizer
 	};
 
 	static MaximizerSpeculation best;
-	static int bestChecked;
-	static long bestUpdate;
+	static final AtomicInteger bestChecked = new AtomicInteger();
+	static final AtomicInteger bestPruned = new AtomicInteger();
+	static volatile long bestUpdate;
 
 	public static boolean maximize( String maximizerString, int maxPrice, int priceLevel, boolean isSpeculationOnly )
 	{
@@ -168,8 +171,10 @@ public class Maximizer
 			// In case the current outfit scores better than any tried combination,
 			// due to some newly-added constraint (such as +melee):
 			Maximizer.best.failed = true;
-			Maximizer.bestChecked = 0;
+			Maximizer.bestChecked.set( 0 );
+			Maximizer.bestPruned.set( 0 );
 			Maximizer.bestUpdate = System.currentTimeMillis() + 5000;
+			KoLCharacter.cacheFixedAdjustments( true );
 			try
 			{
 				Maximizer.eval.enumerateEquipment( equipLevel, maxPrice, priceLevel );
@@ -187,6 +192,10 @@ public class Maximizer
 				KoLmafia.forceContinue();
 				Maximizer.boosts.add( new Boost( "", "<font color=red>(interrupted, optimality not guaranteed)</font>", -1, null, 0.0 ) );
 			}
+			finally
+			{
+				KoLCharacter.cacheFixedAdjustments( false );
+			}
 			MaximizerSpeculation.showProgress();
 
 			boolean[] alreadyDone = new boolean[ EquipmentManager.ALL_SLOTS ];
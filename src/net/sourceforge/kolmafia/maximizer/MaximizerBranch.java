@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.maximizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sourceforge.kolmafia.AdventureResult;
+import net.sourceforge.kolmafia.FamiliarData;
+import net.sourceforge.kolmafia.StaticEntity;
+
+/**
+ * One independent subtree of the equipment search: everything below a
+ * particular choice of familiar, outfit, familiar item and container.
+ * Branches are explored concurrently, each with its own speculation, its
+ * own evaluator and its own best result, and the results are merged in the
+ * order the serial search would have visited them, so ties are broken the
+ * same way.
+ * <p>
+ * When a branch reaches the maximum, only the branches the serial search
+ * would have visited after it are stopped; earlier branches run to
+ * completion, so the result is the one the serial search would find.
+ * The combination limit counts combinations in serial order, so the
+ * search is not split into branches when one is set.
+ */
+
+class MaximizerBranch
+	implements Callable<MaximizerBranch>
+{
+	private static List<MaximizerBranch> running = null;
+	private static volatile MaximizerInterruptedException halt = null;
+	private static volatile int haltIndex = Integer.MAX_VALUE;
+
+	private final MaximizerSpeculation spec;
+	private final ArrayList<?>[] possibles;
+	private final ArrayList<FamiliarData> enthronedFamiliars;
+	private final AdventureResult bestCard;
+	private final FamiliarData useCrownFamiliar;
+	private int index;
+
+	// Only replaced by the thread exploring this branch, and only with a
+	// fully scored speculation, so other threads can read it for progress.
+	volatile MaximizerSpeculation best;
+
+	MaximizerBranch( MaximizerSpeculation spec, ArrayList<?>[] possibles, ArrayList<FamiliarData> enthronedFamiliars,
+		AdventureResult bestCard, FamiliarData useCrownFamiliar )
+	{
+		this.spec = spec;
+		this.spec.eval = Maximizer.eval.copy();
+		this.possibles = possibles;
+		this.enthronedFamiliars = enthronedFamiliars;
+		this.bestCard = bestCard;
+		this.useCrownFamiliar = useCrownFamiliar;
+		this.best = Maximizer.best;
+	}
+
+	public MaximizerBranch call()
+	{
+		try
+		{
+			this.spec.tryBranch( this, this.enthronedFamiliars, this.possibles, this.bestCard, this.useCrownFamiliar );
+		}
+		catch ( MaximizerExceededException e )
+		{
+			MaximizerBranch.stop( e, this.index );
+		}
+		catch ( MaximizerInterruptedException e )
+		{
+			if ( MaximizerBranch.haltIndex >= this.index )
+			{
+				MaximizerBranch.stop( e, -1 );
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Stops every branch after the given one in serial order.  An index
+	 * of -1 stops all of them.
+	 */
+
+	private static synchronized void stop( MaximizerInterruptedException e, int index )
+	{
+		if ( index < MaximizerBranch.haltIndex )
+		{
+			MaximizerBranch.halt = e;
+			MaximizerBranch.haltIndex = index;
+		}
+	}
+
+	/**
+	 * Scores one complete combination and keeps it if it beats the best
+	 * combination found so far in this branch.  Returns the number of
+	 * combinations checked so far across all branches.
+	 */
+
+	int consider( MaximizerSpeculation candidate )
+		throws MaximizerInterruptedException
+	{
+		if ( MaximizerBranch.haltIndex < this.index )
+		{
+			// A branch ahead of this one finished the search; stop quietly.
+			throw new MaximizerInterruptedException();
+		}
+
+		if ( candidate.compareTo( this.best ) > 0 )
+		{
+			MaximizerSpeculation best = (MaximizerSpeculation) candidate.clone();
+			best.scoreFully();
+			this.best = best;
+		}
+		int checked = Maximizer.bestChecked.incrementAndGet();
+		long t = System.currentTimeMillis();
+		if ( t > Maximizer.bestUpdate )
+		{
+			Maximizer.bestUpdate = t + 5000;
+			MaximizerSpeculation.showProgress( MaximizerBranch.currentBest() );
+		}
+		return checked;
+	}
+
+	private static MaximizerSpeculation currentBest()
+	{
+		MaximizerSpeculation rv = Maximizer.best;
+		for ( MaximizerBranch branch : MaximizerBranch.running )
+		{
+			if ( branch.best.compareTo( rv ) > 0 )
+			{
+				rv = branch.best;
+			}
+		}
+		return rv;
+	}
+
+	/**
+	 * Explores all of the branches on a pool of the given size, then
+	 * merges their winners into Maximizer.best.  If any branch stopped
+	 * the search (interrupted, limit reached or maximum achieved), the
+	 * same exception is rethrown once every branch has wound down.
+	 */
+
+	static void search( List<MaximizerBranch> branches, int poolSize )
+		throws MaximizerInterruptedException
+	{
+		// Every branch compares against the best so far, so it must not
+		// change when they do.
+		Maximizer.best.scoreFully();
+
+		for ( int i = 0; i < branches.size(); ++i )
+		{
+			branches.get( i ).index = i;
+		}
+		MaximizerBranch.running = branches;
+		MaximizerBranch.halt = null;
+		MaximizerBranch.haltIndex = Integer.MAX_VALUE;
+
+		ExecutorService executor = Executors.newFixedThreadPool( poolSize );
+		try
+		{
+			List<Future<MaximizerBranch>> futures = executor.invokeAll( branches );
+			for ( Future<MaximizerBranch> future : futures )
+			{
+				future.get();
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			MaximizerBranch.stop( new MaximizerInterruptedException(), -1 );
+		}
+		catch ( ExecutionException e )
+		{
+			StaticEntity.printStackTrace( e.getCause() );
+			MaximizerBranch.stop( new MaximizerInterruptedException(), -1 );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		// Merge in serial search order, only replacing on a strict
+		// improvement, exactly as the serial search does.  Branches after
+		// the one that reached the maximum would never have been visited.
+
+		int last = MaximizerBranch.haltIndex;
+		for ( MaximizerBranch branch : branches )
+		{
+			if ( last >= 0 && branch.index > last )
+			{
+				break;
+			}
+			if ( branch.best.compareTo( Maximizer.best ) > 0 )
+			{
+				Maximizer.best = branch.best;
+			}
+		}
+
+		MaximizerInterruptedException e = MaximizerBranch.halt;
+		MaximizerBranch.running = null;
+		MaximizerBranch.halt = null;
+		MaximizerBranch.haltIndex = Integer.MAX_VALUE;
+		if ( e != null )
+		{
+			throw e;
+		}
+	}
+}
@@ -34,6 +34,7 @@
 package net.sourceforge.kolmafia.maximizer;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.TreeMap;
 
 import net.sourceforge.kolmafia.AdventureResult;
@@ -67,6 +68,51 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 	public CheckedItem attachment;
 	private boolean foldables = false;
 
+	// Non-null while the top levels of the search tree are being split
+	// into branches for a parallel search.
+	private ArrayList<MaximizerBranch> branches = null;
+	// Non-null while exploring one of those branches.
+	private MaximizerBranch branch = null;
+	// The evaluator to score with, if not Maximizer.eval.  Each branch
+	// scores with its own copy.
+	Evaluator eval = null;
+
+	// Upper bounds on what each undecided slot can add to the score,
+	// used to prune the search.  Null if the score can't be bounded.
+	private double[] slotBounds = null;
+	private double[] accessoryBounds = null;
+	// The bound of each item that can fill a bounded slot, by slot.  All
+	// three accessory slots use the ACCESSORY1 entry.
+	private HashMap<AdventureResult, Double>[] itemBounds = null;
+
+	// The equipment decided above tryAccessories, and its score with
+	// nothing in the other slots (NaN until needed).  Each item decided
+	// below that adds at most its bound, so a subtree can be bounded
+	// without scoring it.
+	private AdventureResult[] rootEquipment = null;
+	private double rootScore = Double.NaN;
+
+	// Slots decided below tryAccessories, which are covered by slotBounds
+	private static final int[] BOUNDED_SLOTS =
+	{
+		EquipmentManager.HAT,
+		EquipmentManager.SHIRT,
+		EquipmentManager.PANTS,
+		EquipmentManager.HOLSTER,
+		EquipmentManager.WEAPON,
+		EquipmentManager.OFFHAND,
+	};
+
+	// Evaluator.getScore adds this once if anything has a Rollover
+	// Effect, so it isn't part of any item's bound.
+	private static final double ROLLOVER_FUDGE = 0.01f;
+
+	// A combination that only ties the best is still decided by the
+	// tiebreakers, so a bound that matches the best score must not prune.
+	// The bound and the score add the same terms in a different order,
+	// so allow for rounding when comparing them.
+	private static final double ROUNDING = 1e-9;
+
 	@Override
 	public Object clone()
 	{
@@ -74,6 +120,8 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 		{
 			MaximizerSpeculation copy = (MaximizerSpeculation) super.clone();
 			copy.equipment = (AdventureResult[]) this.equipment.clone();
+			copy.branches = null;
+			copy.branch = null;
 			return copy;
 		}
 		catch ( CloneNotSupportedException e )
@@ -92,6 +140,11 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 		return super.toString();
 	}
 
+	private Evaluator getEvaluator()
+	{
+		return this.eval != null ? this.eval : Maximizer.eval;
+	}
+
 	public void setUnscored()
 	{
 		this.scored = false;
@@ -102,21 +155,22 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 	{
 		if ( this.scored ) return this.score;
 		if ( !this.calculated ) this.calculate();
-		this.score = Maximizer.eval.getScore( this.mods );
+		Evaluator eval = this.getEvaluator();
+		this.score = eval.getScore( this.mods );
 		if ( KoLCharacter.inBeecore() )
 		{
 			this.beeosity = KoLCharacter.getBeeosity( this.equipment );
 		}
-		Maximizer.eval.checkEquipment( this.mods, this.equipment,
+		eval.checkEquipment( this.mods, this.equipment,
 			this.beeosity );
-		this.failed = Maximizer.eval.failed;
+		this.failed = eval.failed;
 		if ( (this.mods.getRawBitmap( Modifiers.MUTEX_VIOLATIONS )
 			& ~KoLCharacter.currentRawBitmapModifier( Modifiers.MUTEX_VIOLATIONS )) != 0 )
 		{	// We're speculating about something that would create a
 			// mutex problem that the player didn't already have.
 			this.failed = true;
 		}
-		this.exceeded = Maximizer.eval.exceeded;
+		this.exceeded = eval.exceeded;
 		this.scored = true;
 		return this.score;
 	}
@@ -125,7 +179,7 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 	{
 		if ( this.tiebreakered ) return this.tiebreaker;
 		if ( !this.calculated ) this.calculate();
-		this.tiebreaker = Maximizer.eval.getTiebreaker( this.mods );
+		this.tiebreaker = this.getEvaluator().getTiebreaker( this.mods );
 		this.tiebreakered = true;
 		this.simplicity = 0;
 		for ( int slot = 0; slot < EquipmentManager.ALL_SLOTS; ++slot )
@@ -144,6 +198,17 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 		return this.tiebreaker;
 	}
 
+	/**
+	 * Works out everything compareTo needs up front, so that other
+	 * threads can compare against this speculation without changing it.
+	 */
+
+	void scoreFully()
+	{
+		this.getScore();
+		this.getTiebreaker();
+	}
+
 	public int compareTo( MaximizerSpeculation o )
 	{
 		if ( !(o instanceof MaximizerSpeculation) ) return 1;
@@ -259,6 +324,14 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 		throws MaximizerInterruptedException
 	{
 		this.foldables = Preferences.getBoolean( "maximizerFoldables" );
+		this.computeBounds( possibles, bestCard );
+		int poolSize = Preferences.getInteger( "maximizerThreadPoolSize" );
+		// The combination limit counts combinations in the order the serial
+		// search visits them, so only branch out when there is no limit.
+		if ( poolSize > 1 && Preferences.getLong( "maximizerCombinationLimit" ) == 0 )
+		{
+			this.branches = new ArrayList<MaximizerBranch>();
+		}
 		this.tryOutfits( enthronedFamiliars, usefulOutfits, outfitPieces, possibles, bestCard, useCrownFamiliar, useBjornFamiliar );
 		for ( int i = 0; i < familiars.size(); ++i )
 		{
@@ -267,6 +340,228 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 				possibles[ EquipmentManager.ALL_SLOTS + i ];
 			this.tryOutfits( enthronedFamiliars, usefulOutfits, outfitPieces, possibles, bestCard, useCrownFamiliar, useBjornFamiliar );
 		}
+		if ( this.branches != null )
+		{
+			ArrayList<MaximizerBranch> branches = this.branches;
+			this.branches = null;
+			MaximizerBranch.search( branches, poolSize );
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private void computeBounds( ArrayList[] possibles, AdventureResult bestCard )
+	{
+		this.slotBounds = null;
+		this.accessoryBounds = null;
+		this.itemBounds = null;
+		if ( !Preferences.getBoolean( "maximizerPruning" ) || !Maximizer.eval.canBound() )
+		{
+			return;
+		}
+
+		HashMap<AdventureResult, Double>[] items = new HashMap[ EquipmentManager.ALL_SLOTS ];
+		double[] bounds = new double[ EquipmentManager.ALL_SLOTS ];
+		for ( int i = 0; i < BOUNDED_SLOTS.length; ++i )
+		{
+			int slot = BOUNDED_SLOTS[ i ];
+			items[ slot ] = new HashMap<AdventureResult, Double>();
+			bounds[ slot ] = this.maxBound( possibles[ slot ], slot, bestCard, items[ slot ] );
+		}
+
+		// Off-hands for dual wielding are ranked separately
+		bounds[ EquipmentManager.OFFHAND ] = Math.max( bounds[ EquipmentManager.OFFHAND ],
+			Math.max( this.maxBound( possibles[ Evaluator.OFFHAND_MELEE ], EquipmentManager.OFFHAND, bestCard, items[ EquipmentManager.OFFHAND ] ),
+				this.maxBound( possibles[ Evaluator.OFFHAND_RANGED ], EquipmentManager.OFFHAND, bestCard, items[ EquipmentManager.OFFHAND ] ) ) );
+
+		ArrayList possible = possibles[ EquipmentManager.ACCESSORY1 ];
+		double[] accessories = new double[ possible.size() ];
+		items[ EquipmentManager.ACCESSORY1 ] = new HashMap<AdventureResult, Double>();
+		for ( int pos = 0; pos < accessories.length; ++pos )
+		{
+			AdventureResult item = (AdventureResult) possible.get( pos );
+			accessories[ pos ] = Maximizer.eval.getItemBound( item, EquipmentManager.ACCESSORY1, bestCard );
+			items[ EquipmentManager.ACCESSORY1 ].put( item, accessories[ pos ] );
+		}
+
+		this.slotBounds = bounds;
+		this.accessoryBounds = accessories;
+		this.itemBounds = items;
+	}
+
+	private double maxBound( ArrayList possible, int slot, AdventureResult bestCard, HashMap<AdventureResult, Double> items )
+	{
+		// Leaving the slot empty adds nothing
+		double bound = 0.0;
+		for ( int pos = 0; pos < possible.size(); ++pos )
+		{
+			AdventureResult item = (AdventureResult) possible.get( pos );
+			double itemBound = Maximizer.eval.getItemBound( item, slot, bestCard );
+			items.put( item, itemBound );
+			bound = Math.max( bound, itemBound );
+		}
+		return bound;
+	}
+
+	// Everything below here is decided by tryAccessories and the levels
+	// under it.
+	private void markRoot()
+	{
+		this.rootEquipment = (AdventureResult[]) this.mark();
+		this.rootScore = Double.NaN;
+	}
+
+	private double getRootScore()
+	{
+		if ( Double.isNaN( this.rootScore ) )
+		{
+			Object mark = this.mark();
+			for ( int slot = 0; slot < EquipmentManager.ALL_SLOTS; ++slot )
+			{
+				if ( this.equipment[ slot ] == null )
+				{
+					this.equipment[ slot ] = EquipmentRequest.UNEQUIP;
+				}
+			}
+			Modifiers mods = this.calculate();
+			this.calculated = false;
+			this.restore( mark );
+			this.rootScore = this.getEvaluator().getScore( mods );
+			if ( mods.getString( Modifiers.ROLLOVER_EFFECT ).length() == 0 )
+			{
+				this.rootScore += ROLLOVER_FUDGE;
+			}
+		}
+		return this.rootScore;
+	}
+
+	private double decidedBound()
+	{
+		double bound = 0.0;
+		for ( int slot = 0; slot < EquipmentManager.ALL_SLOTS; ++slot )
+		{
+			AdventureResult item = this.equipment[ slot ];
+			if ( this.rootEquipment[ slot ] != null || item == null ||
+			     item == EquipmentRequest.UNEQUIP || slot == EquipmentManager.CARDSLEEVE )
+			{
+				// Decided at the root, still undecided, empty, or
+				// counted in the card sleeve's bound
+				continue;
+			}
+			int boundSlot = slot;
+			if ( slot == EquipmentManager.ACCESSORY2 || slot == EquipmentManager.ACCESSORY3 )
+			{
+				boundSlot = EquipmentManager.ACCESSORY1;
+			}
+			HashMap<AdventureResult, Double> items = this.itemBounds[ boundSlot ];
+			Double itemBound = items == null ? null : items.get( item );
+			if ( itemBound == null )
+			{
+				return Double.POSITIVE_INFINITY;
+			}
+			bound += itemBound.doubleValue();
+		}
+		return bound;
+	}
+
+	private double remainingBound()
+	{
+		double bound = 0.0;
+		for ( int i = 0; i < BOUNDED_SLOTS.length; ++i )
+		{
+			int slot = BOUNDED_SLOTS[ i ];
+			if ( this.equipment[ slot ] == null )
+			{
+				bound += this.slotBounds[ slot ];
+			}
+		}
+		return bound;
+	}
+
+	private double accessoryBound( ArrayList possible, int pos, int free )
+	{
+		// The best contributions that could fill the free slots,
+		// counting multiple copies of the same accessory
+		double[] top = new double[ free ];
+		for ( ; pos < possible.size(); ++pos )
+		{
+			AdventureResult item = (AdventureResult) possible.get( pos );
+			double bound = this.accessoryBounds[ pos ];
+			for ( int count = Math.min( free, item.getCount() ); count > 0; --count )
+			{
+				int i = free - 1;
+				if ( bound <= top[ i ] ) break;
+				for ( ; i > 0 && top[ i - 1 ] < bound; --i )
+				{
+					top[ i ] = top[ i - 1 ];
+				}
+				top[ i ] = bound;
+			}
+		}
+
+		double bound = 0.0;
+		for ( int i = 0; i < free; ++i )
+		{
+			bound += top[ i ];
+		}
+		return bound;
+	}
+
+	// Returns true if no way of filling the undecided slots could
+	// score higher than the best combination found so far.
+	private boolean prune( double remaining )
+	{
+		if ( Double.isInfinite( remaining ) || this.rootEquipment == null )
+		{
+			return false;
+		}
+
+		MaximizerSpeculation best = this.branch != null ? this.branch.best : Maximizer.best;
+		if ( best.failed )
+		{
+			// Anything that doesn't fail is an improvement
+			return false;
+		}
+		double decided = this.decidedBound();
+		if ( Double.isInfinite( decided ) )
+		{
+			return false;
+		}
+		double bestScore = best.getScore();
+		double bound = this.getRootScore() + decided + remaining;
+		if ( bound + ROUNDING * Math.max( 1.0, Math.abs( bestScore ) ) >= bestScore )
+		{
+			return false;
+		}
+		Maximizer.bestPruned.incrementAndGet();
+		return true;
+	}
+
+	void tryBranch( MaximizerBranch branch, ArrayList<FamiliarData> enthronedFamiliars, ArrayList[] possibles, AdventureResult bestCard,
+			FamiliarData useCrownFamiliar )
+		throws MaximizerInterruptedException
+	{
+		this.branch = branch;
+		this.markRoot();
+		this.tryAccessories( enthronedFamiliars, possibles, 0, bestCard, useCrownFamiliar );
+	}
+
+	private void tryBelowContainer( ArrayList<FamiliarData> enthronedFamiliars, ArrayList[] possibles, AdventureResult bestCard,
+			FamiliarData useCrownFamiliar )
+		throws MaximizerInterruptedException
+	{
+		if ( this.branches == null )
+		{
+			this.markRoot();
+			this.tryAccessories( enthronedFamiliars, possibles, 0, bestCard, useCrownFamiliar );
+			return;
+		}
+
+		// Everything below this point is independent of the rest of the
+		// search, so hand it off as a branch.  The familiar item list in
+		// possibles changes with the familiar, so the branch needs its own
+		// copy of the array.
+		this.branches.add( new MaximizerBranch( (MaximizerSpeculation) this.clone(),
+			(ArrayList[]) possibles.clone(), enthronedFamiliars, bestCard, useCrownFamiliar ) );
 	}
 
 	public void tryOutfits( ArrayList<FamiliarData> enthronedFamiliars, BooleanArray usefulOutfits, TreeMap outfitPieces, ArrayList[] possibles,
@@ -448,7 +743,7 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 					if ( useBjornFamiliar != FamiliarData.NO_FAMILIAR )
 					{
 						this.setBjorned( useBjornFamiliar );
-						this.tryAccessories( enthronedFamiliars, possibles, 0, bestCard, useCrownFamiliar );
+						this.tryBelowContainer( enthronedFamiliars, possibles, bestCard, useCrownFamiliar );
 						any = true;
 						this.restore( mark );
 					}					
@@ -457,7 +752,7 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 						for ( FamiliarData f : enthronedFamiliars )
 						{
 							this.setBjorned( f );
-							this.tryAccessories( enthronedFamiliars, possibles, 0, bestCard, useCrownFamiliar );
+							this.tryBelowContainer( enthronedFamiliars, possibles, bestCard, useCrownFamiliar );
 							any = true;
 							this.restore( mark );
 						}
@@ -465,7 +760,7 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 				}
 				else
 				{
-					this.tryAccessories( enthronedFamiliars, possibles, 0, bestCard, useCrownFamiliar );
+					this.tryBelowContainer( enthronedFamiliars, possibles, bestCard, useCrownFamiliar );
 					any = true;
 					this.restore( mark );
 				}
@@ -475,7 +770,7 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 			this.equipment[ EquipmentManager.CONTAINER ] = EquipmentRequest.UNEQUIP;
 		}
 
-		this.tryAccessories( enthronedFamiliars, possibles, 0, bestCard, useCrownFamiliar );
+		this.tryBelowContainer( enthronedFamiliars, possibles, bestCard, useCrownFamiliar );
 		this.restore( mark );
 	}
 
@@ -488,6 +783,11 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 		if ( this.equipment[ EquipmentManager.ACCESSORY1 ] == null ) ++free;
 		if ( this.equipment[ EquipmentManager.ACCESSORY2 ] == null ) ++free;
 		if ( this.equipment[ EquipmentManager.ACCESSORY3 ] == null ) ++free;
+		if ( this.slotBounds != null &&
+		     this.prune( this.accessoryBound( possibles[ EquipmentManager.ACCESSORY1 ], pos, free ) + this.remainingBound() ) )
+		{
+			return;
+		}
 		if ( free > 0 )
 		{
 			ArrayList possible = possibles[ EquipmentManager.ACCESSORY1 ];
@@ -579,6 +879,10 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 			FamiliarData useCrownFamiliar )
 		throws MaximizerInterruptedException
 	{
+		if ( this.slotBounds != null && this.prune( this.remainingBound() ) )
+		{
+			return;
+		}
 		Object mark = this.mark();
 		if ( this.equipment[ EquipmentManager.HAT ] == null )
 		{
@@ -777,6 +1081,10 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 	public void tryWeapons( ArrayList[] possibles, AdventureResult bestCard )
 		throws MaximizerInterruptedException
 	{
+		if ( this.slotBounds != null && this.prune( this.remainingBound() ) )
+		{
+			return;
+		}
 		Object mark = this.mark();
 		boolean chefstaffable = KoLCharacter.hasSkill( "Spirit of Rigatoni" ) || KoLCharacter.isJarlsberg();
 		if ( !chefstaffable && KoLCharacter.getClassType().equals( KoLCharacter.SAUCEROR ) )
@@ -925,16 +1233,24 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 		this.calculated = false;
 		this.scored = false;
 		this.tiebreakered = false;
-		if ( this.compareTo( Maximizer.best ) > 0 )
+		int checked;
+		if ( this.branch != null )
 		{
-			Maximizer.best = (MaximizerSpeculation) this.clone();
+			checked = this.branch.consider( this );
 		}
-		Maximizer.bestChecked++;
-		long t = System.currentTimeMillis();
-		if ( t > Maximizer.bestUpdate )
+		else
 		{
-			MaximizerSpeculation.showProgress();
-			Maximizer.bestUpdate = t + 5000;
+			if ( this.compareTo( Maximizer.best ) > 0 )
+			{
+				Maximizer.best = (MaximizerSpeculation) this.clone();
+			}
+			checked = Maximizer.bestChecked.incrementAndGet();
+			long t = System.currentTimeMillis();
+			if ( t > Maximizer.bestUpdate )
+			{
+				MaximizerSpeculation.showProgress();
+				Maximizer.bestUpdate = t + 5000;
+			}
 		}
 		this.restore( mark );
 		if ( !KoLmafia.permitsContinue() )
@@ -946,7 +1262,7 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 			throw new MaximizerExceededException();
 		}
 		long comboLimit = Preferences.getLong( "maximizerCombinationLimit" );
-		if ( comboLimit != 0 && Maximizer.bestChecked >= comboLimit )
+		if ( comboLimit != 0 && checked >= comboLimit )
 		{
 			throw new MaximizerLimitException();
 		}
@@ -996,16 +1312,28 @@ implements Comparable<MaximizerSpeculation>, Cloneable
 	}
 
 	public static void showProgress()
+	{
+		MaximizerSpeculation.showProgress( Maximizer.best );
+	}
+
+	static void showProgress( MaximizerSpeculation best )
 	{
 		StringBuilder msg = new StringBuilder();
-		msg.append( Maximizer.bestChecked );
+		msg.append( Maximizer.bestChecked.get() );
 		msg.append( " combinations checked, best score " );
-		double score = Maximizer.best.getScore();
+		double score = best.getScore();
 		msg.append( KoLConstants.FLOAT_FORMAT.format( score ) );
-		if ( Maximizer.best.failed )
+		if ( best.failed )
 		{
 			msg.append( " (FAIL)" );
 		}
+		int pruned = Maximizer.bestPruned.get();
+		if ( pruned > 0 )
+		{
+			msg.append( ", " );
+			msg.append( pruned );
+			msg.append( " subtrees pruned" );
+		}
 		//if ( MaximizerFrame.best.tiebreakered )
 		//{
 		//	msg = msg + " / " + MaximizerFrame.best.getTiebreaker() + " / " +
@@ -39,14 +39,17 @@ import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 import net.java.dev.spellcast.utilities.LockableListModel;
 import net.java.dev.spellcast.utilities.SortedListModel;
 
 import net.sourceforge.kolmafia.AdventureResult;
+import net.sourceforge.kolmafia.CoinmasterData;
 import net.sourceforge.kolmafia.CoinmasterRegistry;
 import net.sourceforge.kolmafia.KoLCharacter;
 import net.sourceforge.kolmafia.KoLConstants;
@@ -77,6 +80,7 @@ import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.request.CampgroundRequest;
 import net.sourceforge.kolmafia.request.ChezSnooteeRequest;
 import net.sourceforge.kolmafia.request.ClanLoungeRequest;
+import net.sourceforge.kolmafia.request.CoinMasterPurchaseRequest;
 import net.sourceforge.kolmafia.request.CreateItemRequest;
 import net.sourceforge.kolmafia.request.CrimboCafeRequest;
 import net.sourceforge.kolmafia.request.DrinkItemRequest;
@@ -100,6 +104,7 @@ import net.sourceforge.kolmafia.swingui.ItemManageFrame;
 
 import net.sourceforge.kolmafia.utilities.FileUtilities;
 import net.sourceforge.kolmafia.utilities.InputFieldUtilities;
+import net.sourceforge.kolmafia.utilities.ItemListModel;
 import net.sourceforge.kolmafia.utilities.SortedListModelArray;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
@@ -112,9 +117,37 @@ public class ConcoctionDatabase
 	public static String excuse;	// reason why creation is impossible
 
 	private static boolean refreshNeeded = true;
+	private static boolean fullRefreshNeeded = true;
 	private static boolean recalculateAdventureRange = false;
 	public static int refreshLevel = 0;
 
+	// Items whose count matters to more recipes than list them.  The
+	// pairs are interchangeable ingredients: a recipe lists one of them
+	// but will use whichever we have more of.  The hermit trades for the
+	// worthless items, and combining uses meat paste without saying so.
+
+	private static final int[][] IMPLICIT_INGREDIENTS =
+	{
+		{ ItemPool.SCHLITZ, ItemPool.WILLER },
+		{ ItemPool.KETCHUP, ItemPool.CATSUP },
+		{ ItemPool.DYSPEPSI_COLA, ItemPool.CLOACA_COLA },
+		{ ItemPool.TITANIUM_UMBRELLA, ItemPool.GOATSKIN_UMBRELLA },
+		{ ItemPool.WORTHLESS_TRINKET },
+		{ ItemPool.WORTHLESS_GEWGAW },
+		{ ItemPool.WORTHLESS_KNICK_KNACK },
+		{ ItemPool.MEAT_PASTE },
+	};
+
+	// What the last full refresh saw.  As long as nothing but the
+	// inventory has changed since then, only the concoctions which use
+	// the changed items need to be calculated again.
+
+	private static String refreshSignature = null;
+	private static final Map<Integer, Integer> refreshInventory = new HashMap<Integer, Integer>();
+	private static final Set<Integer> refreshGlobalItems = new HashSet<Integer>();
+	private static final List<Concoction> refreshNPCItems = new ArrayList<Concoction>();
+	private static final List<Concoction> refreshNonItems = new ArrayList<Concoction>();
+
 	public static int queuedAdventuresUsed = 0;
 	public static int queuedFreeCraftingTurns = 0;
 	public static int queuedStillsUsed = 0;
@@ -1155,7 +1188,7 @@ public class ConcoctionDatabase
 			return KoLConstants.inventory;
 		}
 
-		SortedListModel<AdventureResult> availableIngredients = new SortedListModel<AdventureResult>();
+		SortedListModel<AdventureResult> availableIngredients = new ItemListModel();
 		availableIngredients.addAll( KoLConstants.inventory );
 
 		if ( includeCloset )
@@ -1254,29 +1287,15 @@ public class ConcoctionDatabase
 		case KoLConstants.CONSUME_MULTIPLE:
 		case KoLConstants.CONSUME_FOOD_HELPER:
 		case KoLConstants.CONSUME_DRINK_HELPER:
-			ConcoctionDatabase.setRefreshNeeded( false );
+			ConcoctionDatabase.refreshNeeded = true;
 			return;
 		}
 
-		switch ( itemId )
-		{
-		// Items that affect creatability of other items, but
-		// aren't explicitly listed in their recipes:
-		case ItemPool.WORTHLESS_TRINKET:
-		case ItemPool.WORTHLESS_GEWGAW:
-		case ItemPool.WORTHLESS_KNICK_KNACK:
-
-		// Interchangeable ingredients, which might have been missed
-		// by the getKnownUses check because the recipes are set to
-		// use the other possible ingredient:
-		case ItemPool.SCHLITZ:
-		case ItemPool.WILLER:
-		case ItemPool.KETCHUP:
-		case ItemPool.CATSUP:
-		case ItemPool.DYSPEPSI_COLA:
-		case ItemPool.CLOACA_COLA:
-		case ItemPool.TITANIUM_UMBRELLA:
-		case ItemPool.GOATSKIN_UMBRELLA:
+		// Items that affect creatability of other items, but aren't
+		// explicitly listed in their recipes, so the getKnownUses
+		// check below might miss them
+		if ( ConcoctionDatabase.findImplicitIngredient( itemId ) != null )
+		{
 			ConcoctionDatabase.setRefreshNeeded( false );
 			return;
 		}
@@ -1291,7 +1310,7 @@ public class ConcoctionDatabase
 			
 			if ( ConcoctionDatabase.isPermittedMethod( method, requirements ) )
 			{
-				ConcoctionDatabase.setRefreshNeeded( false );
+				ConcoctionDatabase.refreshNeeded = true;
 				return;
 			}
 		}
@@ -1301,7 +1320,7 @@ public class ConcoctionDatabase
 			AdventureResult item = CoinmasterRegistry.COINMASTERS[ i ].getItem();
 			if ( item != null && itemId == item.getItemId() )
 			{
-				ConcoctionDatabase.setRefreshNeeded( false );
+				ConcoctionDatabase.refreshNeeded = true;
 				return;
 			}
 		}
@@ -1310,6 +1329,7 @@ public class ConcoctionDatabase
 	public static final void setRefreshNeeded( boolean recalculateAdventureRange )
 	{
 		ConcoctionDatabase.refreshNeeded = true;
+		ConcoctionDatabase.fullRefreshNeeded = true;
 
 		if ( recalculateAdventureRange )
 		{
@@ -1333,6 +1353,7 @@ public class ConcoctionDatabase
 		{
 			// Remember that refresh is forced, even if deferred
 			ConcoctionDatabase.refreshNeeded = true;
+			ConcoctionDatabase.fullRefreshNeeded = true;
 		}
 
 		if ( !ConcoctionDatabase.refreshNeeded )
@@ -1354,13 +1375,26 @@ public class ConcoctionDatabase
 			return;
 		}
 
-		ConcoctionDatabase.refreshConcoctionsNow();
+		ConcoctionDatabase.refreshConcoctionsNow( false );
 	}
 
-	public static final synchronized void refreshConcoctionsNow()
+	public static final void refreshConcoctionsNow()
+	{
+		ConcoctionDatabase.refreshConcoctionsNow( true );
+	}
+
+	private static final synchronized void refreshConcoctionsNow( boolean full )
 	{
 		ConcoctionDatabase.refreshNeeded = false;
 
+		full |= ConcoctionDatabase.fullRefreshNeeded;
+		ConcoctionDatabase.fullRefreshNeeded = false;
+
+		if ( !full && ConcoctionDatabase.refreshChangedConcoctions() )
+		{
+			return;
+		}
+
 		List<AdventureResult> availableIngredients = ConcoctionDatabase.getAvailableIngredients();
 
 		// Iterate through the concoction table, Initialize each one
@@ -1372,63 +1406,7 @@ public class ConcoctionDatabase
 
 		for ( Concoction item : ConcoctionPool.concoctions() )
 		{
-			// Initialize all the variables
-			item.resetCalculations();
-
-			if ( item.speakeasy )
-			{
-				// Has an item number, but can't appear in inventory
-				continue;
-			}
-
-			AdventureResult concoction = item.concoction;
-			if ( concoction == null )
-			{
-				continue;
-			}
-
-			int itemId = concoction.getItemId();
-
-			if ( useNPCStores && NPCStoreDatabase.contains( itemId, true ) )
-			{
-				if ( itemId != ItemPool.FLAT_DOUGH )
-				{
-					// Don't buy flat dough from Degrassi Knoll Bakery -
-					// buy wads of dough for 20 meat less, instead.
-
-					item.price = NPCStoreDatabase.price( itemId );
-					item.initial = concoction.getCount( availableIngredients );
-					item.creatable = 0;
-					item.total = item.initial;
-					item.visibleTotal = item.total;
-					continue;
-				}
-			}
-
-			PurchaseRequest purchaseRequest = item.getPurchaseRequest();
-			if ( purchaseRequest != null )
-			{
-				purchaseRequest.setCanPurchase( useCoinmasters );
-				int acquirable = purchaseRequest.canPurchase() ?
-					purchaseRequest.affordableCount() : 0;
-				item.price = 0;
-				item.initial = concoction.getCount( availableIngredients );
-				item.creatable = acquirable;
-				item.total = item.initial + acquirable;
-				item.visibleTotal = item.total;
-				continue;
-			}
-
-			// Set initial quantity of all remaining items.
-
-			// Switch to the better of any interchangeable ingredients
-			ConcoctionDatabase.getIngredients( item.getIngredients(), availableIngredients );
-
-			item.initial = concoction.getCount( availableIngredients );
-			item.price = 0;
-			item.creatable = 0;
-			item.total = item.initial;
-			item.visibleTotal = item.total;
+			ConcoctionDatabase.initializeConcoction( item, availableIngredients, useNPCStores, useCoinmasters );
 		}
 
 		// Make assessment of availability of mixing methods.
@@ -1459,71 +1437,449 @@ public class ConcoctionDatabase
 
 		for ( Concoction item : ConcoctionPool.concoctions() )
 		{
-			AdventureResult ar = item.getItem();
-			if ( ar == null )
+			changeDetected |= ConcoctionDatabase.updateCreatable( item, considerPulls );
+		}
+
+		if ( ConcoctionDatabase.recalculateAdventureRange )
+		{
+			ConsumablesDatabase.calculateAdventureRanges();
+			ConcoctionDatabase.recalculateAdventureRange = false;
+
+			ConcoctionDatabase.queuedFood.touch();
+			ConcoctionDatabase.queuedBooze.touch();
+			ConcoctionDatabase.queuedSpleen.touch();
+		}
+
+		ConcoctionDatabase.creatableList.sort();
+		ConcoctionDatabase.usableList.sort();
+
+		// Now tell the GUI about the changes
+		ConcoctionDatabase.creatableList.updateFilter( changeDetected );
+		ConcoctionDatabase.usableList.updateFilter( changeDetected );
+
+		ConcoctionDatabase.saveRefreshState( availableIngredients, useNPCStores, useCoinmasters, considerPulls );
+	}
+
+	private static final void initializeConcoction( final Concoction item, final List<AdventureResult> availableIngredients,
+		final boolean useNPCStores, final boolean useCoinmasters )
+	{
+		// Initialize all the variables
+		item.resetCalculations();
+
+		if ( item.speakeasy )
+		{
+			// Has an item number, but can't appear in inventory
+			return;
+		}
+
+		AdventureResult concoction = item.concoction;
+		if ( concoction == null )
+		{
+			return;
+		}
+
+		int itemId = concoction.getItemId();
+
+		if ( useNPCStores && NPCStoreDatabase.contains( itemId, true ) )
+		{
+			if ( itemId != ItemPool.FLAT_DOUGH )
 			{
-				continue;
+				// Don't buy flat dough from Degrassi Knoll Bakery -
+				// buy wads of dough for 20 meat less, instead.
+
+				item.price = NPCStoreDatabase.price( itemId );
+				item.initial = concoction.getCount( availableIngredients );
+				item.creatable = 0;
+				item.total = item.initial;
+				item.visibleTotal = item.total;
+				return;
 			}
+		}
+
+		PurchaseRequest purchaseRequest = item.getPurchaseRequest();
+		if ( purchaseRequest != null )
+		{
+			purchaseRequest.setCanPurchase( useCoinmasters );
+			int acquirable = purchaseRequest.canPurchase() ?
+				purchaseRequest.affordableCount() : 0;
+			item.price = 0;
+			item.initial = concoction.getCount( availableIngredients );
+			item.creatable = acquirable;
+			item.total = item.initial + acquirable;
+			item.visibleTotal = item.total;
+			return;
+		}
+
+		// Set initial quantity of all remaining items.
 
-			if ( considerPulls &&
-			     ar.getItemId() > 0 &&
-			     item.getPrice() <= 0 &&
-			     ConsumablesDatabase.meetsLevelRequirement( item.getName() ) &&
-			     StandardRequest.isAllowed( "Items", ar.getName() ) )
+		// Switch to the better of any interchangeable ingredients
+		ConcoctionDatabase.getIngredients( item.getIngredients(), availableIngredients );
+
+		item.initial = concoction.getCount( availableIngredients );
+		item.price = 0;
+		item.creatable = 0;
+		item.total = item.initial;
+		item.visibleTotal = item.total;
+	}
+
+	private static final boolean updateCreatable( final Concoction item, final boolean considerPulls )
+	{
+		AdventureResult ar = item.getItem();
+		if ( ar == null )
+		{
+			return false;
+		}
+
+		if ( considerPulls &&
+		     ar.getItemId() > 0 &&
+		     item.getPrice() <= 0 &&
+		     ConsumablesDatabase.meetsLevelRequirement( item.getName() ) &&
+		     StandardRequest.isAllowed( "Items", ar.getName() ) )
+		{
+			item.setPullable( Math.min ( ar.getCount( KoLConstants.storage ) - item.queuedPulls, ConcoctionDatabase.getPullsBudgeted() - ConcoctionDatabase.queuedPullsUsed ) );
+		}
+		else
+		{
+			item.setPullable( 0 );
+		}
+
+		CreateItemRequest instance = CreateItemRequest.getInstance( ar, false );
+
+		if ( instance == null )
+		{
+			return false;
+		}
+
+		int creatable = Math.max( item.creatable, 0 );
+		int pullable = Math.max( item.pullable, 0 );
+
+		instance.setQuantityPossible( creatable );
+		instance.setQuantityPullable( pullable );
+
+		if ( creatable + pullable == 0 )
+		{
+			if ( item.wasPossible() )
 			{
-				item.setPullable( Math.min ( ar.getCount( KoLConstants.storage ) - item.queuedPulls, ConcoctionDatabase.getPullsBudgeted() - ConcoctionDatabase.queuedPullsUsed ) );
+				ConcoctionDatabase.creatableList.remove( instance );
+				item.setPossible( false );
+				return true;
 			}
-			else
+		}
+		else if ( !item.wasPossible() )
+		{
+			ConcoctionDatabase.creatableList.add( instance );
+			item.setPossible( true );
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Remembers what the refresh which just finished was based on, so the
+	 * next one can tell what has changed since.  Incremental refreshes are
+	 * only possible when the ingredients are exactly the inventory and
+	 * pulls are not being considered.
+	 */
+
+	private static final void saveRefreshState( final List<AdventureResult> availableIngredients,
+		final boolean useNPCStores, final boolean useCoinmasters, final boolean considerPulls )
+	{
+		ConcoctionDatabase.refreshSignature = null;
+		ConcoctionDatabase.refreshInventory.clear();
+		ConcoctionDatabase.refreshGlobalItems.clear();
+		ConcoctionDatabase.refreshNPCItems.clear();
+		ConcoctionDatabase.refreshNonItems.clear();
+
+		if ( availableIngredients != KoLConstants.inventory || considerPulls )
+		{
+			return;
+		}
+
+		// Items whose count matters to more than the recipes which
+		// list them: implicit ingredients and anything spent at a
+		// Coin Master.
+
+		for ( int[] group : ConcoctionDatabase.IMPLICIT_INGREDIENTS )
+		{
+			for ( int itemId : group )
 			{
-				item.setPullable( 0 );
+				ConcoctionDatabase.refreshGlobalItems.add( IntegerPool.get( itemId ) );
 			}
+		}
 
-			CreateItemRequest instance = CreateItemRequest.getInstance( ar, false );
+		for ( CoinmasterData data : CoinmasterRegistry.COINMASTERS )
+		{
+			AdventureResult item = data.getItem();
+			if ( item != null )
+			{
+				ConcoctionDatabase.refreshGlobalItems.add( IntegerPool.get( item.getItemId() ) );
+			}
+		}
 
-			if ( instance == null )
+		for ( Concoction item : ConcoctionPool.concoctions() )
+		{
+			if ( item.concoction == null || item.speakeasy )
 			{
+				ConcoctionDatabase.refreshNonItems.add( item );
 				continue;
 			}
 
-			int creatable = Math.max( item.creatable, 0 );
-			int pullable = Math.max( item.pullable, 0 );
+			if ( NPCStoreDatabase.contains( item.getItemId(), false ) )
+			{
+				ConcoctionDatabase.refreshNPCItems.add( item );
+			}
+
+			PurchaseRequest purchaseRequest = item.getPurchaseRequest();
+			if ( purchaseRequest instanceof CoinMasterPurchaseRequest )
+			{
+				int tokenId = ( (CoinMasterPurchaseRequest) purchaseRequest ).getTokenItemId();
+				if ( tokenId > 0 )
+				{
+					ConcoctionDatabase.refreshGlobalItems.add( IntegerPool.get( tokenId ) );
+				}
+			}
+		}
+
+		ConcoctionDatabase.refreshInventory.putAll( ConcoctionDatabase.getInventoryCounts() );
+		ConcoctionDatabase.refreshSignature = ConcoctionDatabase.getRefreshSignature( useNPCStores, useCoinmasters );
+	}
+
+	/**
+	 * Summarizes everything other than item counts which a refresh depends
+	 * on.  Must be called after <code>cachePermitted</code>.
+	 */
+
+	private static final String getRefreshSignature( final boolean useNPCStores, final boolean useCoinmasters )
+	{
+		StringBuilder buffer = new StringBuilder();
+
+		buffer.append( useNPCStores );
+		buffer.append( useCoinmasters );
+		buffer.append( KoLCharacter.knollAvailable() );
+		buffer.append( KoLCharacter.inBeecore() );
+		buffer.append( KoLCharacter.inGLover() );
+		buffer.append( KoLCharacter.inZombiecore() );
+
+		// What the usable list is sorted by, other than the items
+		buffer.append( Preferences.getBoolean( "sortByRoom" ) );
+		buffer.append( ',' );
+		buffer.append( KoLCharacter.getFullnessLimit() - KoLCharacter.getFullness() - ConcoctionDatabase.queuedFullness );
+		buffer.append( ',' );
+		buffer.append( KoLCharacter.getInebrietyLimit() - KoLCharacter.getInebriety() - ConcoctionDatabase.queuedInebriety );
+		buffer.append( ',' );
+		buffer.append( KoLCharacter.getSpleenLimit() - KoLCharacter.getSpleenUse() - ConcoctionDatabase.queuedSpleenHit );
+
+		buffer.append( ConcoctionDatabase.REQUIREMENT_MET );
+		buffer.append( ConcoctionDatabase.PERMIT_METHOD );
+		buffer.append( ConcoctionDatabase.ADVENTURE_USAGE );
+		buffer.append( ConcoctionDatabase.CREATION_COST );
+
+		Concoction[] limits =
+		{
+			ConcoctionDatabase.stillsLimit,
+			ConcoctionDatabase.clipArtLimit,
+			ConcoctionDatabase.extrudeLimit,
+			ConcoctionDatabase.adventureLimit,
+			ConcoctionDatabase.adventureSmithingLimit,
+			ConcoctionDatabase.adventureJewelcraftingLimit,
+			ConcoctionDatabase.turnFreeLimit,
+			ConcoctionDatabase.turnFreeSmithingLimit,
+			ConcoctionDatabase.meatLimit,
+		};
+
+		for ( Concoction limit : limits )
+		{
+			buffer.append( ',' );
+			buffer.append( limit.initial );
+			buffer.append( '/' );
+			buffer.append( limit.total );
+		}
+
+		buffer.append( ';' );
+		if ( useNPCStores )
+		{
+			for ( Concoction item : ConcoctionDatabase.refreshNPCItems )
+			{
+				buffer.append( NPCStoreDatabase.contains( item.getItemId(), true ) ? '1' : '0' );
+			}
+		}
+
+		if ( useCoinmasters )
+		{
+			for ( CoinmasterData data : CoinmasterRegistry.COINMASTERS )
+			{
+				buffer.append( ';' );
+				buffer.append( data.isAccessible() );
+				buffer.append( data.availableTokens() );
+			}
+		}
+
+		return buffer.toString();
+	}
+
+	private static final Map<Integer, Integer> getInventoryCounts()
+	{
+		Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
 
-			instance.setQuantityPossible( creatable );
-			instance.setQuantityPullable( pullable );
+		for ( int i = 0; i < KoLConstants.inventory.size(); ++i )
+		{
+			AdventureResult item = KoLConstants.inventory.get( i );
+			Integer itemId = IntegerPool.get( item.getItemId() );
+			Integer count = counts.get( itemId );
+			counts.put( itemId, IntegerPool.get( count == null ? item.getCount() : count.intValue() + item.getCount() ) );
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Recalculates only the concoctions which could have been affected by
+	 * inventory changes since the last full refresh.  That is every
+	 * concoction which uses a changed item, directly or through another
+	 * concoction, plus those which are not items at all.
+	 *
+	 * Returns false, having changed nothing that a full refresh would not
+	 * redo, if anything else which the calculations depend on has changed.
+	 */
+
+	static final boolean refreshChangedConcoctions()
+	{
+		if ( ConcoctionDatabase.refreshSignature == null || ConcoctionDatabase.recalculateAdventureRange )
+		{
+			return false;
+		}
 
-			if ( creatable + pullable == 0 )
+		List<AdventureResult> availableIngredients = ConcoctionDatabase.getAvailableIngredients();
+		if ( availableIngredients != KoLConstants.inventory )
+		{
+			return false;
+		}
+
+		boolean considerPulls = !KoLCharacter.canInteract() &&
+			!KoLCharacter.isHardcore() &&
+			ConcoctionDatabase.getPullsBudgeted() > ConcoctionDatabase.queuedPullsUsed;
+		if ( considerPulls )
+		{
+			return false;
+		}
+
+		Map<Integer, Integer> counts = ConcoctionDatabase.getInventoryCounts();
+		List<Integer> changedItems = new ArrayList<Integer>();
+
+		for ( Map.Entry<Integer, Integer> entry : counts.entrySet() )
+		{
+			if ( !entry.getValue().equals( ConcoctionDatabase.refreshInventory.get( entry.getKey() ) ) )
 			{
-				if ( item.wasPossible() )
+				changedItems.add( entry.getKey() );
+			}
+		}
+
+		for ( Integer itemId : ConcoctionDatabase.refreshInventory.keySet() )
+		{
+			if ( !counts.containsKey( itemId ) )
+			{
+				changedItems.add( itemId );
+			}
+		}
+
+		for ( Integer itemId : changedItems )
+		{
+			if ( ConcoctionDatabase.refreshGlobalItems.contains( itemId ) )
+			{
+				return false;
+			}
+		}
+
+		boolean useNPCStores = InventoryManager.canUseNPCStores();
+		boolean useCoinmasters = InventoryManager.canUseCoinmasters();
+
+		ConcoctionDatabase.cachePermitted( availableIngredients );
+
+		String signature = ConcoctionDatabase.getRefreshSignature( useNPCStores, useCoinmasters );
+		if ( !signature.equals( ConcoctionDatabase.refreshSignature ) )
+		{
+			return false;
+		}
+
+		// Walk the known uses of each changed item to find every
+		// concoction whose ingredients include it, however deeply.
+
+		List<Concoction> affected = new ArrayList<Concoction>();
+		Set<Integer> seen = new HashSet<Integer>( changedItems );
+		Stack<Integer> pending = new Stack<Integer>();
+		pending.addAll( changedItems );
+
+		while ( !pending.isEmpty() )
+		{
+			int itemId = pending.pop().intValue();
+
+			Concoction item = ConcoctionPool.get( itemId );
+			if ( item != null && item.concoction != null && !item.speakeasy )
+			{
+				affected.add( item );
+			}
+
+			for ( AdventureResult use : ConcoctionDatabase.getKnownUses( itemId ) )
+			{
+				Integer useId = IntegerPool.get( use.getItemId() );
+				if ( seen.add( useId ) )
 				{
-					ConcoctionDatabase.creatableList.remove( instance );
-					item.setPossible( false );
-					changeDetected = true;
+					pending.push( useId );
 				}
 			}
-			else if ( !item.wasPossible() )
+		}
+
+		// Items which are not really items depend on meat and
+		// preferences rather than inventory, and there are few of them.
+
+		affected.addAll( ConcoctionDatabase.refreshNonItems );
+
+		for ( Concoction item : affected )
+		{
+			ConcoctionDatabase.initializeConcoction( item, availableIngredients, useNPCStores, useCoinmasters );
+		}
+
+		// Meat paste and stacks were reset along with the mixing
+		// methods, and must be calculated again whether or not
+		// anything uses them.
+
+		ConcoctionDatabase.calculateBasicItems( availableIngredients );
+
+		int[] basicItems = { ItemPool.MEAT_PASTE, ItemPool.MEAT_STACK, ItemPool.DENSE_STACK };
+		for ( int itemId : basicItems )
+		{
+			Concoction item = ConcoctionPool.get( itemId );
+			if ( item != null && !seen.contains( IntegerPool.get( itemId ) ) )
 			{
-				ConcoctionDatabase.creatableList.add( instance );
-				item.setPossible( true );
-				changeDetected = true;
+				affected.add( item );
 			}
 		}
 
-		if ( ConcoctionDatabase.recalculateAdventureRange )
+		for ( Concoction item : affected )
 		{
-			ConsumablesDatabase.calculateAdventureRanges();
-			ConcoctionDatabase.recalculateAdventureRange = false;
+			item.calculate2();
+			item.calculate3();
+		}
 
-			ConcoctionDatabase.queuedFood.touch();
-			ConcoctionDatabase.queuedBooze.touch();
-			ConcoctionDatabase.queuedSpleen.touch();
+		boolean changeDetected = false;
+
+		for ( Concoction item : affected )
+		{
+			changeDetected |= ConcoctionDatabase.updateCreatable( item, false );
 		}
 
+		// The usable list is not sorted by quantity, and nothing else
+		// it is sorted by has changed.
+
 		ConcoctionDatabase.creatableList.sort();
-		ConcoctionDatabase.usableList.sort();
 
-		// Now tell the GUI about the changes
 		ConcoctionDatabase.creatableList.updateFilter( changeDetected );
 		ConcoctionDatabase.usableList.updateFilter( changeDetected );
+
+		ConcoctionDatabase.refreshInventory.clear();
+		ConcoctionDatabase.refreshInventory.putAll( counts );
+		return true;
 	}
 
 	/**
@@ -2907,36 +3263,31 @@ public class ConcoctionDatabase
 
 		for ( int i = 0; i < ingredients.length; ++i )
 		{
-			switch ( ingredients[ i ].getItemId() )
+			int[] group = ConcoctionDatabase.findImplicitIngredient( ingredients[ i ].getItemId() );
+			if ( group != null && group.length == 2 )
 			{
-			case ItemPool.SCHLITZ:
-			case ItemPool.WILLER:
-				ingredients[ i ] = ConcoctionDatabase.getBetterIngredient(
-					ItemPool.SCHLITZ, ItemPool.WILLER, availableIngredients );
-				break;
-
-			case ItemPool.KETCHUP:
-			case ItemPool.CATSUP:
 				ingredients[ i ] = ConcoctionDatabase.getBetterIngredient(
-					ItemPool.KETCHUP, ItemPool.CATSUP, availableIngredients );
-				break;
-
-			case ItemPool.DYSPEPSI_COLA:
-			case ItemPool.CLOACA_COLA:
-				ingredients[ i ] = ConcoctionDatabase.getBetterIngredient(
-					ItemPool.DYSPEPSI_COLA, ItemPool.CLOACA_COLA, availableIngredients );
-				break;
-
-			case ItemPool.TITANIUM_UMBRELLA:
-			case ItemPool.GOATSKIN_UMBRELLA:
-				ingredients[ i ] = ConcoctionDatabase.getBetterIngredient(
-					ItemPool.TITANIUM_UMBRELLA, ItemPool.GOATSKIN_UMBRELLA, availableIngredients );
-				break;
+					group[ 0 ], group[ 1 ], availableIngredients );
 			}
 		}
 		return ingredients;
 	}
 
+	private static final int[] findImplicitIngredient( final int itemId )
+	{
+		for ( int[] group : ConcoctionDatabase.IMPLICIT_INGREDIENTS )
+		{
+			for ( int member : group )
+			{
+				if ( member == itemId )
+				{
+					return group;
+				}
+			}
+		}
+		return null;
+	}
+
 	public static final int getYield( final int itemId )
 	{
 		Concoction item = ConcoctionPool.get( itemId );
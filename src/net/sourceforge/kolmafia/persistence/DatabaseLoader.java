@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.sourceforge.kolmafia.RequestLogger;
+import net.sourceforge.kolmafia.StaticEntity;
+
+/**
+ * Loads the persistence databases at startup on a small pool of threads.
+ * Each database still loads in its own static initializer; this class
+ * only decides when those run.  A loader starts once everything it
+ * depends on has finished, so loaders with no dependency between them
+ * run side by side.
+ *
+ * The dependencies are not just a matter of speed.  Two threads that
+ * initialize classes which refer to each other will deadlock, so every
+ * database whose initializer touches another listed database must name
+ * it.  ItemDatabase pulls in the whole cycle of ConsumablesDatabase,
+ * EquipmentDatabase, FamiliarDatabase, KoLCharacter and Modifiers, and
+ * is therefore loaded as one unit.  For the same reason, the main thread
+ * must call <code>waitForLoading</code> before it touches any of them.
+ *
+ * Databases that are rarely needed (bounties, zap groups, pokefam battle
+ * data, pulverization results) are not listed and load on first use.
+ */
+
+public class DatabaseLoader
+{
+	private static final Loader[] LOADERS =
+	{
+		new Loader( "EffectDatabase" ),
+		new Loader( "HolidayDatabase" ),
+		new Loader( "CandyDatabase" ),
+		new Loader( "RestoresDatabase" ),
+		new Loader( "SkillDatabase", "EffectDatabase" ),
+		new Loader( "ItemDatabase", "EffectDatabase", "HolidayDatabase", "CandyDatabase" ),
+		new Loader( "MonsterDatabase", "ItemDatabase" ),
+		new Loader( "AdventureDatabase", "MonsterDatabase" ),
+		new Loader( "ConcoctionDatabase", "ItemDatabase", "SkillDatabase" ),
+		new Loader( "NPCStoreDatabase", "ItemDatabase" ),
+		new Loader( "CoinmastersDatabase", "ItemDatabase" ),
+		new Loader( "QuestDatabase", "ItemDatabase" ),
+	};
+
+	private static final Map<String, Loader> LOADERS_BY_NAME = new HashMap<String, Loader>();
+
+	static
+	{
+		for ( Loader loader : DatabaseLoader.LOADERS )
+		{
+			DatabaseLoader.LOADERS_BY_NAME.put( loader.name, loader );
+		}
+	}
+
+	private static ExecutorService executor = null;
+	private static long startTime = 0L;
+	private static long finishTime = 0L;
+
+	/**
+	 * Starts loading every database in the background.  Calling this more
+	 * than once has no further effect.
+	 */
+
+	public static final synchronized void startLoading()
+	{
+		if ( DatabaseLoader.executor != null )
+		{
+			return;
+		}
+
+		int poolSize = Math.max( 2, Math.min( 4, Runtime.getRuntime().availableProcessors() ) );
+		DatabaseLoader.executor = Executors.newFixedThreadPool( poolSize, new LoaderThreadFactory() );
+		DatabaseLoader.startTime = System.nanoTime();
+
+		// Loaders are listed after their dependencies and the pool
+		// takes them in order, so a loader that is waiting always
+		// waits on one which is already running.
+
+		for ( Loader loader : DatabaseLoader.LOADERS )
+		{
+			DatabaseLoader.executor.submit( loader );
+		}
+
+		DatabaseLoader.executor.shutdown();
+	}
+
+	/**
+	 * Waits until every database started by <code>startLoading</code> has
+	 * finished.  Returns immediately if loading was never started.
+	 */
+
+	public static final void waitForLoading()
+	{
+		synchronized ( DatabaseLoader.class )
+		{
+			if ( DatabaseLoader.executor == null )
+			{
+				return;
+			}
+		}
+
+		for ( Loader loader : DatabaseLoader.LOADERS )
+		{
+			loader.await();
+		}
+
+		synchronized ( DatabaseLoader.class )
+		{
+			if ( DatabaseLoader.finishTime == 0L )
+			{
+				DatabaseLoader.finishTime = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Prints how long each database took to load, when it started relative
+	 * to the start of loading, and which thread loaded it.
+	 */
+
+	public static final void printTimings()
+	{
+		if ( DatabaseLoader.executor == null )
+		{
+			RequestLogger.printLine( "Databases were not preloaded." );
+			return;
+		}
+
+		RequestLogger.printLine( "Database loading (start ms / load ms / thread):" );
+
+		for ( Loader loader : DatabaseLoader.LOADERS )
+		{
+			if ( loader.endTime == 0L )
+			{
+				RequestLogger.printLine( loader.name + ": still loading" );
+				continue;
+			}
+
+			RequestLogger.printLine( loader.name + ": " +
+				DatabaseLoader.millis( loader.beginTime - DatabaseLoader.startTime ) + " / " +
+				DatabaseLoader.millis( loader.endTime - loader.beginTime ) + " / " +
+				loader.threadName );
+		}
+
+		if ( DatabaseLoader.finishTime != 0L )
+		{
+			RequestLogger.printLine( "All databases loaded after " +
+				DatabaseLoader.millis( DatabaseLoader.finishTime - DatabaseLoader.startTime ) + " ms" );
+		}
+	}
+
+	private static final long millis( final long nanos )
+	{
+		return nanos / 1000000L;
+	}
+
+	private static class Loader
+		implements Runnable
+	{
+		private final String name;
+		private final String[] dependencies;
+		private final CountDownLatch done = new CountDownLatch( 1 );
+
+		private volatile long beginTime = 0L;
+		private volatile long endTime = 0L;
+		private volatile String threadName = null;
+
+		public Loader( final String name, final String... dependencies )
+		{
+			this.name = name;
+			this.dependencies = dependencies;
+		}
+
+		public void run()
+		{
+			try
+			{
+				for ( String dependency : this.dependencies )
+				{
+					DatabaseLoader.LOADERS_BY_NAME.get( dependency ).await();
+				}
+
+				this.threadName = Thread.currentThread().getName();
+				this.beginTime = System.nanoTime();
+				Class.forName( "net.sourceforge.kolmafia.persistence." + this.name );
+			}
+			catch ( Throwable e )
+			{
+				StaticEntity.printStackTrace( e, "Unable to load " + this.name );
+			}
+			finally
+			{
+				this.endTime = System.nanoTime();
+				this.done.countDown();
+			}
+		}
+
+		public void await()
+		{
+			boolean interrupted = false;
+
+			while ( true )
+			{
+				try
+				{
+					this.done.await();
+					break;
+				}
+				catch ( InterruptedException e )
+				{
+					interrupted = true;
+				}
+			}
+
+			if ( interrupted )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static class LoaderThreadFactory
+		implements ThreadFactory
+	{
+		private int count = 0;
+
+		public synchronized Thread newThread( final Runnable r )
+		{
+			Thread thread = new Thread( r, "DatabaseLoader-" + ( ++this.count ) );
+			thread.setDaemon( true );
+			return thread;
+		}
+	}
+}
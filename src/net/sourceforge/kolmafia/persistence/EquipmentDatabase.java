@@ -87,6 +87,7 @@ public class EquipmentDatabase
 	public static final SpecialOutfitArray weirdOutfits = new SpecialOutfitArray();
 
 	private static final IntegerArray pulverize = new IntegerArray();
+	private static volatile boolean pulverizationLoaded = false;
 	// Values in pulverize are one of:
 	//	0 - not initialized yet
 	//	positive - ID of special-case pulverize result (worthless powder, epic wad, etc.)
@@ -259,7 +260,23 @@ public class EquipmentDatabase
 			StaticEntity.printStackTrace( e );
 		}
 
-		reader = FileUtilities.getVersionedReader( "pulverize.txt", KoLConstants.PULVERIZE_VERSION );
+		// pulverize.txt is only needed by the Pulverize feature and
+		// is read on the first call to getPulverization.
+
+		EquipmentDatabase.pulverizationLoaded = false;
+	}
+
+	private static final synchronized void loadPulverization()
+	{
+		if ( EquipmentDatabase.pulverizationLoaded )
+		{
+			return;
+		}
+
+		BufferedReader reader = FileUtilities.getVersionedReader( "pulverize.txt", KoLConstants.PULVERIZE_VERSION );
+
+		String[] data;
+		int itemId;
 
 		while ( ( data = FileUtilities.readData( reader ) ) != null )
 		{
@@ -296,6 +313,8 @@ public class EquipmentDatabase
 
 			StaticEntity.printStackTrace( e );
 		}
+
+		EquipmentDatabase.pulverizationLoaded = true;
 	}
 
 	public static boolean isEquipment( final int type )
@@ -836,6 +855,10 @@ public class EquipmentDatabase
 		{
 			return -1;
 		}
+		if ( !EquipmentDatabase.pulverizationLoaded )
+		{
+			EquipmentDatabase.loadPulverization();
+		}
 		int pulver = EquipmentDatabase.pulverize.get( id );
 		if ( pulver == 0 )
 		{
@@ -116,6 +116,7 @@ public class FamiliarDatabase
 
 	private static final Map<Integer,PokefamData> pokefamById = new TreeMap<Integer,PokefamData>();
 	private static final Map<String,PokefamData> pokefamByName = new TreeMap<String,PokefamData>();
+	private static volatile boolean pokefamLoaded = false;
 
 	static
 	{
@@ -241,9 +242,15 @@ public class FamiliarDatabase
 		}
 	}
 
-	static
+	// fambattle.txt is only needed in Pokefam paths, so it is read the
+	// first time anything asks for PokefamData.
+
+	private static final synchronized void loadPokefamData()
 	{
-		// Do the same thing for PokefamData from fambattle.txt
+		if ( FamiliarDatabase.pokefamLoaded )
+		{
+			return;
+		}
 
 		BufferedReader reader = FileUtilities.getVersionedReader( "fambattle.txt", KoLConstants.FAMBATTLE_VERSION );
 
@@ -300,6 +307,8 @@ public class FamiliarDatabase
 
 			StaticEntity.printStackTrace( e );
 		}
+
+		FamiliarDatabase.pokefamLoaded = true;
 	}
 
 	/**
@@ -848,11 +857,19 @@ public class FamiliarDatabase
 
 	public static final PokefamData getPokeDataByName( final String name )
 	{
+		if ( !FamiliarDatabase.pokefamLoaded )
+		{
+			FamiliarDatabase.loadPokefamData();
+		}
 		return FamiliarDatabase.pokefamByName.get( StringUtilities.getCanonicalName( name ) );
 	}
 
 	public static final PokefamData getPokeDataById( final int id )
 	{
+		if ( !FamiliarDatabase.pokefamLoaded )
+		{
+			FamiliarDatabase.loadPokefamData();
+		}
 		return FamiliarDatabase.pokefamById.get( id );
 	}
 
@@ -46,7 +46,6 @@ import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 
 import net.sourceforge.kolmafia.KoLConstants;
@@ -55,12 +54,18 @@ import net.sourceforge.kolmafia.RequestThread;
 import net.sourceforge.kolmafia.StaticEntity;
 
 import net.sourceforge.kolmafia.utilities.FileUtilities;
+import net.sourceforge.kolmafia.utilities.JournalRecords;
 import net.sourceforge.kolmafia.utilities.LogStream;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public class MallPriceDatabase
 {
-	private static final PriceArray prices = new PriceArray();
+	// Indexed by item id.  A price of 0 means there is no price data.
+	// The arrays are replaced, never shrunk, when they need to grow.
+	private static volatile int[] priceById = new int[ 0 ];
+	private static volatile long[] timestampById = new long[ 0 ];
+	private static int maxId = 0;
+
 	private static final HashSet<String> updated = new HashSet<String>();
 	private static final HashSet<String> submitted = new HashSet<String>();
 	private static int modCount = 0;
@@ -71,13 +76,24 @@ public class MallPriceDatabase
 	{
 		updatePrices( "mallprices.txt", false );
 		updatePrices( "mallprices.txt", true );
+
+		// Prices recorded since mallprices.txt was last written
+		if ( MallPriceJournal.JOURNAL_FILE.exists() )
+		{
+			BufferedReader reader = FileUtilities.getReader( MallPriceJournal.JOURNAL_FILE );
+			MallPriceJournal.setJournalLines( MallPriceDatabase.updatePrices( reader, true ) );
+		}
+
 		MallPriceDatabase.modCount = 0;
 	}
 
 	private static int updatePrices( String filename, boolean allowOverride )
 	{
-		BufferedReader reader = FileUtilities.getReader( filename, allowOverride );
+		return MallPriceDatabase.updatePrices( FileUtilities.getReader( filename, allowOverride ), false );
+	}
 
+	private static int updatePrices( BufferedReader reader, boolean journal )
+	{
 		String line = FileUtilities.readLine( reader );
 		if ( line == null )
 		{
@@ -95,7 +111,7 @@ public class MallPriceDatabase
 		int count = 0;
 		long now = System.currentTimeMillis() / 1000L;
 
-		while ( ( data = FileUtilities.readData( reader ) ) != null )
+		while ( ( data = MallPriceDatabase.readData( reader, journal ) ) != null )
 		{
 			if ( data.length < 3 )
 			{
@@ -112,17 +128,13 @@ public class MallPriceDatabase
 			}
 
 			if ( !ItemDatabase.isTradeable( id ) ) continue;
-			Price p = MallPriceDatabase.prices.get( id );
-			if ( p == null )
-			{
-				MallPriceDatabase.prices.set( id, new Price( price, timestamp ) );
-				++count;
-				++MallPriceDatabase.modCount;
-			}
-			else if ( timestamp > p.timestamp )
+
+			// Later journal entries were recorded later, even
+			// within the same second.
+			long current = MallPriceDatabase.getTimestamp( id );
+			if ( timestamp > current || ( journal && timestamp == current ) )
 			{
-				p.price = price;
-				p.timestamp = timestamp;
+				MallPriceDatabase.setPrice( id, price, timestamp );
 				++count;
 				++MallPriceDatabase.modCount;
 			}
@@ -139,6 +151,57 @@ public class MallPriceDatabase
 		return count;
 	}
 
+	private static String[] readData( final BufferedReader reader, final boolean journal )
+	{
+		if ( !journal )
+		{
+			return FileUtilities.readData( reader );
+		}
+
+		// Journal records are sealed, so that one torn by a crash
+		// can be skipped whole.
+		String line = FileUtilities.readLine( reader );
+		if ( line == null )
+		{
+			return null;
+		}
+
+		String record = JournalRecords.unseal( line );
+		return record == null ? new String[ 0 ] : record.split( "\t", -1 );
+	}
+
+	private static synchronized void setPrice( final int itemId, final int price, final long timestamp )
+	{
+		int[] prices = MallPriceDatabase.priceById;
+		long[] timestamps = MallPriceDatabase.timestampById;
+
+		if ( itemId >= prices.length )
+		{
+			int length = Math.max( itemId + 1, prices.length * 2 );
+
+			int[] newPrices = new int[ length ];
+			System.arraycopy( prices, 0, newPrices, 0, prices.length );
+			long[] newTimestamps = new long[ length ];
+			System.arraycopy( timestamps, 0, newTimestamps, 0, timestamps.length );
+
+			prices = newPrices;
+			timestamps = newTimestamps;
+		}
+
+		prices[ itemId ] = price;
+		timestamps[ itemId ] = timestamp;
+
+		MallPriceDatabase.timestampById = timestamps;
+		MallPriceDatabase.priceById = prices;
+		MallPriceDatabase.maxId = Math.max( MallPriceDatabase.maxId, itemId );
+	}
+
+	private static long getTimestamp( final int itemId )
+	{
+		long[] timestamps = MallPriceDatabase.timestampById;
+		return itemId >= 0 && itemId < timestamps.length ? timestamps[ itemId ] : 0L;
+	}
+
 	public static void updatePrices( String filename )
 	{
 		if ( filename.length() == 0 )
@@ -196,39 +259,79 @@ public class MallPriceDatabase
 	public static void recordPrice( int itemId, int price, boolean deferred )
 	{
 		long timestamp = System.currentTimeMillis() / 1000L;
-		Price p = MallPriceDatabase.prices.get( itemId );
-		if ( p == null )
-		{
-			MallPriceDatabase.prices.set( itemId, new Price( price, timestamp ) );
-		}
-		else
+		synchronized ( MallPriceDatabase.class )
 		{
-			p.price = price;
-			p.timestamp = timestamp;
-		}
-		++MallPriceDatabase.modCount;
-		if ( !deferred )
-		{
-			MallPriceDatabase.writePrices();
+			MallPriceDatabase.setPrice( itemId, price, timestamp );
+			++MallPriceDatabase.modCount;
 		}
+
+		// The price is appended to the journal in the background;
+		// deferred prices wait for the next flushPrices.
+		MallPriceJournal.record( itemId, deferred );
+	}
+
+	/**
+	 * Appends every price recorded so far to the journal.
+	 */
+
+	public static void flushPrices()
+	{
+		MallPriceJournal.flush();
 	}
 
+	/**
+	 * Writes every known price to mallprices.txt and discards the journal.
+	 */
+
 	public static void writePrices()
+	{
+		MallPriceJournal.compact();
+	}
+
+	static void writeSnapshot()
 	{
 		File output = new File( KoLConstants.DATA_LOCATION, "mallprices.txt" );
 		PrintStream writer = LogStream.openStream( output, true );
 		writer.println( KoLConstants.MALLPRICES_VERSION );
 
-		for ( int i = 1; i < MallPriceDatabase.prices.size(); ++i )
+		StringBuilder buffer = new StringBuilder();
+		int maxId = MallPriceDatabase.maxId;
+		for ( int i = 1; i <= maxId; ++i )
 		{
-			Price p = MallPriceDatabase.prices.get( i );
-			if ( p == null ) continue;
-			writer.println( i + "\t" + p.timestamp + "\t" + p.price );
+			buffer.setLength( 0 );
+			if ( MallPriceDatabase.appendPrice( buffer, i ) )
+			{
+				buffer.append( KoLConstants.LINE_BREAK );
+				writer.print( buffer );
+			}
 		}
 
 		writer.close();
 	}
 
+	/**
+	 * Appends the price file line for the given item, without its line
+	 * break, if it has a price.
+	 *
+	 * @return <code>true</code> if the item has a price
+	 */
+
+	static synchronized boolean appendPrice( final StringBuilder buffer, final int itemId )
+	{
+		int[] prices = MallPriceDatabase.priceById;
+		if ( itemId >= prices.length || prices[ itemId ] == 0 )
+		{
+			return false;
+		}
+
+		buffer.append( itemId );
+		buffer.append( '\t' );
+		buffer.append( MallPriceDatabase.timestampById[ itemId ] );
+		buffer.append( '\t' );
+		buffer.append( prices[ itemId ] );
+		return true;
+	}
+
 	public static void submitPrices( String url )
 	{
 		if ( url.length() == 0 )
@@ -248,6 +351,9 @@ public class MallPriceDatabase
 			return;
 		}
 
+		// Upload everything recorded so far, not just the last snapshot
+		MallPriceDatabase.writePrices();
+
 		try
 		{
 
@@ -307,58 +413,16 @@ public class MallPriceDatabase
 
 	public static int getPrice( int itemId )
 	{
-		Price p = MallPriceDatabase.prices.get( itemId );
-		return p == null ? 0 : p.price;
+		int[] prices = MallPriceDatabase.priceById;
+		return itemId >= 0 && itemId < prices.length ? prices[ itemId ] : 0;
 	}
 
 	// Return age of price data, in fractional days
 	public static float getAge( int itemId )
 	{
-		Price p = MallPriceDatabase.prices.get( itemId );
+		long timestamp = MallPriceDatabase.getTimestamp( itemId );
 		long now = System.currentTimeMillis() / 1000L;
-		return p == null ? Float.POSITIVE_INFINITY :
-			(now - p.timestamp) / 86400.0f;
-	}
-
-	private static class Price
-	{
-		int price;
-		long timestamp;
-
-		public Price( int price, long timestamp )
-		{
-			this.price = price;
-			this.timestamp = timestamp;
-		}
-	}
-
-	/**
-	 * Internal class which functions exactly an array of Prices, except it uses "sets" and "gets" like a list.
-	 * This could be done with generics (Java 1.5) but is done like this so that we get backwards compatibility.
-	 */
-
-	public static class PriceArray
-	{
-		private final ArrayList<Price> internalList = new ArrayList<Price>();
-
-		public Price get( final int index )
-		{
-			return index < 0 || index >= this.internalList.size() ? null : (Price) this.internalList.get( index );
-		}
-
-		public void set( final int index, final Price value )
-		{
-			for ( int i = this.internalList.size(); i <= index; ++i )
-			{
-				this.internalList.add( null );
-			}
-
-			this.internalList.set( index, value );
-		}
-
-		public int size()
-		{
-			return this.internalList.size();
-		}
+		return timestamp == 0L ? Float.POSITIVE_INFINITY :
+			(now - timestamp) / 86400.0f;
 	}
 }
@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+import net.sourceforge.kolmafia.KoLConstants;
+
+import net.sourceforge.kolmafia.objectpool.IntegerPool;
+
+import net.sourceforge.kolmafia.utilities.JournalRecords;
+
+/**
+ * An append-only log of mall prices recorded since mallprices.txt was
+ * last written in full.  The journal uses the same lines as the price
+ * file itself, sealed by JournalRecords so that a line torn by a crash
+ * can be skipped, so loading it is just one more merge of newer prices.
+ * Recorded prices are queued and appended in batches by a background
+ * thread; once the journal grows long enough, MallPriceDatabase writes
+ * a fresh snapshot and the journal is discarded.
+ */
+
+public class MallPriceJournal
+{
+	private static final long FLUSH_INTERVAL = 1000;
+	private static final int COMPACT_THRESHOLD = 1000;
+
+	static final File JOURNAL_FILE = new File( KoLConstants.DATA_LOCATION, "mallprices.journal" );
+
+	// Item ids whose prices have not yet been appended, in the order
+	// they were first recorded.  Recording an id again before the next
+	// flush only updates the price that will be written.
+	private static final LinkedHashSet<Integer> pending = new LinkedHashSet<Integer>();
+
+	// Held while the journal file itself is being written
+	private static final Object fileLock = new Object();
+	private static int journalLines = 0;
+
+	private static Thread flusher = null;
+
+	static void record( final int itemId, final boolean deferred )
+	{
+		synchronized ( MallPriceJournal.pending )
+		{
+			MallPriceJournal.pending.add( IntegerPool.get( itemId ) );
+		}
+
+		if ( !deferred )
+		{
+			MallPriceJournal.startFlusher();
+		}
+	}
+
+	static void setJournalLines( final int lines )
+	{
+		synchronized ( MallPriceJournal.fileLock )
+		{
+			MallPriceJournal.journalLines = lines;
+		}
+	}
+
+	/**
+	 * Appends all queued prices to the journal, writing a new snapshot
+	 * instead if the journal has grown too long.  Does nothing, and does
+	 * not load the price database, if nothing has been recorded.
+	 */
+
+	public static void flush()
+	{
+		synchronized ( MallPriceJournal.pending )
+		{
+			if ( MallPriceJournal.pending.isEmpty() )
+			{
+				return;
+			}
+		}
+
+		boolean compact;
+
+		synchronized ( MallPriceJournal.fileLock )
+		{
+			MallPriceJournal.appendPending();
+			compact = MallPriceJournal.journalLines >= MallPriceJournal.COMPACT_THRESHOLD;
+		}
+
+		if ( compact )
+		{
+			MallPriceDatabase.writePrices();
+		}
+	}
+
+	/**
+	 * Writes the full snapshot and discards the journal, which the
+	 * snapshot now supersedes.
+	 */
+
+	static void compact()
+	{
+		synchronized ( MallPriceJournal.fileLock )
+		{
+			// Bring the journal up to date first.  Replaying it over
+			// the new snapshot is harmless if we die before it is
+			// deleted, since it only holds the same prices.
+			MallPriceJournal.appendPending();
+
+			MallPriceDatabase.writeSnapshot();
+
+			if ( MallPriceJournal.JOURNAL_FILE.exists() && !MallPriceJournal.JOURNAL_FILE.delete() )
+			{
+				System.out.println( "Unable to delete " + MallPriceJournal.JOURNAL_FILE.getName() );
+			}
+
+			MallPriceJournal.journalLines = 0;
+		}
+	}
+
+	private static void appendPending()
+	{
+		int[] ids;
+		synchronized ( MallPriceJournal.pending )
+		{
+			if ( MallPriceJournal.pending.isEmpty() )
+			{
+				return;
+			}
+
+			ids = new int[ MallPriceJournal.pending.size() ];
+			Iterator<Integer> it = MallPriceJournal.pending.iterator();
+			for ( int i = 0; i < ids.length; ++i )
+			{
+				ids[ i ] = it.next().intValue();
+			}
+			MallPriceJournal.pending.clear();
+		}
+
+		StringBuilder buffer = new StringBuilder();
+
+		if ( !MallPriceJournal.JOURNAL_FILE.exists() )
+		{
+			buffer.append( KoLConstants.MALLPRICES_VERSION );
+			buffer.append( KoLConstants.LINE_BREAK );
+		}
+		else if ( !JournalRecords.endsCleanly( MallPriceJournal.JOURNAL_FILE ) )
+		{
+			buffer.append( KoLConstants.LINE_BREAK );
+		}
+
+		StringBuilder record = new StringBuilder();
+		for ( int i = 0; i < ids.length; ++i )
+		{
+			record.setLength( 0 );
+			if ( MallPriceDatabase.appendPrice( record, ids[ i ] ) )
+			{
+				buffer.append( JournalRecords.seal( record.toString() ) );
+				buffer.append( KoLConstants.LINE_BREAK );
+			}
+		}
+
+		File parent = MallPriceJournal.JOURNAL_FILE.getParentFile();
+		if ( parent != null && !parent.exists() )
+		{
+			parent.mkdirs();
+		}
+
+		OutputStream ostream = null;
+		try
+		{
+			ostream = new FileOutputStream( MallPriceJournal.JOURNAL_FILE, true );
+			ostream.write( buffer.toString().getBytes( "UTF-8" ) );
+		}
+		catch ( IOException e )
+		{
+			System.out.println( e.getMessage() + " trying to append to mall price journal." );
+		}
+		finally
+		{
+			if ( ostream != null )
+			{
+				try
+				{
+					ostream.close();
+				}
+				catch ( IOException e )
+				{
+				}
+			}
+		}
+
+		MallPriceJournal.journalLines += ids.length;
+	}
+
+	private static synchronized void startFlusher()
+	{
+		if ( MallPriceJournal.flusher != null )
+		{
+			return;
+		}
+
+		MallPriceJournal.flusher = new Thread( new Flusher(), "MallPriceJournal" );
+		MallPriceJournal.flusher.setDaemon( true );
+		MallPriceJournal.flusher.start();
+	}
+
+	private static class Flusher
+		implements Runnable
+	{
+		public void run()
+		{
+			while ( true )
+			{
+				try
+				{
+					Thread.sleep( MallPriceJournal.FLUSH_INTERVAL );
+				}
+				catch ( InterruptedException e )
+				{
+					return;
+				}
+
+				MallPriceJournal.flush();
+			}
+		}
+	}
+}
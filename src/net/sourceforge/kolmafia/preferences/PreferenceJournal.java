@@ -0,0 +1,389 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.preferences;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.kolmafia.KoLConstants;
+
+import net.sourceforge.kolmafia.utilities.JournalRecords;
+
+/**
+ * An append-only log of changes made to a preferences file since it was
+ * last written in full.  Changes are queued on the calling thread and
+ * appended in batches by a background thread; once the journal grows
+ * long enough, it is folded back into the snapshot and truncated.
+ * Loading a snapshot replays any journal left behind by a crash.
+ */
+
+class PreferenceJournal
+{
+	private static final long FLUSH_INTERVAL = 1000;
+	private static final int COMPACT_THRESHOLD = 1000;
+
+	// Journal records are property lines tagged with what happened,
+	// sealed by JournalRecords so that a torn record can be skipped
+	private static final char SET = '+';
+	private static final char REMOVE = '-';
+
+	private static final List<PreferenceJournal> journals = new ArrayList<PreferenceJournal>();
+	private static Thread flusher = null;
+
+	private static final AtomicInteger coalescedWrites = new AtomicInteger();
+
+	private final File snapshot;
+	private final File journal;
+	private final Map<String, Object> data;
+
+	// Changes not yet appended to the journal, in the order made.
+	// A null value means the property was removed.
+	private final LinkedHashMap<String, String> pending = new LinkedHashMap<String, String>();
+
+	// Held while the journal file itself is being written
+	private final Object fileLock = new Object();
+	private int journalLines = 0;
+
+	PreferenceJournal( final File snapshot, final Map<String, Object> data )
+	{
+		this.snapshot = snapshot;
+		this.journal = PreferenceJournal.journalFile( snapshot );
+		this.data = data;
+	}
+
+	private static File journalFile( final File snapshot )
+	{
+		return new File( snapshot.getParentFile(), snapshot.getName() + ".journal" );
+	}
+
+	static int getCoalescedWrites()
+	{
+		return PreferenceJournal.coalescedWrites.get();
+	}
+
+	/**
+	 * Applies the journal belonging to the given snapshot file, if any,
+	 * to properties freshly loaded from that snapshot.
+	 *
+	 * @return <code>true</code> if a journal was found
+	 */
+
+	static boolean replay( final File snapshot, final Properties p )
+	{
+		File file = PreferenceJournal.journalFile( snapshot );
+		if ( !file.exists() )
+		{
+			return false;
+		}
+
+		BufferedReader reader = null;
+		try
+		{
+			reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "ISO-8859-1" ) );
+
+			String line;
+			while ( ( line = reader.readLine() ) != null )
+			{
+				// A record torn by a crash is skipped whole
+				line = JournalRecords.unseal( line );
+				if ( line == null || line.length() < 2 )
+				{
+					continue;
+				}
+
+				// Properties handles the unescaping for us
+				Properties change = new Properties();
+				change.load( new StringReader( line.substring( 1 ) ) );
+
+				for ( Entry<Object, Object> entry : change.entrySet() )
+				{
+					if ( line.charAt( 0 ) == PreferenceJournal.REMOVE )
+					{
+						p.remove( entry.getKey() );
+					}
+					else if ( line.charAt( 0 ) == PreferenceJournal.SET )
+					{
+						p.put( entry.getKey(), entry.getValue() );
+					}
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			// The records read before the error have been applied
+			System.out.println( e.getMessage() + " trying to replay preferences journal." );
+		}
+		finally
+		{
+			if ( reader != null )
+			{
+				try
+				{
+					reader.close();
+				}
+				catch ( IOException e )
+				{
+				}
+			}
+		}
+
+		return true;
+	}
+
+	void set( final String name, final String value )
+	{
+		this.record( name, value );
+	}
+
+	void remove( final String name )
+	{
+		this.record( name, null );
+	}
+
+	private void record( final String name, final String value )
+	{
+		synchronized ( this )
+		{
+			// Re-inserting keeps the journal in the order the
+			// latest changes were made
+			if ( this.pending.containsKey( name ) )
+			{
+				this.pending.remove( name );
+				PreferenceJournal.coalescedWrites.incrementAndGet();
+			}
+			this.pending.put( name, value );
+		}
+
+		PreferenceJournal.startFlusher();
+	}
+
+	/**
+	 * Appends all queued changes to the journal file, compacting it into
+	 * the snapshot if it has grown too long.
+	 */
+
+	void flush()
+	{
+		boolean compact;
+
+		synchronized ( this.fileLock )
+		{
+			this.appendPending();
+			compact = this.journalLines >= PreferenceJournal.COMPACT_THRESHOLD;
+		}
+
+		// Compaction takes the data lock, so it must not be started
+		// while holding the file lock.
+		if ( compact )
+		{
+			this.compact();
+		}
+	}
+
+	/**
+	 * Writes the complete snapshot and discards the journal, which the
+	 * snapshot now supersedes.
+	 */
+
+	void compact()
+	{
+		// Lock order is data, file, queue - the same order used by
+		// setters, which record changes while holding the data lock.
+		synchronized ( this.data )
+		{
+			synchronized ( this.fileLock )
+			{
+				// Bring the journal up to date first, so that
+				// replaying it over the new snapshot is harmless
+				// if we die before it is deleted.
+				this.appendPending();
+
+				Preferences.saveToFile( this.snapshot, this.data );
+
+				if ( this.journal.exists() && !this.journal.delete() )
+				{
+					System.out.println( "Unable to delete " + this.journal.getName() );
+				}
+
+				this.journalLines = 0;
+			}
+		}
+	}
+
+	private void appendPending()
+	{
+		LinkedHashMap<String, String> changes;
+		synchronized ( this )
+		{
+			if ( this.pending.isEmpty() )
+			{
+				return;
+			}
+
+			changes = new LinkedHashMap<String, String>( this.pending );
+			this.pending.clear();
+		}
+
+		StringBuffer buffer = new StringBuffer();
+		if ( !JournalRecords.endsCleanly( this.journal ) )
+		{
+			buffer.append( KoLConstants.LINE_BREAK );
+		}
+		for ( Entry<String, String> entry : changes.entrySet() )
+		{
+			String value = entry.getValue();
+			String record = ( value == null ? PreferenceJournal.REMOVE : PreferenceJournal.SET ) +
+				Preferences.encodeProperty( entry.getKey(), value );
+			buffer.append( JournalRecords.seal( record ) );
+			buffer.append( KoLConstants.LINE_BREAK );
+		}
+
+		File parent = this.journal.getParentFile();
+		if ( parent != null && !parent.exists() )
+		{
+			parent.mkdirs();
+		}
+
+		OutputStream ostream = null;
+		try
+		{
+			ostream = new FileOutputStream( this.journal, true );
+			ostream.write( buffer.toString().getBytes( "ISO-8859-1" ) );
+		}
+		catch ( IOException e )
+		{
+			System.out.println( e.getMessage() + " trying to append to preferences journal." );
+		}
+		finally
+		{
+			if ( ostream != null )
+			{
+				try
+				{
+					ostream.close();
+				}
+				catch ( IOException e )
+				{
+				}
+			}
+		}
+
+		this.journalLines += changes.size();
+	}
+
+	static void open( final PreferenceJournal journal )
+	{
+		synchronized ( PreferenceJournal.journals )
+		{
+			PreferenceJournal.journals.add( journal );
+		}
+	}
+
+	/**
+	 * Compacts the journal and stops tracking it, as when a user logs
+	 * out or the session ends.
+	 */
+
+	static void close( final PreferenceJournal journal )
+	{
+		synchronized ( PreferenceJournal.journals )
+		{
+			PreferenceJournal.journals.remove( journal );
+		}
+
+		journal.compact();
+	}
+
+	static void flushAll()
+	{
+		PreferenceJournal[] open;
+		synchronized ( PreferenceJournal.journals )
+		{
+			open = PreferenceJournal.journals.toArray( new PreferenceJournal[ PreferenceJournal.journals.size() ] );
+		}
+
+		for ( int i = 0; i < open.length; ++i )
+		{
+			open[ i ].flush();
+		}
+	}
+
+	private static synchronized void startFlusher()
+	{
+		if ( PreferenceJournal.flusher != null )
+		{
+			return;
+		}
+
+		PreferenceJournal.flusher = new Thread( new Flusher(), "PreferenceJournal" );
+		PreferenceJournal.flusher.setDaemon( true );
+		PreferenceJournal.flusher.start();
+	}
+
+	private static class Flusher
+		implements Runnable
+	{
+		public void run()
+		{
+			while ( true )
+			{
+				try
+				{
+					Thread.sleep( PreferenceJournal.FLUSH_INTERVAL );
+				}
+				catch ( InterruptedException e )
+				{
+					return;
+				}
+
+				PreferenceJournal.flushAll();
+			}
+		}
+	}
+}
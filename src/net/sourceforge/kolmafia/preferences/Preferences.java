@@ -53,6 +53,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.java.dev.spellcast.utilities.DataUtilities;
 
 import net.sourceforge.kolmafia.KoLConstants;
@@ -89,11 +91,17 @@ public class Preferences
 	private static final HashMap<String, String> globalNames = new HashMap<String, String>();
 	private static final SortedMap<String, Object> globalValues = Collections.synchronizedSortedMap( new TreeMap<String, Object>() );
 	private static File globalPropertiesFile = null;
+	private static PreferenceJournal globalJournal = null;
 
 	private static final HashMap<String,String> userNames = new HashMap<String,String>();
 	private static final SortedMap<String, Object> userValues = Collections.synchronizedSortedMap( new TreeMap<String, Object>() );
 	private static File userPropertiesFile = null;
+	private static PreferenceJournal userJournal = null;
 	
+	// Incremented whenever any value changes, so that anything derived
+	// from preferences can tell when it needs to be computed again
+	private static final AtomicInteger generation = new AtomicInteger();
+
 	private static final Set<String> defaultsSet = new HashSet<String>();
 	private static final Set<String> perUserGlobalSet = new HashSet<String>();
 
@@ -174,7 +182,7 @@ public class Preferences
 
 	public static synchronized final void reset( final String username )
 	{
-		Preferences.saveToFile( Preferences.globalPropertiesFile, Preferences.globalValues );
+		Preferences.globalJournal.compact();
 
 		// Prevent anybody from manipulating the user map until we are
 		// done bulk-loading it.
@@ -184,9 +192,11 @@ public class Preferences
 			{
 				if ( Preferences.userPropertiesFile != null )
 				{
-					Preferences.saveToFile( Preferences.userPropertiesFile, Preferences.userValues );
+					PreferenceJournal.close( Preferences.userJournal );
+					Preferences.userJournal = null;
 					Preferences.userPropertiesFile = null;
 					Preferences.userValues.clear();
+					Preferences.generation.incrementAndGet();
 				}
 
 				return;
@@ -194,6 +204,7 @@ public class Preferences
 
 			Preferences.loadUserPreferences( username );
 		}
+		Preferences.generation.incrementAndGet();
 
 		AdventureFrame.updateFromPreferences();
 		CharPaneDecorator.updateFromPreferences();
@@ -202,6 +213,21 @@ public class Preferences
 		PreferenceListenerRegistry.fireAllPreferencesChanged();
 	}
 
+	public static final int getGeneration()
+	{
+		return Preferences.generation.get();
+	}
+
+	/**
+	 * Returns the number of preference changes which were superseded
+	 * before they were written out, and so never needed writing.
+	 */
+
+	public static final int getCoalescedWrites()
+	{
+		return PreferenceJournal.getCoalescedWrites();
+	}
+
 	public static final String baseUserName( final String name )
 	{
 		return name == null || name.equals( "" ) ? "GLOBAL" : StringUtilities.globalStringReplace( name.trim(), " ", "_" ).toLowerCase();
@@ -214,6 +240,7 @@ public class Preferences
 		Preferences.globalPropertiesFile = file;
 
 		Properties p = Preferences.loadPreferences( file );
+		boolean replayed = PreferenceJournal.replay( file, p );
 		Preferences.globalValues.clear();
 
 		// GLOBAL_prefs.txt can contain obsolete settings which
@@ -244,6 +271,15 @@ public class Preferences
 				Preferences.globalValues.put( key, value );
 			}
 		}
+
+		Preferences.globalJournal = new PreferenceJournal( file, Preferences.globalValues );
+		PreferenceJournal.open( Preferences.globalJournal );
+
+		// Fold in whatever a previous session left in the journal
+		if ( replayed )
+		{
+			Preferences.globalJournal.compact();
+		}
 	}
 
 	private static void loadUserPreferences( final String username )
@@ -252,7 +288,13 @@ public class Preferences
 				      Preferences.baseUserName( username ) + "_prefs.txt" );
 		Preferences.userPropertiesFile = file;
 
+		if ( Preferences.userJournal != null )
+		{
+			PreferenceJournal.close( Preferences.userJournal );
+		}
+
 		Properties p = Preferences.loadPreferences( file );
+		boolean replayed = PreferenceJournal.replay( file, p );
 		Preferences.userValues.clear();
 
 		for ( Entry<Object, Object> currentEntry : p.entrySet() )
@@ -284,6 +326,14 @@ public class Preferences
 			// System.out.println( "Adding new built-in user setting: " + key );
 			Preferences.userValues.put( key, value );
 		}
+
+		Preferences.userJournal = new PreferenceJournal( file, Preferences.userValues );
+		PreferenceJournal.open( Preferences.userJournal );
+
+		if ( replayed )
+		{
+			Preferences.userJournal.compact();
+		}
 	}
 
 	private static Properties loadPreferences( File file )
@@ -312,7 +362,7 @@ public class Preferences
 		return p;
 	}
 
-	private static final String encodeProperty( String name, String value )
+	static final String encodeProperty( String name, String value )
 	{
 		StringBuffer buffer = new StringBuffer();
 
@@ -435,11 +485,15 @@ public class Preferences
 				// We are changing the structure of the map.
 				// globalValues is a synchronized map.
 
-				Preferences.globalValues.remove( name );
-				if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+				synchronized ( Preferences.globalValues )
 				{
-					Preferences.saveToFile( Preferences.globalPropertiesFile, Preferences.globalValues );
+					Preferences.globalValues.remove( name );
+					if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+					{
+						Preferences.globalJournal.remove( name );
+					}
 				}
+				Preferences.generation.incrementAndGet();
 			}
 		}
 		else
@@ -449,11 +503,15 @@ public class Preferences
 				// We are changing the structure of the map.
 				// userValues is a synchronized map.
 
-				Preferences.userValues.remove( name );
-				if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+				synchronized ( Preferences.userValues )
 				{
-					Preferences.saveToFile( Preferences.userPropertiesFile, Preferences.userValues );
+					Preferences.userValues.remove( name );
+					if ( Preferences.getBoolean( "saveSettingsOnSet" ) && Preferences.userJournal != null )
+					{
+						Preferences.userJournal.remove( name );
+					}
 				}
+				Preferences.generation.incrementAndGet();
 			}
 		}
 	}
@@ -778,26 +836,35 @@ public class Preferences
 			String actualName = Preferences.propertyName( user, name );
 
 			// We might be changing the structure of the map.
-			// globalValues is a synchronized map.
+			// globalValues is a synchronized map, but the journal
+			// must see changes in the order the map does.
 
-			Preferences.globalValues.put( actualName, object );
-			if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+			synchronized ( Preferences.globalValues )
 			{
-				Preferences.saveToFile( Preferences.globalPropertiesFile, Preferences.globalValues );
+				Preferences.globalValues.put( actualName, object );
+				if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+				{
+					Preferences.globalJournal.set( actualName, value );
+				}
 			}
 		}
 		else if ( Preferences.userPropertiesFile != null )
 		{
 			// We might be changing the structure of the map.
-			// userValues is a synchronized map.
+			// userValues is a synchronized map, but the journal
+			// must see changes in the order the map does.
 
-			Preferences.userValues.put( name, object );
-			if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+			synchronized ( Preferences.userValues )
 			{
-				Preferences.saveToFile( Preferences.userPropertiesFile, Preferences.userValues );
+				Preferences.userValues.put( name, object );
+				if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+				{
+					Preferences.userJournal.set( name, value );
+				}
 			}
 		}
 
+		Preferences.generation.incrementAndGet();
 		PreferenceListenerRegistry.firePreferenceChanged( name );
 
 		if ( name.startsWith( "choiceAdventure" ) )
@@ -811,7 +878,7 @@ public class Preferences
 		return user == null ? name : name + "." + Preferences.baseUserName( user );
 	}
 
-	private static final void saveToFile( File file, Map<String, Object> data )
+	static final void saveToFile( File file, Map<String, Object> data )
 	{
 		// See Collections.synchronizedSortedMap
 		//
@@ -956,6 +1023,11 @@ public class Preferences
 					{
 						// fully delete preferences that start with _ and aren't in defaults.txt
 						it.remove();
+						if ( Preferences.getBoolean( "saveSettingsOnSet" ) )
+						{
+							Preferences.userJournal.remove( name );
+						}
+						Preferences.generation.incrementAndGet();
 						continue;
 					}
 					String val = Preferences.userNames.get( name );
@@ -963,11 +1035,6 @@ public class Preferences
 					Preferences.setString( name, val );
 				}
 			}
-
-			if ( Preferences.getBoolean( "saveSettingsOnSet" ))
-			{
-				Preferences.saveToFile( Preferences.userPropertiesFile, Preferences.userValues );
-			}
 		}
 	}
 
@@ -991,11 +1058,6 @@ public class Preferences
 			}
 
 			Preferences.setLong( "lastGlobalCounterDay", KoLCharacter.getRollover() );
-
-			if ( Preferences.getBoolean( "saveSettingsOnSet" ))
-			{
-				Preferences.saveToFile( Preferences.globalPropertiesFile, Preferences.globalValues );
-			}
 		}
 	}
 
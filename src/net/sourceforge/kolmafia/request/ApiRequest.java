@@ -48,6 +48,7 @@ import net.sourceforge.kolmafia.session.EquipmentManager;
 import net.sourceforge.kolmafia.session.InventoryManager;
 import net.sourceforge.kolmafia.session.Limitmode;
 
+import net.sourceforge.kolmafia.utilities.ItemCounts;
 import net.sourceforge.kolmafia.utilities.LockableListFactory;
 
 import org.json.JSONException;
@@ -154,8 +155,13 @@ public class ApiRequest
 
 		super.run();
 
-		// Save the JSON object so caller can look further at it
-		this.JSON = ApiRequest.getJSON( this.responseText, this.what );
+		// Save the JSON object so caller can look further at it.  Item
+		// lists are only ever read by processResults, which doesn't
+		// need the tree.
+		if ( !ApiRequest.isItemList( this.what ) )
+		{
+			this.JSON = ApiRequest.getJSON( this.responseText, this.what );
+		}
 	}
 
 	@Override
@@ -416,17 +422,36 @@ public class ApiRequest
 
 	public static final void parseInventory( final String responseText )
 	{
-		InventoryManager.parseInventory( ApiRequest.getJSON( responseText, "inventory" ) );
+		InventoryManager.parseInventory( ApiRequest.getItemCounts( responseText, "inventory" ) );
 	}
 
 	public static final void parseCloset( final String responseText )
 	{
-		ClosetRequest.parseCloset( ApiRequest.getJSON( responseText, "closet" ) );
+		ClosetRequest.parseCloset( ApiRequest.getItemCounts( responseText, "closet" ) );
 	}
 
 	public static final void parseStorage( final String responseText )
 	{
-		StorageRequest.parseStorage( ApiRequest.getJSON( responseText, "storage" ) );
+		StorageRequest.parseStorage( ApiRequest.getItemCounts( responseText, "storage" ) );
+	}
+
+	private static final boolean isItemList( final String what )
+	{
+		return what.equals( "inventory" ) || what.equals( "closet" ) || what.equals( "storage" );
+	}
+
+	public static final ItemCounts getItemCounts( final String text, final String what )
+	{
+		try
+		{
+			return ItemCounts.parse( text );
+		}
+		catch ( JSONException e )
+		{
+			ApiRequest.reportParseError( what, text, e );
+		}
+
+		return null;
 	}
 
 	public static final JSONObject getJSON( final String text, final String what )
@@ -34,7 +34,6 @@
 package net.sourceforge.kolmafia.request;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import java.util.regex.Matcher;
@@ -56,11 +55,9 @@ import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.session.InventoryManager;
 
 import net.sourceforge.kolmafia.utilities.AdventureResultArray;
+import net.sourceforge.kolmafia.utilities.ItemCounts;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 public class ClosetRequest
 	extends TransferItemRequest
 {
@@ -82,46 +79,27 @@ public class ClosetRequest
 		RequestThread.postRequest( new ApiRequest( "closet" ) );
 	}
 
-	public static final void parseCloset( final JSONObject JSON )
+	public static final void parseCloset( final ItemCounts items )
 	{
-		if ( JSON == null )
+		if ( items == null )
 		{
 			return;
 		}
 
-		ArrayList<AdventureResult> items = new ArrayList<AdventureResult>();
-
-		try
+		for ( int i = 0; i < items.size(); ++i )
 		{
-			// {"1":"1","2":"1" ... }
-			Iterator< ? > keys = JSON.keys();
-
-			while ( keys.hasNext() )
+			int itemId = items.getItemId( i );
+			String name = ItemDatabase.getItemDataName( itemId );
+			if ( name == null )
 			{
-				String key = (String) keys.next();
-				int itemId = StringUtilities.parseInt( key );
-				int count = JSON.getInt( key );
-				String name = ItemDatabase.getItemDataName( itemId );
-				if ( name == null )
-				{
-					// Fetch descid from api.php?what=item
-					// and register new item.
-					ItemDatabase.registerItem( itemId );
-				}
-
-				items.add( ItemPool.get( itemId, count ) );
-
+				// Fetch descid from api.php?what=item
+				// and register new item.
+				ItemDatabase.registerItem( itemId );
 			}
 		}
-		catch ( JSONException e )
-		{
-			ApiRequest.reportParseError( "closet", JSON.toString(), e );
-			return;
-		}
 
-		KoLConstants.closet.clear();
-		KoLConstants.closet.addAll( items );
-		if ( InventoryManager.canUseCloset() )
+		int[] changed = items.applyTo( KoLConstants.closet );
+		if ( ( changed == null || changed.length > 0 ) && InventoryManager.canUseCloset() )
 		{
 			ConcoctionDatabase.refreshConcoctions();
 		}
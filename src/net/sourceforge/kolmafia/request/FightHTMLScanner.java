@@ -0,0 +1,593 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.htmlcleaner.CommentToken;
+import org.htmlcleaner.ContentToken;
+import org.htmlcleaner.EndTagToken;
+import org.htmlcleaner.TagNode;
+
+/**
+ * A single forward pass over a fight page which finds the part of it that
+ * the fight handlers look at, without building a tree.  It keeps a stack
+ * of the elements which are open at each tag, stops at the monster tag,
+ * and reports where the enclosing fight node begins.  Only that part of
+ * the page then needs to go through HtmlCleaner.
+ *
+ * The stack follows the obvious nesting and closes only the elements
+ * HtmlCleaner most often closes implicitly in fight pages.  Like
+ * HtmlCleaner, it skips the contents of a script as raw text and lets any
+ * tag close an open style, title or xmp element.  It can still be wrong
+ * about badly broken markup.  The start tag of the fight node is
+ * therefore marked in the text that gets cleaned; if the cleaned tree
+ * does not have exactly that node where the fight node should be, the
+ * caller falls back to cleaning the whole page.
+ */
+
+class FightHTMLScanner
+{
+	static final String MARKER = "mafiafight";
+
+	private static final Set<String> EMPTY_TAGS = new HashSet<String>( Arrays.asList( new String[]
+	{
+		"area", "base", "basefont", "bgsound", "br", "col", "embed", "hr", "img", "input", "isindex", "link", "meta", "param", "wbr",
+	} ) );
+
+	// Elements HtmlCleaner drops unless a table is open around them
+
+	private static final Set<String> TABLE_PARTS = new HashSet<String>( Arrays.asList( new String[]
+	{
+		"caption", "colgroup", "tbody", "td", "tfoot", "th", "thead", "tr",
+	} ) );
+
+	// Elements HtmlCleaner lets hold only text.  Unlike <script>, their
+	// contents are still read as markup, so any tag inside one closes it.
+
+	private static final Set<String> TEXT_ONLY = new HashSet<String>( Arrays.asList( new String[]
+	{
+		"style", "title", "xmp",
+	} ) );
+
+	// Elements whose start closes an open paragraph
+
+	private static final Set<String> CLOSES_PARAGRAPH = new HashSet<String>( Arrays.asList( new String[]
+	{
+		"blockquote", "center", "div", "dl", "form", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "ol", "p", "pre", "table", "ul",
+	} ) );
+
+	private final String text;
+	private final int length;
+	private int pos = 0;
+	private boolean selfClosing = false;
+	private boolean closed = false;
+
+	private final List<String> names = new ArrayList<String>();
+	private final List<Integer> starts = new ArrayList<Integer>();
+	private final List<Integer> ends = new ArrayList<Integer>();
+
+	private FightHTMLScanner( final String text )
+	{
+		this.text = text;
+		this.length = text.length();
+	}
+
+	/**
+	 * Returns the part of a fight page which must be cleaned to get the
+	 * fight node, with the start tag of the fight node marked, or null if
+	 * the fight node cannot be found this way.
+	 */
+
+	static final String extractFight( final String text )
+	{
+		return new FightHTMLScanner( text ).findFight();
+	}
+
+	/**
+	 * Checks that a fight node found in the cleaned text of
+	 * <code>extractFight</code> is the node which was marked, and removes
+	 * the mark.
+	 */
+
+	static final boolean checkFight( final TagNode root, final TagNode fight )
+	{
+		if ( fight == null || !fight.hasAttribute( FightHTMLScanner.MARKER ) )
+		{
+			return false;
+		}
+
+		// HtmlCleaner copies some tags when it closes them implicitly;
+		// a copy of the fight node is not the fight node.
+
+		if ( root.getElementsHavingAttribute( FightHTMLScanner.MARKER, true ).length != 1 )
+		{
+			return false;
+		}
+
+		fight.removeAttribute( FightHTMLScanner.MARKER );
+		return true;
+	}
+
+	private String findFight()
+	{
+		List<String> monNames = null;
+		List<Integer> monStarts = null;
+		List<Integer> monEnds = null;
+
+		while ( this.pos < this.length )
+		{
+			int lt = this.text.indexOf( '<', this.pos );
+			if ( lt == -1 || lt + 1 >= this.length )
+			{
+				break;
+			}
+
+			this.pos = lt;
+			char next = this.text.charAt( lt + 1 );
+
+			if ( next == '!' && this.text.startsWith( "<!--", lt ) )
+			{
+				int end = this.text.indexOf( "-->", lt + 4 );
+				this.pos = end == -1 ? this.length : end + 3;
+				continue;
+			}
+
+			if ( next == '/' && lt + 2 < this.length && Character.isUnicodeIdentifierStart( this.text.charAt( lt + 2 ) ) )
+			{
+				String name = this.readName( lt + 2 );
+				this.readAttributes();
+				this.closeElement( name );
+				continue;
+			}
+
+			if ( next == '!' || next == '?' )
+			{
+				int end = this.text.indexOf( '>', lt );
+				this.pos = end == -1 ? this.length : end + 1;
+				continue;
+			}
+
+			if ( !Character.isUnicodeIdentifierStart( next ) )
+			{
+				this.pos = lt + 1;
+				continue;
+			}
+
+			String name = this.readName( lt + 1 );
+			String id = this.readAttributes();
+			this.closeImplied( name );
+
+			if ( id != null )
+			{
+				if ( id.equalsIgnoreCase( "monpic" ) )
+				{
+					return this.findRegion( this.names, this.starts, this.ends );
+				}
+
+				if ( id.equalsIgnoreCase( "monname" ) && monNames == null )
+				{
+					monNames = new ArrayList<String>( this.names );
+					monStarts = new ArrayList<Integer>( this.starts );
+					monEnds = new ArrayList<Integer>( this.ends );
+				}
+			}
+
+			if ( name.equals( "script" ) && this.closed )
+			{
+				int end = this.findScriptEnd( this.pos );
+				this.pos = end;
+				continue;
+			}
+
+			if ( !this.selfClosing && !FightHTMLScanner.EMPTY_TAGS.contains( name ) )
+			{
+				this.names.add( name );
+				this.starts.add( Integer.valueOf( lt ) );
+				this.ends.add( Integer.valueOf( this.pos ) );
+			}
+		}
+
+		// The fight node is found from a 'monname' span only when the
+		// page has no 'monpic' image at all.
+
+		if ( monNames != null )
+		{
+			return this.findRegion( monNames, monStarts, monEnds );
+		}
+
+		return null;
+	}
+
+	private String findRegion( final List<String> names, final List<Integer> starts, final List<Integer> ends )
+	{
+		// The fight node is the parent of the nearest <center> above
+		// the monster tag.
+
+		int center = names.lastIndexOf( "center" );
+		if ( center < 1 )
+		{
+			return null;
+		}
+
+		int fight = center - 1;
+		String fightName = names.get( fight );
+		if ( fightName.equals( "html" ) || fightName.equals( "body" ) )
+		{
+			return null;
+		}
+
+		// Cleaning starts outside any table the fight node is in, so
+		// that HtmlCleaner keeps the table cells.
+
+		int region = fight;
+		while ( region >= 0 && FightHTMLScanner.TABLE_PARTS.contains( names.get( region ) ) )
+		{
+			--region;
+		}
+
+		if ( region < 0 || ( region != fight && !names.get( region ).equals( "table" ) ) )
+		{
+			return null;
+		}
+
+		// The start tags of the elements around that are copied in
+		// front of it, so that end tags later in the page close the same
+		// elements they close in the whole page.
+
+		StringBuilder buffer = new StringBuilder( this.length - starts.get( region ).intValue() + 256 );
+
+		for ( int i = 0; i < region; ++i )
+		{
+			String name = names.get( i );
+			if ( !name.equals( "html" ) && !name.equals( "head" ) && !name.equals( "body" ) )
+			{
+				buffer.append( this.text, starts.get( i ).intValue(), ends.get( i ).intValue() );
+			}
+		}
+
+		int nameEnd = starts.get( fight ).intValue() + 1 + fightName.length();
+		buffer.append( this.text, starts.get( region ).intValue(), nameEnd );
+		buffer.append( ' ' );
+		buffer.append( FightHTMLScanner.MARKER );
+		buffer.append( this.text, nameEnd, this.length );
+
+		return buffer.toString();
+	}
+
+	// Closes the open elements which HtmlCleaner would close before
+	// opening the given one.
+
+	private void closeImplied( final String name )
+	{
+		int last = this.names.size() - 1;
+		if ( last >= 0 && FightHTMLScanner.TEXT_ONLY.contains( this.names.get( last ) ) &&
+		     !name.equals( "html" ) && !name.equals( "head" ) && !name.equals( "body" ) )
+		{
+			this.truncate( last );
+		}
+
+		if ( FightHTMLScanner.CLOSES_PARAGRAPH.contains( name ) )
+		{
+			this.closeOpen( "p", "table" );
+		}
+
+		if ( name.equals( "td" ) || name.equals( "th" ) )
+		{
+			this.closeOpen( "td", "table" );
+			this.closeOpen( "th", "table" );
+		}
+		else if ( name.equals( "tr" ) )
+		{
+			this.closeOpen( "tr", "table" );
+		}
+	}
+
+	private void closeElement( final String name )
+	{
+		int index = this.names.lastIndexOf( name );
+		if ( index != -1 )
+		{
+			this.truncate( index );
+		}
+	}
+
+	// Closes an open element, but not past the innermost open boundary
+
+	private void closeOpen( final String name, final String boundary )
+	{
+		for ( int i = this.names.size() - 1; i >= 0; --i )
+		{
+			String open = this.names.get( i );
+			if ( open.equals( name ) )
+			{
+				this.truncate( i );
+				return;
+			}
+			if ( open.equals( boundary ) )
+			{
+				return;
+			}
+		}
+	}
+
+	private void truncate( final int size )
+	{
+		for ( int i = this.names.size() - 1; i >= size; --i )
+		{
+			this.names.remove( i );
+			this.starts.remove( i );
+			this.ends.remove( i );
+		}
+	}
+
+	private static final boolean isNameChar( final char ch )
+	{
+		return Character.isUnicodeIdentifierStart( ch ) || Character.isDigit( ch ) ||
+			ch == ':' || ch == '.' || ch == '-' || ch == '_';
+	}
+
+	private String readName( final int start )
+	{
+		int end = start;
+		while ( end < this.length && FightHTMLScanner.isNameChar( this.text.charAt( end ) ) )
+		{
+			++end;
+		}
+
+		this.pos = end;
+		return this.text.substring( start, end ).toLowerCase();
+	}
+
+	// Reads the attributes of the current tag the way HtmlCleaner does,
+	// moves past the end of the tag, and returns the value of its id.
+
+	private String readAttributes()
+	{
+		String id = null;
+		this.selfClosing = false;
+		this.closed = false;
+
+		while ( this.pos < this.length )
+		{
+			char ch = this.text.charAt( this.pos );
+			if ( ch == '>' )
+			{
+				++this.pos;
+				this.closed = true;
+				break;
+			}
+			if ( ch == '/' && this.text.startsWith( "/>", this.pos ) )
+			{
+				this.pos += 2;
+				this.selfClosing = true;
+				break;
+			}
+			if ( ch == '<' )
+			{
+				break;
+			}
+			if ( !Character.isUnicodeIdentifierStart( ch ) )
+			{
+				++this.pos;
+				continue;
+			}
+
+			String name = this.readName( this.pos );
+			this.skipWhitespace();
+
+			if ( this.pos >= this.length || this.text.charAt( this.pos ) != '=' )
+			{
+				continue;
+			}
+
+			++this.pos;
+			this.skipWhitespace();
+
+			int start = this.pos;
+			char quote = this.pos < this.length ? this.text.charAt( this.pos ) : 0;
+			if ( quote == '"' || quote == '\'' )
+			{
+				++start;
+				++this.pos;
+			}
+			else
+			{
+				quote = 0;
+			}
+
+			while ( this.pos < this.length )
+			{
+				ch = this.text.charAt( this.pos );
+				if ( ch == '<' || ch == '>' || ch == quote || ( quote == 0 && Character.isWhitespace( ch ) ) )
+				{
+					break;
+				}
+				++this.pos;
+			}
+
+			if ( name.equals( "id" ) )
+			{
+				id = this.text.substring( start, this.pos );
+			}
+
+			if ( quote != 0 && this.pos < this.length && this.text.charAt( this.pos ) == quote )
+			{
+				++this.pos;
+			}
+		}
+
+		return id;
+	}
+
+	private void skipWhitespace()
+	{
+		while ( this.pos < this.length && Character.isWhitespace( this.text.charAt( this.pos ) ) )
+		{
+			++this.pos;
+		}
+	}
+
+	// Finds the end tag of a script the way HtmlCleaner does: comments
+	// before any script text are read as comments, and the end tag must
+	// be followed by whitespace or '>'.
+
+	private int findScriptEnd( final int start )
+	{
+		int index = start;
+		while ( true )
+		{
+			this.pos = index;
+			this.skipWhitespace();
+			if ( !this.text.startsWith( "<!--", this.pos ) )
+			{
+				break;
+			}
+
+			int end = this.text.indexOf( "-->", this.pos + 4 );
+			if ( end == -1 )
+			{
+				return this.length;
+			}
+			index = end + 3;
+		}
+
+		while ( true )
+		{
+			index = this.text.indexOf( "</", index );
+			if ( index == -1 )
+			{
+				return this.length;
+			}
+			if ( this.text.regionMatches( true, index + 2, "script", 0, 6 ) )
+			{
+				int after = index + 8;
+				if ( after < this.length && ( this.text.charAt( after ) == '>' || Character.isWhitespace( this.text.charAt( after ) ) ) )
+				{
+					return index;
+				}
+			}
+			index += 2;
+		}
+	}
+
+	/**
+	 * Compares two cleaned trees and returns a description of the first
+	 * difference, or null if they are the same.
+	 */
+
+	static final String compare( final TagNode expected, final TagNode actual )
+	{
+		return FightHTMLScanner.compare( expected, actual, expected.getName() );
+	}
+
+	private static final String compare( final TagNode expected, final TagNode actual, final String path )
+	{
+		if ( !expected.getName().equals( actual.getName() ) )
+		{
+			return path + ": expected <" + expected.getName() + ">, got <" + actual.getName() + ">";
+		}
+
+		Map<?, ?> expectedAttributes = expected.getAttributes();
+		Map<?, ?> actualAttributes = actual.getAttributes();
+		if ( !expectedAttributes.equals( actualAttributes ) )
+		{
+			return path + ": expected attributes " + expectedAttributes + ", got " + actualAttributes;
+		}
+
+		List<?> expectedChildren = expected.getChildren();
+		List<?> actualChildren = actual.getChildren();
+		if ( expectedChildren.size() != actualChildren.size() )
+		{
+			return path + ": expected " + expectedChildren.size() + " children, got " + actualChildren.size();
+		}
+
+		Iterator<?> expectedIt = expectedChildren.iterator();
+		Iterator<?> actualIt = actualChildren.iterator();
+		int index = 0;
+		while ( expectedIt.hasNext() )
+		{
+			Object expectedChild = expectedIt.next();
+			Object actualChild = actualIt.next();
+			String childPath = path + "/" + index++;
+
+			if ( expectedChild instanceof TagNode && actualChild instanceof TagNode )
+			{
+				String difference = FightHTMLScanner.compare( (TagNode) expectedChild, (TagNode) actualChild, childPath + "<" + ( (TagNode) expectedChild ).getName() + ">" );
+				if ( difference != null )
+				{
+					return difference;
+				}
+				continue;
+			}
+
+			if ( expectedChild instanceof CommentToken && actualChild instanceof CommentToken )
+			{
+				if ( !( (CommentToken) expectedChild ).getContent().equals( ( (CommentToken) actualChild ).getContent() ) )
+				{
+					return childPath + ": comments differ";
+				}
+				continue;
+			}
+
+			if ( expectedChild instanceof ContentToken && actualChild instanceof ContentToken )
+			{
+				if ( !( (ContentToken) expectedChild ).getContent().equals( ( (ContentToken) actualChild ).getContent() ) )
+				{
+					return childPath + ": expected \"" + ( (ContentToken) expectedChild ).getContent() + "\", got \"" + ( (ContentToken) actualChild ).getContent() + "\"";
+				}
+				continue;
+			}
+
+			if ( expectedChild instanceof EndTagToken && actualChild instanceof EndTagToken )
+			{
+				if ( !( (EndTagToken) expectedChild ).getName().equals( ( (EndTagToken) actualChild ).getName() ) )
+				{
+					return childPath + ": end tags differ";
+				}
+				continue;
+			}
+
+			return childPath + ": expected " + expectedChild.getClass().getSimpleName() + ", got " + actualChild.getClass().getSimpleName();
+		}
+
+		return null;
+	}
+}
@@ -6157,7 +6157,68 @@ public class FightRequest
 		HTMLParserUtils.logHTML( parseFightHTML( text, false ) );
 	}
 
+	/**
+	 * Replays a fight page through both ways of finding the fight node and
+	 * reports whether the scanner and the full clean produce the same tree.
+	 */
+
+	public static final boolean checkFightHTML( final String text, final String label )
+	{
+		TagNode expected = FightRequest.cleanFightNode( text, false );
+		TagNode actual = FightRequest.scanFightNode( text );
+
+		if ( expected == null )
+		{
+			RequestLogger.printLine( label + ": no fight node" );
+			return actual == null;
+		}
+
+		if ( actual == null )
+		{
+			RequestLogger.printLine( label + ": scanner fell back to a full clean" );
+			return true;
+		}
+
+		String difference = FightHTMLScanner.compare( expected, actual );
+		if ( difference != null )
+		{
+			RequestLogger.printLine( label + ": " + difference );
+			return false;
+		}
+
+		RequestLogger.printLine( label + ": same" );
+		return true;
+	}
+
 	private static final TagNode parseFightHTML( String text, boolean logIt )
+	{
+		// Only the part of the page around the monster needs cleaning.
+		// If the scanner cannot find that part, clean the whole page.
+		TagNode fight = FightRequest.scanFightNode( text );
+		if ( fight != null )
+		{
+			return fight;
+		}
+
+		return FightRequest.cleanFightNode( text, logIt );
+	}
+
+	static final TagNode scanFightNode( final String text )
+	{
+		String fragment = FightHTMLScanner.extractFight( text );
+		if ( fragment == null )
+		{
+			return null;
+		}
+
+		TagNode node = FightRequest.cleanFightHTML( fragment );
+		TagNode mon = FightRequest.findMonsterTag( node );
+		TagNode fight = mon == null ? null : FightRequest.findFightNode( mon );
+
+		return FightHTMLScanner.checkFight( node, fight ) ? fight : null;
+	}
+
+	static final TagNode cleanFightNode( String text, boolean logIt )
 	{
 		// Clean the HTML on the Fight page
 		TagNode node = FightRequest.cleanFightHTML( text );
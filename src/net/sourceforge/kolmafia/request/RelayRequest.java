@@ -33,7 +33,6 @@
 
 package net.sourceforge.kolmafia.request;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
@@ -52,8 +51,6 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import net.java.dev.spellcast.utilities.DataUtilities;
-
 import net.sourceforge.kolmafia.AdventureResult;
 import net.sourceforge.kolmafia.AreaCombatData;
 import net.sourceforge.kolmafia.CoinmasterData;
@@ -112,12 +109,12 @@ import net.sourceforge.kolmafia.session.VoteMonsterManager;
 import net.sourceforge.kolmafia.swingui.AdventureFrame;
 import net.sourceforge.kolmafia.swingui.CommandDisplayFrame;
 
-import net.sourceforge.kolmafia.utilities.ByteBufferUtilities;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
 import net.sourceforge.kolmafia.utilities.PauseObject;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 import net.sourceforge.kolmafia.utilities.WikiUtilities;
 
+import net.sourceforge.kolmafia.webui.RelayFileCache;
 import net.sourceforge.kolmafia.webui.RelayServer;
 import net.sourceforge.kolmafia.webui.StationaryButtonDecorator;
 
@@ -143,6 +140,7 @@ public class RelayRequest
 	public Set<ServerCookie> serverCookies = null;
 	public String cookies = null;
 	public byte[] rawByteBuffer = null;
+	public RelayFileCache.Entry cachedFile = null;
 	public String contentType = null;
 	public long lastModified = 0;
 	public String statusLine = "HTTP/1.1 302 Found";
@@ -223,6 +221,7 @@ public class RelayRequest
 		super.constructURLString( newURLString, usePostMethod, encoded );
 
 		this.rawByteBuffer = null;
+		this.cachedFile = null;
 		this.headers.clear();
 
 		String path = this.getBasePath();
@@ -523,7 +522,7 @@ public class RelayRequest
 				}
 			}
 
-			if ( this.responseCode == 200 && this.rawByteBuffer != null )
+			if ( this.responseCode == 200 && ( this.rawByteBuffer != null || this.responseText != null ) )
 			{
 				ostream.print( "Content-Type: " );
 				ostream.print( this.contentType );
@@ -535,9 +534,14 @@ public class RelayRequest
 
 				ostream.println();
 
-				ostream.print( "Content-Length: " );
-				ostream.print( this.rawByteBuffer.length );
-				ostream.println();
+				// Text may be streamed to the browser, in which
+				// case its length is not known in advance
+				if ( this.rawByteBuffer != null )
+				{
+					ostream.print( "Content-Length: " );
+					ostream.print( this.rawByteBuffer.length );
+					ostream.println();
+				}
 
 				ostream.println( "Cache-Control: no-cache, must-revalidate" );
 				ostream.println( "Pragma: no-cache" );
@@ -635,32 +639,6 @@ public class RelayRequest
 		this.headers.add( "Connection: close" );
 	}
 
-	private StringBuffer readContents( final BufferedReader reader )
-	{
-		StringBuffer contentBuffer = new StringBuffer();
-		if ( reader == null )
-		{
-			return contentBuffer;
-		}
-
-		try
-		{
-			String line;
-			while ( ( line = reader.readLine() ) != null )
-			{
-				contentBuffer.append( line );
-				contentBuffer.append( KoLConstants.LINE_BREAK );
-			}
-
-			reader.close();
-		}
-		catch ( IOException e )
-		{
-		}
-
-		return contentBuffer;
-	}
-
 	private static final String [] IMAGES = new String[]
 	{
 		"adventureimages/hellion.gif",
@@ -749,16 +727,27 @@ public class RelayRequest
 
 	private void sendLocalImage( final String filename )
 	{
-		File imageFile = FileUtilities.downloadImage( RelayRequest.localImagePath( filename ) );
+		// An image which was served within the last second is still
+		// in the cache and need not be looked for on disk.
+
+		RelayFileCache.Entry image = RelayFileCache.peek( RelayRequest.findLocalImage( filename ) );
+
+		if ( image == null )
+		{
+			File imageFile = FileUtilities.downloadImage( RelayRequest.localImagePath( filename ) );
+			image = imageFile == null ? null : RelayFileCache.get( imageFile );
+		}
 
-		if ( imageFile == null )
+		if ( image == null )
 		{
 			this.sendNotFound();
 			return;
 		}
 
-		this.lastModified = imageFile.lastModified();
-		this.rawByteBuffer = ByteBufferUtilities.read( imageFile );
+		this.lastModified = image.getLastModified();
+		this.rawByteBuffer = image.getBytes();
+		this.cachedFile = image;
+		this.headers.add( "ETag: " + image.getETag() );
 		this.pseudoResponse( "HTTP/1.1 200 OK", "" );
 	}
 
@@ -771,7 +760,24 @@ public class RelayRequest
 	{
 		if ( !RelayRequest.overrideMap.containsKey( filename ) )
 		{
-			RelayRequest.overrideMap.put( filename, RelayRequest.findRelayFile( filename ) );
+			File override = RelayRequest.findRelayFile( filename );
+
+			// Make sure that the file is actually in the relay directory
+			try
+			{
+				String overridePath = override.getCanonicalPath();
+				String relayPath = KoLConstants.RELAY_LOCATION.getCanonicalPath();
+
+				if ( !overridePath.startsWith( relayPath ) )
+				{
+					override = null;
+				}
+			}
+			catch ( IOException e )
+			{
+			}
+
+			RelayRequest.overrideMap.put( filename, override );
 		}
 
 		File override = (File) RelayRequest.overrideMap.get( filename );
@@ -781,43 +787,29 @@ public class RelayRequest
 			return;
 		}
 
-		// Make sure that the file is actually in the relay directory
-		try
-		{
-			String overridePath = override.getCanonicalPath();
-			String relayPath = KoLConstants.RELAY_LOCATION.getCanonicalPath();
-
-			if ( !overridePath.startsWith( relayPath ) )
-			{
-				this.sendNotFound();
-				return;
-			}
-		}
-		catch ( IOException e )
-		{
-		}
-
-		// Make sure that the file is in the file system
-		if ( !override.exists() )
+		// Read the file, unless it is cached and unchanged
+		RelayFileCache.Entry file = RelayFileCache.get( override );
+		if ( file == null )
 		{
 			this.sendNotFound();
 			return;
 		}
 
-		// Read the file
-		StringBuffer replyBuffer = this.readContents( DataUtilities.getReader( override ) );
+		String text = file.getText();
+		StringBuffer replyBuffer = null;
 
 		// If it is a KoLmafia built-in file, as opposed to the
 		// user-supplied relay script, do special things
 		if ( RelayRequest.builtinRelayFile( filename ) )
 		{
-			if ( replyBuffer.indexOf( "MAFIAHIT" ) != -1 )
+			if ( text.indexOf( "MAFIAHIT" ) != -1 )
 			{
+				replyBuffer = new StringBuffer( text );
 				StringUtilities.globalStringReplace( replyBuffer, "MAFIAHIT", "pwd=" + GenericRequest.passwordHash );
 			}
 			else if ( !filename.endsWith( ".html" ) )
 			{
-				long lastModified = override.lastModified();
+				long lastModified = file.getLastModified();
 				long now = (new Date()).getTime();
 				long expires = now + ( 1000L * 60 * 60 * 24 * 30 );
 				this.headers.add( "Last-Modified: " + StringUtilities.formatDate( lastModified ) );
@@ -827,16 +819,28 @@ public class RelayRequest
 
 		if ( this.isChatRequest )
 		{
+			replyBuffer = replyBuffer == null ? new StringBuffer( text ) : replyBuffer;
 			StringUtilities.globalStringReplace( replyBuffer, "<br>", "</font><br>" );
 		}
 
 		if ( filename.endsWith( "chat.html" ) )
 		{
+			replyBuffer = replyBuffer == null ? new StringBuffer( text ) : replyBuffer;
 			RequestEditorKit.addChatFeatures( replyBuffer );
 		}
 
-		// Return the reply buffer as the response text to the local request
-		this.pseudoResponse( "HTTP/1.1 200 OK", replyBuffer.toString() );
+		if ( replyBuffer != null )
+		{
+			// Return the reply buffer as the response text to the local request
+			this.pseudoResponse( "HTTP/1.1 200 OK", replyBuffer.toString() );
+			return;
+		}
+
+		// The file is sent as it is, so RelayAgent can reuse whatever
+		// it made of the file the last time it was sent.
+		this.cachedFile = file;
+		this.headers.add( "ETag: " + file.getETag() );
+		this.pseudoResponse( "HTTP/1.1 200 OK", text );
 	}
 
 	public static boolean builtinRelayFile( final String file )
@@ -34,7 +34,6 @@
 package net.sourceforge.kolmafia.request;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import java.util.regex.Matcher;
@@ -62,11 +61,9 @@ import net.sourceforge.kolmafia.session.EquipmentManager;
 import net.sourceforge.kolmafia.session.InventoryManager;
 import net.sourceforge.kolmafia.session.ResultProcessor;
 
+import net.sourceforge.kolmafia.utilities.ItemCounts;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 public class StorageRequest
 	extends TransferItemRequest
 {
@@ -93,61 +90,52 @@ public class StorageRequest
 		RequestThread.postRequest( new StorageRequest( EMPTY_STORAGE ) );
 	}
 
-	public static final void parseStorage( final JSONObject JSON )
+	public static final void parseStorage( final ItemCounts counts )
 	{
-		if ( JSON == null )
+		if ( counts == null )
 		{
 			return;
 		}
 
-		ArrayList<AdventureResult> items = new ArrayList<AdventureResult>();
-		ArrayList<AdventureResult> freepulls = new ArrayList<AdventureResult>();
-		ArrayList<AdventureResult> nopulls = new ArrayList<AdventureResult>();
+		ItemCounts items = new ItemCounts( counts.size() );
+		ItemCounts freepulls = new ItemCounts();
+		ItemCounts nopulls = new ItemCounts();
 
-		try
+		for ( int i = 0; i < counts.size(); ++i )
 		{
-			// {"1":"1","2":"1" ... }
-			Iterator< ? > keys = JSON.keys();
-
-			while ( keys.hasNext() )
+			int itemId = counts.getItemId( i );
+			int count = counts.getCount( i );
+			String name = ItemDatabase.getItemDataName( itemId );
+			if ( name == null )
 			{
-				String key = (String) keys.next();
-				int itemId = StringUtilities.parseInt( key );
-				int count = JSON.getInt( key );
-				String name = ItemDatabase.getItemDataName( itemId );
-				if ( name == null )
-				{
-					// api.php?what=item does not work for
-					// items in storage:
-					// "You don't own that item."
-					// ItemDatabase.registerItem( itemId );
-					continue;
-				}
+				// api.php?what=item does not work for
+				// items in storage:
+				// "You don't own that item."
+				// ItemDatabase.registerItem( itemId );
+				continue;
+			}
 
+			ItemCounts list = items;
+			if ( !KoLCharacter.canInteract() )
+			{
 				AdventureResult item = ItemPool.get( itemId, count );
-				ArrayList list =
-					KoLCharacter.canInteract() ? items :
+				list =
 					StorageRequest.isFreePull( item ) ? freepulls :
 					StorageRequest.isNoPull( item ) ? nopulls :
 					items;
-				list.add( item );
 			}
+			list.add( itemId, count );
 		}
-		catch ( JSONException e )
+
+		int[] changed = items.applyTo( KoLConstants.storage );
+		int[] changedFree = freepulls.applyTo( KoLConstants.freepulls );
+		nopulls.applyTo( KoLConstants.nopulls );
+
+		if ( changed != null && changed.length == 0 && changedFree != null && changedFree.length == 0 )
 		{
-			ApiRequest.reportParseError( "storage", JSON.toString(), e );
 			return;
 		}
 
-		KoLConstants.storage.clear();
-		KoLConstants.storage.addAll( items );
-
-		KoLConstants.freepulls.clear();
-		KoLConstants.freepulls.addAll( freepulls );
-
-		KoLConstants.nopulls.clear();
-		KoLConstants.nopulls.addAll( nopulls );
-
 		if ( InventoryManager.canUseStorage() )
 		{
 			ConcoctionDatabase.refreshConcoctions();
@@ -38,7 +38,6 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 
 import java.util.regex.Matcher;
@@ -103,7 +102,7 @@ import net.sourceforge.kolmafia.textui.parsetree.Value;
 
 import net.sourceforge.kolmafia.utilities.AdventureResultArray;
 import net.sourceforge.kolmafia.utilities.InputFieldUtilities;
-import net.sourceforge.kolmafia.utilities.StringUtilities;
+import net.sourceforge.kolmafia.utilities.ItemCounts;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -133,57 +132,84 @@ public abstract class InventoryManager
 			return;
 		}
 
-		ArrayList<AdventureResult> items = new ArrayList<AdventureResult>();
-		ArrayList<AdventureResult> unlimited = new ArrayList<AdventureResult>();
-
 		try
 		{
-			// {"1":"1","2":"1" ... }
-			Iterator< ? > keys = JSON.keys();
-			while ( keys.hasNext() )
+			InventoryManager.parseInventory( ItemCounts.fromJSON( JSON ) );
+		}
+		catch ( JSONException e )
+		{
+			ApiRequest.reportParseError( "inventory", JSON.toString(), e );
+		}
+	}
+
+	public static final void parseInventory( final ItemCounts counts )
+	{
+		if ( counts == null )
+		{
+			return;
+		}
+
+		ItemCounts items = new ItemCounts( counts.size() );
+		ItemCounts unlimited = new ItemCounts();
+
+		for ( int i = 0; i < counts.size(); ++i )
+		{
+			int itemId = counts.getItemId( i );
+			int count = counts.getCount( i );
+			String name = ItemDatabase.getItemDataName( itemId );
+			if ( name == null )
 			{
-				String key = (String) keys.next();
-				int itemId = StringUtilities.parseInt( key );
-				int count = JSON.getInt( key );
-				String name = ItemDatabase.getItemDataName( itemId );
-				if ( name == null )
-				{
-					// Fetch descid from api.php?what=item
-					// and register new item.
-					ItemDatabase.registerItem( itemId );
-				}
+				// Fetch descid from api.php?what=item
+				// and register new item.
+				ItemDatabase.registerItem( itemId );
+			}
 
-				if ( Limitmode.limitItem( itemId ) )
-				{
-					unlimited.add( ItemPool.get( itemId, count ) );
-				}
-				else
+			if ( Limitmode.limitItem( itemId ) )
+			{
+				unlimited.add( itemId, count );
+			}
+			else
+			{
+				items.add( itemId, count );
+				switch ( itemId )
 				{
-					items.add( ItemPool.get( itemId, count ) );
-					switch ( itemId )
+				case ItemPool.BOOMBOX:
+					if ( !Preferences.getString( "boomBoxSong" ).equals( "" ) )
 					{
-					case ItemPool.BOOMBOX:
-						if ( !Preferences.getString( "boomBoxSong" ).equals( "" ) )
-						{
-							KoLCharacter.addAvailableSkill( "Sing Along" );
-						}
-						break;
+						KoLCharacter.addAvailableSkill( "Sing Along" );
 					}
+					break;
 				}
 			}
 		}
-		catch ( JSONException e )
+
+		// Only the items whose counts differ are touched, so that
+		// refreshing a large inventory which has hardly changed is cheap.
+		int[] changed = items.applyTo( KoLConstants.inventory );
+		int[] unlimitedChanged = unlimited.applyTo( KoLConstants.unlimited );
+
+		// Nothing below needs doing unless one of the lists changed.
+		if ( changed != null && changed.length == 0 &&
+		     unlimitedChanged != null && unlimitedChanged.length == 0 )
 		{
-			ApiRequest.reportParseError( "inventory", JSON.toString(), e );
 			return;
 		}
 
-		KoLConstants.inventory.clear();
-		KoLConstants.inventory.addAll( items );
-		KoLConstants.unlimited.clear();
-		KoLConstants.unlimited.addAll( unlimited );
 		EquipmentManager.updateEquipmentLists();
-		ConcoctionDatabase.refreshConcoctions();
+
+		if ( changed == null )
+		{
+			ConcoctionDatabase.refreshConcoctions();
+		}
+		else
+		{
+			for ( int i = 0; i < changed.length; ++i )
+			{
+				ConcoctionDatabase.setRefreshNeeded( changed[ i ] );
+			}
+			ConcoctionDatabase.refreshConcoctions( false );
+		}
+
 		PreferenceListenerRegistry.firePreferenceChanged( "(hats)" );
 	}
 
@@ -146,6 +146,7 @@ import net.sourceforge.kolmafia.request.ZapRequest;
 
 import net.sourceforge.kolmafia.utilities.LockableListFactory;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
+import net.sourceforge.kolmafia.utilities.URLDispatcher;
 
 import net.sourceforge.kolmafia.webui.DiscoCombatHelper;
 import net.sourceforge.kolmafia.webui.MineDecorator;
@@ -260,652 +261,1017 @@ public class ResponseTextParser
 		return true;
 	}
 
-	public static final void externalUpdate( final GenericRequest request )
-	{
-		ResponseTextParser.externalUpdate( request.getURLString(), request.responseText );
-	}
+	/**
+	 * Parses the response to a request for a page.  A handler which only
+	 * parses some of the pages under its prefixes says which ones it
+	 * accepts, so that the rest go to the next handler registered for them.
+	 */
 
-	public static final void externalUpdate( final String location, final String responseText )
+	static abstract class ResponseHandler
 	{
-		if ( responseText == null || responseText.length() == 0 )
+		public boolean accepts( final String location )
 		{
-			return;
+			return true;
 		}
 
-		if ( location.startsWith( "account.php" ) )
-		{
-			AccountRequest.parseAccountData( location, responseText );
-		}
+		public abstract void parse( String location, String responseText );
+	}
 
-		else if ( location.startsWith( "account_contactlist.php" ) )
-		{
-			ContactListRequest.parseResponse( location, responseText );
-		}
+	// Handlers for pages whose responses are parsed no matter who asked
+	// for them, under the URL prefixes they handle.  The handlers for a
+	// URL are tried in the order they are added here until one of them
+	// accepts it.
 
-		else if ( location.startsWith( "account_manageoutfits.php" ) )
-		{
-			CustomOutfitRequest.parseResponse( location, responseText );
-		}
+	static final URLDispatcher<ResponseHandler> HANDLERS = new URLDispatcher<ResponseHandler>();
 
-		else if ( location.startsWith( "adventure.php" ) )
+	static
+	{
+		ResponseTextParser.HANDLERS.add( "account.php", new ResponseHandler()
 		{
-			SeaMerkinRequest.parseColosseumResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				AccountRequest.parseAccountData( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "api.php" ) )
+		ResponseTextParser.HANDLERS.add( "account_contactlist.php", new ResponseHandler()
 		{
-			ApiRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ContactListRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "ascend.php" ) && location.contains( "alttext=communityservice" ) 
-			&& !Preferences.getBoolean( "kingLiberated" ) )
+		ResponseTextParser.HANDLERS.add( "account_manageoutfits.php", new ResponseHandler()
 		{
-			// Redirect from donating body to science in Community Service
-			ChoiceManager.canWalkAway();
-			KoLCharacter.liberateKing();
-		}
+			public void parse( final String location, final String responseText )
+			{
+				CustomOutfitRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "ascensionhistory.php" ) )
+		ResponseTextParser.HANDLERS.add( "adventure.php", new ResponseHandler()
 		{
-			AscensionHistoryRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				SeaMerkinRequest.parseColosseumResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "arena.php" ) )
+		ResponseTextParser.HANDLERS.add( "api.php", new ResponseHandler()
 		{
-			CakeArenaRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ApiRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "backoffice.php" ) )
+		ResponseTextParser.HANDLERS.add( "ascend.php", new ResponseHandler()
 		{
-			ManageStoreRequest.parseResponse( location, responseText );
-		}
+			@Override
+			public boolean accepts( final String location )
+			{
+				return location.contains( "alttext=communityservice" ) && !Preferences.getBoolean( "kingLiberated" );
+			}
 
-		else if ( location.startsWith( "basement.php" ) )
+			public void parse( final String location, final String responseText )
+			{
+				// Redirect from donating body to science in Community Service
+				ChoiceManager.canWalkAway();
+				KoLCharacter.liberateKing();
+			}
+		} );
+
+		ResponseTextParser.HANDLERS.add( "ascensionhistory.php", new ResponseHandler()
 		{
-			BasementRequest.checkBasement( responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				AscensionHistoryRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "bedazzle.php" ) )
+		ResponseTextParser.HANDLERS.add( "arena.php", new ResponseHandler()
 		{
-			EquipmentRequest.parseBedazzlements( responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				CakeArenaRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "beerpong.php" ) )
+		ResponseTextParser.HANDLERS.add( "backoffice.php", new ResponseHandler()
 		{
-			BeerPongRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ManageStoreRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "bet.php" ) )
+		ResponseTextParser.HANDLERS.add( "basement.php", new ResponseHandler()
 		{
-			MoneyMakingGameRequest.parseResponse( location, responseText, false );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				BasementRequest.checkBasement( responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "bigisland.php" ) || location.startsWith( "postwarisland.php" ) )
+		ResponseTextParser.HANDLERS.add( "bedazzle.php", new ResponseHandler()
 		{
-			IslandRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				EquipmentRequest.parseBedazzlements( responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "bone_altar.php" ) )
+		ResponseTextParser.HANDLERS.add( "beerpong.php", new ResponseHandler()
 		{
-			AltarOfBonesRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				BeerPongRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "bounty.php" ) )
+		ResponseTextParser.HANDLERS.add( "bet.php", new ResponseHandler()
 		{
-			BountyHunterHunterRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				MoneyMakingGameRequest.parseResponse( location, responseText, false );
+			}
+		} );
 
-		else if ( location.startsWith( "campground.php" ) )
+		ResponseTextParser.HANDLERS.add( new String[] { "bigisland.php", "postwarisland.php" }, new ResponseHandler()
 		{
-			CampgroundRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				IslandRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "cafe.php" ) )
+		ResponseTextParser.HANDLERS.add( "bone_altar.php", new ResponseHandler()
 		{
-			ChezSnooteeRequest.parseResponse( location, responseText );
-			MicroBreweryRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				AltarOfBonesRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "cave.php" ) )
+		ResponseTextParser.HANDLERS.add( "bounty.php", new ResponseHandler()
 		{
-			NemesisRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				BountyHunterHunterRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "charsheet.php" ) && !location.contains( "ajax=1" ) )
+		ResponseTextParser.HANDLERS.add( "campground.php", new ResponseHandler()
 		{
-			CharSheetRequest.parseStatus( responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				CampgroundRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "choice.php" ) )
+		ResponseTextParser.HANDLERS.add( "cafe.php", new ResponseHandler()
 		{
-			if ( location.contains( "whichchoice=562" ) )
+			public void parse( final String location, final String responseText )
 			{
-				FudgeWandRequest.parseResponse( location, responseText );
+				ChezSnooteeRequest.parseResponse( location, responseText );
+				MicroBreweryRequest.parseResponse( location, responseText );
 			}
-			else if ( location.contains( "whichchoice=585" ) )
+		} );
+
+		ResponseTextParser.HANDLERS.add( "cave.php", new ResponseHandler()
+		{
+			public void parse( final String location, final String responseText )
 			{
-				ClanLoungeSwimmingPoolRequest.parseResponse( location, responseText );
+				NemesisRequest.parseResponse( location, responseText );
 			}
-			else if ( location.contains( "whichchoice=922" ) )
+		} );
+
+		ResponseTextParser.HANDLERS.add( "charsheet.php", new ResponseHandler()
+		{
+			@Override
+			public boolean accepts( final String location )
 			{
-				SummoningChamberRequest.parseResponse( location, responseText );
+				return !location.contains( "ajax=1" );
 			}
-			else if ( location.contains( "whichchoice=1278" ) )
+
+			public void parse( final String location, final String responseText )
 			{
-				ClanFortuneRequest.parseResponse( location, responseText );
+				CharSheetRequest.parseStatus( responseText );
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "clan_hall.php" ) )
+		ResponseTextParser.HANDLERS.add( "choice.php", new ResponseHandler()
 		{
-			ClanHallRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				if ( location.contains( "whichchoice=562" ) )
+				{
+					FudgeWandRequest.parseResponse( location, responseText );
+				}
+				else if ( location.contains( "whichchoice=585" ) )
+				{
+					ClanLoungeSwimmingPoolRequest.parseResponse( location, responseText );
+				}
+				else if ( location.contains( "whichchoice=922" ) )
+				{
+					SummoningChamberRequest.parseResponse( location, responseText );
+				}
+				else if ( location.contains( "whichchoice=1278" ) )
+				{
+					ClanFortuneRequest.parseResponse( location, responseText );
+				}
+			}
+		} );
 
-		else if ( location.startsWith( "clan_rumpus.php" ) )
+		ResponseTextParser.HANDLERS.add( "clan_hall.php", new ResponseHandler()
 		{
-			ClanRumpusRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ClanHallRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "clan_stash.php" ) )
+		ResponseTextParser.HANDLERS.add( "clan_rumpus.php", new ResponseHandler()
 		{
-			ClanStashRequest.parseTransfer( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ClanRumpusRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "clan_dreadsylvania.php" ) )
+		ResponseTextParser.HANDLERS.add( "clan_stash.php", new ResponseHandler()
 		{
-			DreadsylvaniaRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ClanStashRequest.parseTransfer( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "clan_viplounge.php" ) )
+		ResponseTextParser.HANDLERS.add( "clan_dreadsylvania.php", new ResponseHandler()
 		{
-			if ( location.contains( "preaction=lovetester" ) )
+			public void parse( final String location, final String responseText )
 			{
-				ClanFortuneRequest.parseResponse( location, responseText );
+				DreadsylvaniaRequest.parseResponse( location, responseText );
 			}
-			else
+		} );
+
+		ResponseTextParser.HANDLERS.add( "clan_viplounge.php", new ResponseHandler()
+		{
+			public void parse( final String location, final String responseText )
 			{
-				ClanLoungeRequest.parseResponse( location, responseText );
+				if ( location.contains( "preaction=lovetester" ) )
+				{
+					ClanFortuneRequest.parseResponse( location, responseText );
+				}
+				else
+				{
+					ClanLoungeRequest.parseResponse( location, responseText );
+				}
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "closet.php" ) || location.startsWith( "fillcloset.php" ) )
+		ResponseTextParser.HANDLERS.add( new String[] { "closet.php", "fillcloset.php" }, new ResponseHandler()
 		{
-			ClosetRequest.parseTransfer( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ClosetRequest.parseTransfer( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "craft.php" ) )
+		ResponseTextParser.HANDLERS.add( "craft.php", new ResponseHandler()
 		{
-			CreateItemRequest.parseCrafting( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				CreateItemRequest.parseCrafting( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "crimbo09.php" ) )
+		ResponseTextParser.HANDLERS.add( "crimbo09.php", new ResponseHandler()
 		{
-			Crimbo09Request.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				Crimbo09Request.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "crimbo10.php" ) )
+		ResponseTextParser.HANDLERS.add( "crimbo10.php", new ResponseHandler()
 		{
-			Crimbo10Request.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				Crimbo10Request.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "crimbo11.php" ) )
+		ResponseTextParser.HANDLERS.add( "crimbo11.php", new ResponseHandler()
 		{
-			Crimbo11Request.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				Crimbo11Request.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "curse.php" ) )
+		ResponseTextParser.HANDLERS.add( "curse.php", new ResponseHandler()
 		{
-			CurseRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				CurseRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "da.php" ) )
+		ResponseTextParser.HANDLERS.add( "da.php", new ResponseHandler()
 		{
-			ShrineRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ShrineRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "desc_skill.php" ) )
+		ResponseTextParser.HANDLERS.add( "desc_skill.php", new ResponseHandler()
 		{
-			Matcher m = ResponseTextParser.NEWSKILL2_PATTERN.matcher( location );
-			if ( m.find() )
+			public void parse( final String location, final String responseText )
 			{
-				int skill = StringUtilities.parseInt( m.group( 1 ) );
-				String skillName = SkillDatabase.getSkillName( skill );
-				if ( skillName == null )
+				Matcher m = ResponseTextParser.NEWSKILL2_PATTERN.matcher( location );
+				if ( m.find() )
 				{
-					SkillDatabase.registerSkill( responseText, skill, null );
-				}
-				if ( location.contains( "self=true" ) ) {
-					ConsequenceManager.parseSkillDesc( skill, responseText );
+					int skill = StringUtilities.parseInt( m.group( 1 ) );
+					String skillName = SkillDatabase.getSkillName( skill );
+					if ( skillName == null )
+					{
+						SkillDatabase.registerSkill( responseText, skill, null );
+					}
+					if ( location.contains( "self=true" ) ) {
+						ConsequenceManager.parseSkillDesc( skill, responseText );
+					}
 				}
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "desc_item.php" ) && !location.contains( "otherplayer=" ) )
+		ResponseTextParser.HANDLERS.add( "desc_item.php", new ResponseHandler()
 		{
-			Matcher m = ResponseTextParser.DESCITEM_PATTERN.matcher( location );
-			if ( m.find() )
+			@Override
+			public boolean accepts( final String location )
+			{
+				return !location.contains( "otherplayer=" );
+			}
+
+			public void parse( final String location, final String responseText )
 			{
-				String descid = m.group( 1 );
-				ConsequenceManager.parseItemDesc( descid, responseText );
-				int itemId = ItemDatabase.getItemIdFromDescription( descid );
-				if ( itemId == ItemPool.YEARBOOK_CAMERA )
+				Matcher m = ResponseTextParser.DESCITEM_PATTERN.matcher( location );
+				if ( m.find() )
 				{
-					ItemDatabase.parseYearbookCamera( responseText );
+					String descid = m.group( 1 );
+					ConsequenceManager.parseItemDesc( descid, responseText );
+					int itemId = ItemDatabase.getItemIdFromDescription( descid );
+					if ( itemId == ItemPool.YEARBOOK_CAMERA )
+					{
+						ItemDatabase.parseYearbookCamera( responseText );
+					}
 				}
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "desc_effect.php" ) )
+		ResponseTextParser.HANDLERS.add( "desc_effect.php", new ResponseHandler()
 		{
-			Matcher m = ResponseTextParser.DESCEFFECT_PATTERN.matcher( location );
-			if ( m.find() )
+			public void parse( final String location, final String responseText )
 			{
-				ConsequenceManager.parseEffectDesc( m.group( 1 ), responseText );
+				Matcher m = ResponseTextParser.DESCEFFECT_PATTERN.matcher( location );
+				if ( m.find() )
+				{
+					ConsequenceManager.parseEffectDesc( m.group( 1 ), responseText );
+				}
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "diary.php" ) )
+		ResponseTextParser.HANDLERS.add( "diary.php", new ResponseHandler()
 		{
-			UseItemRequest.handleDiary( responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				UseItemRequest.handleDiary( responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "dig.php" ) )
+		ResponseTextParser.HANDLERS.add( "dig.php", new ResponseHandler()
 		{
-			DigRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				DigRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "dwarfcontraption.php" ) )
+		ResponseTextParser.HANDLERS.add( "dwarfcontraption.php", new ResponseHandler()
 		{
-			DwarfContraptionRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				DwarfContraptionRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "dwarffactory.php" ) )
+		ResponseTextParser.HANDLERS.add( "dwarffactory.php", new ResponseHandler()
 		{
-			DwarfFactoryRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				DwarfFactoryRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "familiar.php" ) )
+		ResponseTextParser.HANDLERS.add( "familiar.php", new ResponseHandler()
 		{
-			FamiliarRequest.parseResponse( location, responseText );
-			if ( !location.contains( "ajax=1" ) )
+			public void parse( final String location, final String responseText )
 			{
-				FamiliarData.registerFamiliarData( responseText );
+				FamiliarRequest.parseResponse( location, responseText );
+				if ( !location.contains( "ajax=1" ) )
+				{
+					FamiliarData.registerFamiliarData( responseText );
+				}
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "famteam.php" ) )
+		ResponseTextParser.HANDLERS.add( "famteam.php", new ResponseHandler()
 		{
-			FamTeamRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				FamTeamRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "familiarbinger.php" ) )
+		ResponseTextParser.HANDLERS.add( "familiarbinger.php", new ResponseHandler()
 		{
-			UseItemRequest.parseBinge( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				UseItemRequest.parseBinge( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "gamestore.php" ) )
+		ResponseTextParser.HANDLERS.add( "gamestore.php", new ResponseHandler()
 		{
-			GameShoppeRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				GameShoppeRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "guild.php" ) )
+		ResponseTextParser.HANDLERS.add( "guild.php", new ResponseHandler()
 		{
-			GuildRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				GuildRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "hermit.php" ) )
+		ResponseTextParser.HANDLERS.add( "hermit.php", new ResponseHandler()
 		{
-			HermitRequest.parseHermitTrade( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				HermitRequest.parseHermitTrade( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "heydeze.php" ) )
+		ResponseTextParser.HANDLERS.add( "heydeze.php", new ResponseHandler()
 		{
-			HeyDezeRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				HeyDezeRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "friars.php" ) )
+		ResponseTextParser.HANDLERS.add( "friars.php", new ResponseHandler()
 		{
-			FriarRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				FriarRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "gamestore" ) )
+		ResponseTextParser.HANDLERS.add( "gamestore", new ResponseHandler()
 		{
-			GameShoppeRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				GameShoppeRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "gnomes.php" ) )
+		ResponseTextParser.HANDLERS.add( "gnomes.php", new ResponseHandler()
 		{
-			GnomeTinkerRequest.parseCreation( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				GnomeTinkerRequest.parseCreation( location, responseText );
+			}
+		} );
 
 		// Keep your current equipment and familiars updated, if you
 		// visit the appropriate pages.
-
-		else if ( location.startsWith( "inventory.php" ) )
+		ResponseTextParser.HANDLERS.add( "inventory.php", new ResponseHandler()
 		{
-			// If KoL is showing us our current equipment, parse it.
-			if ( location.contains( "which=2" ) || location.contains( "curequip=1" ) )
+			public void parse( final String location, final String responseText )
 			{
-				EquipmentRequest.parseEquipment( location, responseText );
+				// If KoL is showing us our current equipment, parse it.
+				if ( location.contains( "which=2" ) || location.contains( "curequip=1" ) )
+				{
+					EquipmentRequest.parseEquipment( location, responseText );
+
+					// Slimeling binge requests come here, too
+					if ( location.contains( "action=slime" ) )
+					{
+						UseItemRequest.parseBinge( location, responseText );
+					}
+					// Certain requests, like inserting cards into
+					// an El Vibrato helmet, have a usage message,
+					// not an equipment page. Check for that, too.
+					else
+					{
+						UseItemRequest.parseConsumption( responseText, false );
+					}
+				}
 
-				// Slimeling binge requests come here, too
-				if ( location.contains( "action=slime" ) )
+				// If there is a consumption message, parse it
+				else if ( location.contains( "action=message" ) )
+				{
+					UseItemRequest.parseConsumption( responseText, false );
+					AWOLQuartermasterRequest.parseResponse( location, responseText );
+					BURTRequest.parseResponse( location, responseText );
+				}
+
+				// If there is a bricko message, parse it
+				else if ( location.contains( "action=breakbricko" ) )
+				{
+					UseItemRequest.parseBricko( responseText );
+				}
+
+				// If there is a binge message, parse it
+				else if ( location.contains( "action=ghost" ) || location.contains( "action=hobo" ) || 
+					  location.contains( "action=slime" ) || location.contains( "action=candy" ) )
 				{
 					UseItemRequest.parseBinge( location, responseText );
 				}
-				// Certain requests, like inserting cards into
-				// an El Vibrato helmet, have a usage message,
-				// not an equipment page. Check for that, too.
-				else
+
+				// Robortender consumption
+				else if ( location.contains( "action=robooze" ) )
 				{
-					UseItemRequest.parseConsumption( responseText, false );
+					UseItemRequest.parseRobortenderBinge( location, responseText );
+				}
+
+				// If there is an absorb message, parse it
+				else if ( location.contains( "absorb=" ) )
+				{
+					UseItemRequest.parseAbsorb( location, responseText );
+				}
+
+					// Closet transfers can come via inventory.php
+				else if ( location.contains( "action=closetpush" ) || location.contains( "action=closetpull" ) )
+				{
+					ClosetRequest.parseTransfer( location, responseText );
+				}
+
+				// Emptying storage can come via inventory.php
+				else if ( location.contains( "action=pullall" ) )
+				{
+					StorageRequest.parseTransfer( location, responseText );
 				}
 			}
+		} );
 
-			// If there is a consumption message, parse it
-			else if ( location.contains( "action=message" ) )
+		ResponseTextParser.HANDLERS.add( "inv_equip.php", new ResponseHandler()
+		{
+			@Override
+			public boolean accepts( final String location )
 			{
-				UseItemRequest.parseConsumption( responseText, false );
-				AWOLQuartermasterRequest.parseResponse( location, responseText );
-				BURTRequest.parseResponse( location, responseText );
+				return location.contains( "ajax=1" );
 			}
 
-			// If there is a bricko message, parse it
-			else if ( location.contains( "action=breakbricko" ) )
+			public void parse( final String location, final String responseText )
 			{
-				UseItemRequest.parseBricko( responseText );
+				// If we are changing equipment via a chat command,
+				// try to deduce what changed.
+				EquipmentRequest.parseEquipmentChange( location, responseText );
 			}
+		} );
 
-			// If there is a binge message, parse it
-			else if ( location.contains( "action=ghost" ) || location.contains( "action=hobo" ) || 
-				  location.contains( "action=slime" ) || location.contains( "action=candy" ) )
+		ResponseTextParser.HANDLERS.add( new String[] { "inv_eat.php", "inv_booze.php", "inv_spleen.php", "inv_use.php", "inv_familiar.php" }, new ResponseHandler()
+		{
+			@Override
+			public boolean accepts( final String location )
 			{
-				UseItemRequest.parseBinge( location, responseText );
+				return location.contains( "whichitem" );
 			}
 
-			// Robortender consumption
-			else if ( location.contains( "action=robooze" ) )
+			public void parse( final String location, final String responseText )
 			{
-				UseItemRequest.parseRobortenderBinge( location, responseText );
+				UseItemRequest.parseConsumption( responseText, false );
 			}
+		} );
 
-			// If there is an absorb message, parse it
-			else if ( location.contains( "absorb=" ) )
+		ResponseTextParser.HANDLERS.add( "knoll_mushrooms.php", new ResponseHandler()
+		{
+			public void parse( final String location, final String responseText )
 			{
-				UseItemRequest.parseAbsorb( location, responseText );
+				MushroomRequest.parseResponse( location, responseText );
 			}
+		} );
 
-				// Closet transfers can come via inventory.php
-			else if ( location.contains( "action=closetpush" ) || location.contains( "action=closetpull" ) )
+		ResponseTextParser.HANDLERS.add( "leaflet.php", new ResponseHandler()
+		{
+			public void parse( final String location, final String responseText )
 			{
-				ClosetRequest.parseTransfer( location, responseText );
+				LeafletRequest.parseResponse( location, responseText );
 			}
+		} );
 
-			// Emptying storage can come via inventory.php
-			else if ( location.contains( "action=pullall" ) )
+		ResponseTextParser.HANDLERS.add( "mallstore.php", new ResponseHandler()
+		{
+			public void parse( final String location, final String responseText )
 			{
-				StorageRequest.parseTransfer( location, responseText );
+				MallPurchaseRequest.parseResponse( location, responseText );
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "inv_equip.php" ) && location.contains( "ajax=1" ) )
+		ResponseTextParser.HANDLERS.add( "managecollection.php", new ResponseHandler()
 		{
-			// If we are changing equipment via a chat command,
-			// try to deduce what changed.
-			EquipmentRequest.parseEquipmentChange( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				DisplayCaseRequest.parseDisplayTransfer( location, responseText );
+			}
+		} );
 
-		else if ( ( location.startsWith( "inv_eat.php" ) ||
-			    location.startsWith( "inv_booze.php" ) ||
-		            location.startsWith( "inv_spleen.php" ) || 
-		            location.startsWith( "inv_use.php" ) ||
-			    location.startsWith( "inv_familiar.php" ) )
-		          && location.contains( "whichitem" ) )
+		ResponseTextParser.HANDLERS.add( "managecollectionshelves.php", new ResponseHandler()
 		{
-			UseItemRequest.parseConsumption( responseText, false );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				DisplayCaseRequest.parseDisplayArrangement( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "knoll_mushrooms.php" ) )
+		ResponseTextParser.HANDLERS.add( "managestore.php", new ResponseHandler()
 		{
-			MushroomRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				AutoMallRequest.parseTransfer( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "leaflet.php" ) )
+		ResponseTextParser.HANDLERS.add( "mining.php", new ResponseHandler()
 		{
-			LeafletRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				MineDecorator.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "mallstore.php" ) )
+		ResponseTextParser.HANDLERS.add( "monkeycastle.php", new ResponseHandler()
 		{
-			MallPurchaseRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				if ( location.contains( "who=2" ) || location.contains( "action=buyitem" ) )
+				{
+					BigBrotherRequest.parseResponse( location, responseText );
+				}
+				else if ( location.contains( "who=4" ) )
+				{
+					MomRequest.parseResponse( location, responseText );
+				}
+			}
+		} );
 
-		else if ( location.startsWith( "managecollection.php" ) )
-		{
-			DisplayCaseRequest.parseDisplayTransfer( location, responseText );
-		}
-		else if ( location.startsWith( "managecollectionshelves.php" ) )
+		ResponseTextParser.HANDLERS.add( "mrstore.php", new ResponseHandler()
 		{
-			DisplayCaseRequest.parseDisplayArrangement( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				MrStoreRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "managestore.php" ) )
+		ResponseTextParser.HANDLERS.add( new String[] { "multiuse.php", "skills.php" }, new ResponseHandler()
 		{
-			AutoMallRequest.parseTransfer( location, responseText );
-		}
+			@Override
+			public boolean accepts( final String location )
+			{
+				return location.contains( "useitem" );
+			}
 
-		else if ( location.startsWith( "mining.php" ) )
-		{
-			MineDecorator.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				UseItemRequest.parseConsumption( responseText, false );
+			}
+		} );
 
-		else if ( location.startsWith( "monkeycastle.php" ) )
+		ResponseTextParser.HANDLERS.add( "pandamonium.php", new ResponseHandler()
 		{
-			if ( location.contains( "who=2" ) || location.contains( "action=buyitem" ) )
+			public void parse( final String location, final String responseText )
 			{
-				BigBrotherRequest.parseResponse( location, responseText );
+				PandamoniumRequest.parseResponse( location, responseText );
 			}
-			else if ( location.contains( "who=4" ) )
+		} );
+
+		ResponseTextParser.HANDLERS.add( "peevpee.php", new ResponseHandler()
+		{
+			public void parse( final String location, final String responseText )
 			{
-				MomRequest.parseResponse( location, responseText );
+				PeeVPeeRequest.parseResponse( location, responseText );
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "mrstore.php" ) )
+		ResponseTextParser.HANDLERS.add( "place.php", new ResponseHandler()
 		{
-			MrStoreRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				PlaceRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( ( location.startsWith( "multiuse.php" ) || location.startsWith( "skills.php" ) ) && location.contains( "useitem" ) )
+		ResponseTextParser.HANDLERS.add( "questlog.php", new ResponseHandler()
 		{
-			UseItemRequest.parseConsumption( responseText, false );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				MonsterManuelRequest.parseResponse( location, responseText );
+				QuestLogRequest.registerQuests( true, location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "pandamonium.php" ) )
+		ResponseTextParser.HANDLERS.add( "raffle.php", new ResponseHandler()
 		{
-			PandamoniumRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				RaffleRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "peevpee.php" ) )
+		ResponseTextParser.HANDLERS.add( new String[] { "runskillz.php", "skillz.php" }, new ResponseHandler()
 		{
-			PeeVPeeRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				UseSkillRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "place.php" ) )
+		ResponseTextParser.HANDLERS.add( "sea_merkin.php", new ResponseHandler()
 		{
-			PlaceRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				SeaMerkinRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "questlog.php" ) )
+		ResponseTextParser.HANDLERS.add( "sea_skatepark.php", new ResponseHandler()
 		{
-			MonsterManuelRequest.parseResponse( location, responseText );
-			QuestLogRequest.registerQuests( true, location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				SkateParkRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "raffle.php" ) )
+		ResponseTextParser.HANDLERS.add( "sellstuff.php", new ResponseHandler()
 		{
-			RaffleRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				AutoSellRequest.parseCompactAutoSell( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "runskillz.php" ) || location.startsWith( "skillz.php" ) )
+		ResponseTextParser.HANDLERS.add( "sellstuff_ugly.php", new ResponseHandler()
 		{
-			UseSkillRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				AutoSellRequest.parseDetailedAutoSell( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "sea_merkin.php" ) )
+		ResponseTextParser.HANDLERS.add( "sendmessage.php", new ResponseHandler()
 		{
-			SeaMerkinRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				SendMailRequest.parseTransfer( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "sea_skatepark.php" ) )
+		ResponseTextParser.HANDLERS.add( "shop.php", new ResponseHandler()
 		{
-			SkateParkRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				NPCPurchaseRequest.parseShopResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "sellstuff.php" ) )
+		ResponseTextParser.HANDLERS.add( "showclan.php", new ResponseHandler()
 		{
-			AutoSellRequest.parseCompactAutoSell( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ShowClanRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "sellstuff_ugly.php" ) )
+		ResponseTextParser.HANDLERS.add( "skills.php", new ResponseHandler()
 		{
-			AutoSellRequest.parseDetailedAutoSell( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				if ( location.contains( "action=useditem" ) )
+				{
+					UseItemRequest.parseConsumption( responseText, false );
+				}
+			}
+		} );
 
-		else if ( location.startsWith( "sendmessage.php" ) )
+		ResponseTextParser.HANDLERS.add( "spaaace.php", new ResponseHandler()
 		{
-			SendMailRequest.parseTransfer( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				SpaaaceRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "shop.php" ) )
+		ResponseTextParser.HANDLERS.add( "storage.php", new ResponseHandler()
 		{
-			NPCPurchaseRequest.parseShopResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				StorageRequest.parseTransfer( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "showclan.php" ) )
+		ResponseTextParser.HANDLERS.add( "suburbandis.php", new ResponseHandler()
 		{
-			ShowClanRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				SuburbanDisRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "skills.php" ) )
+		ResponseTextParser.HANDLERS.add( "sushi.php", new ResponseHandler()
 		{
-			if ( location.contains( "action=useditem" ) )
+			public void parse( final String location, final String responseText )
 			{
-				UseItemRequest.parseConsumption( responseText, false );
+				SushiRequest.parseConsumption( location, responseText, true );
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "spaaace.php" ) )
+		ResponseTextParser.HANDLERS.add( "tavern.php", new ResponseHandler()
 		{
-			SpaaaceRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				TavernRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "storage.php" ) )
+		ResponseTextParser.HANDLERS.add( "tiles.php", new ResponseHandler()
 		{
-			StorageRequest.parseTransfer( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				DvorakManager.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "suburbandis.php" ) )
+		ResponseTextParser.HANDLERS.add( "topmenu.php", new ResponseHandler()
 		{
-			SuburbanDisRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				if ( KoLCharacter.getLimitmode() == Limitmode.BATMAN )
+				{
+					BatManager.parseTopMenu( responseText );
+				}
+			}
+		} );
 
-		else if ( location.startsWith( "sushi.php" ) )
+		ResponseTextParser.HANDLERS.add( "town_altar.php", new ResponseHandler()
 		{
-			SushiRequest.parseConsumption( location, responseText, true );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				AltarOfLiteracyRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "tavern.php" ) )
+		ResponseTextParser.HANDLERS.add( "town_right.php", new ResponseHandler()
 		{
-			TavernRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				GourdRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		if ( location.startsWith( "tiles.php" ) )
+		ResponseTextParser.HANDLERS.add( "town_sendgift.php", new ResponseHandler()
 		{
-			DvorakManager.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				SendGiftRequest.parseTransfer( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "topmenu.php" ) )
+		ResponseTextParser.HANDLERS.add( "traveler.php", new ResponseHandler()
 		{
-			if ( KoLCharacter.getLimitmode() == Limitmode.BATMAN )
+			public void parse( final String location, final String responseText )
 			{
-				BatManager.parseTopMenu( responseText );
+				TravelingTraderRequest.parseResponse( location, responseText );
 			}
-		}
+		} );
 
-		else if ( location.startsWith( "town_altar.php" ) )
+		ResponseTextParser.HANDLERS.add( "trophy.php", new ResponseHandler()
 		{
-			AltarOfLiteracyRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				TrophyHutRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "town_right.php" ) )
+		ResponseTextParser.HANDLERS.add( "typeii.php", new ResponseHandler()
 		{
-			GourdRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				TrendyRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "town_sendgift.php" ) )
+		ResponseTextParser.HANDLERS.add( "volcanoisland.php", new ResponseHandler()
 		{
-			SendGiftRequest.parseTransfer( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				PhineasRequest.parseResponse( location, responseText );
+				VolcanoIslandRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "traveler.php" ) )
+		ResponseTextParser.HANDLERS.add( "volcanomaze.php", new ResponseHandler()
 		{
-			TravelingTraderRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				VolcanoMazeRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "trophy.php" ) )
+		ResponseTextParser.HANDLERS.add( "wand.php", new ResponseHandler()
 		{
-			TrophyHutRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				ZapRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "typeii.php" ) )
+		ResponseTextParser.HANDLERS.add( "witchess.php", new ResponseHandler()
 		{
-			TrendyRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				WitchessRequest.parseResponse( location, responseText );
+			}
+		} );
 
-		else if ( location.startsWith( "volcanoisland.php" ) )
+		ResponseTextParser.HANDLERS.add( "crypt.php", new ResponseHandler()
 		{
-			PhineasRequest.parseResponse( location, responseText );
-			VolcanoIslandRequest.parseResponse( location, responseText );
-		}
+			public void parse( final String location, final String responseText )
+			{
+				// Check if crypt areas have unexpectedly vanished and correct if so
+				if ( !responseText.contains( "The Defiled Alcove" ) && Preferences.getInteger( "cyrptAlcoveEvilness" ) > 0 ||
+				     !responseText.contains( "The Defiled Cranny" ) && Preferences.getInteger( "cyrptCrannyEvilness" ) > 0 ||
+				     !responseText.contains( "The Defiled Niche" ) && Preferences.getInteger( "cyrptNicheEvilness" ) > 0 ||
+				     !responseText.contains( "The Defiled Nook" ) && Preferences.getInteger( "cyrptNookEvilness" ) > 0 )
+				{
+					if ( InventoryManager.hasItem( ItemPool.EVILOMETER ) )
+					{
+						RequestThread.postRequest( UseItemRequest.getInstance( ItemPool.EVILOMETER ) );
+					}
+					else
+					{
+						// Must have completed quest and already used and lost Evilometer
+						Preferences.setInteger( "cyrptAlcoveEvilness", 0 );
+						Preferences.setInteger( "cyrptCrannyEvilness", 0 );
+						Preferences.setInteger( "cyrptNicheEvilness", 0 );
+						Preferences.setInteger( "cyrptNookEvilness", 0 );
+						Preferences.setInteger( "cyrptTotalEvilness", 0 );
+					}
+				}
+			}
+		} );
+	}
 
-		else if ( location.startsWith( "volcanomaze.php" ) )
-		{
-			VolcanoMazeRequest.parseResponse( location, responseText );
-		}
+	/**
+	 * Returns the handler which parses the response to a request for the
+	 * given page, or null if there is none.
+	 */
 
-		else if ( location.startsWith( "wand.php" ) )
+	static ResponseHandler findHandler( final String location )
+	{
+		for ( ResponseHandler handler : ResponseTextParser.HANDLERS.find( location ) )
 		{
-			ZapRequest.parseResponse( location, responseText );
+			if ( handler.accepts( location ) )
+			{
+				return handler;
+			}
 		}
 
-		else if ( location.startsWith( "witchess.php" ) )
+		return null;
+	}
+
+	public static final void externalUpdate( final GenericRequest request )
+	{
+		ResponseTextParser.externalUpdate( request.getURLString(), request.responseText );
+	}
+
+	public static final void externalUpdate( final String location, final String responseText )
+	{
+		if ( responseText == null || responseText.length() == 0 )
 		{
-			WitchessRequest.parseResponse( location, responseText );
+			return;
 		}
 
-		else if ( location.startsWith( "crypt.php" ) )
+		ResponseHandler handler = ResponseTextParser.findHandler( location );
+		if ( handler != null )
 		{
-			// Check if crypt areas have unexpectedly vanished and correct if so
-			if ( !responseText.contains( "The Defiled Alcove" ) && Preferences.getInteger( "cyrptAlcoveEvilness" ) > 0 ||
-			     !responseText.contains( "The Defiled Cranny" ) && Preferences.getInteger( "cyrptCrannyEvilness" ) > 0 ||
-			     !responseText.contains( "The Defiled Niche" ) && Preferences.getInteger( "cyrptNicheEvilness" ) > 0 ||
-			     !responseText.contains( "The Defiled Nook" ) && Preferences.getInteger( "cyrptNookEvilness" ) > 0 )
-			{
-				if ( InventoryManager.hasItem( ItemPool.EVILOMETER ) )
-				{
-					RequestThread.postRequest( UseItemRequest.getInstance( ItemPool.EVILOMETER ) );
-				}
-				else
-				{
-					// Must have completed quest and already used and lost Evilometer
-					Preferences.setInteger( "cyrptAlcoveEvilness", 0 );
-					Preferences.setInteger( "cyrptCrannyEvilness", 0 );
-					Preferences.setInteger( "cyrptNicheEvilness", 0 );
-					Preferences.setInteger( "cyrptNookEvilness", 0 );
-					Preferences.setInteger( "cyrptTotalEvilness", 0 );
-				}
-			}
+			handler.parse( location, responseText );
 		}
 
 		// You can learn a skill on many pages.
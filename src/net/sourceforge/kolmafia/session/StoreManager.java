@@ -900,7 +900,7 @@ public abstract class StoreManager
 		finally
 		{
 			RequestLogger.printLine( "Updating mallprices.txt with " + count + " prices." );
-			MallPriceDatabase.writePrices();
+			MallPriceDatabase.flushPrices();
 		}
 
 		return count;
@@ -981,7 +981,7 @@ public abstract class StoreManager
 		finally
 		{
 			RequestLogger.printLine( "Updating mallprices.txt with " + count + " prices." );
-			MallPriceDatabase.writePrices();
+			MallPriceDatabase.flushPrices();
 		}
 
 		return count;
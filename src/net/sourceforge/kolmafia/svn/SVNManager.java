@@ -80,6 +80,7 @@ import net.sourceforge.kolmafia.KoLConstants.MafiaState;
 import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
 import net.sourceforge.kolmafia.utilities.PauseObject;
+import net.sourceforge.kolmafia.utilities.ScriptIndex;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 import org.tmatesoft.svn.core.ISVNLogEntryHandler;
@@ -1054,6 +1055,7 @@ public class SVNManager
 
 		RequestLogger.printLine( file.getName() + " => " + rebase.getPath() );
 		FileUtilities.copyFile( file, rebase );
+		ScriptIndex.invalidate();
 	}
 
 	private static void doDelete( File file, String relpath )
@@ -1068,6 +1070,7 @@ public class SVNManager
 			String rerebase = FileUtilities.getRelativePath( KoLConstants.ROOT_LOCATION , rebase );
 			if ( rebase.delete() )
 				RequestLogger.printLine( rerebase + " => DELETED" );
+			ScriptIndex.invalidate();
 		}
 	}
 
@@ -1479,6 +1482,7 @@ public class SVNManager
 	{
 		RequestLogger.printLine( "Uninstalling project..." );
 		recursiveDelete( project );
+		ScriptIndex.invalidate();
 		if ( project.exists() )
 		{
 			// sometimes SVN daemon threads (like tsvncache) will have the lock for wc.db, causing delete to fail for that file (and therefore also the project directory).
@@ -43,6 +43,8 @@ import java.io.InputStream;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import net.java.dev.spellcast.utilities.DataUtilities;
@@ -51,6 +53,12 @@ import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.KoLmafia;
 
 import net.sourceforge.kolmafia.RequestLogger;
+
+import net.sourceforge.kolmafia.textui.parsetree.AggregateType;
+import net.sourceforge.kolmafia.textui.parsetree.CompositeType;
+import net.sourceforge.kolmafia.textui.parsetree.CompositeValue;
+import net.sourceforge.kolmafia.textui.parsetree.RecordType;
+import net.sourceforge.kolmafia.textui.parsetree.Type;
 import net.sourceforge.kolmafia.textui.parsetree.Value;
 
 import net.sourceforge.kolmafia.utilities.ByteBufferUtilities;
@@ -62,11 +70,24 @@ public class DataFileCache
 	private static final Map<String, Long> dataFileTimestampCache = Collections.synchronizedMap(new HashMap<String, Long>());
 	private static final Map<String, byte[]> dataFileDataCache = Collections.synchronizedMap(new HashMap<String, byte[]>());
 
+	// Maps most recently loaded by file_to_map, already parsed.  A parsed
+	// map takes several times the memory of the text it was read from, so
+	// the cache is bounded by the total length of that text.
+	private static final int PARSED_MAP_CACHE_BYTES = 4 * 1024 * 1024;
+	private static final LinkedHashMap<String, ParsedMap> parsedMapCache = new LinkedHashMap<String, ParsedMap>( 16, 0.75f, true );
+	private static int parsedMapCacheBytes = 0;
+
 	public static void clearCache()
 	{
 		DataFileCache.recentlyUsedList.clear();
 		DataFileCache.dataFileTimestampCache.clear();
 		DataFileCache.dataFileDataCache.clear();
+
+		synchronized ( DataFileCache.parsedMapCache )
+		{
+			DataFileCache.parsedMapCache.clear();
+			DataFileCache.parsedMapCacheBytes = 0;
+		}
 	}
 	
 	public static File getFile( String filename, boolean readOnly )
@@ -291,6 +312,173 @@ public class DataFileCache
 		return DataTypes.TRUE_VALUE;
 	}
 
+	/**
+	 * Fills the given map with what a previous file_to_map parsed from the
+	 * given file contents, if it was read into the same type of map.
+	 *
+	 * @return <code>true</code> if the map was filled from the cache
+	 */
+
+	public static boolean readParsedMap( final String filename, final byte[] data, final boolean compact, final CompositeValue result )
+	{
+		ParsedMap parsed;
+
+		synchronized ( DataFileCache.parsedMapCache )
+		{
+			parsed = DataFileCache.parsedMapCache.get( filename );
+		}
+
+		// The file contents are cached by timestamp and replaced when
+		// written by map_to_file, so as long as we parsed this very
+		// array, the parse is current.  Each script declares its own
+		// types, so compare them by what they look like.
+		if ( parsed == null || parsed.data != data || parsed.compact != compact ||
+		     !parsed.type.equals( DataFileCache.typeKey( result.getType() ) ) )
+		{
+			return false;
+		}
+
+		DataFileCache.copyContents( parsed.map, result );
+		return true;
+	}
+
+	public static void saveParsedMap( final String filename, final byte[] data, final boolean compact, final CompositeValue map )
+	{
+		if ( data.length > DataFileCache.PARSED_MAP_CACHE_BYTES )
+		{
+			return;
+		}
+
+		// The caller is free to modify its map, so keep our own copy
+		CompositeValue copy = (CompositeValue) map.getType().initialValue();
+		DataFileCache.copyContents( map, copy );
+
+		ParsedMap parsed = new ParsedMap( data, DataFileCache.typeKey( map.getType() ), compact, copy );
+
+		synchronized ( DataFileCache.parsedMapCache )
+		{
+			DataFileCache.removeParsedMap( filename );
+			DataFileCache.parsedMapCache.put( filename, parsed );
+			DataFileCache.parsedMapCacheBytes += data.length;
+
+			Iterator<ParsedMap> it = DataFileCache.parsedMapCache.values().iterator();
+			while ( DataFileCache.parsedMapCacheBytes > DataFileCache.PARSED_MAP_CACHE_BYTES )
+			{
+				DataFileCache.parsedMapCacheBytes -= it.next().data.length;
+				it.remove();
+			}
+		}
+	}
+
+	private static void removeParsedMap( final String filename )
+	{
+		synchronized ( DataFileCache.parsedMapCache )
+		{
+			ParsedMap parsed = DataFileCache.parsedMapCache.remove( filename );
+			if ( parsed != null )
+			{
+				DataFileCache.parsedMapCacheBytes -= parsed.data.length;
+			}
+		}
+	}
+
+	static boolean hasParsedMap( final String filename )
+	{
+		synchronized ( DataFileCache.parsedMapCache )
+		{
+			return DataFileCache.parsedMapCache.containsKey( filename );
+		}
+	}
+
+	private static String typeKey( Type type )
+	{
+		type = type.getBaseType();
+
+		if ( type instanceof RecordType )
+		{
+			RecordType record = (RecordType) type;
+			String[] names = record.getFieldNames();
+			Type[] types = record.getFieldTypes();
+
+			StringBuilder buffer = new StringBuilder( record.toString() );
+			buffer.append( " {" );
+			for ( int i = 0; i < names.length; ++i )
+			{
+				buffer.append( ' ' );
+				buffer.append( DataFileCache.typeKey( types[ i ] ) );
+				buffer.append( ' ' );
+				buffer.append( names[ i ] );
+				buffer.append( ';' );
+			}
+			buffer.append( " }" );
+			return buffer.toString();
+		}
+
+		if ( type instanceof AggregateType )
+		{
+			AggregateType aggregate = (AggregateType) type;
+			String index = aggregate.getSize() != -1 ?
+				String.valueOf( aggregate.getSize() ) :
+				DataFileCache.typeKey( aggregate.getIndexType() );
+			if ( aggregate.isCaseInsensitive() )
+			{
+				index += " nocase";
+			}
+			return DataFileCache.typeKey( aggregate.getDataType() ) + " [" + index + "]";
+		}
+
+		return type.toString();
+	}
+
+	private static void copyContents( final CompositeValue source, final CompositeValue target )
+	{
+		// The target's type may be another script's declaration of
+		// the same type, so build the copies from the target's types.
+		CompositeType type = (CompositeType) target.getType().getBaseType();
+
+		target.clear();
+
+		for ( Value key : source.keys() )
+		{
+			target.aset( key, DataFileCache.copyValue( source.aref( key ), type.getDataType( key ) ) );
+		}
+	}
+
+	private static Value copyValue( final Value value, final Type type )
+	{
+		// Simple values are immutable and can be shared
+
+		if ( value instanceof CompositeValue )
+		{
+			CompositeValue copy = (CompositeValue) type.initialValue();
+			DataFileCache.copyContents( (CompositeValue) value, copy );
+			return copy;
+		}
+
+		if ( value.getType().equals( DataTypes.TYPE_BUFFER ) )
+		{
+			return new Value( DataTypes.BUFFER_TYPE, "", new StringBuffer( value.toString() ) );
+		}
+
+		return value;
+	}
+
+	private static class ParsedMap
+	{
+		private final byte[] data;
+		private final String type;
+		private final boolean compact;
+		private final CompositeValue map;
+
+		public ParsedMap( final byte[] data, final String type, final boolean compact, final CompositeValue map )
+		{
+			this.data = data;
+			this.type = type;
+			this.compact = compact;
+			this.map = map;
+		}
+	}
+
 	private static void updateCache( String filename, long modifiedTime, byte[] data )
 	{
 		Object recentlyUsedCheck = DataFileCache.recentlyUsedList.update( filename );
@@ -303,5 +491,8 @@ public class DataFileCache
 	
 		DataFileCache.dataFileTimestampCache.put( filename, new Long( modifiedTime ) );
 		DataFileCache.dataFileDataCache.put( filename, data );
+
+		// Whatever was parsed from the old contents is stale now
+		DataFileCache.removeParsedMap( filename );
 	}
 }
@@ -792,11 +792,31 @@ public class DataTypes
 		return val ? ONE_VALUE : ZERO_VALUE;
 	}
 
+	// Values are immutable, so the small integers that loop counters
+	// and arithmetic produce most often can be shared.
+	private static final int SMALL_INT_MIN = -128;
+	private static final int SMALL_INT_MAX = 1023;
+	// The table is filled here, during class initialization, so that
+	// every thread running a script sees it fully built.
+	private static final Value[] SMALL_INT_VALUES = new Value[ SMALL_INT_MAX - SMALL_INT_MIN + 1 ];
+
+	static
+	{
+		for ( int i = SMALL_INT_MIN; i <= SMALL_INT_MAX; ++i )
+		{
+			SMALL_INT_VALUES[ i - SMALL_INT_MIN ] =
+				i == 0 ? ZERO_VALUE : i == 1 ? ONE_VALUE : new Value( (long) i );
+		}
+	}
+
 	public static final Value makeIntValue( final long val )
 	{
-		return val == 0 ? ZERO_VALUE :
-		       val == 1 ? ONE_VALUE :
-		       new Value( val );
+		if ( val < SMALL_INT_MIN || val > SMALL_INT_MAX )
+		{
+			return new Value( val );
+		}
+
+		return SMALL_INT_VALUES[ (int) val - SMALL_INT_MIN ];
 	}
 
 	public static final Value makeFloatValue( final double val )
@@ -34,6 +34,7 @@
 package net.sourceforge.kolmafia.textui;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -66,8 +67,6 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import net.sourceforge.kolmafia.moods.MoodTrigger;
-import org.htmlcleaner.HtmlCleaner;
-import org.htmlcleaner.SimpleXmlSerializer;
 import org.htmlcleaner.TagNode;
 import org.htmlcleaner.XPatherException;
 
@@ -229,9 +228,9 @@ import net.sourceforge.kolmafia.textui.parsetree.Value;
 import net.sourceforge.kolmafia.utilities.CharacterEntities;
 import net.sourceforge.kolmafia.utilities.ChoiceUtilities;
 import net.sourceforge.kolmafia.utilities.FileUtilities;
-import net.sourceforge.kolmafia.utilities.HTMLParserUtils;
 import net.sourceforge.kolmafia.utilities.InputFieldUtilities;
 import net.sourceforge.kolmafia.utilities.LogStream;
+import net.sourceforge.kolmafia.utilities.LogWriter;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 import net.sourceforge.kolmafia.webui.RelayServer;
@@ -2049,6 +2048,9 @@ public abstract class RuntimeLibrary
 		params = new Type[] { DataTypes.STRING_TYPE, DataTypes.STRING_TYPE };
 		functions.add( new LibraryFunction( "xpath", new AggregateType( DataTypes.STRING_TYPE, 0 ), params ) );
 
+		params = new Type[] { DataTypes.STRING_TYPE, DataTypes.AGGREGATE_TYPE };
+		functions.add( new LibraryFunction( "xpath_batch", new AggregateType( new AggregateType( DataTypes.STRING_TYPE, DataTypes.INT_TYPE ), DataTypes.STRING_TYPE ), params ) );
+
 		// Sweet Synthesis
 		params = new Type[] { DataTypes.INT_TYPE };
 		functions.add( new LibraryFunction( "candy_for_tier", new AggregateType( DataTypes.ITEM_TYPE, 0 ), params ) );
@@ -2440,57 +2442,73 @@ public abstract class RuntimeLibrary
 
 	public static Value xpath( Interpreter interpreter, final Value html, final Value xpath )
 	{
-		HtmlCleaner cleaner = HTMLParserUtils.configureDefaultParser();
+		TagNode doc = RuntimeLibrary.cleanHTML( interpreter, html );
+		String[] result = RuntimeLibrary.evaluateXPath( interpreter, doc, xpath );
+
+		AggregateType type = new AggregateType( DataTypes.STRING_TYPE, result.length );
+		ArrayValue value = new ArrayValue( type );
+
+		for ( int i = 0; i < result.length; i++ )
+		{
+			value.aset( new Value( i ), new Value( result[ i ] ) );
+		}
+
+		return value;
+	}
+
+	public static Value xpath_batch( Interpreter interpreter, final Value html, final Value xpaths )
+	{
+		// Clean the page once and run every expression against it
+		TagNode doc = RuntimeLibrary.cleanHTML( interpreter, html );
+
+		MapValue value = new MapValue( new AggregateType( new AggregateType( DataTypes.STRING_TYPE, DataTypes.INT_TYPE ), DataTypes.STRING_TYPE ) );
+
+		Iterator<Value> it = ( (CompositeValue) xpaths ).iterator();
+		while ( it.hasNext() )
+		{
+			Value xpath = ( (CompositeValue) xpaths ).aref( it.next(), interpreter );
+			String[] result = RuntimeLibrary.evaluateXPath( interpreter, doc, xpath );
 
-		TagNode doc;
+			MapValue slice = new MapValue( new AggregateType( DataTypes.STRING_TYPE, DataTypes.INT_TYPE ) );
+			for ( int i = 0; i < result.length; i++ )
+			{
+				slice.aset( new Value( i ), new Value( result[ i ] ) );
+			}
+
+			value.aset( xpath, slice );
+		}
+
+		return value;
+	}
+
+	private static TagNode cleanHTML( Interpreter interpreter, final Value html )
+	{
 		try
 		{
-			doc = cleaner.clean( html.toString() );
+			return XPathCache.getDocument( html.toString() );
 		}
 		catch ( IOException e )
 		{
 			StaticEntity.printStackTrace( e );
 			throw interpreter.runtimeException( "something went wrong while cleaning html" );
 		}
-		Object[] result;
+	}
+
+	private static String[] evaluateXPath( Interpreter interpreter, final TagNode doc, final Value xpath )
+	{
 		try
 		{
-			result = doc.evaluateXPath( xpath.toString() );
+			return XPathCache.evaluate( doc, XPathCache.getXPather( xpath ) );
 		}
 		catch ( XPatherException e )
 		{
 			throw interpreter.runtimeException( "invalid xpath expression" );
 		}
-
-		AggregateType type = new AggregateType( DataTypes.STRING_TYPE, result.length );
-		ArrayValue value = new ArrayValue( type );
-
-		// convert Tagnode objects to strings consisting of their inner HTML
-
-		SimpleXmlSerializer serializer = new SimpleXmlSerializer( cleaner.getProperties() );
-		
-		for ( int i = 0; i < result.length; i++ )
+		catch ( IOException e )
 		{
-			Object ob = result[ i ];
-
-			if ( ob instanceof TagNode )
-			{
-				TagNode tag = (TagNode) ob;
-				try
-				{
-					result[ i ] = serializer.getXmlAsString( tag );
-				}
-				catch ( IOException e )
-				{
-					StaticEntity.printStackTrace( e );
-					throw interpreter.runtimeException( "something went wrong while serializing to html" );
-				}
-			}
-
-			value.aset( new Value( i ), new Value( result[ i ].toString() ) );
+			StaticEntity.printStackTrace( e );
+			throw interpreter.runtimeException( "something went wrong while serializing to html" );
 		}
-
-		return value;
 	}
 
 	public static Value visit_url( Interpreter interpreter )
@@ -3123,6 +3141,10 @@ public abstract class RuntimeLibrary
 
 		File path = new File( KoLConstants.SESSIONS_LOCATION, filename );
 		BufferedReader reader = null;
+
+		// Today's log may still have lines on their way to disk
+		LogWriter.flushAll( LogWriter.FLUSH_TIMEOUT );
+
 		if ( !path.exists() )
 		{
 			filename = filename + ".gz";
@@ -7429,7 +7451,23 @@ public abstract class RuntimeLibrary
 		CompositeValue result = (CompositeValue) var2;
 		boolean compact = var3.intValue() == 1;
 
-		BufferedReader reader = DataFileCache.getReader( filename );
+		byte[] bytes = null;
+		BufferedReader reader;
+
+		if ( filename.startsWith( "http://" ) || filename.startsWith( "https://" ) )
+		{
+			reader = DataFileCache.getReader( filename );
+		}
+		else
+		{
+			bytes = DataFileCache.getBytes( filename );
+			if ( DataFileCache.readParsedMap( filename, bytes, compact, result ) )
+			{
+				return DataTypes.TRUE_VALUE;
+			}
+			reader = DataUtilities.getReader( new ByteArrayInputStream( bytes ) );
+		}
+
 		if ( reader == null )
 		{
 			return DataTypes.FALSE_VALUE;
@@ -7495,6 +7533,11 @@ public abstract class RuntimeLibrary
 			}
 		}
 
+		if ( bytes != null )
+		{
+			DataFileCache.saveParsedMap( filename, bytes, compact, result );
+		}
+
 		return DataTypes.TRUE_VALUE;
 	}
 
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.textui;
+
+import java.io.IOException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.kolmafia.textui.parsetree.Value;
+
+import net.sourceforge.kolmafia.utilities.HTMLParserUtils;
+
+import org.htmlcleaner.HtmlCleaner;
+import org.htmlcleaner.SimpleXmlSerializer;
+import org.htmlcleaner.TagNode;
+import org.htmlcleaner.XPather;
+import org.htmlcleaner.XPatherException;
+
+/**
+ * Caches what xpath() needs from one call to the next: cleaned documents,
+ * keyed by the HTML they were cleaned from, and compiled expressions.
+ * Scripts tend to run many queries against the same page, and each one
+ * used to clean the page again.
+ *
+ * Cached documents are shared, so nothing here may change them.  XPath
+ * evaluation and serialization only read the tree.
+ */
+
+public class XPathCache
+{
+	private static final int DOCUMENT_CACHE_SIZE = 4;
+	private static final int XPATH_CACHE_SIZE = 64;
+
+	private static final HtmlCleaner cleaner = HTMLParserUtils.configureDefaultParser();
+	private static final SimpleXmlSerializer serializer = new SimpleXmlSerializer( XPathCache.cleaner.getProperties() );
+
+	private static final Map<String, TagNode> documentCache = Collections.synchronizedMap( new LinkedHashMap<String, TagNode>( 8, 0.75f, true )
+	{
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry<String, TagNode> eldest )
+		{
+			return this.size() > XPathCache.DOCUMENT_CACHE_SIZE;
+		}
+	} );
+
+	private static final Map<String, XPather> xpathCache = Collections.synchronizedMap( new LinkedHashMap<String, XPather>( 16, 0.75f, true )
+	{
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry<String, XPather> eldest )
+		{
+			return this.size() > XPathCache.XPATH_CACHE_SIZE;
+		}
+	} );
+
+	public static void clearCache()
+	{
+		XPathCache.documentCache.clear();
+		XPathCache.xpathCache.clear();
+	}
+
+	public static TagNode getDocument( final String html )
+		throws IOException
+	{
+		TagNode doc = XPathCache.documentCache.get( html );
+		if ( doc != null )
+		{
+			return doc;
+		}
+
+		// HtmlCleaner keeps its working state in the instance
+		synchronized ( XPathCache.cleaner )
+		{
+			doc = XPathCache.cleaner.clean( html );
+		}
+
+		XPathCache.documentCache.put( html, doc );
+		return doc;
+	}
+
+	public static XPather getXPather( final Value xpath )
+	{
+		// A constant expression keeps its compiled form, the same way
+		// group_string keeps a compiled pattern.
+		if ( xpath.rawValue() instanceof XPather )
+		{
+			return (XPather) xpath.rawValue();
+		}
+
+		String expression = xpath.toString();
+		XPather xpather = XPathCache.xpathCache.get( expression );
+		if ( xpather == null )
+		{
+			xpather = new XPather( expression );
+			XPathCache.xpathCache.put( expression, xpather );
+		}
+
+		if ( xpath.content == null )
+		{
+			xpath.content = xpather;
+		}
+
+		return xpather;
+	}
+
+	/**
+	 * Evaluates an expression against a document and converts each result
+	 * to a string, using the inner HTML of any tags.
+	 */
+
+	public static String[] evaluate( final TagNode doc, final XPather xpather )
+		throws XPatherException, IOException
+	{
+		Object[] result = xpather.evaluateAgainstNode( doc );
+		String[] strings = new String[ result.length ];
+
+		for ( int i = 0; i < result.length; i++ )
+		{
+			Object ob = result[ i ];
+			strings[ i ] = ob instanceof TagNode ? XPathCache.serializer.getXmlAsString( (TagNode) ob ) : ob.toString();
+		}
+
+		return strings;
+	}
+}
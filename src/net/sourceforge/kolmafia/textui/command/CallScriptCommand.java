@@ -57,6 +57,7 @@ import net.sourceforge.kolmafia.textui.Profiler;
 
 import net.sourceforge.kolmafia.textui.parsetree.Value;
 
+import net.sourceforge.kolmafia.utilities.ScriptIndex;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
 public class CallScriptCommand
@@ -83,6 +84,11 @@ public class CallScriptCommand
 			String[] arguments = null;
 
 			parameters = parameters.trim();
+
+			// A script run by hand, or one of its imports, may have
+			// been saved a moment ago, so check the disk again.
+			ScriptIndex.invalidate();
+
 			List<File> scriptMatches = KoLmafiaCLI.findScriptFile( parameters );
 
 			// If still no script was found, perhaps it's the
@@ -347,6 +347,54 @@ public class TestCommand
 			return;
 		}
 
+		// Replay saved fight pages through the fight scanner and the full
+		// HTML clean and compare the trees they produce
+		if ( command.equals( "fightscan" ) )
+		{
+			if ( split.length < 2 )
+			{
+				if ( TestCommand.contents == null )
+				{
+					KoLmafia.updateDisplay( MafiaState.ERROR, "Load a fight page or name a directory of them" );
+					return;
+				}
+
+				String text = TestCommand.contents;
+				TestCommand.contents = null;
+				FightRequest.checkFightHTML( text, "fight" );
+				return;
+			}
+
+			File directory = new File( KoLConstants.DATA_LOCATION, split[ 1 ] );
+			File[] files = directory.listFiles();
+			if ( files == null )
+			{
+				KoLmafia.updateDisplay( MafiaState.ERROR, "Directory " + directory + " does not exist" );
+				return;
+			}
+
+			int count = 0;
+			int failures = 0;
+			for ( File file : files )
+			{
+				if ( !file.isFile() )
+				{
+					continue;
+				}
+
+				byte[] bytes = ByteBufferUtilities.read( file );
+				String text = StringUtilities.getEncodedString( bytes, "UTF-8" );
+				if ( !FightRequest.checkFightHTML( text, file.getName() ) )
+				{
+					++failures;
+				}
+				++count;
+			}
+
+			KoLmafia.updateDisplay( count + " fight pages checked, " + failures + " differ" );
+			return;
+		}
+
 		if ( command.equals( "hitchance" ) )
 		{
 			if ( split.length < 5 )
@@ -106,6 +106,11 @@ public class AggregateType
 		return this.size;
 	}
 
+	public boolean isCaseInsensitive()
+	{
+		return this.caseInsensitive;
+	}
+
 	public void setSize( final int size )
 	{
 		this.size = size;
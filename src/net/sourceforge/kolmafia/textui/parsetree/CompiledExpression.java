@@ -0,0 +1,609 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION ) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE ) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.textui.parsetree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.kolmafia.StaticEntity;
+
+import net.sourceforge.kolmafia.textui.DataTypes;
+import net.sourceforge.kolmafia.textui.Interpreter;
+
+/**
+ * An arithmetic or comparison expression compiled to JVM bytecode.
+ *
+ * <code>compile</code> writes a class, the same way LibraryInvoker does,
+ * whose <code>evaluate</code> computes a tree of int, float and boolean
+ * operations on primitive longs, doubles and ints, and makes a Value only
+ * for the result.  Constants are inlined; variables are read once each
+ * through their VariableReference.  Anything else, such as a function
+ * call, a string or a composite reference, leaves the expression to the
+ * interpreter.
+ */
+
+public abstract class CompiledExpression
+{
+	private static final String SUPERCLASS = "net/sourceforge/kolmafia/textui/parsetree/CompiledExpression";
+	private static final String VALUE = "net/sourceforge/kolmafia/textui/parsetree/Value";
+	private static final String INTERPRETER = "net/sourceforge/kolmafia/textui/Interpreter";
+	private static final String DATA_TYPES = "net/sourceforge/kolmafia/textui/DataTypes";
+	private static final String EVALUATE_DESCRIPTOR = "(L" + INTERPRETER + ";[L" + VALUE + ";)L" + VALUE + ";";
+
+	// A single operator saves no more than a Value, which doesn't pay for
+	// a class of its own.
+	private static final int MINIMUM_OPERATORS = 2;
+
+	private static final int NONE = 0;
+	private static final int LONG = 1;
+	private static final int DOUBLE = 2;
+	private static final int BOOLEAN = 3;
+
+	private static int count = 0;
+
+	private Value[] variables;
+	private Operator[] operators;
+
+	public abstract Value evaluate( Interpreter interpreter, Value[] variables );
+
+	public final Value execute( final Interpreter interpreter )
+	{
+		return this.evaluate( interpreter, this.variables );
+	}
+
+	// Called by the generated code for the right hand side of / and %
+
+	public final long divisor( final long value, final int operator, final Interpreter interpreter )
+	{
+		if ( value == 0 )
+		{
+			Operator oper = this.operators[ operator ];
+			throw interpreter.runtimeException( "Division by zero", oper.fileName, oper.lineNumber );
+		}
+		return value;
+	}
+
+	public final double divisor( final double value, final int operator, final Interpreter interpreter )
+	{
+		if ( value == 0.0 )
+		{
+			Operator oper = this.operators[ operator ];
+			throw interpreter.runtimeException( "Division by zero", oper.fileName, oper.lineNumber );
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the compiled form of the given operation, or null if it
+	 * can't be compiled or is too small to be worth it.
+	 */
+
+	public static CompiledExpression compile( final Operation operation )
+	{
+		Compiler compiler = new Compiler();
+		int kind = compiler.kind( operation );
+		if ( kind == NONE || compiler.size < MINIMUM_OPERATORS )
+		{
+			return null;
+		}
+
+		try
+		{
+			return compiler.generate( operation, kind );
+		}
+		catch ( Exception e )
+		{
+			StaticEntity.printStackTrace( e, "Cannot compile expression: " + operation );
+		}
+		catch ( LinkageError e )
+		{
+			StaticEntity.printStackTrace( e, "Cannot compile expression: " + operation );
+		}
+		return null;
+	}
+
+	private static int kindOf( final Type type )
+	{
+		return  type.equals( DataTypes.TYPE_INT ) ? LONG :
+			type.equals( DataTypes.TYPE_FLOAT ) ? DOUBLE :
+			type.equals( DataTypes.TYPE_BOOLEAN ) ? BOOLEAN :
+			NONE;
+	}
+
+	private static boolean isNumber( final int kind )
+	{
+		return kind == LONG || kind == DOUBLE;
+	}
+
+	private static class Compiler
+	{
+		private final Map<Value, Integer> kinds = new IdentityHashMap<Value, Integer>();
+		private int size = 0;
+		private final List<Value> variables = new ArrayList<Value>();
+		private final List<Operator> operators = new ArrayList<Operator>();
+
+		private final LibraryInvoker.ConstantPool pool = new LibraryInvoker.ConstantPool();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream( this.bytes );
+		private int depth = 0;
+		private int maxDepth = 0;
+
+		/**
+		 * Returns what the node leaves on the operand stack, or NONE if
+		 * it can't be compiled.  Records the kind of every operation and
+		 * counts them as it goes.
+		 */
+
+		public int kind( final Value node )
+		{
+			if ( node.getClass() == Value.class )
+			{
+				return CompiledExpression.kindOf( node.getType() );
+			}
+
+			if ( node.getClass() == VariableReference.class )
+			{
+				// A variable holding the result of a function call
+				// runs the call when read
+				Variable target = ( (VariableReference) node ).target;
+				return target.expression == null ? CompiledExpression.kindOf( node.getType() ) : NONE;
+			}
+
+			if ( node.getClass() != Operation.class )
+			{
+				return NONE;
+			}
+
+			Operation operation = (Operation) node;
+			int lhs = this.kind( operation.getLeftHandSide() );
+			int rhs = operation.getRightHandSide() == null ? NONE : this.kind( operation.getRightHandSide() );
+			int kind = NONE;
+
+			switch ( operation.oper.code )
+			{
+			case Operator.NOT:
+				if ( operation.getRightHandSide() == null && lhs == BOOLEAN )
+				{
+					kind = BOOLEAN;
+				}
+				break;
+
+			case Operator.MINUS:
+				if ( operation.getRightHandSide() == null )
+				{
+					kind = CompiledExpression.isNumber( lhs ) ? lhs : NONE;
+					break;
+				}
+				// fall through
+			case Operator.PLUS:
+			case Operator.MULTIPLY:
+			case Operator.DIVIDE:
+			case Operator.MODULO:
+				if ( CompiledExpression.isNumber( lhs ) && CompiledExpression.isNumber( rhs ) )
+				{
+					kind = lhs == DOUBLE || rhs == DOUBLE ? DOUBLE : LONG;
+				}
+				break;
+
+			case Operator.LEFT_SHIFT:
+			case Operator.RIGHT_SHIFT:
+			case Operator.UNSIGNED_RIGHT_SHIFT:
+				if ( lhs == LONG && rhs == LONG )
+				{
+					kind = LONG;
+				}
+				break;
+
+			case Operator.AND:
+			case Operator.OR:
+			case Operator.XOR:
+				if ( lhs == rhs && ( lhs == LONG || lhs == BOOLEAN ) )
+				{
+					kind = lhs;
+				}
+				break;
+
+			case Operator.LESS:
+			case Operator.GREATER:
+			case Operator.LESS_EQUAL:
+			case Operator.GREATER_EQUAL:
+			case Operator.EQUAL:
+			case Operator.APPROX:
+			case Operator.NOT_EQUAL:
+				if ( ( CompiledExpression.isNumber( lhs ) && CompiledExpression.isNumber( rhs ) ) ||
+				     ( lhs == BOOLEAN && rhs == BOOLEAN ) )
+				{
+					kind = BOOLEAN;
+				}
+				break;
+			}
+
+			if ( kind != NONE )
+			{
+				this.kinds.put( operation, Integer.valueOf( kind ) );
+				this.size++;
+			}
+			return kind;
+		}
+
+		// The class file for:
+		//
+		// public final class <name> extends CompiledExpression
+		// {
+		//	public Value evaluate( Interpreter interpreter, Value[] variables )
+		//	{
+		//		return DataTypes.make<Type>Value( <expression> );
+		//	}
+		// }
+		//
+		// Comparisons are computed from lcmp and dcmp<op> without
+		// branching, so no stack map is needed.
+
+		public CompiledExpression generate( final Operation operation, final int kind )
+			throws Exception
+		{
+			this.emit( operation );
+
+			switch ( kind )
+			{
+			case LONG:
+				this.invoke( 0xb8, DATA_TYPES, "makeIntValue", "(J)L" + VALUE + ";", -2 + 1 );
+				break;
+			case DOUBLE:
+				this.invoke( 0xb8, DATA_TYPES, "makeFloatValue", "(D)L" + VALUE + ";", -2 + 1 );
+				break;
+			case BOOLEAN:
+				this.invoke( 0xb8, DATA_TYPES, "makeBooleanValue", "(I)L" + VALUE + ";", -1 + 1 );
+				break;
+			}
+			this.op( 0xb0, -1 ); // areturn
+			this.out.flush();
+
+			String name;
+			synchronized ( CompiledExpression.class )
+			{
+				name = SUPERCLASS + "$" + ( ++CompiledExpression.count );
+			}
+			byte[] bytes = LibraryInvoker.writeClass( this.pool, name, SUPERCLASS,
+				"evaluate", EVALUATE_DESCRIPTOR, this.maxDepth, 3, this.bytes.toByteArray() );
+
+			CompiledExpression compiled = (CompiledExpression) LibraryInvoker.define( name, bytes ).newInstance();
+			compiled.variables = this.variables.toArray( new Value[ this.variables.size() ] );
+			compiled.operators = this.operators.toArray( new Operator[ this.operators.size() ] );
+			return compiled;
+		}
+
+		private int emit( final Value node )
+			throws IOException
+		{
+			if ( node.getClass() == Value.class )
+			{
+				return this.emitConstant( node );
+			}
+
+			if ( node.getClass() == VariableReference.class )
+			{
+				return this.emitVariable( node );
+			}
+
+			Operation operation = (Operation) node;
+			Operator oper = operation.oper;
+			Value lhs = operation.getLeftHandSide();
+			Value rhs = operation.getRightHandSide();
+
+			if ( rhs == null )
+			{
+				if ( oper.code == Operator.NOT )
+				{
+					this.emit( lhs );
+					this.op( 0x04, 1 ); // iconst_1
+					this.op( 0x82, -1 ); // ixor
+					return BOOLEAN;
+				}
+
+				if ( this.emit( lhs ) == LONG )
+				{
+					this.op( 0x75, 0 ); // lneg
+					return LONG;
+				}
+
+				// Unary minus is interpreted as 0.0 - x, so -0.0 is 0.0
+				this.op( 0x77, 0 ); // dneg
+				this.op( 0x0e, 2 ); // dconst_0
+				this.op( 0x63, -2 ); // dadd
+				return DOUBLE;
+			}
+
+			int lkind = this.kindOf( lhs );
+			int rkind = this.kindOf( rhs );
+
+			switch ( oper.code )
+			{
+			case Operator.LEFT_SHIFT:
+			case Operator.RIGHT_SHIFT:
+			case Operator.UNSIGNED_RIGHT_SHIFT:
+				this.emit( lhs );
+				this.emit( rhs );
+				this.op( 0x88, -1 ); // l2i
+				this.op( oper.code == Operator.LEFT_SHIFT ? 0x79 : oper.code == Operator.RIGHT_SHIFT ? 0x7b : 0x7d, -1 );
+				return LONG;
+
+			case Operator.AND:
+			case Operator.OR:
+			case Operator.XOR:
+				this.emit( lhs );
+				this.emit( rhs );
+				int logical = oper.code == Operator.AND ? 0x7e : oper.code == Operator.OR ? 0x80 : 0x82;
+				if ( lkind == LONG )
+				{
+					this.op( logical + 1, -2 ); // land, lor or lxor
+				}
+				else
+				{
+					this.op( logical, -1 ); // iand, ior or ixor
+				}
+				return lkind;
+			}
+
+			if ( lkind == BOOLEAN )
+			{
+				// Booleans compare as ints
+				this.emit( lhs );
+				this.op( 0x85, 1 ); // i2l
+				this.emit( rhs );
+				this.op( 0x85, 1 ); // i2l
+				this.op( 0x94, -3 ); // lcmp
+				this.comparison( oper.code );
+				return BOOLEAN;
+			}
+
+			int kind = lkind == DOUBLE || rkind == DOUBLE ? DOUBLE : LONG;
+			this.emitAs( lhs, kind );
+
+			boolean division = oper.code == Operator.DIVIDE || oper.code == Operator.MODULO;
+			if ( division )
+			{
+				this.op( 0x2a, 1 ); // aload_0
+			}
+			this.emitAs( rhs, kind );
+			if ( division )
+			{
+				this.operators.add( oper );
+				this.pushInt( this.operators.size() - 1 );
+				this.op( 0x2b, 1 ); // aload_1
+				String descriptor = kind == DOUBLE ? "(DIL" + INTERPRETER + ";)D" : "(JIL" + INTERPRETER + ";)J";
+				this.invoke( 0xb6, SUPERCLASS, "divisor", descriptor, -5 + 2 );
+			}
+
+			switch ( oper.code )
+			{
+			case Operator.PLUS:
+				this.op( kind == DOUBLE ? 0x63 : 0x61, -2 ); // dadd or ladd
+				return kind;
+			case Operator.MINUS:
+				this.op( kind == DOUBLE ? 0x67 : 0x65, -2 ); // dsub or lsub
+				return kind;
+			case Operator.MULTIPLY:
+				this.op( kind == DOUBLE ? 0x6b : 0x69, -2 ); // dmul or lmul
+				return kind;
+			case Operator.DIVIDE:
+				this.op( kind == DOUBLE ? 0x6f : 0x6d, -2 ); // ddiv or ldiv
+				return kind;
+			case Operator.MODULO:
+				this.op( kind == DOUBLE ? 0x73 : 0x71, -2 ); // drem or lrem
+				return kind;
+			}
+
+			if ( kind == DOUBLE )
+			{
+				// dcmpg makes NaN compare greater and dcmpl makes it
+				// compare less, so that every comparison with NaN but
+				// != is false
+				boolean greater = oper.code == Operator.LESS || oper.code == Operator.LESS_EQUAL;
+				this.op( greater ? 0x98 : 0x97, -3 );
+			}
+			else
+			{
+				this.op( 0x94, -3 ); // lcmp
+			}
+			this.comparison( oper.code );
+			return BOOLEAN;
+		}
+
+		private int kindOf( final Value node )
+		{
+			Integer kind = this.kinds.get( node );
+			return kind != null ? kind.intValue() : CompiledExpression.kindOf( node.getType() );
+		}
+
+		private void emitAs( final Value node, final int kind )
+			throws IOException
+		{
+			if ( this.emit( node ) != kind )
+			{
+				this.op( 0x8a, 0 ); // l2d
+			}
+		}
+
+		// Turns the -1, 0 or 1 left by lcmp or dcmp<op> into 0 or 1
+
+		private void comparison( final int code )
+			throws IOException
+		{
+			switch ( code )
+			{
+			case Operator.LESS:
+				this.unsignedShift31();
+				break;
+			case Operator.GREATER:
+				this.op( 0x74, 0 ); // ineg
+				this.unsignedShift31();
+				break;
+			case Operator.LESS_EQUAL:
+				this.op( 0x74, 0 ); // ineg
+				this.unsignedShift31();
+				this.not();
+				break;
+			case Operator.GREATER_EQUAL:
+				this.unsignedShift31();
+				this.not();
+				break;
+			case Operator.EQUAL:
+			case Operator.APPROX:
+				this.op( 0x04, 1 ); // iconst_1
+				this.op( 0x7e, -1 ); // iand
+				this.not();
+				break;
+			case Operator.NOT_EQUAL:
+				this.op( 0x04, 1 ); // iconst_1
+				this.op( 0x7e, -1 ); // iand
+				break;
+			}
+		}
+
+		private void unsignedShift31()
+			throws IOException
+		{
+			this.pushInt( 31 );
+			this.op( 0x7c, -1 ); // iushr
+		}
+
+		private void not()
+			throws IOException
+		{
+			this.op( 0x04, 1 ); // iconst_1
+			this.op( 0x82, -1 ); // ixor
+		}
+
+		private int emitConstant( final Value constant )
+			throws IOException
+		{
+			int kind = CompiledExpression.kindOf( constant.getType() );
+			switch ( kind )
+			{
+			case LONG:
+				this.out.writeByte( 0x14 ); // ldc2_w
+				this.out.writeShort( this.pool.longConstant( constant.intValue() ) );
+				this.push( 2 );
+				break;
+			case DOUBLE:
+				this.out.writeByte( 0x14 ); // ldc2_w
+				this.out.writeShort( this.pool.doubleConstant( constant.floatValue() ) );
+				this.push( 2 );
+				break;
+			case BOOLEAN:
+				this.op( constant.intValue() != 0 ? 0x04 : 0x03, 1 ); // iconst_1 or iconst_0
+				break;
+			}
+			return kind;
+		}
+
+		private int emitVariable( final Value reference )
+			throws IOException
+		{
+			int index = this.variables.size();
+			this.variables.add( reference );
+
+			this.op( 0x2c, 1 ); // aload_2
+			this.pushInt( index );
+			this.op( 0x32, -1 ); // aaload
+			this.op( 0x2b, 1 ); // aload_1
+			this.invoke( 0xb6, VALUE, "execute", "(L" + INTERPRETER + ";)L" + VALUE + ";", -2 + 1 );
+
+			int kind = CompiledExpression.kindOf( reference.getType() );
+			if ( kind == DOUBLE )
+			{
+				this.invoke( 0xb6, VALUE, "floatValue", "()D", -1 + 2 );
+			}
+			else
+			{
+				this.invoke( 0xb6, VALUE, "intValue", "()J", -1 + 2 );
+				if ( kind == BOOLEAN )
+				{
+					this.op( 0x88, -1 ); // l2i
+				}
+			}
+			return kind;
+		}
+
+		private void pushInt( final int value )
+			throws IOException
+		{
+			if ( value <= 5 )
+			{
+				this.op( 0x03 + value, 1 ); // iconst_<value>
+			}
+			else if ( value <= Byte.MAX_VALUE )
+			{
+				this.out.writeByte( 0x10 ); // bipush
+				this.out.writeByte( value );
+				this.push( 1 );
+			}
+			else
+			{
+				this.out.writeByte( 0x11 ); // sipush
+				this.out.writeShort( value );
+				this.push( 1 );
+			}
+		}
+
+		private void invoke( final int opcode, final String owner, final String name, final String descriptor, final int delta )
+			throws IOException
+		{
+			this.out.writeByte( opcode );
+			this.out.writeShort( this.pool.methodRef( owner, name, descriptor ) );
+			this.push( delta );
+		}
+
+		private void op( final int opcode, final int delta )
+			throws IOException
+		{
+			this.out.writeByte( opcode );
+			this.push( delta );
+		}
+
+		private void push( final int delta )
+		{
+			this.depth += delta;
+			this.maxDepth = Math.max( this.maxDepth, this.depth );
+		}
+	}
+}
@@ -33,7 +33,6 @@
 
 package net.sourceforge.kolmafia.textui.parsetree;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import net.sourceforge.kolmafia.KoLmafia;
@@ -47,6 +46,9 @@ public class LibraryFunction
 	extends Function
 {
 	private Method method;
+	// Bound the first time the function is called, so that functions a
+	// script never calls cost nothing
+	private LibraryInvoker invoker = null;
 
 	public LibraryFunction( final String name, final Type type, final Type[] params )
 	{
@@ -98,28 +100,30 @@ public class LibraryFunction
 			throw interpreter.runtimeException( "Internal error: no method for " + this.getName() );
 		}
 
+		LibraryInvoker invoker = this.invoker;
+		if ( invoker == null )
+		{
+			invoker = this.invoker = LibraryInvoker.bind( this.method );
+		}
+
 		try
 		{
-			// Invoke the method
-			return (Value) this.method.invoke( this, (Object []) values );
+			return invoker.invoke( values );
 		}
-		catch ( InvocationTargetException e )
+		catch ( ScriptException e )
+		{
+			// Pass up exceptions intentionally generated by library
+			throw e;
+		}
+		catch ( RuntimeException e )
 		{
 			// This is an error in the called method. Pass
 			// it on up so that we'll print a stack trace.
-
-			Throwable cause = e.getCause();
-			if ( cause instanceof ScriptException )
-			{
-				// Pass up exceptions intentionally generated by library
-				throw (ScriptException) cause;
-			}
-			throw new RuntimeException( cause );
+			throw new RuntimeException( e );
 		}
-		catch ( IllegalAccessException e )
+		catch ( Error e )
 		{
-			// This is not expected, but is an internal error in ASH
-			throw new ScriptException( e );
+			throw new RuntimeException( e );
 		}
 	}
 }
@@ -0,0 +1,424 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION ) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE ) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.textui.parsetree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sourceforge.kolmafia.StaticEntity;
+
+import net.sourceforge.kolmafia.textui.ScriptException;
+
+/**
+ * Calls one RuntimeLibrary method with the arguments FunctionCall
+ * collects: the Interpreter, then one Value per parameter.
+ *
+ * <code>bind</code> writes a small class for each method whose
+ * <code>invoke</code> casts the arguments and calls the method directly,
+ * so a call doesn't go through Method.invoke and its argument checks.  A
+ * method which can't be called that way is called through reflection.
+ */
+
+public abstract class LibraryInvoker
+{
+	private static final String SUPERCLASS = "net/sourceforge/kolmafia/textui/parsetree/LibraryInvoker";
+	private static final String INVOKE_DESCRIPTOR = "([Ljava/lang/Object;)Lnet/sourceforge/kolmafia/textui/parsetree/Value;";
+
+	private static InvokerLoader loader = null;
+	private static int count = 0;
+
+	public abstract Value invoke( Object[] values );
+
+	/**
+	 * Returns an invoker for the given static method, which must return
+	 * a Value.
+	 */
+
+	public static LibraryInvoker bind( final Method method )
+	{
+		if ( LibraryInvoker.canCallDirectly( method ) )
+		{
+			try
+			{
+				return LibraryInvoker.generate( method );
+			}
+			catch ( Exception e )
+			{
+				StaticEntity.printStackTrace( e, "Cannot bind built-in function: " + method.getName() );
+			}
+			catch ( LinkageError e )
+			{
+				StaticEntity.printStackTrace( e, "Cannot bind built-in function: " + method.getName() );
+			}
+		}
+
+		return new ReflectiveInvoker( method );
+	}
+
+	private static boolean canCallDirectly( final Method method )
+	{
+		// The generated class lives in its own class loader, so it can
+		// only see public classes and methods.
+
+		int modifiers = method.getModifiers();
+		if ( !Modifier.isStatic( modifiers ) || !Modifier.isPublic( modifiers ) ||
+		     !Modifier.isPublic( method.getDeclaringClass().getModifiers() ) ||
+		     !Value.class.isAssignableFrom( method.getReturnType() ) )
+		{
+			return false;
+		}
+
+		Class[] params = method.getParameterTypes();
+		for ( int i = 0; i < params.length; ++i )
+		{
+			if ( params[ i ].isPrimitive() || params[ i ].isArray() || !Modifier.isPublic( params[ i ].getModifiers() ) )
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static synchronized LibraryInvoker generate( final Method method )
+		throws Exception
+	{
+		String name = LibraryInvoker.SUPERCLASS + "$" + method.getName() + "$" + ( ++LibraryInvoker.count );
+		byte[] bytes = LibraryInvoker.writeClass( name, method );
+		return (LibraryInvoker) LibraryInvoker.define( name, bytes ).newInstance();
+	}
+
+	/**
+	 * Loads a generated class.  Generated classes share one class loader,
+	 * so they can only see public classes and members of this package.
+	 */
+
+	static synchronized Class<?> define( final String name, final byte[] bytes )
+	{
+		if ( LibraryInvoker.loader == null )
+		{
+			LibraryInvoker.loader = new InvokerLoader( LibraryInvoker.class.getClassLoader() );
+		}
+
+		return LibraryInvoker.loader.define( name.replace( '/', '.' ), bytes );
+	}
+
+	// The class file for:
+	//
+	// public final class <name> extends LibraryInvoker
+	// {
+	//	public Value invoke( Object[] values )
+	//	{
+	//		return RuntimeLibrary.<method>( (Interpreter) values[ 0 ], (Value) values[ 1 ], ... );
+	//	}
+	// }
+	//
+	// There are no branches, so no stack map is needed.
+
+	private static byte[] writeClass( final String name, final Method method )
+		throws IOException
+	{
+		ConstantPool pool = new ConstantPool();
+
+		Class[] params = method.getParameterTypes();
+		StringBuilder descriptor = new StringBuilder( "(" );
+		int[] casts = new int[ params.length ];
+		for ( int i = 0; i < params.length; ++i )
+		{
+			String param = LibraryInvoker.internalName( params[ i ] );
+			descriptor.append( 'L' ).append( param ).append( ';' );
+			casts[ i ] = pool.classRef( param );
+		}
+		descriptor.append( ")L" ).append( LibraryInvoker.internalName( method.getReturnType() ) ).append( ';' );
+		int target = pool.methodRef( LibraryInvoker.internalName( method.getDeclaringClass() ), method.getName(), descriptor.toString() );
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( body );
+		for ( int i = 0; i < params.length; ++i )
+		{
+			out.writeByte( 0x2b ); // aload_1
+			if ( i <= 5 )
+			{
+				out.writeByte( 0x03 + i ); // iconst_<i>
+			}
+			else
+			{
+				out.writeByte( 0x10 ); // bipush
+				out.writeByte( i );
+			}
+			out.writeByte( 0x32 ); // aaload
+			out.writeByte( 0xc0 ); // checkcast
+			out.writeShort( casts[ i ] );
+		}
+		out.writeByte( 0xb8 ); // invokestatic
+		out.writeShort( target );
+		out.writeByte( 0xb0 ); // areturn
+		out.flush();
+
+		return LibraryInvoker.writeClass( pool, name, LibraryInvoker.SUPERCLASS,
+			"invoke", LibraryInvoker.INVOKE_DESCRIPTOR, params.length + 2, 2, body.toByteArray() );
+	}
+
+	/**
+	 * Writes a public final class with a public no-argument constructor
+	 * and one public method with the given code, which must not branch.
+	 */
+
+	static byte[] writeClass( final ConstantPool pool, final String name, final String superName,
+		final String methodName, final String methodDescriptor, final int maxStack, final int maxLocals, final byte[] methodCode )
+		throws IOException
+	{
+		int thisClass = pool.classRef( name );
+		int superClass = pool.classRef( superName );
+		int superInit = pool.methodRef( superName, "<init>", "()V" );
+		int init = pool.utf8( "<init>" );
+		int initDescriptor = pool.utf8( "()V" );
+		int method = pool.utf8( methodName );
+		int descriptor = pool.utf8( methodDescriptor );
+		int code = pool.utf8( "Code" );
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( body );
+		out.writeInt( 0xcafebabe );
+		out.writeShort( 0 );
+		out.writeShort( 50 ); // Java 6
+		pool.write( out );
+		out.writeShort( 0x0001 | 0x0010 | 0x0020 ); // public final super
+		out.writeShort( thisClass );
+		out.writeShort( superClass );
+		out.writeShort( 0 ); // interfaces
+		out.writeShort( 0 ); // fields
+		out.writeShort( 2 ); // methods
+
+		// public <init>() { super(); }
+		out.writeShort( 0x0001 );
+		out.writeShort( init );
+		out.writeShort( initDescriptor );
+		out.writeShort( 1 );
+		LibraryInvoker.writeCode( out, code, 1, 1, new byte[] { 0x2a, (byte) 0xb7, (byte) ( superInit >> 8 ), (byte) superInit, (byte) 0xb1 } );
+
+		out.writeShort( 0x0001 );
+		out.writeShort( method );
+		out.writeShort( descriptor );
+		out.writeShort( 1 );
+		LibraryInvoker.writeCode( out, code, maxStack, maxLocals, methodCode );
+
+		out.writeShort( 0 ); // class attributes
+		out.flush();
+		return body.toByteArray();
+	}
+
+	private static void writeCode( final DataOutputStream out, final int code, final int maxStack, final int maxLocals, final byte[] bytes )
+		throws IOException
+	{
+		out.writeShort( code );
+		out.writeInt( 12 + bytes.length );
+		out.writeShort( maxStack );
+		out.writeShort( maxLocals );
+		out.writeInt( bytes.length );
+		out.write( bytes );
+		out.writeShort( 0 ); // exception table
+		out.writeShort( 0 ); // attributes
+	}
+
+	private static String internalName( final Class c )
+	{
+		return c.getName().replace( '.', '/' );
+	}
+
+	static class ConstantPool
+	{
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream( this.bytes );
+		private final Map<String, Integer> entries = new HashMap<String, Integer>();
+		private int size = 1;
+
+		public int utf8( final String value )
+			throws IOException
+		{
+			Integer index = this.entries.get( "U" + value );
+			if ( index == null )
+			{
+				this.out.writeByte( 1 );
+				this.out.writeUTF( value );
+				index = this.add( "U" + value );
+			}
+			return index.intValue();
+		}
+
+		public int longConstant( final long value )
+			throws IOException
+		{
+			Integer index = this.entries.get( "J" + value );
+			if ( index == null )
+			{
+				this.out.writeByte( 5 );
+				this.out.writeLong( value );
+				index = this.add( "J" + value );
+				// Long constants take two entries
+				this.size++;
+			}
+			return index.intValue();
+		}
+
+		public int doubleConstant( final double value )
+			throws IOException
+		{
+			long bits = Double.doubleToRawLongBits( value );
+			Integer index = this.entries.get( "D" + bits );
+			if ( index == null )
+			{
+				this.out.writeByte( 6 );
+				this.out.writeLong( bits );
+				index = this.add( "D" + bits );
+				// Double constants take two entries
+				this.size++;
+			}
+			return index.intValue();
+		}
+
+		public int classRef( final String name )
+			throws IOException
+		{
+			Integer index = this.entries.get( "C" + name );
+			if ( index == null )
+			{
+				int utf8 = this.utf8( name );
+				this.out.writeByte( 7 );
+				this.out.writeShort( utf8 );
+				index = this.add( "C" + name );
+			}
+			return index.intValue();
+		}
+
+		public int methodRef( final String owner, final String name, final String descriptor )
+			throws IOException
+		{
+			Integer index = this.entries.get( "M" + owner + "." + name + descriptor );
+			if ( index != null )
+			{
+				return index.intValue();
+			}
+			int classRef = this.classRef( owner );
+			int nameRef = this.utf8( name );
+			int descriptorRef = this.utf8( descriptor );
+			this.out.writeByte( 12 ); // NameAndType
+			this.out.writeShort( nameRef );
+			this.out.writeShort( descriptorRef );
+			int nameAndType = this.add( "N" + owner + "." + name + descriptor ).intValue();
+			this.out.writeByte( 10 ); // Methodref
+			this.out.writeShort( classRef );
+			this.out.writeShort( nameAndType );
+			return this.add( "M" + owner + "." + name + descriptor ).intValue();
+		}
+
+		private Integer add( final String key )
+		{
+			Integer index = Integer.valueOf( this.size++ );
+			this.entries.put( key, index );
+			return index;
+		}
+
+		public void write( final DataOutputStream dest )
+			throws IOException
+		{
+			this.out.flush();
+			dest.writeShort( this.size );
+			this.bytes.writeTo( dest );
+		}
+	}
+
+	private static class InvokerLoader
+		extends ClassLoader
+	{
+		public InvokerLoader( final ClassLoader parent )
+		{
+			super( parent );
+		}
+
+		public Class<?> define( final String name, final byte[] bytes )
+		{
+			return this.defineClass( name, bytes, 0, bytes.length );
+		}
+	}
+
+	private static class ReflectiveInvoker
+		extends LibraryInvoker
+	{
+		private final Method method;
+
+		public ReflectiveInvoker( final Method method )
+		{
+			this.method = method;
+			this.method.setAccessible( true );
+		}
+
+		@Override
+		public Value invoke( final Object[] values )
+		{
+			try
+			{
+				return (Value) this.method.invoke( null, values );
+			}
+			catch ( InvocationTargetException e )
+			{
+				// Throw what the method threw, as a direct call would
+
+				Throwable cause = e.getCause();
+				if ( cause instanceof RuntimeException )
+				{
+					throw (RuntimeException) cause;
+				}
+				if ( cause instanceof Error )
+				{
+					throw (Error) cause;
+				}
+				throw new RuntimeException( cause );
+			}
+			catch ( IllegalAccessException e )
+			{
+				// This is not expected, but is an internal error in ASH
+				throw new ScriptException( e );
+			}
+		}
+	}
+}
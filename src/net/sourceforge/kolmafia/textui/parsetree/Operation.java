@@ -35,6 +35,10 @@ package net.sourceforge.kolmafia.textui.parsetree;
 
 import java.io.PrintStream;
 
+import net.sourceforge.kolmafia.KoLmafia;
+
+import net.sourceforge.kolmafia.preferences.Preferences;
+
 import net.sourceforge.kolmafia.textui.DataTypes;
 import net.sourceforge.kolmafia.textui.Interpreter;
 
@@ -43,6 +47,11 @@ public class Operation
 {
 	Operator oper;
 
+	// Compiled the first time it is executed, if compileAshExpressions
+	// is set.  Null if it wasn't, or couldn't be.
+	private volatile CompiledExpression compiled = null;
+	private volatile boolean compileChecked = false;
+
 	public Operation( final Value lhs, final Value rhs, final Operator oper )
 	{
 		this.lhs = lhs;
@@ -108,6 +117,24 @@ public class Operation
 	@Override
 	public Value execute( final Interpreter interpreter )
 	{
+		if ( !this.compileChecked )
+		{
+			if ( Preferences.getBoolean( "compileAshExpressions" ) )
+			{
+				this.compiled = CompiledExpression.compile( this );
+			}
+			this.compileChecked = true;
+		}
+
+		// The operator traces, and stops after an operand if the script
+		// is exiting, so leave those to it.
+		CompiledExpression compiled = this.compiled;
+		if ( compiled != null && !Interpreter.isTracing() &&
+		     !KoLmafia.refusesContinue() && !interpreter.getState().equals( Interpreter.STATE_EXIT ) )
+		{
+			return compiled.execute( interpreter );
+		}
+
 		return  this.rhs == null ?
 			this.oper.applyTo( interpreter, this.lhs ) :
 			this.oper.applyTo( interpreter, this.lhs, this.rhs );
@@ -35,6 +35,8 @@ package net.sourceforge.kolmafia.textui.parsetree;
 
 import java.io.PrintStream;
 
+import java.util.HashMap;
+
 import net.sourceforge.kolmafia.VYKEACompanionData;
 
 import net.sourceforge.kolmafia.textui.DataTypes;
@@ -50,11 +52,100 @@ public class Operator
 	String fileName;
 	int lineNumber;
 
+	// The operator is resolved once, when parsed, rather than by
+	// comparing strings each time it is applied.
+	final int code;
+
+	static final int UNKNOWN = 0;
+	static final int NOT = 1;
+	static final int BITWISE_NOT = 2;
+	static final int CONTAINS = 3;
+	static final int REMOVE = 4;
+	static final int PRE_INCREMENT = 5;
+	static final int PRE_DECREMENT = 6;
+	static final int POST_INCREMENT = 7;
+	static final int POST_DECREMENT = 8;
+	static final int POWER = 9;
+	static final int MULTIPLY = 10;
+	static final int DIVIDE = 11;
+	static final int MODULO = 12;
+	static final int PLUS = 13;
+	static final int MINUS = 14;
+	static final int LEFT_SHIFT = 15;
+	static final int RIGHT_SHIFT = 16;
+	static final int UNSIGNED_RIGHT_SHIFT = 17;
+	static final int LESS = 18;
+	static final int GREATER = 19;
+	static final int LESS_EQUAL = 20;
+	static final int GREATER_EQUAL = 21;
+	static final int EQUAL = 22;
+	static final int APPROX = 23;
+	static final int NOT_EQUAL = 24;
+	static final int AND = 25;
+	static final int XOR = 26;
+	static final int OR = 27;
+	static final int CONDITIONAL_AND = 28;
+	static final int CONDITIONAL_OR = 29;
+	static final int QUESTION = 30;
+	static final int COLON = 31;
+	static final int AND_ASSIGN = 32;
+	static final int XOR_ASSIGN = 33;
+	static final int OR_ASSIGN = 34;
+	static final int LEFT_SHIFT_ASSIGN = 35;
+	static final int RIGHT_SHIFT_ASSIGN = 36;
+	static final int UNSIGNED_RIGHT_SHIFT_ASSIGN = 37;
+
+	private static final HashMap<String, Integer> codes = new HashMap<String, Integer>();
+
+	static
+	{
+		Operator.codes.put( "!", NOT );
+		Operator.codes.put( "~", BITWISE_NOT );
+		Operator.codes.put( "contains", CONTAINS );
+		Operator.codes.put( "remove", REMOVE );
+		Operator.codes.put( Parser.PRE_INCREMENT, PRE_INCREMENT );
+		Operator.codes.put( Parser.PRE_DECREMENT, PRE_DECREMENT );
+		Operator.codes.put( Parser.POST_INCREMENT, POST_INCREMENT );
+		Operator.codes.put( Parser.POST_DECREMENT, POST_DECREMENT );
+		Operator.codes.put( "**", POWER );
+		Operator.codes.put( "*", MULTIPLY );
+		Operator.codes.put( "/", DIVIDE );
+		Operator.codes.put( "%", MODULO );
+		Operator.codes.put( "+", PLUS );
+		Operator.codes.put( "-", MINUS );
+		Operator.codes.put( "<<", LEFT_SHIFT );
+		Operator.codes.put( ">>", RIGHT_SHIFT );
+		Operator.codes.put( ">>>", UNSIGNED_RIGHT_SHIFT );
+		Operator.codes.put( "<", LESS );
+		Operator.codes.put( ">", GREATER );
+		Operator.codes.put( "<=", LESS_EQUAL );
+		Operator.codes.put( ">=", GREATER_EQUAL );
+		Operator.codes.put( "==", EQUAL );
+		Operator.codes.put( Parser.APPROX, APPROX );
+		Operator.codes.put( "!=", NOT_EQUAL );
+		Operator.codes.put( "&", AND );
+		Operator.codes.put( "^", XOR );
+		Operator.codes.put( "|", OR );
+		Operator.codes.put( "&&", CONDITIONAL_AND );
+		Operator.codes.put( "||", CONDITIONAL_OR );
+		Operator.codes.put( "?", QUESTION );
+		Operator.codes.put( ":", COLON );
+		Operator.codes.put( "&=", AND_ASSIGN );
+		Operator.codes.put( "^=", XOR_ASSIGN );
+		Operator.codes.put( "|=", OR_ASSIGN );
+		Operator.codes.put( "<<=", LEFT_SHIFT_ASSIGN );
+		Operator.codes.put( ">>=", RIGHT_SHIFT_ASSIGN );
+		Operator.codes.put( ">>>=", UNSIGNED_RIGHT_SHIFT_ASSIGN );
+	}
+
 	public Operator( final String operator, final Parser parser )
 	{
 		this.operator = operator;
 		this.fileName = parser.getShortFileName();
 		this.lineNumber = parser.getLineNumber();
+
+		Integer code = Operator.codes.get( operator );
+		this.code = code == null ? Operator.UNKNOWN : code.intValue();
 	}
 
 	public boolean equals( final String op )
@@ -69,90 +160,65 @@ public class Operator
 
 	private int operStrength()
 	{
-		if (this.operator.equals(Parser.POST_INCREMENT) ||
-				this.operator.equals(Parser.POST_DECREMENT))
+		switch ( this.code )
 		{
+		case POST_INCREMENT:
+		case POST_DECREMENT:
 			return 14;
-		}
 
-		if ( this.operator.equals( "!" ) ||
-		     this.operator.equals( "~" ) ||
-		     this.operator.equals( "contains" ) ||
-		     this.operator.equals( "remove" ) ||
-				this.operator.equals(Parser.PRE_INCREMENT) ||
-				this.operator.equals(Parser.PRE_DECREMENT))
-		{
+		case NOT:
+		case BITWISE_NOT:
+		case CONTAINS:
+		case REMOVE:
+		case PRE_INCREMENT:
+		case PRE_DECREMENT:
 			return 13;
-		}
 
-		if ( this.operator.equals( "**" ) )
-		{
+		case POWER:
 			return 12;
-		}
 
-		if ( this.operator.equals( "*" ) ||
-		     this.operator.equals( "/" ) ||
-		     this.operator.equals( "%" ) )
-		{
+		case MULTIPLY:
+		case DIVIDE:
+		case MODULO:
 			return 11;
-		}
 
-		if ( this.operator.equals( "+" ) ||
-		     this.operator.equals( "-" ) )
-		{
+		case PLUS:
+		case MINUS:
 			return 10;
-		}
 
-		if ( this.operator.equals( "<<" ) ||
-		     this.operator.equals( ">>" ) ||
-		     this.operator.equals( ">>>" ) )
-		{
+		case LEFT_SHIFT:
+		case RIGHT_SHIFT:
+		case UNSIGNED_RIGHT_SHIFT:
 			return 9;
-		}
 
-		if ( this.operator.equals( "<" ) ||
-		     this.operator.equals( ">" ) ||
-		     this.operator.equals( "<=" ) ||
-		     this.operator.equals( ">=" ) )
-		{
+		case LESS:
+		case GREATER:
+		case LESS_EQUAL:
+		case GREATER_EQUAL:
 			return 8;
-		}
 
-		if ( this.operator.equals( "==" ) ||
-		     this.operator.equals( Parser.APPROX ) ||
-		     this.operator.equals( "!=" ) )
-		{
+		case EQUAL:
+		case APPROX:
+		case NOT_EQUAL:
 			return 7;
-		}
 
-		if ( this.operator.equals( "&" ) )
-		{
+		case AND:
 			return 6;
-		}
 
-		if ( this.operator.equals( "^" ) )
-		{
+		case XOR:
 			return 5;
-		}
 
-		if ( this.operator.equals( "|" ) )
-		{
+		case OR:
 			return 4;
-		}
 
-		if ( this.operator.equals( "&&" ) )
-		{
+		case CONDITIONAL_AND:
 			return 3;
-		}
 
-		if ( this.operator.equals( "||" ) )
-		{
+		case CONDITIONAL_OR:
 			return 2;
-		}
 
-		if ( this.operator.equals( "?" ) ||
-		     this.operator.equals( ":" ) )
-		{
+		case QUESTION:
+		case COLON:
 			return 1;
 		}
 
@@ -174,54 +240,73 @@ public class Operator
 
 	public boolean isArithmetic()
 	{
-		return  this.operator.equals( "+" ) ||
-			this.operator.equals( "-" ) ||
-			this.operator.equals( "*" ) ||
-			this.operator.equals( "/" ) ||
-			this.operator.equals( "%" ) ||
-			this.operator.equals( "**" ) ||
-				this.operator.equals(Parser.PRE_INCREMENT) ||
-				this.operator.equals(Parser.PRE_DECREMENT) ||
-				this.operator.equals(Parser.POST_INCREMENT) ||
-				this.operator.equals(Parser.POST_DECREMENT);
+		switch ( this.code )
+		{
+		case PLUS:
+		case MINUS:
+		case MULTIPLY:
+		case DIVIDE:
+		case MODULO:
+		case POWER:
+		case PRE_INCREMENT:
+		case PRE_DECREMENT:
+		case POST_INCREMENT:
+		case POST_DECREMENT:
+			return true;
+		}
+		return false;
 	}
 
 	public boolean isBoolean()
 	{
-		return  this.operator.equals( "&&" ) ||
-			this.operator.equals( "||" );
+		return this.code == CONDITIONAL_AND || this.code == CONDITIONAL_OR;
 	}
 
 	public boolean isLogical()
 	{
-		return  this.operator.equals( "&" ) ||
-			this.operator.equals( "|" ) ||
-			this.operator.equals( "^" ) ||
-			this.operator.equals( "~" ) ||
-			this.operator.equals( "&=" ) ||
-			this.operator.equals( "^=" ) ||
-			this.operator.equals( "|=" );
+		switch ( this.code )
+		{
+		case AND:
+		case OR:
+		case XOR:
+		case BITWISE_NOT:
+		case AND_ASSIGN:
+		case XOR_ASSIGN:
+		case OR_ASSIGN:
+			return true;
+		}
+		return false;
 	}
 
 	public boolean isInteger()
 	{
-		return  this.operator.equals( "<<" ) ||
-			this.operator.equals( ">>" ) ||
-			this.operator.equals( ">>>" ) ||
-			this.operator.equals( "<<=" ) ||
-			this.operator.equals( ">>=" ) ||
-			this.operator.equals( ">>>=" );
+		switch ( this.code )
+		{
+		case LEFT_SHIFT:
+		case RIGHT_SHIFT:
+		case UNSIGNED_RIGHT_SHIFT:
+		case LEFT_SHIFT_ASSIGN:
+		case RIGHT_SHIFT_ASSIGN:
+		case UNSIGNED_RIGHT_SHIFT_ASSIGN:
+			return true;
+		}
+		return false;
 	}
 
 	public boolean isComparison()
 	{
-		return  this.operator.equals( "==" ) ||
-			this.operator.equals( Parser.APPROX ) ||
-			this.operator.equals( "!=" ) ||
-			this.operator.equals( "<" ) ||
-			this.operator.equals( ">" ) ||
-			this.operator.equals( "<=" ) ||
-			this.operator.equals( ">=" );
+		switch ( this.code )
+		{
+		case EQUAL:
+		case APPROX:
+		case NOT_EQUAL:
+		case LESS:
+		case GREATER:
+		case LESS_EQUAL:
+		case GREATER_EQUAL:
+			return true;
+		}
+		return false;
 	}
 
 	@Override
@@ -241,16 +326,10 @@ public class Operator
 		{
 			String lstring = leftValue.toString();
 			String rstring = rightValue.toString();
-			int c = this.operator.equals( Parser.APPROX ) ?
+			int c = this.code == APPROX ?
 				lstring.compareToIgnoreCase( rstring ) :
 				lstring.compareTo( rstring );
-			bool = ( this.operator.equals( "==" ) || this.operator.equals( Parser.APPROX ) ) ? c == 0 :
-				this.operator.equals( "!=" ) ? c != 0 :
-				this.operator.equals( ">=" ) ? c >= 0 :
-				this.operator.equals( "<=" ) ? c <= 0 :
-				this.operator.equals( ">" ) ? c > 0 :
-				this.operator.equals( "<" ) ? c < 0 :
-				false;
+			bool = this.compare( c, 0 );
 		}
 
 		// If either value is a float, coerce to float and compare.
@@ -259,13 +338,7 @@ public class Operator
 		{
 			double lfloat = leftValue.toFloatValue().floatValue();
 			double rfloat = rightValue.toFloatValue().floatValue();
-			bool = ( this.operator.equals( "==" ) || this.operator.equals( Parser.APPROX ) ) ? lfloat == rfloat :
-			       this.operator.equals( "!=" ) ? lfloat != rfloat :
-			       this.operator.equals( ">=" ) ? lfloat >= rfloat :
-			       this.operator.equals( "<=" ) ? lfloat <= rfloat :
-			       this.operator.equals( ">" ) ? lfloat > rfloat :
-			       this.operator.equals( "<" ) ? lfloat < rfloat :
-			       false;
+			bool = this.compare( lfloat, rfloat );
 		}
 
 		// VYKEA companions have a "name" component which should not be compared
@@ -274,13 +347,7 @@ public class Operator
 			VYKEACompanionData v1 = (VYKEACompanionData)( leftValue.content );
 			VYKEACompanionData v2 = (VYKEACompanionData)( rightValue.content );
 			int c = v1.compareTo( v2 );
-			bool = ( this.operator.equals( "==" ) || this.operator.equals( Parser.APPROX ) ) ? c == 0 :
-				this.operator.equals( "!=" ) ? c != 0 :
-				this.operator.equals( ">=" ) ? c >= 0 :
-				this.operator.equals( "<=" ) ? c <= 0 :
-				this.operator.equals( ">" ) ? c > 0 :
-				this.operator.equals( "<" ) ? c < 0 :
-				false;
+			bool = this.compare( c, 0 );
 		}
 
 		// Otherwise, compare integers
@@ -288,13 +355,7 @@ public class Operator
 		{
 			long lint = leftValue.intValue();
 			long rint = rightValue.intValue();
-			bool = ( this.operator.equals( "==" ) || this.operator.equals( Parser.APPROX ) ) ? lint == rint :
-			       this.operator.equals( "!=" ) ? lint != rint :
-			       this.operator.equals( ">=" ) ? lint >= rint :
-			       this.operator.equals( "<=" ) ? lint <= rint :
-			       this.operator.equals( ">" ) ? lint > rint :
-			       this.operator.equals( "<" ) ? lint < rint :
-			       false;
+			bool = this.compare( lint, rint );
 		}
 
 		Value result = bool ? DataTypes.TRUE_VALUE : DataTypes.FALSE_VALUE;
@@ -306,6 +367,48 @@ public class Operator
 		return result;
 	}
 
+	private boolean compare( final long lint, final long rint )
+	{
+		switch ( this.code )
+		{
+		case EQUAL:
+		case APPROX:
+			return lint == rint;
+		case NOT_EQUAL:
+			return lint != rint;
+		case GREATER_EQUAL:
+			return lint >= rint;
+		case LESS_EQUAL:
+			return lint <= rint;
+		case GREATER:
+			return lint > rint;
+		case LESS:
+			return lint < rint;
+		}
+		return false;
+	}
+
+	private boolean compare( final double lfloat, final double rfloat )
+	{
+		switch ( this.code )
+		{
+		case EQUAL:
+		case APPROX:
+			return lfloat == rfloat;
+		case NOT_EQUAL:
+			return lfloat != rfloat;
+		case GREATER_EQUAL:
+			return lfloat >= rfloat;
+		case LESS_EQUAL:
+			return lfloat <= rfloat;
+		case GREATER:
+			return lfloat > rfloat;
+		case LESS:
+			return lfloat < rfloat;
+		}
+		return false;
+	}
+
 	private Value performArithmetic( final Interpreter interpreter, Value leftValue, Value rightValue )
 	{
 		Type ltype = leftValue.getType();
@@ -317,7 +420,7 @@ public class Operator
 		{
 			// Since we only do string concatenation, we should
 			// only get here if the operator is "+".
-			if ( !this.operator.equals( "+" ) )
+			if ( this.code != PLUS )
 			{
 				throw interpreter.runtimeException( "Operator '" + this.operator + "' applied to string operands", this.fileName, this.lineNumber );
 			}
@@ -331,7 +434,7 @@ public class Operator
 		else if ( ltype.equals( DataTypes.TYPE_FLOAT ) || rtype.equals( DataTypes.TYPE_FLOAT ) )
 		{
 			double rfloat = rightValue.toFloatValue().floatValue();
-			if (  ( this.operator.equals( "/" ) || this.operator.equals( "%" ) ) &&
+			if (  ( this.code == DIVIDE || this.code == MODULO ) &&
 			      rfloat == 0.0 )
 			{
 				throw interpreter.runtimeException( "Division by zero", this.fileName, this.lineNumber );
@@ -341,7 +444,7 @@ public class Operator
 
 			double val;
 
-			if ( this.operator.equals( "**" ) )
+			if ( this.code == POWER )
 			{
 				val = Math.pow( lfloat, rfloat );
 				if ( Double.isNaN( val ) || Double.isInfinite( val ) )
@@ -351,12 +454,26 @@ public class Operator
 			}
 			else
 			{
-				val =   this.operator.equals( "+" ) ? lfloat + rfloat :
-					this.operator.equals( "-" ) ? lfloat - rfloat :
-					this.operator.equals( "*" ) ? lfloat * rfloat :
-					this.operator.equals( "/" ) ? lfloat / rfloat :
-					this.operator.equals( "%" ) ? lfloat % rfloat :
-					0.0;
+				switch ( this.code )
+				{
+				case PLUS:
+					val = lfloat + rfloat;
+					break;
+				case MINUS:
+					val = lfloat - rfloat;
+					break;
+				case MULTIPLY:
+					val = lfloat * rfloat;
+					break;
+				case DIVIDE:
+					val = lfloat / rfloat;
+					break;
+				case MODULO:
+					val = lfloat % rfloat;
+					break;
+				default:
+					val = 0.0;
+				}
 			}
 
 			result = DataTypes.makeFloatValue( val );
@@ -368,9 +485,9 @@ public class Operator
 			long lint = leftValue.intValue();
 			long rint = rightValue.intValue();
 			long val =
-				this.operator.equals( "&" ) ? lint & rint :
-				this.operator.equals( "^" ) ? lint ^ rint :
-				this.operator.equals( "|" ) ? lint | rint :
+				this.code == AND ? lint & rint :
+				this.code == XOR ? lint ^ rint :
+				this.code == OR ? lint | rint :
 				0;
 			result = ltype.equals( DataTypes.TYPE_BOOLEAN ) ?
 				DataTypes.makeBooleanValue( val != 0 ) :
@@ -382,24 +499,46 @@ public class Operator
 		else
 		{
 			long rint = rightValue.intValue();
-			if (  ( this.operator.equals( "/" ) || this.operator.equals( "%" ) ) &&
+			if (  ( this.code == DIVIDE || this.code == MODULO ) &&
 			      rint == 0 )
 			{
 				throw interpreter.runtimeException( "Division by zero", this.fileName, this.lineNumber );
 			}
 
 			long lint = leftValue.intValue();
-			long val =
-				this.operator.equals( "+" ) ? lint + rint :
-				this.operator.equals( "-" ) ? lint - rint :
-				this.operator.equals( "*" ) ? lint * rint :
-				this.operator.equals( "/" ) ? lint / rint :
-				this.operator.equals( "%" ) ? lint % rint :
-				this.operator.equals( "**" ) ? (long) Math.pow( lint, rint ) :
-				this.operator.equals( "<<" ) ? lint << rint :
-				this.operator.equals( ">>" ) ? lint >> rint :
-				this.operator.equals( ">>>" ) ? lint >>> rint :
-				0;
+			long val;
+			switch ( this.code )
+			{
+			case PLUS:
+				val = lint + rint;
+				break;
+			case MINUS:
+				val = lint - rint;
+				break;
+			case MULTIPLY:
+				val = lint * rint;
+				break;
+			case DIVIDE:
+				val = lint / rint;
+				break;
+			case MODULO:
+				val = lint % rint;
+				break;
+			case POWER:
+				val = (long) Math.pow( lint, rint );
+				break;
+			case LEFT_SHIFT:
+				val = lint << rint;
+				break;
+			case RIGHT_SHIFT:
+				val = lint >> rint;
+				break;
+			case UNSIGNED_RIGHT_SHIFT:
+				val = lint >>> rint;
+				break;
+			default:
+				val = 0;
+			}
 			result = DataTypes.makeIntValue( val );
 		}
 
@@ -420,7 +559,7 @@ public class Operator
 		}
 
 		// Unary operator with special evaluation of argument
-		if ( this.operator.equals( "remove" ) )
+		if ( this.code == REMOVE )
 		{
 			CompositeReference operand = (CompositeReference) lhs;
                         if ( Interpreter.isTracing() )
@@ -466,11 +605,11 @@ public class Operator
 		Value result;
 
 		// Unary Operators
-		if ( this.operator.equals( "!" ) )
+		if ( this.code == NOT )
 		{
 			result = DataTypes.makeBooleanValue( leftValue.intValue() == 0 );
 		}
-		else if ( this.operator.equals( "~" ) )
+		else if ( this.code == BITWISE_NOT )
 		{
 			long val = leftValue.intValue();
 			result =
@@ -478,7 +617,7 @@ public class Operator
 				DataTypes.makeBooleanValue( val == 0 ) :
 				DataTypes.makeIntValue( ~val );
 		}
-		else if ( this.operator.equals( "-" ) )
+		else if ( this.code == MINUS )
 		{
 			if ( lhs.getType().equals( DataTypes.TYPE_INT ) )
 			{
@@ -493,7 +632,7 @@ public class Operator
 				throw interpreter.runtimeException( "Internal error: Unary minus can only be applied to numbers", this.fileName, this.lineNumber );
 			}
 		}
-		else if (this.operator.equals(Parser.PRE_INCREMENT) || this.operator.equals(Parser.POST_INCREMENT))
+		else if ( this.code == PRE_INCREMENT || this.code == POST_INCREMENT )
 		{
 			if ( lhs.getType().equals( DataTypes.TYPE_INT ) )
 			{
@@ -508,7 +647,7 @@ public class Operator
 				throw interpreter.runtimeException( "Internal error: pre/post increment can only be applied to numbers", this.fileName, this.lineNumber );
 			}
 		}
-		else if (this.operator.equals(Parser.PRE_DECREMENT) || this.operator.equals(Parser.POST_DECREMENT))
+		else if ( this.code == PRE_DECREMENT || this.code == POST_DECREMENT )
 		{
 			if ( lhs.getType().equals( DataTypes.TYPE_INT ) )
 			{
@@ -576,7 +715,7 @@ public class Operator
 		}
 
 		// Binary operators with optional right values
-		if ( this.operator.equals( "||" ) )
+		if ( this.code == CONDITIONAL_OR )
 		{
 			if ( leftValue.intValue() == 1 )
 			{
@@ -616,7 +755,7 @@ public class Operator
 			return rightValue;
 		}
 
-		if ( this.operator.equals( "&&" ) )
+		if ( this.code == CONDITIONAL_AND )
 		{
 			if ( leftValue.intValue() == 0 )
 			{
@@ -663,7 +802,7 @@ public class Operator
 		}
 
 		// Special binary operator: <aggref> contains <any>
-		if ( this.operator.equals( "contains" ) )
+		if ( this.code == CONTAINS )
 		{
 			interpreter.traceIndent();
 			if ( Interpreter.isTracing() )
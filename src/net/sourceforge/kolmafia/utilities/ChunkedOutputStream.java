@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A <code>ChunkedOutputStream</code> frames everything written to it using HTTP/1.1 chunked transfer coding, so a
+ * response can be sent before its length is known. Closing the stream writes the terminating chunk but leaves the
+ * underlying stream open, since the connection may carry further responses.
+ */
+
+public class ChunkedOutputStream
+	extends FilterOutputStream
+{
+	private static final byte[] CRLF = { '\r', '\n' };
+	private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+
+	private final byte[] buffer;
+	private int count = 0;
+	private long total = 0;
+	private boolean closed = false;
+
+	public ChunkedOutputStream( final OutputStream out )
+	{
+		this( out, 8192 );
+	}
+
+	public ChunkedOutputStream( final OutputStream out, final int size )
+	{
+		super( out );
+		this.buffer = new byte[ size ];
+	}
+
+	/**
+	 * Returns the number of bytes of content written so far, not counting the chunk framing.
+	 */
+
+	public long getCount()
+	{
+		return this.total;
+	}
+
+	@Override
+	public void write( final int b )
+		throws IOException
+	{
+		if ( this.count == this.buffer.length )
+		{
+			this.writeChunk();
+		}
+
+		this.buffer[ this.count++ ] = (byte) b;
+		++this.total;
+	}
+
+	@Override
+	public void write( final byte[] b, int off, int len )
+		throws IOException
+	{
+		while ( len > 0 )
+		{
+			if ( this.count == this.buffer.length )
+			{
+				this.writeChunk();
+			}
+
+			int n = Math.min( len, this.buffer.length - this.count );
+			System.arraycopy( b, off, this.buffer, this.count, n );
+			this.count += n;
+			this.total += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void flush()
+		throws IOException
+	{
+		this.writeChunk();
+		this.out.flush();
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		if ( this.closed )
+		{
+			return;
+		}
+
+		this.closed = true;
+		this.writeChunk();
+		this.out.write( ChunkedOutputStream.LAST_CHUNK );
+		this.out.flush();
+	}
+
+	private void writeChunk()
+		throws IOException
+	{
+		// A zero-length chunk would end the response
+		if ( this.count == 0 )
+		{
+			return;
+		}
+
+		this.out.write( Integer.toHexString( this.count ).getBytes( "US-ASCII" ) );
+		this.out.write( ChunkedOutputStream.CRLF );
+		this.out.write( this.buffer, 0, this.count );
+		this.out.write( ChunkedOutputStream.CRLF );
+		this.count = 0;
+	}
+}
@@ -0,0 +1,535 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.java.dev.spellcast.utilities.UtilityConstants;
+
+import net.sourceforge.kolmafia.StaticEntity;
+
+/**
+ * A precompiled copy of the tab-separated files in the data directory.
+ * The build runs <code>main</code> over src/data to produce a single
+ * snapshot holding one shared string table and, for every file, each of
+ * its lines already split on tabs.  At runtime FileUtilities hands out a
+ * SnapshotReader in place of the text file unless an override exists in
+ * the user's data directory, so the databases skip both the UTF-8 decode
+ * and the String.split of every line.  Each file is handed out once and
+ * then dropped from the snapshot; a later read goes to the text file.
+ */
+
+public class DataSnapshot
+{
+	public static final String RESOURCE = "/data/data.snapshot";
+
+	private static final int MAGIC = 0x4B4D4453;
+	private static final int FORMAT_VERSION = 2;
+
+	private static final String[] RAW_LINE = new String[ 0 ];
+
+	private static Map<String, Entry> entries = null;
+
+	static class Entry
+	{
+		// For every line of the file: the tab-separated fields, or
+		// RAW_LINE for a comment or blank line, whose text is then
+		// held in raw[ i ].
+
+		private final String[][] fields;
+		private final String[] raw;
+
+		public Entry( final String[][] fields, final String[] raw )
+		{
+			this.fields = fields;
+			this.raw = raw;
+		}
+	}
+
+	/**
+	 * Returns a reader over the snapshot copy of the given data file, or
+	 * null if there is no snapshot copy left or an override exists in the
+	 * data directory.  In either case the caller reads the text file, which
+	 * also reports the override.
+	 */
+
+	public static final synchronized BufferedReader getReader( final String filename, final boolean allowOverride )
+	{
+		if ( allowOverride && new File( UtilityConstants.DATA_LOCATION, filename ).exists() )
+		{
+			return null;
+		}
+
+		// The parsed lines are only needed until the database that
+		// owns the file has loaded them, so release them now.
+
+		Entry entry = DataSnapshot.getEntries().remove( filename );
+		return entry == null ? null : new SnapshotReader( entry );
+	}
+
+	private static final Map<String, Entry> getEntries()
+	{
+		if ( DataSnapshot.entries != null )
+		{
+			return DataSnapshot.entries;
+		}
+
+		DataSnapshot.entries = new HashMap<String, Entry>();
+
+		InputStream istream = DataSnapshot.class.getResourceAsStream( DataSnapshot.RESOURCE );
+		if ( istream == null )
+		{
+			return DataSnapshot.entries;
+		}
+
+		try
+		{
+			DataSnapshot.entries = DataSnapshot.read( new DataInputStream( new BufferedInputStream( istream, 65536 ) ) );
+		}
+		catch ( IOException e )
+		{
+			// A damaged snapshot simply means reading the text files.
+			StaticEntity.printStackTrace( e, "Unable to read data snapshot" );
+		}
+		finally
+		{
+			try
+			{
+				istream.close();
+			}
+			catch ( IOException e )
+			{
+			}
+		}
+
+		return DataSnapshot.entries;
+	}
+
+	static final Map<String, Entry> read( final DataInputStream in )
+		throws IOException
+	{
+		Map<String, Entry> result = new HashMap<String, Entry>();
+
+		if ( in.readInt() != DataSnapshot.MAGIC || in.readInt() != DataSnapshot.FORMAT_VERSION )
+		{
+			return result;
+		}
+
+		String[] strings = new String[ in.readInt() ];
+		for ( int i = 0; i < strings.length; ++i )
+		{
+			strings[ i ] = in.readUTF();
+		}
+
+		int fileCount = in.readInt();
+		for ( int i = 0; i < fileCount; ++i )
+		{
+			String filename = in.readUTF();
+			int lineCount = in.readInt();
+
+			String[][] fields = new String[ lineCount ][];
+			String[] raw = new String[ lineCount ];
+
+			for ( int j = 0; j < lineCount; ++j )
+			{
+				int fieldCount = in.readUnsignedShort();
+				if ( fieldCount == 0 )
+				{
+					fields[ j ] = DataSnapshot.RAW_LINE;
+					raw[ j ] = strings[ DataSnapshot.readIndex( in ) ];
+					continue;
+				}
+
+				String[] line = new String[ fieldCount ];
+				for ( int k = 0; k < fieldCount; ++k )
+				{
+					line[ k ] = strings[ DataSnapshot.readIndex( in ) ];
+				}
+				fields[ j ] = line;
+			}
+
+			result.put( filename, new Entry( fields, raw ) );
+		}
+
+		return result;
+	}
+
+	// String indices are written seven bits at a time, low bits first,
+	// so the common strings near the front of the table take one byte.
+
+	private static final int readIndex( final DataInputStream in )
+		throws IOException
+	{
+		int value = 0;
+		int shift = 0;
+		int b;
+
+		do
+		{
+			b = in.readUnsignedByte();
+			value |= ( b & 0x7F ) << shift;
+			shift += 7;
+		}
+		while ( ( b & 0x80 ) != 0 );
+
+		return value;
+	}
+
+	private static final void writeIndex( final DataOutputStream out, int value )
+		throws IOException
+	{
+		while ( ( value & ~0x7F ) != 0 )
+		{
+			out.writeByte( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		out.writeByte( value );
+	}
+
+	/**
+	 * A BufferedReader over one snapshot file.  readLine returns the same
+	 * lines the text file would; FileUtilities.readData asks for the
+	 * already split fields directly.
+	 */
+
+	public static class SnapshotReader
+		extends BufferedReader
+	{
+		private final Entry entry;
+		private int index = 0;
+		private BufferedReader remaining = null;
+
+		SnapshotReader( final Entry entry )
+		{
+			super( new StringReader( "" ), 1 );
+			this.entry = entry;
+		}
+
+		public synchronized String[] readData()
+		{
+			String[][] fields = this.entry.fields;
+
+			while ( this.index < fields.length )
+			{
+				String[] line = fields[ this.index++ ];
+				if ( line != DataSnapshot.RAW_LINE )
+				{
+					return line.clone();
+				}
+			}
+
+			return null;
+		}
+
+		@Override
+		public synchronized String readLine()
+			throws IOException
+		{
+			if ( this.remaining != null )
+			{
+				return this.remaining.readLine();
+			}
+
+			if ( this.index >= this.entry.fields.length )
+			{
+				return null;
+			}
+
+			return this.lineAt( this.index++ );
+		}
+
+		private String lineAt( final int i )
+		{
+			String[] line = this.entry.fields[ i ];
+			if ( line == DataSnapshot.RAW_LINE )
+			{
+				return this.entry.raw[ i ];
+			}
+
+			if ( line.length == 1 )
+			{
+				return line[ 0 ];
+			}
+
+			StringBuilder buffer = new StringBuilder();
+			for ( int k = 0; k < line.length; ++k )
+			{
+				if ( k > 0 )
+				{
+					buffer.append( '\t' );
+				}
+				buffer.append( line[ k ] );
+			}
+			return buffer.toString();
+		}
+
+		// Character-level reads are rare for data files; serve them
+		// from the text of whatever lines have not been read yet.
+
+		private BufferedReader getRemaining()
+		{
+			if ( this.remaining == null )
+			{
+				StringBuilder buffer = new StringBuilder();
+				while ( this.index < this.entry.fields.length )
+				{
+					buffer.append( this.lineAt( this.index++ ) );
+					buffer.append( '\n' );
+				}
+				this.remaining = new BufferedReader( new StringReader( buffer.toString() ) );
+			}
+			return this.remaining;
+		}
+
+		@Override
+		public synchronized int read()
+			throws IOException
+		{
+			return this.getRemaining().read();
+		}
+
+		@Override
+		public synchronized int read( final char[] cbuf, final int off, final int len )
+			throws IOException
+		{
+			return this.getRemaining().read( cbuf, off, len );
+		}
+
+		@Override
+		public synchronized long skip( final long n )
+			throws IOException
+		{
+			return this.getRemaining().skip( n );
+		}
+
+		@Override
+		public synchronized boolean ready()
+			throws IOException
+		{
+			return this.remaining != null ? this.remaining.ready() : this.index < this.entry.fields.length;
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		@Override
+		public void close()
+		{
+			this.index = this.entry.fields.length;
+			this.remaining = null;
+		}
+	}
+
+	/**
+	 * Build step: compiles every .txt file in the given directory into a
+	 * snapshot at the given location.
+	 */
+
+	public static void main( final String[] args )
+		throws IOException
+	{
+		if ( args.length != 2 )
+		{
+			System.err.println( "Usage: DataSnapshot <data directory> <snapshot file>" );
+			System.exit( 1 );
+		}
+
+		File directory = new File( args[ 0 ] );
+		File output = new File( args[ 1 ] );
+
+		String[] names = directory.list();
+		if ( names == null )
+		{
+			throw new IOException( "Not a directory: " + directory );
+		}
+		Arrays.sort( names );
+
+		// Each line is kept as either its raw text (comments and blank
+		// lines) or its split fields until every file has been read, so
+		// the string table can be ordered by how often each string is used.
+
+		Map<String, int[]> counts = new LinkedHashMap<String, int[]>();
+		List<String> files = new ArrayList<String>();
+		List<Object[]> contents = new ArrayList<Object[]>();
+
+		for ( int i = 0; i < names.length; ++i )
+		{
+			if ( !names[ i ].endsWith( ".txt" ) )
+			{
+				continue;
+			}
+
+			File file = new File( directory, names[ i ] );
+			if ( !file.isFile() )
+			{
+				continue;
+			}
+
+			List<Object> lines = new ArrayList<Object>();
+			BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+
+			try
+			{
+				String line;
+				while ( ( line = reader.readLine() ) != null )
+				{
+					if ( line.length() == 0 || line.startsWith( "#" ) )
+					{
+						DataSnapshot.count( line, counts );
+						lines.add( line );
+						continue;
+					}
+
+					String[] fields = line.split( "\t", -1 );
+					for ( int k = 0; k < fields.length; ++k )
+					{
+						DataSnapshot.count( fields[ k ], counts );
+					}
+					lines.add( fields );
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+
+			files.add( names[ i ] );
+			contents.add( lines.toArray() );
+		}
+
+		List<Map.Entry<String, int[]>> ordered = new ArrayList<Map.Entry<String, int[]>>( counts.entrySet() );
+		Collections.sort( ordered, new Comparator<Map.Entry<String, int[]>>()
+		{
+			public int compare( final Map.Entry<String, int[]> o1, final Map.Entry<String, int[]> o2 )
+			{
+				return o2.getValue()[ 0 ] - o1.getValue()[ 0 ];
+			}
+		} );
+
+		Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+		for ( Map.Entry<String, int[]> entry : ordered )
+		{
+			stringIndex.put( entry.getKey(), Integer.valueOf( stringIndex.size() ) );
+		}
+
+		File parent = output.getParentFile();
+		if ( parent != null )
+		{
+			parent.mkdirs();
+		}
+
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( output ), 65536 ) );
+
+		try
+		{
+			out.writeInt( DataSnapshot.MAGIC );
+			out.writeInt( DataSnapshot.FORMAT_VERSION );
+
+			out.writeInt( ordered.size() );
+			for ( Map.Entry<String, int[]> entry : ordered )
+			{
+				out.writeUTF( entry.getKey() );
+			}
+
+			out.writeInt( files.size() );
+			for ( int i = 0; i < files.size(); ++i )
+			{
+				String name = files.get( i );
+				Object[] lines = contents.get( i );
+
+				out.writeUTF( name );
+				out.writeInt( lines.length );
+
+				for ( int j = 0; j < lines.length; ++j )
+				{
+					if ( lines[ j ] instanceof String )
+					{
+						out.writeShort( 0 );
+						DataSnapshot.writeIndex( out, stringIndex.get( lines[ j ] ).intValue() );
+						continue;
+					}
+
+					String[] line = (String[]) lines[ j ];
+					out.writeShort( line.length );
+					for ( int k = 0; k < line.length; ++k )
+					{
+						DataSnapshot.writeIndex( out, stringIndex.get( line[ k ] ).intValue() );
+					}
+				}
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		System.out.println( "Wrote " + files.size() + " data files (" + ordered.size() + " strings) to " + output );
+	}
+
+	private static void count( final String string, final Map<String, int[]> counts )
+	{
+		int[] count = counts.get( string );
+		if ( count == null )
+		{
+			counts.put( string, new int[] { 1 } );
+		}
+		else
+		{
+			++count[ 0 ];
+		}
+	}
+}
@@ -73,12 +73,18 @@ public class FileUtilities
 
 	public static final BufferedReader getReader( final String filename, final boolean allowOverride )
 	{
+		BufferedReader snapshot = DataSnapshot.getReader( filename, allowOverride );
+		if ( snapshot != null )
+		{
+			return snapshot;
+		}
+
 		return FileUtilities.getReader( DataUtilities.getReader( KoLConstants.DATA_DIRECTORY, filename, allowOverride ) );
 	}
 
 	public static final BufferedReader getReader( final String filename )
 	{
-		return FileUtilities.getReader( DataUtilities.getReader( KoLConstants.DATA_DIRECTORY, filename ) );
+		return FileUtilities.getReader( filename, true );
 	}
 
 	public static final BufferedReader getReader( final File file )
@@ -103,7 +109,7 @@ public class FileUtilities
 
 	public static final BufferedReader getVersionedReader( final String filename, final int version )
 	{
-		BufferedReader reader = FileUtilities.getReader( DataUtilities.getReader( KoLConstants.DATA_DIRECTORY, filename, true ) );
+		BufferedReader reader = FileUtilities.getReader( filename, true );
 
 		// If no file, no reader
 		if ( reader == null )
@@ -145,7 +151,7 @@ public class FileUtilities
 
 		// Override file is wrong version. Get built-in file
 
-		reader = DataUtilities.getReader( KoLConstants.DATA_DIRECTORY, filename, false );
+		reader = FileUtilities.getReader( filename, false );
 		// Don't forget to skip past its version number:
 		FileUtilities.readLine( reader );
 		return reader;
@@ -190,6 +196,11 @@ public class FileUtilities
 			return null;
 		}
 
+		if ( reader instanceof DataSnapshot.SnapshotReader )
+		{
+			return ( (DataSnapshot.SnapshotReader) reader ).readData();
+		}
+
 		String line = readLine( reader );
 		return line == null ? null : line.split( "\t", -1 );
 	}
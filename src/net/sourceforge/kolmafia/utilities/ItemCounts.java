@@ -0,0 +1,358 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sourceforge.kolmafia.AdventureResult;
+
+import net.sourceforge.kolmafia.objectpool.ItemPool;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A list of item ids and counts, kept in primitive arrays.  api.php
+ * reports inventory, closet and storage as a flat JSON object from item
+ * id to count, which <code>parse</code> reads directly, without building
+ * a JSON tree or an AdventureResult for every entry.
+ *
+ * <code>applyTo</code> then brings a list of items in line with the
+ * counts, touching only the entries that differ, so that a refresh which
+ * finds little changed costs little more than reading the response.
+ */
+
+public class ItemCounts
+{
+	private int[] ids;
+	private int[] counts;
+	private int size;
+
+	public ItemCounts()
+	{
+		this( 64 );
+	}
+
+	public ItemCounts( final int capacity )
+	{
+		this.ids = new int[ Math.max( 1, capacity ) ];
+		this.counts = new int[ this.ids.length ];
+		this.size = 0;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public int getItemId( final int index )
+	{
+		return this.ids[ index ];
+	}
+
+	public int getCount( final int index )
+	{
+		return this.counts[ index ];
+	}
+
+	public void add( final int itemId, final int count )
+	{
+		if ( this.size == this.ids.length )
+		{
+			this.ids = Arrays.copyOf( this.ids, this.size * 2 );
+			this.counts = Arrays.copyOf( this.counts, this.size * 2 );
+		}
+
+		this.ids[ this.size ] = itemId;
+		this.counts[ this.size ] = count;
+		++this.size;
+	}
+
+	/**
+	 * Reads a JSON object of the form {"1":"1","2":"1" ... } from the
+	 * first opening brace in the text.  Counts may be quoted or not.
+	 * Returns null if the text has no object in it.
+	 */
+
+	public static ItemCounts parse( final String text )
+		throws JSONException
+	{
+		if ( text == null )
+		{
+			return null;
+		}
+
+		int pos = text.indexOf( '{' );
+		if ( pos == -1 )
+		{
+			return null;
+		}
+
+		ItemCounts result = new ItemCounts( text.length() / 12 );
+		Reader reader = new Reader( text, pos + 1 );
+
+		if ( reader.peek() == '}' )
+		{
+			return result;
+		}
+
+		while ( true )
+		{
+			int itemId = reader.readInt();
+			reader.expect( ':' );
+			int count = reader.readInt();
+			result.add( itemId, count );
+
+			char c = reader.next();
+			if ( c == '}' )
+			{
+				return result;
+			}
+			if ( c != ',' )
+			{
+				throw reader.error( "Expected a ',' or '}'" );
+			}
+		}
+	}
+
+	/**
+	 * Reads the same kind of object from an already parsed tree.
+	 */
+
+	public static ItemCounts fromJSON( final JSONObject JSON )
+		throws JSONException
+	{
+		ItemCounts result = new ItemCounts( JSON.length() );
+		Iterator< ? > keys = JSON.keys();
+		while ( keys.hasNext() )
+		{
+			String key = (String) keys.next();
+			result.add( StringUtilities.parseInt( key ), JSON.getInt( key ) );
+		}
+		return result;
+	}
+
+	private static class Reader
+	{
+		private final String text;
+		private int pos;
+
+		Reader( final String text, final int pos )
+		{
+			this.text = text;
+			this.pos = pos;
+		}
+
+		// Returns the next character which is not whitespace, without
+		// consuming it, or 0 at the end of the text.
+		char peek()
+		{
+			int length = this.text.length();
+			while ( this.pos < length )
+			{
+				char c = this.text.charAt( this.pos );
+				if ( c != ' ' && c != '\t' && c != '\n' && c != '\r' )
+				{
+					return c;
+				}
+				++this.pos;
+			}
+			return 0;
+		}
+
+		char next()
+		{
+			char c = this.peek();
+			if ( c != 0 )
+			{
+				++this.pos;
+			}
+			return c;
+		}
+
+		void expect( final char expected )
+			throws JSONException
+		{
+			if ( this.next() != expected )
+			{
+				throw this.error( "Expected a '" + expected + "'" );
+			}
+		}
+
+		int readInt()
+			throws JSONException
+		{
+			boolean quoted = this.peek() == '"';
+			if ( quoted )
+			{
+				++this.pos;
+			}
+
+			int length = this.text.length();
+			boolean negative = this.pos < length && this.text.charAt( this.pos ) == '-';
+			if ( negative )
+			{
+				++this.pos;
+			}
+
+			int start = this.pos;
+			long value = 0;
+			while ( this.pos < length )
+			{
+				char c = this.text.charAt( this.pos );
+				if ( c < '0' || c > '9' )
+				{
+					break;
+				}
+				value = value * 10 + ( c - '0' );
+				if ( value > Integer.MAX_VALUE )
+				{
+					throw this.error( "Number out of range" );
+				}
+				++this.pos;
+			}
+
+			if ( this.pos == start )
+			{
+				throw this.error( "Expected a number" );
+			}
+
+			if ( quoted && ( this.pos >= length || this.text.charAt( this.pos++ ) != '"' ) )
+			{
+				throw this.error( "Unterminated number" );
+			}
+
+			return negative ? (int) -value : (int) value;
+		}
+
+		JSONException error( final String message )
+		{
+			return new JSONException( message + " at character " + this.pos );
+		}
+	}
+
+	/**
+	 * Changes the list so that it holds exactly these items in these
+	 * counts.  Entries which already match are left alone; the rest are
+	 * added, adjusted or removed one at a time, as the session does when
+	 * it gains or loses an item.  If most of the list would change, it is
+	 * replaced outright instead.
+	 *
+	 * Returns the ids of the items whose counts changed, or null if the
+	 * list was replaced.
+	 */
+
+	public int[] applyTo( final List<AdventureResult> list )
+	{
+		AdventureResult[] current = list.toArray( new AdventureResult[ 0 ] );
+
+		int maxId = 0;
+		for ( int i = 0; i < this.size; ++i )
+		{
+			maxId = Math.max( maxId, this.ids[ i ] );
+		}
+		for ( int i = 0; i < current.length; ++i )
+		{
+			if ( current[ i ].isItem() )
+			{
+				maxId = Math.max( maxId, current[ i ].getItemId() );
+			}
+		}
+
+		int[] have = new int[ maxId + 1 ];
+		boolean[] seen = new boolean[ maxId + 1 ];
+		for ( int i = 0; i < current.length; ++i )
+		{
+			int itemId = current[ i ].isItem() ? current[ i ].getItemId() : -1;
+			if ( itemId >= 0 )
+			{
+				have[ itemId ] += current[ i ].getCount();
+			}
+		}
+
+		ItemCounts changes = new ItemCounts();
+
+		for ( int i = 0; i < this.size; ++i )
+		{
+			int itemId = this.ids[ i ];
+			if ( itemId < 0 || seen[ itemId ] )
+			{
+				continue;
+			}
+			seen[ itemId ] = true;
+			if ( have[ itemId ] != this.counts[ i ] )
+			{
+				changes.add( itemId, this.counts[ i ] - have[ itemId ] );
+			}
+		}
+
+		for ( int i = 0; i < current.length; ++i )
+		{
+			int itemId = current[ i ].isItem() ? current[ i ].getItemId() : -1;
+			if ( itemId >= 0 && !seen[ itemId ] )
+			{
+				seen[ itemId ] = true;
+				changes.add( itemId, -have[ itemId ] );
+			}
+		}
+
+		if ( changes.size == 0 )
+		{
+			return new int[ 0 ];
+		}
+
+		if ( current.length == 0 || changes.size * 2 > current.length )
+		{
+			ArrayList<AdventureResult> items = new ArrayList<AdventureResult>( this.size );
+			for ( int i = 0; i < this.size; ++i )
+			{
+				items.add( ItemPool.get( this.ids[ i ], this.counts[ i ] ) );
+			}
+			list.clear();
+			list.addAll( items );
+			return null;
+		}
+
+		for ( int i = 0; i < changes.size; ++i )
+		{
+			AdventureResult.addResultToList( list, ItemPool.get( changes.ids[ i ], changes.counts[ i ] ) );
+		}
+
+		return Arrays.copyOf( changes.ids, changes.size );
+	}
+}
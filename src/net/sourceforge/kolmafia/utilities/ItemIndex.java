@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.Collection;
+import java.util.List;
+
+import net.sourceforge.kolmafia.AdventureResult;
+
+/**
+ * A table from item id to the item with that id in a sorted list of
+ * <code>AdventureResult</code>s, kept up to date by the list as it
+ * changes.  It answers "how many of this item are in the list" without
+ * searching the list, and "is this item in the list at all" without
+ * comparing names.
+ *
+ * An item is found in a sorted list when it compares equal to an element,
+ * which for items means the same id and the same name, ignoring case.
+ * The table only answers for items with a known id and a name, and only
+ * while the list holds at most one element with that id; in every other
+ * case <code>covers</code> returns false and the caller searches the list
+ * as before.
+ */
+
+public class ItemIndex
+{
+	private final List<AdventureResult> list;
+
+	private AdventureResult[] items = new AdventureResult[ 0 ];
+	private int[] entries = new int[ 0 ];
+
+	public ItemIndex( final List<AdventureResult> list )
+	{
+		this.list = list;
+	}
+
+	/**
+	 * Returns the index kept by the given list, or null if it keeps none.
+	 */
+
+	public static final ItemIndex of( final List<?> list )
+	{
+		if ( list instanceof ItemListModel )
+		{
+			return ( (ItemListModel) list ).getItemIndex();
+		}
+		if ( list instanceof ItemList )
+		{
+			return ( (ItemList) list ).getItemIndex();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if <code>find</code> can answer for the given key.
+	 */
+
+	public boolean covers( final AdventureResult key )
+	{
+		if ( !key.isItem() || key.getName() == null || key instanceof AdventureResult.WildcardResult )
+		{
+			return false;
+		}
+
+		int id = key.getItemId();
+		return id >= 0 && ( id >= this.entries.length || this.entries[ id ] <= 1 );
+	}
+
+	/**
+	 * Returns the element of the list which compares equal to the key, or
+	 * null if there is none.  Only meaningful if <code>covers</code>
+	 * returned true for the key.
+	 */
+
+	public AdventureResult find( final AdventureResult key )
+	{
+		int id = key.getItemId();
+		AdventureResult[] items = this.items;
+		AdventureResult item = id < items.length ? items[ id ] : null;
+		return item != null && item.compareTo( key ) == 0 ? item : null;
+	}
+
+	public synchronized void add( final Object element )
+	{
+		int id = ItemIndex.getId( element );
+		if ( id < 0 )
+		{
+			return;
+		}
+
+		if ( id >= this.items.length )
+		{
+			int length = Math.max( id + 1, this.items.length * 2 );
+			AdventureResult[] items = new AdventureResult[ length ];
+			int[] entries = new int[ length ];
+			System.arraycopy( this.items, 0, items, 0, this.items.length );
+			System.arraycopy( this.entries, 0, entries, 0, this.entries.length );
+			this.entries = entries;
+			this.items = items;
+		}
+
+		this.items[ id ] = (AdventureResult) element;
+		++this.entries[ id ];
+	}
+
+	public synchronized void addAll( final Collection<?> elements )
+	{
+		for ( Object element : elements )
+		{
+			this.add( element );
+		}
+	}
+
+	public synchronized void remove( final Object element )
+	{
+		int id = ItemIndex.getId( element );
+		if ( id < 0 || id >= this.items.length || this.entries[ id ] == 0 )
+		{
+			return;
+		}
+
+		if ( --this.entries[ id ] == 0 )
+		{
+			this.items[ id ] = null;
+			return;
+		}
+
+		// Another element has the same id.  The list has already been
+		// changed, so whichever element with that id it still holds is
+		// the one left.
+
+		this.items[ id ] = null;
+		for ( AdventureResult item : this.list )
+		{
+			if ( item.isItem() && item.getItemId() == id )
+			{
+				this.items[ id ] = item;
+			}
+		}
+	}
+
+	public synchronized void clear()
+	{
+		this.items = new AdventureResult[ this.items.length ];
+		this.entries = new int[ this.entries.length ];
+	}
+
+	public synchronized void rebuild()
+	{
+		this.clear();
+		this.addAll( this.list );
+	}
+
+	private static final int getId( final Object element )
+	{
+		if ( !( element instanceof AdventureResult ) )
+		{
+			return -1;
+		}
+
+		AdventureResult item = (AdventureResult) element;
+		return item.isItem() ? item.getItemId() : -1;
+	}
+}
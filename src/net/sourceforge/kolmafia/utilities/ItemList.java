@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.kolmafia.AdventureResult;
+
+/**
+ * Same as {@link net.sourceforge.kolmafia.utilities.ItemListModel}, except this extends a
+ * {@link net.sourceforge.kolmafia.utilities.SortedList}
+ */
+
+public class ItemList
+	extends SortedList<AdventureResult>
+{
+	private static final long serialVersionUID = 6145107771695844777L;
+
+	private ItemIndex index = new ItemIndex( this );
+	private boolean sorting = false;
+
+	public ItemIndex getItemIndex()
+	{
+		return this.index;
+	}
+
+	@Override
+	public synchronized boolean add( final AdventureResult o )
+	{
+		// SortedList routes add( int, element ) here as well
+		if ( !super.add( o ) )
+		{
+			return false;
+		}
+
+		this.index.add( o );
+		return true;
+	}
+
+	@Override
+	public synchronized boolean addAll( final int index, final Collection<? extends AdventureResult> c )
+	{
+		if ( !super.addAll( index, c ) )
+		{
+			return false;
+		}
+
+		this.index.addAll( c );
+		return true;
+	}
+
+	@Override
+	public synchronized void sort()
+	{
+		// Sorting sets every element in place, which does not change
+		// what the list holds.
+		this.sorting = true;
+		try
+		{
+			super.sort();
+		}
+		finally
+		{
+			this.sorting = false;
+		}
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		super.clear();
+		this.index.clear();
+	}
+
+	@Override
+	public synchronized AdventureResult remove( final int index )
+	{
+		AdventureResult originalValue = super.remove( index );
+		this.index.remove( originalValue );
+		return originalValue;
+	}
+
+	@Override
+	public synchronized boolean remove( final Object o )
+	{
+		if ( o == null )
+		{
+			return false;
+		}
+
+		for ( int i = 0; i < this.size(); ++i )
+		{
+			if ( o.equals( this.get( i ) ) )
+			{
+				this.remove( i );
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public synchronized boolean removeAll( final Collection<?> c )
+	{
+		boolean result = super.removeAll( c );
+		this.index.rebuild();
+		return result;
+	}
+
+	@Override
+	public synchronized boolean retainAll( final Collection<?> c )
+	{
+		boolean result = super.retainAll( c );
+		this.index.rebuild();
+		return result;
+	}
+
+	@Override
+	protected synchronized void removeRange( final int fromIndex, final int toIndex )
+	{
+		super.removeRange( fromIndex, toIndex );
+		this.index.rebuild();
+	}
+
+	@Override
+	public synchronized AdventureResult set( final int index, final AdventureResult element )
+	{
+		AdventureResult originalValue = super.set( index, element );
+		if ( !this.sorting )
+		{
+			this.index.remove( originalValue );
+			this.index.add( element );
+		}
+		return originalValue;
+	}
+
+	@Override
+	public List<AdventureResult> subList( final int fromIndex, final int toIndex )
+	{
+		// A sublist writes to the elements directly, behind the index
+		return Collections.unmodifiableList( super.subList( fromIndex, toIndex ) );
+	}
+
+	@Override
+	public int indexOf( final Object o )
+	{
+		// An item the index knows is absent needs no search
+		if ( o instanceof AdventureResult )
+		{
+			AdventureResult key = (AdventureResult) o;
+			if ( this.index.covers( key ) && this.index.find( key ) == null )
+			{
+				return -1;
+			}
+		}
+
+		return super.indexOf( o );
+	}
+
+	@Override
+	public synchronized Object clone()
+	{
+		ItemList cloneCopy = (ItemList) super.clone();
+		cloneCopy.index = new ItemIndex( cloneCopy );
+		cloneCopy.index.rebuild();
+		return cloneCopy;
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.java.dev.spellcast.utilities.SortedListModel;
+
+import net.sourceforge.kolmafia.AdventureResult;
+
+/**
+ * A {@link net.java.dev.spellcast.utilities.SortedListModel} of items which
+ * keeps an {@link ItemIndex} of its contents.  Every change to the list
+ * goes through the methods overridden here: a mirror image passes its
+ * changes to this list, and sublists are read-only.
+ */
+
+public class ItemListModel
+	extends SortedListModel<AdventureResult>
+{
+	private static final long serialVersionUID = 2415565744727231134L;
+
+	private ItemIndex index = new ItemIndex( this );
+
+	public ItemIndex getItemIndex()
+	{
+		return this.index;
+	}
+
+	@Override
+	public boolean add( final AdventureResult o )
+	{
+		// SortedListModel routes add( int, element ) here as well
+		synchronized ( this.actualElements )
+		{
+			if ( !super.add( o ) )
+			{
+				return false;
+			}
+
+			this.index.add( o );
+			return true;
+		}
+	}
+
+	@Override
+	public boolean addAll( final int index, final Collection<? extends AdventureResult> c )
+	{
+		synchronized ( this.actualElements )
+		{
+			if ( !super.addAll( index, c ) )
+			{
+				return false;
+			}
+
+			this.index.addAll( c );
+			return true;
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		synchronized ( this.actualElements )
+		{
+			super.clear();
+			this.index.clear();
+		}
+	}
+
+	@Override
+	public AdventureResult remove( final int index )
+	{
+		synchronized ( this.actualElements )
+		{
+			AdventureResult originalValue = super.remove( index );
+			if ( originalValue != null )
+			{
+				this.index.remove( originalValue );
+			}
+			return originalValue;
+		}
+	}
+
+	@Override
+	public AdventureResult set( final int index, final AdventureResult element )
+	{
+		synchronized ( this.actualElements )
+		{
+			AdventureResult originalValue = super.set( index, element );
+			if ( element != null )
+			{
+				this.index.remove( originalValue );
+				this.index.add( element );
+			}
+			return originalValue;
+		}
+	}
+
+	@Override
+	public List<AdventureResult> subList( final int fromIndex, final int toIndex )
+	{
+		// A sublist writes to the elements directly, behind the index
+		return Collections.unmodifiableList( super.subList( fromIndex, toIndex ) );
+	}
+
+	@Override
+	public int indexOf( final Object o )
+	{
+		// An item the index knows is absent needs no search
+		if ( o instanceof AdventureResult )
+		{
+			AdventureResult key = (AdventureResult) o;
+			if ( this.index.covers( key ) && this.index.find( key ) == null )
+			{
+				return -1;
+			}
+		}
+
+		return super.indexOf( o );
+	}
+
+	@Override
+	public Object clone()
+	{
+		ItemListModel cloneCopy = (ItemListModel) super.clone();
+		cloneCopy.index = new ItemIndex( cloneCopy );
+		cloneCopy.index.rebuild();
+		return cloneCopy;
+	}
+}
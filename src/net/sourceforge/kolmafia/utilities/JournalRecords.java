@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION ) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE ) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+
+import java.util.zip.CRC32;
+
+/**
+ * Frames the records of an append-only journal, so that a record torn
+ * by a crash is recognized and skipped when the journal is read back.
+ * Each record is written on a line of its own, prefixed by the CRC-32
+ * of the record as eight hex digits and a space.
+ */
+
+public class JournalRecords
+{
+	private static final int PREFIX_LENGTH = 9;
+
+	/**
+	 * Returns the line to write for the given record, without its line
+	 * break.
+	 */
+
+	public static String seal( final String record )
+	{
+		String checksum = Long.toHexString( JournalRecords.checksum( record ) );
+		StringBuilder line = new StringBuilder( JournalRecords.PREFIX_LENGTH + record.length() );
+		for ( int i = checksum.length(); i < 8; ++i )
+		{
+			line.append( '0' );
+		}
+		return line.append( checksum ).append( ' ' ).append( record ).toString();
+	}
+
+	/**
+	 * Returns the record written on the given line, or null if the line
+	 * was not written whole, as when the write was cut short by a crash.
+	 */
+
+	public static String unseal( final String line )
+	{
+		if ( line.length() < JournalRecords.PREFIX_LENGTH || line.charAt( 8 ) != ' ' )
+		{
+			return null;
+		}
+
+		long checksum;
+		try
+		{
+			checksum = Long.parseLong( line.substring( 0, 8 ), 16 );
+		}
+		catch ( NumberFormatException e )
+		{
+			return null;
+		}
+
+		String record = line.substring( JournalRecords.PREFIX_LENGTH );
+		return JournalRecords.checksum( record ) == checksum ? record : null;
+	}
+
+	/**
+	 * Returns true if the journal is missing, empty or ends with a line
+	 * break.  Otherwise the last write was torn, and the next record must
+	 * start on a new line so that it is not read as part of the torn one.
+	 */
+
+	public static boolean endsCleanly( final File journal )
+	{
+		if ( !journal.exists() || journal.length() == 0 )
+		{
+			return true;
+		}
+
+		RandomAccessFile file = null;
+		try
+		{
+			file = new RandomAccessFile( journal, "r" );
+			file.seek( file.length() - 1 );
+			int last = file.read();
+			return last == '\n' || last == '\r';
+		}
+		catch ( IOException e )
+		{
+			return false;
+		}
+		finally
+		{
+			if ( file != null )
+			{
+				try
+				{
+					file.close();
+				}
+				catch ( IOException e )
+				{
+				}
+			}
+		}
+	}
+
+	private static long checksum( final String record )
+	{
+		CRC32 crc = new CRC32();
+		try
+		{
+			crc.update( record.getBytes( "UTF-8" ) );
+		}
+		catch ( UnsupportedEncodingException e )
+		{
+			// UTF-8 is always supported
+		}
+		return crc.getValue();
+	}
+}
@@ -41,6 +41,8 @@ import java.util.List;
 import net.java.dev.spellcast.utilities.LockableListModel;
 import net.java.dev.spellcast.utilities.SortedListModel;
 
+import net.sourceforge.kolmafia.AdventureResult;
+
 /**
  * {@link net.java.dev.spellcast.utilities.LockableListModel} is used to hold data, but it depends on Swing.
  * For VMs without access to Swing, a List or {@link net.sourceforge.kolmafia.utilities.SortedList} is used
@@ -81,6 +83,21 @@ public class LockableListFactory
 		return i;
 	}
 
+	/**
+	 * Get an instance of ItemListModel if Swing is available, else get an ItemList.  Both are sorted
+	 * lists of items which keep an {@link ItemIndex} of their contents.
+	 * @return  ItemListModel or an ItemList if Swing cannot be loaded
+	 */
+
+	public static List<AdventureResult> getIndexedInstance()
+	{
+		if ( SwinglessUIUtils.isSwingAvailable )
+		{
+			return new ItemListModel();
+		}
+		return new ItemList();
+	}
+
 	/**
 	 * Calls {@link net.java.dev.spellcast.utilities.LockableListModel#getSize()} if possible,
 	 * else returns list size
@@ -67,8 +67,24 @@ public class LogStream
 	public static final PrintStream openStream( final File file, final boolean forceNewFile, final String encoding )
 	{
 		OutputStream ostream = DataUtilities.getOutputStream( file, !forceNewFile );
-		PrintStream pstream = openStream( ostream, encoding );
-		
+		return LogStream.initialize( file, openStream( ostream, encoding ) );
+	}
+
+	/**
+	 * Opens a log file for appending through a <code>LogWriter</code>, so
+	 * that printing to it never waits for the disk.  Debug logs are rolled
+	 * over into compressed segments once they grow large.
+	 */
+
+	public static final PrintStream openAsyncStream( final String filename )
+	{
+		File file = new File( KoLConstants.ROOT_LOCATION, filename );
+		long segmentSize = file.getName().startsWith( "DEBUG" ) ? LogWriter.DEBUG_SEGMENT_SIZE : 0L;
+		return LogStream.initialize( file, openStream( LogWriter.open( file, segmentSize ), "UTF-8" ) );
+	}
+
+	private static final PrintStream initialize( final File file, final PrintStream pstream )
+	{
 		if ( !( pstream instanceof LogStream ) )
 		{
 			return pstream;
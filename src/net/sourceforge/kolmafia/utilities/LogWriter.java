@@ -0,0 +1,499 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import java.util.concurrent.locks.LockSupport;
+
+import java.util.zip.GZIPOutputStream;
+
+import net.java.dev.spellcast.utilities.DataUtilities;
+
+/**
+ * An output stream for a log file which never makes the caller wait for
+ * the disk.  Each write is copied into a ring of chunks, and a thread of
+ * its own takes chunks off the ring and writes them to the file, flushing
+ * once for however many it found.  The ring needs no lock between the
+ * two sides: a slot holds a chunk until the writer has taken it, and the
+ * writer only ever looks at the slot after the last one it took.  Writes
+ * from several threads are serialized among themselves by a lock of the
+ * stream's own, taken inside the one their PrintStream holds and only for
+ * as long as it takes to fill a slot.  If the ring fills, the caller waits
+ * for a free slot rather than lose a line.  Should the writer thread ever
+ * die, callers write to the file themselves from then on.
+ *
+ * A log may be given a segment size.  Once the file grows past it, the
+ * writer compresses what is there into a numbered gzip file next to it
+ * and starts the log again from empty.
+ *
+ * Nothing written is on disk until the writer gets to it, which is
+ * normally a matter of milliseconds.  <code>flush( timeout )</code> and
+ * <code>flushAll</code> wait, for no longer than they are told, until
+ * everything written so far is; closing the stream and exiting the
+ * program both do so.
+ */
+
+public class LogWriter
+	extends OutputStream
+	implements Runnable
+{
+	public static final long DEBUG_SEGMENT_SIZE = 16L * 1024L * 1024L;
+
+	public static final long FLUSH_TIMEOUT = 500L;
+	public static final long CLOSE_TIMEOUT = 2000L;
+
+	private static final int SLOTS = 4096;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long IDLE_NANOS = 1000000000L;
+	private static final long WAIT_NANOS = 100000L;
+
+	private static final List<LogWriter> WRITERS = new ArrayList<LogWriter>();
+	private static boolean addedShutdownHook = false;
+
+	private final File file;
+	private final long segmentSize;
+	private final Thread thread;
+
+	private final AtomicReferenceArray<byte[]> ring = new AtomicReferenceArray<byte[]>( LogWriter.SLOTS );
+	private long tail = 0L;
+	private long head = 0L;
+
+	private volatile long queued = 0L;
+	private volatile long written = 0L;
+	private volatile boolean idle = false;
+	private volatile boolean closed = false;
+
+	private OutputStream ostream;
+	private long size;
+
+	private LogWriter( final File file, final long segmentSize )
+	{
+		this.file = file;
+		this.segmentSize = segmentSize;
+		this.size = file.length();
+		this.ostream = LogWriter.openFile( file, true );
+
+		this.thread = new Thread( this, "LogWriter-" + file.getName() );
+		this.thread.setDaemon( true );
+	}
+
+	/**
+	 * Opens a log file for appending.  A segment size of zero lets it grow
+	 * without limit.
+	 */
+
+	public static final LogWriter open( final File file, final long segmentSize )
+	{
+		LogWriter writer = new LogWriter( file, segmentSize );
+
+		synchronized ( LogWriter.WRITERS )
+		{
+			LogWriter.WRITERS.add( writer );
+
+			if ( !LogWriter.addedShutdownHook )
+			{
+				LogWriter.addedShutdownHook = true;
+				Runtime.getRuntime().addShutdownHook( new Thread( "LogWriter-shutdown" )
+				{
+					@Override
+					public void run()
+					{
+						LogWriter.flushAll( LogWriter.CLOSE_TIMEOUT );
+					}
+				} );
+			}
+		}
+
+		writer.thread.start();
+		return writer;
+	}
+
+	/**
+	 * Waits until everything written to any open log is on disk, or until
+	 * the timeout has passed.  Returns false if it gave up.
+	 */
+
+	public static final boolean flushAll( final long timeout )
+	{
+		LogWriter[] writers;
+		synchronized ( LogWriter.WRITERS )
+		{
+			writers = LogWriter.WRITERS.toArray( new LogWriter[ LogWriter.WRITERS.size() ] );
+		}
+
+		long deadline = System.currentTimeMillis() + timeout;
+		boolean flushed = true;
+
+		for ( LogWriter writer : writers )
+		{
+			flushed &= writer.flush( Math.max( 0L, deadline - System.currentTimeMillis() ) );
+		}
+
+		return flushed;
+	}
+
+	@Override
+	public void write( final int b )
+	{
+		this.put( new byte[] { (byte) b } );
+	}
+
+	@Override
+	public void write( final byte[] b, final int off, final int len )
+	{
+		if ( len <= 0 )
+		{
+			return;
+		}
+
+		byte[] chunk = new byte[ len ];
+		System.arraycopy( b, off, chunk, 0, len );
+		this.put( chunk );
+	}
+
+	private synchronized void put( final byte[] chunk )
+	{
+		if ( this.closed )
+		{
+			return;
+		}
+
+		int slot = (int) ( this.tail % LogWriter.SLOTS );
+		while ( this.ring.get( slot ) != null && this.thread.isAlive() )
+		{
+			LockSupport.unpark( this.thread );
+			LockSupport.parkNanos( this, LogWriter.WAIT_NANOS );
+		}
+
+		// Nobody is going to take the chunk out of the ring once the
+		// writer is gone, so write it here instead.
+
+		if ( !this.thread.isAlive() )
+		{
+			this.writeDirectly( chunk );
+			return;
+		}
+
+		this.ring.set( slot, chunk );
+		this.queued = ++this.tail;
+
+		if ( this.idle )
+		{
+			LockSupport.unpark( this.thread );
+		}
+	}
+
+	private void writeDirectly( final byte[] chunk )
+	{
+		// Whatever the writer left in the ring goes first
+		this.drain();
+
+		try
+		{
+			this.ostream.write( chunk );
+			this.size += chunk.length;
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+			this.ostream = NullStream.INSTANCE;
+		}
+
+		this.flushFile();
+		this.rollOver();
+	}
+
+	/**
+	 * Does not wait: the writer is already on its way.  PrintStream calls
+	 * this after every line.
+	 */
+
+	@Override
+	public void flush()
+	{
+	}
+
+	/**
+	 * Waits until everything written so far is on disk, or until the
+	 * timeout has passed.  Returns false if it gave up.
+	 */
+
+	public boolean flush( final long timeout )
+	{
+		long target = this.queued;
+		long deadline = System.nanoTime() + timeout * 1000000L;
+
+		while ( this.written < target && this.thread.isAlive() )
+		{
+			if ( System.nanoTime() - deadline >= 0 )
+			{
+				return false;
+			}
+
+			LockSupport.unpark( this.thread );
+			LockSupport.parkNanos( this, LogWriter.WAIT_NANOS );
+		}
+
+		return true;
+	}
+
+	@Override
+	public void close()
+	{
+		synchronized ( this )
+		{
+			if ( this.closed )
+			{
+				return;
+			}
+
+			this.closed = true;
+		}
+
+		synchronized ( LogWriter.WRITERS )
+		{
+			LogWriter.WRITERS.remove( this );
+		}
+
+		this.flush( LogWriter.CLOSE_TIMEOUT );
+
+		if ( !this.thread.isAlive() )
+		{
+			// The writer may have died before it could
+			if ( this.drain() > 0 )
+			{
+				this.flushFile();
+			}
+			LogWriter.close( this.ostream );
+		}
+	}
+
+	public void run()
+	{
+		while ( true )
+		{
+			int count = this.drain();
+
+			if ( count > 0 )
+			{
+				this.flushFile();
+				this.written += count;
+				this.rollOver();
+				continue;
+			}
+
+			// Nothing is put after the stream is closed, so once
+			// the ring is empty after that, it stays empty.
+
+			if ( this.closed )
+			{
+				if ( this.ring.get( (int) ( this.head % LogWriter.SLOTS ) ) == null )
+				{
+					break;
+				}
+				continue;
+			}
+
+			// Say we are idle before looking at the ring one last
+			// time, so that a chunk put there after we looked is
+			// followed by an unpark.
+
+			this.idle = true;
+			if ( this.ring.get( (int) ( this.head % LogWriter.SLOTS ) ) == null && !this.closed )
+			{
+				LockSupport.parkNanos( this, LogWriter.IDLE_NANOS );
+			}
+			this.idle = false;
+		}
+
+		try
+		{
+			this.ostream.close();
+		}
+		catch ( IOException e )
+		{
+		}
+	}
+
+	private int drain()
+	{
+		int count = 0;
+
+		while ( count < LogWriter.SLOTS )
+		{
+			int slot = (int) ( this.head % LogWriter.SLOTS );
+			byte[] chunk = this.ring.get( slot );
+			if ( chunk == null )
+			{
+				break;
+			}
+
+			this.ring.set( slot, null );
+			++this.head;
+			++count;
+
+			try
+			{
+				this.ostream.write( chunk );
+				this.size += chunk.length;
+			}
+			catch ( IOException e )
+			{
+				e.printStackTrace();
+				this.ostream = NullStream.INSTANCE;
+			}
+		}
+
+		return count;
+	}
+
+	private void flushFile()
+	{
+		try
+		{
+			this.ostream.flush();
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+			this.ostream = NullStream.INSTANCE;
+		}
+	}
+
+	private void rollOver()
+	{
+		if ( this.segmentSize <= 0L || this.size < this.segmentSize )
+		{
+			return;
+		}
+
+		try
+		{
+			this.ostream.close();
+		}
+		catch ( IOException e )
+		{
+		}
+
+		boolean compressed = LogWriter.compress( this.file, LogWriter.getSegmentFile( this.file ) );
+		this.ostream = LogWriter.openFile( this.file, !compressed );
+		this.size = compressed ? 0L : this.file.length();
+	}
+
+	private static File getSegmentFile( final File file )
+	{
+		String name = file.getName();
+		int dot = name.lastIndexOf( '.' );
+		String base = dot == -1 ? name : name.substring( 0, dot );
+		String extension = dot == -1 ? "" : name.substring( dot );
+
+		for ( int i = 1; ; ++i )
+		{
+			File segment = new File( file.getParentFile(), base + "_" + i + extension + ".gz" );
+			if ( !segment.exists() )
+			{
+				return segment;
+			}
+		}
+	}
+
+	private static boolean compress( final File source, final File destination )
+	{
+		InputStream istream = null;
+		OutputStream ostream = null;
+
+		try
+		{
+			istream = new FileInputStream( source );
+			ostream = new GZIPOutputStream( new FileOutputStream( destination ) );
+
+			byte[] buffer = new byte[ 8192 ];
+			int length;
+			while ( ( length = istream.read( buffer ) ) != -1 )
+			{
+				ostream.write( buffer, 0, length );
+			}
+
+			ostream.close();
+			ostream = null;
+			return true;
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+			destination.delete();
+			return false;
+		}
+		finally
+		{
+			LogWriter.close( istream );
+			LogWriter.close( ostream );
+		}
+	}
+
+	private static void close( final Closeable stream )
+	{
+		if ( stream == null )
+		{
+			return;
+		}
+
+		try
+		{
+			stream.close();
+		}
+		catch ( IOException e )
+		{
+		}
+	}
+
+	private static OutputStream openFile( final File file, final boolean append )
+	{
+		return new BufferedOutputStream( DataUtilities.getOutputStream( file, append ), LogWriter.BUFFER_SIZE );
+	}
+}
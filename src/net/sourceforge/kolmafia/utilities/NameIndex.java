@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Posting lists over a sorted array of canonical names, used by
+ * StringUtilities.getMatchingNames to narrow the names it has to test.
+ * Every list holds name indices in ascending order, so testing only the
+ * candidates still produces matches in the same order as a full scan.
+ *
+ * A name which contains the search string contains every three-character
+ * substring of it, so the substring passes only need the intersection of
+ * those trigrams' lists.  A fuzzy match must begin at the start of a
+ * word, so the fuzzy pass only needs the names with a word starting with
+ * the first character of the search string.
+ */
+
+class NameIndex
+{
+	private static final int[] EMPTY = new int[ 0 ];
+
+	private final int[] all;
+	private final int[] hashes;
+	private final Map<Long, int[]> trigrams;
+	private final Map<Character, int[]> wordStarts;
+
+	NameIndex( final String[] names )
+	{
+		int count = names.length;
+
+		this.all = new int[ count ];
+		this.hashes = new int[ count ];
+
+		Map<Long, IntList> trigramLists = new HashMap<Long, IntList>();
+		Map<Character, IntList> wordStartLists = new HashMap<Character, IntList>();
+
+		for ( int i = 0; i < count; ++i )
+		{
+			String name = names[ i ];
+
+			this.all[ i ] = i;
+			this.hashes[ i ] = StringUtilities.stringHash( name );
+
+			for ( int j = 0; j + 3 <= name.length(); ++j )
+			{
+				NameIndex.add( trigramLists, NameIndex.trigram( name, j ), i );
+			}
+
+			for ( int j = 0; j < name.length(); ++j )
+			{
+				if ( j == 0 || StringUtilities.isWordBoundary( name.charAt( j - 1 ) ) )
+				{
+					NameIndex.add( wordStartLists, Character.valueOf( name.charAt( j ) ), i );
+				}
+			}
+		}
+
+		this.trigrams = NameIndex.toArrays( trigramLists );
+		this.wordStarts = NameIndex.toArrays( wordStartLists );
+	}
+
+	int[] getHashes()
+	{
+		return this.hashes;
+	}
+
+	/**
+	 * Returns the indices of every name which might contain the given
+	 * string.  Strings shorter than a trigram narrow nothing.
+	 */
+
+	int[] substringCandidates( final String search )
+	{
+		if ( search.length() < 3 )
+		{
+			return this.all;
+		}
+
+		ArrayList<int[]> lists = new ArrayList<int[]>();
+		for ( int j = 0; j + 3 <= search.length(); ++j )
+		{
+			int[] list = this.trigrams.get( NameIndex.trigram( search, j ) );
+			if ( list == null )
+			{
+				return NameIndex.EMPTY;
+			}
+			lists.add( list );
+		}
+
+		// Intersect starting from the shortest list, so that the
+		// working set only ever shrinks.
+
+		int[][] sorted = lists.toArray( new int[ lists.size() ][] );
+		Arrays.sort( sorted, new Comparator<int[]>()
+		{
+			public int compare( final int[] o1, final int[] o2 )
+			{
+				return o1.length - o2.length;
+			}
+		} );
+
+		int[] result = sorted[ 0 ];
+		for ( int k = 1; k < sorted.length && result.length > 0; ++k )
+		{
+			if ( sorted[ k ] != sorted[ k - 1 ] )
+			{
+				result = NameIndex.intersect( result, sorted[ k ] );
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the indices of every name which might fuzzy match the
+	 * given string.
+	 */
+
+	int[] fuzzyCandidates( final String search )
+	{
+		for ( int j = 0; j < search.length(); ++j )
+		{
+			char ch = search.charAt( j );
+			if ( !Character.isWhitespace( ch ) )
+			{
+				int[] list = this.wordStarts.get( Character.valueOf( ch ) );
+				return list == null ? NameIndex.EMPTY : list;
+			}
+		}
+
+		return this.all;
+	}
+
+	private static Long trigram( final String s, final int index )
+	{
+		return Long.valueOf( ( (long) s.charAt( index ) << 32 ) | ( (long) s.charAt( index + 1 ) << 16 ) | s.charAt( index + 2 ) );
+	}
+
+	private static int[] intersect( final int[] a, final int[] b )
+	{
+		int[] result = new int[ Math.min( a.length, b.length ) ];
+		int count = 0;
+
+		for ( int i = 0, j = 0; i < a.length && j < b.length; )
+		{
+			if ( a[ i ] < b[ j ] )
+			{
+				++i;
+			}
+			else if ( a[ i ] > b[ j ] )
+			{
+				++j;
+			}
+			else
+			{
+				result[ count++ ] = a[ i ];
+				++i;
+				++j;
+			}
+		}
+
+		return count == result.length ? result : Arrays.copyOf( result, count );
+	}
+
+	private static <K> void add( final Map<K, IntList> lists, final K key, final int index )
+	{
+		IntList list = lists.get( key );
+		if ( list == null )
+		{
+			list = new IntList();
+			lists.put( key, list );
+		}
+		list.add( index );
+	}
+
+	private static <K> Map<K, int[]> toArrays( final Map<K, IntList> lists )
+	{
+		Map<K, int[]> result = new HashMap<K, int[]>( lists.size() * 2 );
+		for ( Map.Entry<K, IntList> entry : lists.entrySet() )
+		{
+			result.put( entry.getKey(), entry.getValue().toArray() );
+		}
+		return result;
+	}
+
+	// A growable list of ascending indices which ignores repeats, since
+	// a name may contain the same trigram or word start more than once.
+
+	private static class IntList
+	{
+		private int[] values = new int[ 4 ];
+		private int size = 0;
+
+		public void add( final int value )
+		{
+			if ( this.size > 0 && this.values[ this.size - 1 ] == value )
+			{
+				return;
+			}
+
+			if ( this.size == this.values.length )
+			{
+				this.values = Arrays.copyOf( this.values, this.size * 2 );
+			}
+
+			this.values[ this.size++ ] = value;
+		}
+
+		public int[] toArray()
+		{
+			return Arrays.copyOf( this.values, this.size );
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.java.dev.spellcast.utilities.DataUtilities;
+
+/**
+ * An in-memory listing of the directory trees searched for scripts, so
+ * that finding a script by name does not list every directory under
+ * scripts/ and relay/ again.
+ *
+ * The listing is checked against the disk by comparing the modification
+ * time of each directory, which changes whenever a file is added to it,
+ * removed from it or renamed.  That check is made when the listing is
+ * more than a few seconds old, or on request.  Callers should request it
+ * when a lookup finds nothing, since that is when a script which has just
+ * been written would otherwise be missed.  A file found through the
+ * listing is always checked for on disk before it is returned.
+ */
+
+public class ScriptIndex
+{
+	private static final long REFRESH_INTERVAL = 5000L;
+	private static final long TIMESTAMP_INTERVAL = 1000L;
+
+	// Some file systems only record modification times to the nearest
+	// two seconds, so a directory changed that recently is listed again.
+	private static final long TIMESTAMP_RESOLUTION = 2000L;
+
+	private static final Map<File, Tree> TREES = new HashMap<File, Tree>();
+	private static final Map<File, Timestamp> TIMESTAMPS = new HashMap<File, Timestamp>();
+
+	/**
+	 * Adds every file named <code>filename</code>, relative to the given
+	 * directory or to any directory beneath it, to the list of matches.
+	 * Matches are added in the order the directories would be visited by
+	 * a depth-first walk of the tree, with each directory's entries in
+	 * sorted order.
+	 */
+
+	public static final synchronized void find( final File root, final String filename, final List<File> matches )
+	{
+		Tree tree = ScriptIndex.TREES.get( root );
+		if ( tree == null )
+		{
+			tree = new Tree( root );
+			ScriptIndex.TREES.put( root, tree );
+		}
+
+		if ( System.currentTimeMillis() - tree.checkedAt > ScriptIndex.REFRESH_INTERVAL )
+		{
+			tree.refresh();
+		}
+
+		tree.find( filename, matches );
+	}
+
+	/**
+	 * Checks every indexed tree against the disk now.  Returns true if
+	 * any file or directory was added or removed since the last check.
+	 */
+
+	public static final synchronized boolean refresh()
+	{
+		boolean changed = false;
+
+		for ( Tree tree : ScriptIndex.TREES.values() )
+		{
+			changed |= tree.refresh();
+		}
+
+		ScriptIndex.TIMESTAMPS.clear();
+		return changed;
+	}
+
+	/**
+	 * Forgets what is known about the disk, so that the next lookup
+	 * checks it again.  Call this after writing or deleting scripts.
+	 */
+
+	public static final synchronized void invalidate()
+	{
+		for ( Tree tree : ScriptIndex.TREES.values() )
+		{
+			tree.checkedAt = 0L;
+		}
+
+		ScriptIndex.TIMESTAMPS.clear();
+	}
+
+	/**
+	 * Returns the modification time of a file, reading it from disk at
+	 * most once a second.  This is meant for files which are checked over
+	 * and over, like the imports of a script that runs every combat round.
+	 * A script run by hand calls invalidate first, so that an import saved
+	 * just before is not missed.
+	 */
+
+	public static final synchronized long lastModified( final File file )
+	{
+		long now = System.currentTimeMillis();
+		Timestamp timestamp = ScriptIndex.TIMESTAMPS.get( file );
+
+		if ( timestamp == null || now - timestamp.checkedAt > ScriptIndex.TIMESTAMP_INTERVAL )
+		{
+			timestamp = new Timestamp( file.lastModified(), now );
+			ScriptIndex.TIMESTAMPS.put( file, timestamp );
+		}
+
+		return timestamp.lastModified;
+	}
+
+	private static class Timestamp
+	{
+		private final long lastModified;
+		private final long checkedAt;
+
+		public Timestamp( final long lastModified, final long checkedAt )
+		{
+			this.lastModified = lastModified;
+			this.checkedAt = checkedAt;
+		}
+	}
+
+	private static class Tree
+	{
+		private final File root;
+		private Directory top = null;
+		private long checkedAt = 0L;
+
+		// Every directory in the tree, in the order they are searched,
+		// and the directories holding a file with a given name, keyed
+		// by the name in lower case.
+		private final List<Directory> directories = new ArrayList<Directory>();
+		private final Map<String, List<Directory>> names = new HashMap<String, List<Directory>>();
+
+		public Tree( final File root )
+		{
+			this.root = root;
+		}
+
+		public void find( final String filename, final List<File> matches )
+		{
+			List<Directory> candidates = this.directories;
+
+			// A name with a path in it can lead into directories which
+			// are not indexed, so try it in every directory.
+
+			if ( filename.indexOf( '/' ) == -1 && filename.indexOf( File.separatorChar ) == -1 )
+			{
+				candidates = this.names.get( filename.toLowerCase() );
+				if ( candidates == null )
+				{
+					return;
+				}
+			}
+
+			for ( Directory directory : candidates )
+			{
+				File scriptFile = new File( directory.file, filename );
+				if ( scriptFile.exists() && !scriptFile.isDirectory() )
+				{
+					matches.add( scriptFile );
+				}
+			}
+		}
+
+		public boolean refresh()
+		{
+			this.checkedAt = System.currentTimeMillis();
+
+			boolean changed;
+
+			if ( !this.root.isDirectory() )
+			{
+				changed = this.top != null;
+				this.top = null;
+			}
+			else
+			{
+				if ( this.top == null )
+				{
+					this.top = new Directory( this.root );
+				}
+
+				changed = this.top.refresh();
+			}
+
+			if ( changed )
+			{
+				this.directories.clear();
+				this.names.clear();
+
+				if ( this.top != null )
+				{
+					this.add( this.top );
+				}
+			}
+
+			return changed;
+		}
+
+		private void add( final Directory directory )
+		{
+			this.directories.add( directory );
+
+			for ( String name : directory.files )
+			{
+				List<Directory> list = this.names.get( name );
+				if ( list == null )
+				{
+					list = new ArrayList<Directory>();
+					this.names.put( name, list );
+				}
+
+				// Two names may differ only in case
+				if ( list.isEmpty() || list.get( list.size() - 1 ) != directory )
+				{
+					list.add( directory );
+				}
+			}
+
+			for ( Directory child : directory.children )
+			{
+				this.add( child );
+			}
+		}
+	}
+
+	private static class Directory
+	{
+		private static final Directory[] NO_CHILDREN = new Directory[ 0 ];
+
+		private final File file;
+		private long lastModified = -1L;
+		private long listedAt = 0L;
+
+		// Names of the files in this directory, in lower case, and the
+		// subdirectories which are searched, in sorted order.
+		private String[] files = new String[ 0 ];
+		private Directory[] children = Directory.NO_CHILDREN;
+
+		public Directory( final File file )
+		{
+			this.file = file;
+		}
+
+		public boolean refresh()
+		{
+			boolean changed = false;
+			long modified = this.file.lastModified();
+
+			if ( modified != this.lastModified || modified >= this.listedAt - ScriptIndex.TIMESTAMP_RESOLUTION )
+			{
+				changed = this.list( modified );
+			}
+
+			for ( Directory child : this.children )
+			{
+				changed |= child.refresh();
+			}
+
+			return changed;
+		}
+
+		private boolean list( final long modified )
+		{
+			this.lastModified = modified;
+			this.listedAt = System.currentTimeMillis();
+
+			String[] contents = this.file.list();
+			if ( contents == null )
+			{
+				contents = new String[ 0 ];
+			}
+
+			List<String> files = new ArrayList<String>();
+			Set<String> directories = new HashSet<String>();
+
+			for ( String name : contents )
+			{
+				if ( new File( this.file, name ).isDirectory() )
+				{
+					directories.add( name );
+				}
+				else
+				{
+					files.add( name.toLowerCase() );
+				}
+			}
+
+			// Only search the subdirectories which a directory listing
+			// would show, which leaves out backups and hidden folders
+			// such as .svn.
+
+			Map<File, Directory> previous = new HashMap<File, Directory>();
+			for ( Directory child : this.children )
+			{
+				previous.put( child.file, child );
+			}
+
+			List<Directory> children = new ArrayList<Directory>();
+			for ( File subdirectory : DataUtilities.listFiles( this.file ) )
+			{
+				if ( !directories.contains( subdirectory.getName() ) )
+				{
+					continue;
+				}
+
+				Directory child = previous.get( subdirectory );
+				children.add( child != null ? child : new Directory( subdirectory ) );
+			}
+
+			String[] newFiles = files.toArray( new String[ files.size() ] );
+			Arrays.sort( newFiles );
+			Directory[] newChildren = children.toArray( new Directory[ children.size() ] );
+
+			boolean changed = !Arrays.equals( this.files, newFiles ) || !Arrays.equals( this.children, newChildren );
+
+			this.files = newFiles;
+			this.children = newChildren;
+
+			return changed;
+		}
+	}
+}
@@ -66,7 +66,7 @@ public class StringUtilities
 	private static final HashMap<String, String> canonicalNameCache = new HashMap<String, String>();
 
 	private static final HashMap<String, String> prepositionsMap = new HashMap<String, String>();
-	private static final WeakHashMap<String[], int[]> hashCache = new WeakHashMap<String[], int[]>();
+	private static final WeakHashMap<String[], NameIndex> nameIndexCache = new WeakHashMap<String[], NameIndex>();
 
 	private static final Pattern NONINTEGER_PATTERN = Pattern.compile( "[^0-9\\-]+" );
 
@@ -378,21 +378,15 @@ public class StringUtilities
 			return matchList;
 		}
 
-		int nameCount = names.length;
-		int[] hashes = StringUtilities.hashCache.get( names );
-		if ( hashes == null )
-		{
-			hashes = new int[ nameCount ];
-			for ( int i = 0; i < nameCount; ++i )
-			{
-				hashes[ i ] = StringUtilities.stringHash( names[ i ] );
-			}
-			StringUtilities.hashCache.put( names, hashes );
-		}
+		NameIndex index = StringUtilities.getNameIndex( names );
+		int[] hashes = index.getHashes();
 		int hash = StringUtilities.stringHash( searchString );
 
-		for ( int i = 0; i < nameCount; ++i )
+		int[] candidates = index.substringCandidates( searchString );
+
+		for ( int k = 0; k < candidates.length; ++k )
 		{
+			int i = candidates[ k ];
 			if ( ( hashes[ i ] & hash ) == hash && StringUtilities.substringMatches( names[ i ], searchString, true ) )
 			{
 				matchList.add( names[ i ] );
@@ -404,8 +398,9 @@ public class StringUtilities
 			return matchList;
 		}
 
-		for ( int i = 0; i < nameCount; ++i )
+		for ( int k = 0; k < candidates.length; ++k )
 		{
+			int i = candidates[ k ];
 			if ( ( hashes[ i ] & hash ) == hash && StringUtilities.substringMatches( names[ i ], searchString, false ) )
 			{
 				matchList.add( names[ i ] );
@@ -424,8 +419,11 @@ public class StringUtilities
 		// Therefore, strip out the bit representing a space in the hash:
 		hash &= ~StringUtilities.stringHash( " " );
 
-		for ( int i = 0; i < nameCount; ++i )
+		candidates = index.fuzzyCandidates( searchString );
+
+		for ( int k = 0; k < candidates.length; ++k )
 		{
+			int i = candidates[ k ];
 			if ( ( hashes[ i ] & hash ) == hash && StringUtilities.fuzzyMatches( names[ i ], searchString ) )
 			{
 				matchList.add( names[ i ] );
@@ -435,7 +433,21 @@ public class StringUtilities
 		return matchList;
 	}
 
-	private static final int stringHash( final String s )
+	private static final NameIndex getNameIndex( final String[] names )
+	{
+		synchronized ( StringUtilities.nameIndexCache )
+		{
+			NameIndex index = StringUtilities.nameIndexCache.get( names );
+			if ( index == null )
+			{
+				index = new NameIndex( names );
+				StringUtilities.nameIndexCache.put( names, index );
+			}
+			return index;
+		}
+	}
+
+	static final int stringHash( final String s )
 	{
 		int hash = 0;
 		for ( int i = s.length() - 1; i >= 0; --i )
@@ -536,7 +548,7 @@ public class StringUtilities
 		return false;
 	}
 	
-	private static final boolean isWordBoundary( char ch )
+	static final boolean isWordBoundary( char ch )
 	{
 		return ch != '#' && !Character.isLetterOrDigit( ch );
 	}
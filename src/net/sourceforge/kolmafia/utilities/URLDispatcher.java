@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of handlers for URLs, each registered under one or more
+ * prefixes, which finds the handlers for a URL in the order they were
+ * added.  It stands in for a chain of <code>startsWith</code> tests:
+ * the handlers returned are exactly those whose prefix the URL starts
+ * with, so the caller can try them in turn just as the chain would have.
+ *
+ * A prefix which is a whole script name, such as "shop.php", is looked
+ * up by the script name of the URL, which takes one hash lookup however
+ * many handlers there are.  Any other prefix is tested against each URL,
+ * so those should be few.
+ */
+
+public class URLDispatcher<T>
+{
+	private final Map<String, List<Entry<T>>> scripts = new HashMap<String, List<Entry<T>>>();
+	private final Map<String, List<T>> handlers = new HashMap<String, List<T>>();
+	private final List<Entry<T>> prefixes = new ArrayList<Entry<T>>();
+	private final List<String> keys = new ArrayList<String>();
+	private int count = 0;
+
+	public void add( final String prefix, final T handler )
+	{
+		this.add( new String[] { prefix }, handler );
+	}
+
+	public synchronized void add( final String[] prefixes, final T handler )
+	{
+		int order = this.count++;
+
+		for ( String prefix : prefixes )
+		{
+			Entry<T> entry = new Entry<T>( prefix, handler, order );
+			this.keys.add( prefix );
+
+			if ( !URLDispatcher.isScript( prefix ) )
+			{
+				this.prefixes.add( entry );
+				continue;
+			}
+
+			List<Entry<T>> entries = this.scripts.get( prefix );
+			if ( entries == null )
+			{
+				entries = new ArrayList<Entry<T>>();
+				this.scripts.put( prefix, entries );
+			}
+			entries.add( entry );
+
+			List<T> list = new ArrayList<T>();
+			for ( Entry<T> e : entries )
+			{
+				list.add( e.handler );
+			}
+			this.handlers.put( prefix, Collections.unmodifiableList( list ) );
+		}
+	}
+
+	/**
+	 * Returns every prefix added, in the order they were added.
+	 */
+
+	public synchronized List<String> getPrefixes()
+	{
+		return new ArrayList<String>( this.keys );
+	}
+
+	/**
+	 * Returns the handlers registered under a prefix of the given URL, in
+	 * the order they were added.
+	 */
+
+	public synchronized List<T> find( final String location )
+	{
+		int end = location.indexOf( '?' );
+		String script = end == -1 ? location : location.substring( 0, end );
+
+		List<T> handlers = this.handlers.get( script );
+
+		List<Entry<T>> matches = null;
+		for ( Entry<T> entry : this.prefixes )
+		{
+			if ( location.startsWith( entry.prefix ) )
+			{
+				if ( matches == null )
+				{
+					matches = new ArrayList<Entry<T>>();
+				}
+				matches.add( entry );
+			}
+		}
+
+		if ( matches == null )
+		{
+			return handlers == null ? Collections.<T>emptyList() : handlers;
+		}
+
+		if ( handlers != null )
+		{
+			matches.addAll( this.scripts.get( script ) );
+			Collections.sort( matches );
+		}
+
+		List<T> result = new ArrayList<T>( matches.size() );
+		for ( Entry<T> entry : matches )
+		{
+			result.add( entry.handler );
+		}
+
+		return result;
+	}
+
+	private static boolean isScript( final String prefix )
+	{
+		return prefix.endsWith( ".php" ) && prefix.indexOf( '?' ) == -1;
+	}
+
+	private static class Entry<T>
+		implements Comparable<Entry<T>>
+	{
+		private final String prefix;
+		private final T handler;
+		private final int order;
+
+		public Entry( final String prefix, final T handler, final int order )
+		{
+			this.prefix = prefix;
+			this.handler = handler;
+			this.order = order;
+		}
+
+		public int compareTo( final Entry<T> o )
+		{
+			return this.order - o.order;
+		}
+	}
+}
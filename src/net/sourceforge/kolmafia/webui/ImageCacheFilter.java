@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.sourceforge.kolmafia.webui;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import net.sourceforge.kolmafia.KoLmafia;
+
+import net.sourceforge.kolmafia.preferences.Preferences;
+
+import net.sourceforge.kolmafia.request.RelayRequest;
+
+/**
+ * Points image URLs in relayed pages at KoLmafia's local image cache.
+ * Every image server prefix is rewritten to "/images", except for the
+ * directories whose images we do not cache.
+ */
+
+public class ImageCacheFilter
+	implements RelayFilter
+{
+	private static final String[] IMAGE_SERVERS =
+	{
+		KoLmafia.AMAZON_IMAGE_SERVER,
+		KoLmafia.KOL_IMAGE_SERVER,
+		"/iii",
+		"//images.kingdomofloathing.com",
+		"http://pics.communityofloathing.com/albums",
+	};
+
+	private static final String[] NOCACHE_IMAGES =
+	{
+		"/memes",
+		"/otherimages/zonefont",
+	};
+
+	private static final Node ROOT = new Node();
+
+	static
+	{
+		for ( String server : ImageCacheFilter.IMAGE_SERVERS )
+		{
+			ImageCacheFilter.addPrefix( server, "/images" );
+
+			// Images from these directories are left where they are
+			for ( String directory : ImageCacheFilter.NOCACHE_IMAGES )
+			{
+				ImageCacheFilter.addPrefix( server + directory, server + directory );
+			}
+		}
+	}
+
+	private static void addPrefix( final String prefix, final String replacement )
+	{
+		Node node = ImageCacheFilter.ROOT;
+		for ( int i = 0; i < prefix.length(); ++i )
+		{
+			node = node.add( prefix.charAt( i ) );
+		}
+		node.replacement = replacement;
+	}
+
+	public Writer filter( final RelayRequest request, final Writer out )
+	{
+		if ( !Preferences.getBoolean( "useImageCache" ) )
+		{
+			return out;
+		}
+
+		return new Rewriter( out );
+	}
+
+	/**
+	 * A node in the trie of prefixes.  All of the prefixes are ASCII, so
+	 * each node simply indexes its children by character.
+	 */
+
+	private static class Node
+	{
+		private Node[] next = null;
+		private String replacement = null;
+
+		private Node get( final char ch )
+		{
+			return this.next == null || ch >= this.next.length ? null : this.next[ ch ];
+		}
+
+		private Node add( final char ch )
+		{
+			if ( this.next == null )
+			{
+				this.next = new Node[ 128 ];
+			}
+
+			if ( this.next[ ch ] == null )
+			{
+				this.next[ ch ] = new Node();
+			}
+
+			return this.next[ ch ];
+		}
+	}
+
+	/**
+	 * Rewrites the text passing through it in a single pass.  Text that
+	 * cannot begin a prefix goes straight through; text that might is
+	 * held back until we know whether it does.
+	 */
+
+	private static class Rewriter
+		extends FilterWriter
+	{
+		private final StringBuilder held = new StringBuilder();
+
+		public Rewriter( final Writer out )
+		{
+			super( out );
+		}
+
+		@Override
+		public void write( final int c )
+			throws IOException
+		{
+			this.held.append( (char) c );
+			this.drain( false );
+		}
+
+		@Override
+		public void write( final char[] cbuf, final int off, final int len )
+			throws IOException
+		{
+			int end = off + len;
+			int start = off;
+
+			for ( int i = off; i < end; ++i )
+			{
+				if ( this.held.length() == 0 && ImageCacheFilter.ROOT.get( cbuf[ i ] ) == null )
+				{
+					continue;
+				}
+
+				this.out.write( cbuf, start, i - start );
+				this.held.append( cbuf[ i ] );
+				this.drain( false );
+				start = i + 1;
+			}
+
+			this.out.write( cbuf, start, end - start );
+		}
+
+		@Override
+		public void write( final String str, final int off, final int len )
+			throws IOException
+		{
+			int end = off + len;
+			int start = off;
+
+			for ( int i = off; i < end; ++i )
+			{
+				if ( this.held.length() == 0 && ImageCacheFilter.ROOT.get( str.charAt( i ) ) == null )
+				{
+					continue;
+				}
+
+				this.out.write( str, start, i - start );
+				this.held.append( str.charAt( i ) );
+				this.drain( false );
+				start = i + 1;
+			}
+
+			this.out.write( str, start, end - start );
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			this.drain( true );
+			super.close();
+		}
+
+		/**
+		 * Writes out as much of the held text as can be decided on.
+		 * At the end of the input, all of it can be.
+		 */
+
+		private void drain( final boolean finished )
+			throws IOException
+		{
+			while ( this.held.length() > 0 )
+			{
+				// Find the longest prefix which starts here
+				Node node = ImageCacheFilter.ROOT;
+				Node match = null;
+				int matchLength = 0;
+				int length = this.held.length();
+				int i = 0;
+
+				while ( i < length && ( node = node.get( this.held.charAt( i ) ) ) != null )
+				{
+					++i;
+					if ( node.replacement != null )
+					{
+						match = node;
+						matchLength = i;
+					}
+				}
+
+				// If we ran out of text while still on a path
+				// to some longer prefix, wait for more.
+				if ( i == length && node != null && node.next != null && !finished )
+				{
+					return;
+				}
+
+				if ( match != null )
+				{
+					this.out.write( match.replacement );
+					this.held.delete( 0, matchLength );
+				}
+				else
+				{
+					this.out.write( this.held.charAt( 0 ) );
+					this.held.deleteCharAt( 0 );
+				}
+			}
+		}
+	}
+}
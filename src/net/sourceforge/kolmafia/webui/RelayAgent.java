@@ -33,20 +33,29 @@
 
 package net.sourceforge.kolmafia.webui;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
 
 import java.net.InetAddress;
 import java.net.Socket;
 
+import java.nio.channels.SocketChannel;
+
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import java.util.zip.GZIPOutputStream;
 
 import net.sourceforge.kolmafia.KoLConstants;
 import net.sourceforge.kolmafia.KoLmafia;
@@ -65,6 +74,7 @@ import net.sourceforge.kolmafia.session.ActionBarManager;
 import net.sourceforge.kolmafia.session.ChoiceManager;
 import net.sourceforge.kolmafia.session.LeafletManager;
 
+import net.sourceforge.kolmafia.utilities.ChunkedOutputStream;
 import net.sourceforge.kolmafia.utilities.PauseObject;
 import net.sourceforge.kolmafia.utilities.StringUtilities;
 
@@ -76,10 +86,28 @@ public class RelayAgent
 	private static GenericRequest errorRequest = null;
 	private static String errorRequestPath = null;
 
+	// Stages which text responses pass through on the way to the browser
+	private static final List<RelayFilter> FILTERS = new CopyOnWriteArrayList<RelayFilter>();
+
+	static
+	{
+		RelayAgent.addFilter( new ImageCacheFilter() );
+	}
+
 	public static void reset()
 	{
 	}
 
+	/**
+	 * Adds a stage to the end of the output pipeline.  Text passes
+	 * through the filters in the order they were added.
+	 */
+
+	public static void addFilter( final RelayFilter filter )
+	{
+		RelayAgent.FILTERS.add( filter );
+	}
+
 	public static void setErrorRequest( GenericRequest errorRequest )
 	{
 		RelayAgent.errorRequest = errorRequest;
@@ -92,6 +120,9 @@ public class RelayAgent
 		RelayAgent.errorRequestPath = null;
 	}
 
+	// Text responses smaller than this are not worth compressing
+	private static final int GZIP_THRESHOLD = 1024;
+
 	private final char[] data = new char[ 8192 ];
 	private final StringBuffer buffer = new StringBuffer();
 	private final PauseObject pauser = new PauseObject();
@@ -103,6 +134,10 @@ public class RelayAgent
 	private String path;
 	private String requestMethod;
 	private String isCheckingModified;
+	private String isCheckingETag;
+	private boolean isHTTP11;
+	private boolean keepAlive;
+	private boolean acceptsGzip;
 	private final RelayRequest request;
 
 	public RelayAgent( final int id )
@@ -132,37 +167,64 @@ public class RelayAgent
 				this.pauser.pause();
 			}
 
+			boolean idle = false;
+
 			try
 			{
-				this.performRelay();
+				idle = this.performRelay();
 			}
 			finally
 			{
-				this.closeRelay();
+				if ( idle )
+				{
+					this.releaseRelay();
+				}
+				else
+				{
+					this.closeRelay();
+				}
 			}
 		}
 	}
 
-	public void performRelay()
+	/**
+	 * Serves requests from the current connection until the browser
+	 * closes it or stops sending requests.
+	 *
+	 * @return <code>true</code> if the connection is still open and
+	 *	should wait for another request
+	 */
+
+	public boolean performRelay()
 	{
 		if ( this.socket == null )
 		{
-			return;
+			return false;
 		}
 
 		this.path = null;
-		this.reader = null;
-		this.writer = null;
 
 		try
 		{
-			if ( !this.readBrowserRequest() )
+			while ( this.readBrowserRequest() )
 			{
-				return;
-			}
+				this.readServerResponse();
 
-			this.readServerResponse();
-			this.sendServerResponse();
+				if ( !this.sendServerResponse() || !this.keepAlive )
+				{
+					return false;
+				}
+
+				// Pipelined requests which have already
+				// arrived are served by this agent.  Otherwise,
+				// let the relay server watch the connection
+				// rather than tying up a thread waiting on it.
+
+				if ( !this.reader.ready() )
+				{
+					return this.socket.getChannel() != null;
+				}
+			}
 		}
 		catch ( IOException e )
 		{
@@ -171,6 +233,8 @@ public class RelayAgent
 		{
 			StaticEntity.printStackTrace( e, "Horrible relay failure" );
 		}
+
+		return false;
 	}
 
 	public boolean readBrowserRequest()
@@ -179,10 +243,19 @@ public class RelayAgent
 		boolean debugging = RequestLogger.isDebugging() && Preferences.getBoolean( "logBrowserInteractions" );
 		boolean tracing = RequestLogger.isTracing();
 
-		this.reader = new BufferedReader( new InputStreamReader( this.socket.getInputStream() ) );
+		if ( this.reader == null )
+		{
+			this.reader = new BufferedReader( new InputStreamReader( this.socket.getInputStream() ) );
+		}
 
 		String requestLine = this.reader.readLine();
 
+		// Tolerate stray line breaks between pipelined requests
+		while ( requestLine != null && requestLine.equals( "" ) )
+		{
+			requestLine = this.reader.readLine();
+		}
+
 		if ( requestLine == null )
 		{
 			return false;
@@ -199,7 +272,8 @@ public class RelayAgent
 			RequestLogger.trace( "From Browser: " + requestLine );
 		}
 
-		if ( !requestLine.contains( "HTTP/1.1" ) )
+		String version = requestLine.substring( requestLine.lastIndexOf( " " ) + 1 );
+		if ( !version.equals( "HTTP/1.1" ) && !version.equals( "HTTP/1.0" ) )
 		{
 			KoLmafia.updateDisplay( "Malformed HTTP request from browser." );
 			return false;
@@ -222,6 +296,13 @@ public class RelayAgent
 		this.request.constructURLString( this.path, usePostMethod );
 		this.request.responseText = null;
 		this.isCheckingModified = null;
+		this.isCheckingETag = null;
+		this.acceptsGzip = false;
+
+		// HTTP/1.1 connections persist unless the browser says
+		// otherwise; HTTP/1.0 connections only if it asks.
+		this.isHTTP11 = version.equals( "HTTP/1.1" );
+		this.keepAlive = this.isHTTP11;
 
 		String currentLine;
 		int contentLength = 0;
@@ -237,39 +318,75 @@ public class RelayAgent
 				RequestLogger.updateDebugLog( currentLine );
 			}
 
-			if ( currentLine.startsWith( "Host: " ) )
+			// Header names are not case sensitive
+			int colon = currentLine.indexOf( ":" );
+			if ( colon == -1 )
 			{
-				host = currentLine.substring( 6 );
 				continue;
 			}
 
-			if ( currentLine.startsWith( "Referer: " ) )
+			String name = currentLine.substring( 0, colon ).trim().toLowerCase();
+			String value = currentLine.substring( colon + 1 ).trim();
+
+			if ( name.equals( "host" ) )
 			{
-				referer = currentLine.substring( 9 );
+				host = value;
 				continue;
 			}
 
-			if ( currentLine.startsWith( "If-Modified-Since: " ) )
+			if ( name.equals( "referer" ) )
 			{
-				this.isCheckingModified = currentLine.substring( 19 );
+				referer = value;
 				continue;
 			}
 
-			if ( currentLine.startsWith( "Content-Length" ) )
+			if ( name.equals( "if-modified-since" ) )
 			{
-				contentLength = StringUtilities.parseInt( currentLine.substring( 16 ) );
+				this.isCheckingModified = value;
 				continue;
 			}
 
-			if ( currentLine.startsWith( "User-Agent" ) )
+			if ( name.equals( "if-none-match" ) )
 			{
-				GenericRequest.saveUserAgent( currentLine.substring( 12 ) );
+				this.isCheckingETag = value;
 				continue;
 			}
 
-			if ( currentLine.startsWith( "Cookie: " ) )
+			if ( name.equals( "connection" ) )
 			{
-				String cookies = currentLine.substring( 8 );
+				String connection = value.toLowerCase();
+				if ( connection.contains( "close" ) )
+				{
+					this.keepAlive = false;
+				}
+				else if ( connection.contains( "keep-alive" ) )
+				{
+					this.keepAlive = true;
+				}
+				continue;
+			}
+
+			if ( name.equals( "accept-encoding" ) )
+			{
+				this.acceptsGzip = value.contains( "gzip" );
+				continue;
+			}
+
+			if ( name.equals( "content-length" ) )
+			{
+				contentLength = StringUtilities.parseInt( value );
+				continue;
+			}
+
+			if ( name.equals( "user-agent" ) )
+			{
+				GenericRequest.saveUserAgent( value );
+				continue;
+			}
+
+			if ( name.equals( "cookie" ) )
+			{
+				String cookies = value;
 				StringBuilder buffer = new StringBuilder();
 				boolean inventory = this.path.startsWith( "/inventory" );
 				for ( String cookie : cookies.split( "\\s*;\\s*" ) )
@@ -466,9 +583,103 @@ public class RelayAgent
 		return RelayAgent.modifiedSince( this.isCheckingModified, RelayRequest.findRelayFile( this.path.substring( 1 ) ) );
 	}
 
+	private String findETag()
+		throws IOException
+	{
+		// Only local files are sent with an entity tag, so only they
+		// can be checked against one.  Images are sent as they are,
+		// while relay files pass through the filters.
+
+		String path = this.request.getBasePath();
+
+		if ( path.startsWith( "images/" ) || path.endsWith( "favicon.ico" ) )
+		{
+			return RelayFileCache.getETag( RelayRequest.findLocalImage( path ) );
+		}
+
+		if ( path.endsWith( ".php" ) || path.endsWith( ".ash" ) || path.startsWith( "KoLmafia/" ) || path.startsWith( "http" ) )
+		{
+			return null;
+		}
+
+		String etag = RelayFileCache.getETag( RelayRequest.findRelayFile( path ) );
+		return etag == null ? null : RelayAgent.variantETag( etag, this.filterKey(), false );
+	}
+
+	/**
+	 * Returns the entity tag of the form of a local file the browser has,
+	 * if it is the form we would send now, or null.  We would compress it
+	 * only if the browser takes gzip, and only if it is large enough, so
+	 * either form will do then.
+	 */
+
+	private String matchETag( final String etag )
+	{
+		if ( this.acceptsGzip )
+		{
+			String gzipped = RelayAgent.variantETag( etag, "", true );
+			if ( this.isCheckingETag.contains( gzipped ) )
+			{
+				return gzipped;
+			}
+		}
+
+		return this.isCheckingETag.contains( etag ) ? etag : null;
+	}
+
+	// A local file is sent as it is, or filtered, or compressed, and the
+	// browser must not be told one of those is current when it has
+	// another.  So each gets a tag of its own: the tag of the file, then
+	// which filters did something, then whether it was compressed.
+
+	private static String variantETag( final String etag, final String filterKey, final boolean gzipped )
+	{
+		String variant = filterKey;
+		if ( gzipped )
+		{
+			variant = variant.length() == 0 ? "gzip" : variant + "-gzip";
+		}
+
+		return RelayFileCache.variantETag( etag, variant );
+	}
+
+	// One digit for each filter, saying whether it does something for
+	// this response.
+	private String filterKey()
+		throws IOException
+	{
+		StringBuilder key = new StringBuilder();
+		Writer sink = new OutputStreamWriter( new ByteArrayOutputStream(), "UTF-8" );
+
+		for ( RelayFilter filter : RelayAgent.FILTERS )
+		{
+			key.append( filter.filter( this.request, sink ) == sink ? '0' : '1' );
+		}
+
+		return key.toString();
+	}
+
 	private void readServerResponse()
 		throws IOException
 	{
+		// If the browser has a copy of a local file, see whether it is
+		// still current.  The cache knows without looking at the disk
+		// if the file was sent within the last second.
+		if ( this.isCheckingETag != null )
+		{
+			String etag = this.findETag();
+			etag = etag == null ? null : this.matchETag( etag );
+			if ( etag != null )
+			{
+				this.request.pseudoResponse( "HTTP/1.1 304 Not Modified", "" );
+				this.request.headers.add( "ETag: " + etag );
+				this.request.headers.add( "Vary: Accept-Encoding" );
+				this.request.responseCode = 304;
+				this.request.rawByteBuffer = this.request.responseText.getBytes( "UTF-8" );
+				return;
+			}
+		}
+
 		// If sending a local page, check modification date of file
 		if ( this.isCheckingModified != null )
 		{
@@ -577,16 +788,7 @@ public class RelayAgent
 		}
 	}
 
-	private final static String NOCACHE_IMAGES = "(/memes|/otherimages/zonefont)?";
-		
-	private final static Pattern IMAGE_PATTERN = Pattern.compile( "(" + KoLmafia.AMAZON_IMAGE_SERVER +
-								      "|" + KoLmafia.KOL_IMAGE_SERVER +
-								      "|" + "/iii" +
-								      "|" + "//images.kingdomofloathing.com" +
-								      "|" + "http://pics.communityofloathing.com/albums" +
-								      ")" + RelayAgent.NOCACHE_IMAGES );
-
-	private void sendServerResponse()
+	private boolean sendServerResponse()
 		throws IOException
 	{
 		if ( this.request.rawByteBuffer == null )
@@ -595,40 +797,21 @@ public class RelayAgent
 			{
 				// We did not make a request of KoL and did not
 				// create a pseudoResponse
-				return;
+				return false;
 			}
 
-			if ( Preferences.getBoolean( "useImageCache" ) )
+			if ( this.request.responseCode == 304 )
 			{
-				StringBuffer responseBuffer = new StringBuffer();
-				Matcher matcher = RelayAgent.IMAGE_PATTERN.matcher( this.request.responseText );
-
-				while ( matcher.find() )
-				{
-					if ( matcher.group( 2 ) != null )
-					{
-						matcher.appendReplacement( responseBuffer, "$0" );
-					}
-					else
-					{
-						matcher.appendReplacement( responseBuffer, "/images" );
-					}
-				}
-
-				matcher.appendTail( responseBuffer );
-
-				this.request.responseText = responseBuffer.toString();
+				this.request.rawByteBuffer = this.request.responseText.getBytes( "UTF-8" );
 			}
+		}
 
-			// Convert the responseText into a byte buffer
-			this.request.rawByteBuffer = this.request.responseText.getBytes( "UTF-8" );
+		if ( this.writer == null )
+		{
+			this.writer = new PrintStream( new BufferedOutputStream( this.socket.getOutputStream() ), false );
 		}
 
-		this.writer = new PrintStream( this.socket.getOutputStream(), false );
-		this.writer.println( this.request.statusLine );
-		this.request.printHeaders( this.writer );
-		this.writer.println();
-		this.writer.write( this.request.rawByteBuffer );
+		long length = this.request.rawByteBuffer == null ? this.sendResponseText() : this.sendResponseBytes();
 		this.writer.flush();
 
 		if ( RequestLogger.isTracing() )
@@ -640,7 +823,7 @@ public class RelayAgent
 			if ( this.request.responseCode == 200 )
 			{
 				buffer.append( " (" );
-				buffer.append( this.request.rawByteBuffer.length );
+				buffer.append( length );
 				buffer.append( " bytes)" );
 			}
 			else if ( this.request.responseCode == 302 )
@@ -653,7 +836,7 @@ public class RelayAgent
 
 		if ( !RequestLogger.isDebugging() )
 		{
-			return;
+			return true;
 		}
 
 		boolean interactions = Preferences.getBoolean( "logBrowserInteractions" );
@@ -679,6 +862,236 @@ public class RelayAgent
 		{
 			RequestLogger.updateDebugLog( "----------" );
 		}
+
+		return true;
+	}
+
+	private long sendResponseBytes()
+		throws IOException
+	{
+		byte[] body = this.request.rawByteBuffer;
+		boolean gzipped = false;
+
+		if ( this.acceptsGzip && this.request.responseCode == 200 &&
+		     this.request.contentType.startsWith( "text" ) && body.length >= RelayAgent.GZIP_THRESHOLD )
+		{
+			body = RelayAgent.gzip( body );
+			gzipped = true;
+		}
+
+		String etag = null;
+		if ( this.request.cachedFile != null && this.request.responseCode == 200 )
+		{
+			etag = RelayAgent.variantETag( this.request.cachedFile.getETag(), "", gzipped );
+		}
+
+		this.writer.println( this.request.statusLine );
+		this.printHeaders( body.length, gzipped, etag );
+		this.writer.println();
+
+		// A 304 response must not have a body; anything we sent
+		// would be read as the start of the next response.
+		if ( this.request.responseCode != 304 )
+		{
+			this.writer.write( body );
+		}
+
+		return body.length;
+	}
+
+	private long sendResponseText()
+		throws IOException
+	{
+		if ( this.request.cachedFile != null && this.request.responseCode == 200 )
+		{
+			return this.sendCachedText();
+		}
+
+		// The text is encoded, filtered and compressed on its way to
+		// the socket, so we don't know its length up front.
+
+		boolean gzipped =
+			this.acceptsGzip && this.request.responseCode == 200 &&
+			this.request.contentType.startsWith( "text" ) &&
+			this.request.responseText.length() >= RelayAgent.GZIP_THRESHOLD;
+
+		// An HTTP/1.0 browser can't read chunks, so it gets the
+		// whole response, with its length, once it is ready.
+		if ( !this.isHTTP11 )
+		{
+			ByteArrayOutputStream body = new ByteArrayOutputStream( this.request.responseText.length() );
+			this.writeFilteredText( body, gzipped );
+
+			this.writer.println( this.request.statusLine );
+			this.printHeaders( body.size(), gzipped, null );
+			this.writer.println();
+			body.writeTo( this.writer );
+
+			return body.size();
+		}
+
+		this.writer.println( this.request.statusLine );
+		this.printHeaders( -1, gzipped, null );
+		this.writer.println();
+
+		ChunkedOutputStream chunked = new ChunkedOutputStream( this.writer );
+		this.writeFilteredText( chunked, gzipped );
+
+		return chunked.getCount();
+	}
+
+	private void writeFilteredText( final OutputStream destination, final boolean gzipped )
+		throws IOException
+	{
+		OutputStream ostream = gzipped ? new GZIPOutputStream( destination ) : destination;
+		Writer out = new OutputStreamWriter( ostream, "UTF-8" );
+
+		for ( int i = RelayAgent.FILTERS.size() - 1; i >= 0; --i )
+		{
+			out = RelayAgent.FILTERS.get( i ).filter( this.request, out );
+		}
+
+		out.write( this.request.responseText );
+		out.close();
+	}
+
+	private long sendCachedText()
+		throws IOException
+	{
+		// The response is an unchanged local file.  A filter that has
+		// nothing to do for it returns the writer it is given, and one
+		// that does something does the same thing every time, so the
+		// filtered and compressed forms are kept with the file, keyed
+		// by which filters were used.
+
+		String key = this.filterKey();
+
+		RelayFileCache.Entry file = this.request.cachedFile;
+		String textKey = "text:" + key;
+		byte[] body = file.getVariant( textKey );
+
+		if ( body == null )
+		{
+			ByteArrayOutputStream ostream = new ByteArrayOutputStream( this.request.responseText.length() );
+			Writer out = new OutputStreamWriter( ostream, "UTF-8" );
+
+			for ( int i = RelayAgent.FILTERS.size() - 1; i >= 0; --i )
+			{
+				out = RelayAgent.FILTERS.get( i ).filter( this.request, out );
+			}
+
+			out.write( this.request.responseText );
+			out.close();
+
+			body = ostream.toByteArray();
+			file.putVariant( textKey, body );
+		}
+
+		boolean gzipped =
+			this.acceptsGzip && this.request.contentType.startsWith( "text" ) &&
+			body.length >= RelayAgent.GZIP_THRESHOLD;
+
+		if ( gzipped )
+		{
+			String gzipKey = "gzip:" + key;
+			byte[] compressed = file.getVariant( gzipKey );
+
+			if ( compressed == null )
+			{
+				compressed = RelayAgent.gzip( body );
+				file.putVariant( gzipKey, compressed );
+			}
+
+			body = compressed;
+		}
+
+		this.writer.println( this.request.statusLine );
+		this.printHeaders( body.length, gzipped, RelayAgent.variantETag( file.getETag(), key, gzipped ) );
+		this.writer.println();
+		this.writer.write( body );
+
+		return body.length;
+	}
+
+	private void printHeaders( final int contentLength, final boolean gzipped, final String etag )
+	{
+		// The request knows which headers KoL (or KoLmafia) wants to
+		// send, but the framing headers depend on how this connection
+		// is being used, so we supply those ourselves.  So is the
+		// entity tag of a local file, which depends on how it was sent.
+
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		PrintStream headerStream = new PrintStream( headerBytes, true );
+		this.request.printHeaders( headerStream );
+
+		for ( String header : headerBytes.toString().split( "\r?\n" ) )
+		{
+			String uheader = header.toUpperCase();
+			if ( header.length() == 0 ||
+			     uheader.startsWith( "CONTENT-LENGTH:" ) ||
+			     uheader.startsWith( "CONTENT-ENCODING:" ) ||
+			     uheader.startsWith( "TRANSFER-ENCODING:" ) ||
+			     uheader.startsWith( "CONNECTION:" ) ||
+			     etag != null && uheader.startsWith( "ETAG:" ) )
+			{
+				continue;
+			}
+
+			this.writer.println( header );
+		}
+
+		if ( etag != null )
+		{
+			this.writer.println( "ETag: " + etag );
+		}
+
+		if ( gzipped )
+		{
+			this.writer.println( "Content-Encoding: gzip" );
+		}
+
+		if ( gzipped || etag != null )
+		{
+			this.writer.println( "Vary: Accept-Encoding" );
+		}
+
+		if ( contentLength < 0 )
+		{
+			this.writer.println( "Transfer-Encoding: chunked" );
+		}
+		else if ( this.request.responseCode != 304 )
+		{
+			this.writer.print( "Content-Length: " );
+			this.writer.print( contentLength );
+			this.writer.println();
+		}
+
+		this.writer.println( this.keepAlive ? "Connection: keep-alive" : "Connection: close" );
+	}
+
+	private static byte[] gzip( final byte[] data )
+		throws IOException
+	{
+		ByteArrayOutputStream ostream = new ByteArrayOutputStream( data.length / 4 + 64 );
+		GZIPOutputStream gzip = new GZIPOutputStream( ostream );
+		gzip.write( data );
+		gzip.close();
+		return ostream.toByteArray();
+	}
+
+	private void releaseRelay()
+	{
+		// The connection stays open; everything the browser sent
+		// has been read and every response has been flushed, so the
+		// streams can simply be dropped.
+
+		SocketChannel channel = this.socket.getChannel();
+
+		this.reader = null;
+		this.writer = null;
+		this.socket = null;
+
+		RelayServer.waitForRequest( channel );
 	}
 
 	private void closeRelay()
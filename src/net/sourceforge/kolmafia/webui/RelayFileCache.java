@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.webui;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.kolmafia.KoLConstants;
+
+import net.sourceforge.kolmafia.utilities.ByteBufferUtilities;
+
+/**
+ * Keeps the contents of recently served relay files and images in
+ * memory, so that the relay browser does not read the same script
+ * libraries, style sheets and images from disk on every page.
+ *
+ * An entry is checked against the file's modification time and length
+ * at most once a second.  Besides the bytes of the file, an entry holds
+ * the forms RelayAgent derives from them, such as the filtered and
+ * compressed text, so that those are only computed once.  The cache
+ * holds a fixed number of bytes in all and drops the least recently used
+ * entries to stay under it, and files larger than a megabyte are read
+ * but never kept.
+ *
+ * Only files inside the relay and image directories are served, however
+ * the request path names them.
+ */
+
+public class RelayFileCache
+{
+	private static final long CACHE_SIZE = 16L * 1024 * 1024;
+	private static final long MAXIMUM_FILE_SIZE = 1024L * 1024;
+	private static final long VALIDATE_INTERVAL = 1000L;
+
+	private static final File[] ROOTS = { KoLConstants.RELAY_LOCATION, KoLConstants.IMAGE_LOCATION };
+
+	private static final LinkedHashMap<File, Entry> CACHE = new LinkedHashMap<File, Entry>( 64, 0.75f, true );
+	private static long cacheSize = 0L;
+
+	/**
+	 * Returns the cached contents of a file, reading it if it is not
+	 * cached or has changed, or null if the file does not exist or is not
+	 * inside the relay or image directory.
+	 */
+
+	public static final Entry get( final File file )
+	{
+		Entry entry = RelayFileCache.peek( file );
+		if ( entry != null )
+		{
+			return entry;
+		}
+
+		if ( !RelayFileCache.isServable( file ) )
+		{
+			return null;
+		}
+
+		long lastModified = file.lastModified();
+		long length = file.length();
+
+		if ( lastModified == 0L || file.isDirectory() )
+		{
+			RelayFileCache.remove( file );
+			return null;
+		}
+
+		synchronized ( RelayFileCache.class )
+		{
+			entry = RelayFileCache.CACHE.get( file );
+			if ( entry != null && entry.lastModified == lastModified && entry.length == length )
+			{
+				entry.checkedAt = System.currentTimeMillis();
+				return entry;
+			}
+		}
+
+		entry = new Entry( file, lastModified, length, ByteBufferUtilities.read( file ) );
+
+		if ( length <= RelayFileCache.MAXIMUM_FILE_SIZE )
+		{
+			synchronized ( RelayFileCache.class )
+			{
+				RelayFileCache.remove( file );
+				RelayFileCache.CACHE.put( file, entry );
+				RelayFileCache.resize( entry.size );
+			}
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Returns the entity tag the file would be sent with, without reading
+	 * it, or null if the file does not exist or is not inside the relay or
+	 * image directory.
+	 */
+
+	public static final String getETag( final File file )
+	{
+		Entry entry = RelayFileCache.peek( file );
+		if ( entry != null )
+		{
+			return entry.etag;
+		}
+
+		if ( !RelayFileCache.isServable( file ) )
+		{
+			return null;
+		}
+
+		long lastModified = file.lastModified();
+		if ( lastModified == 0L || file.isDirectory() )
+		{
+			return null;
+		}
+
+		return RelayFileCache.makeETag( lastModified, file.length() );
+	}
+
+	private static String makeETag( final long lastModified, final long length )
+	{
+		return "\"" + Long.toHexString( lastModified ) + "-" + Long.toHexString( length ) + "\"";
+	}
+
+	/**
+	 * Returns the entity tag of one form of a file, such as its filtered
+	 * or compressed text, given the entity tag of the file itself.
+	 */
+
+	public static final String variantETag( final String etag, final String variant )
+	{
+		if ( variant.length() == 0 )
+		{
+			return etag;
+		}
+
+		return etag.substring( 0, etag.length() - 1 ) + "-" + variant + "\"";
+	}
+
+	// Request paths can contain "../", so only files which are really
+	// inside one of the roots may be read.
+	private static boolean isServable( final File file )
+	{
+		try
+		{
+			String path = file.getCanonicalPath();
+			for ( int i = 0; i < RelayFileCache.ROOTS.length; ++i )
+			{
+				if ( path.startsWith( RelayFileCache.ROOTS[ i ].getCanonicalPath() + File.separator ) )
+				{
+					return true;
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the cached contents of a file if they were checked against
+	 * the disk within the last second, without touching the disk.
+	 */
+
+	public static final synchronized Entry peek( final File file )
+	{
+		Entry entry = RelayFileCache.CACHE.get( file );
+		if ( entry == null || System.currentTimeMillis() - entry.checkedAt > RelayFileCache.VALIDATE_INTERVAL )
+		{
+			return null;
+		}
+
+		return entry;
+	}
+
+	public static final synchronized void clear()
+	{
+		RelayFileCache.CACHE.clear();
+		RelayFileCache.cacheSize = 0L;
+	}
+
+	private static synchronized void remove( final File file )
+	{
+		Entry entry = RelayFileCache.CACHE.remove( file );
+		if ( entry != null )
+		{
+			RelayFileCache.cacheSize -= entry.size;
+		}
+	}
+
+	private static synchronized void resize( final long delta )
+	{
+		RelayFileCache.cacheSize += delta;
+
+		Iterator<Entry> it = RelayFileCache.CACHE.values().iterator();
+		while ( RelayFileCache.cacheSize > RelayFileCache.CACHE_SIZE && it.hasNext() )
+		{
+			RelayFileCache.cacheSize -= it.next().size;
+			it.remove();
+		}
+	}
+
+	public static class Entry
+	{
+		private final File file;
+		private final long lastModified;
+		private final long length;
+		private final byte[] bytes;
+		private final String etag;
+
+		private volatile long checkedAt;
+		private long size;
+		private String text = null;
+		private final Map<String, byte[]> variants = new HashMap<String, byte[]>();
+
+		private Entry( final File file, final long lastModified, final long length, final byte[] bytes )
+		{
+			this.file = file;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.bytes = bytes;
+			this.etag = RelayFileCache.makeETag( lastModified, length );
+			this.checkedAt = System.currentTimeMillis();
+			this.size = bytes.length;
+		}
+
+		public long getLastModified()
+		{
+			return this.lastModified;
+		}
+
+		public String getETag()
+		{
+			return this.etag;
+		}
+
+		/**
+		 * Returns the contents of the file.  Callers must not change the
+		 * array, since it is shared.
+		 */
+
+		public byte[] getBytes()
+		{
+			return this.bytes;
+		}
+
+		/**
+		 * Returns the contents of the file as UTF-8 text, with each line
+		 * ending in a line break.
+		 */
+
+		public synchronized String getText()
+		{
+			if ( this.text != null )
+			{
+				return this.text;
+			}
+
+			StringBuilder buffer = new StringBuilder( this.bytes.length );
+
+			try
+			{
+				BufferedReader reader =
+					new BufferedReader( new InputStreamReader( new ByteArrayInputStream( this.bytes ), "UTF-8" ) );
+
+				String line;
+				while ( ( line = reader.readLine() ) != null )
+				{
+					buffer.append( line );
+					buffer.append( KoLConstants.LINE_BREAK );
+				}
+			}
+			catch ( IOException e )
+			{
+			}
+
+			this.text = buffer.toString();
+			this.addSize( this.text.length() * 2L );
+			return this.text;
+		}
+
+		/**
+		 * Returns a form of the contents stored earlier under the given
+		 * key, or null if there is none.
+		 */
+
+		public synchronized byte[] getVariant( final String key )
+		{
+			return this.variants.get( key );
+		}
+
+		public synchronized void putVariant( final String key, final byte[] variant )
+		{
+			byte[] previous = this.variants.put( key, variant );
+			this.addSize( variant.length - ( previous == null ? 0 : previous.length ) );
+		}
+
+		private void addSize( final long delta )
+		{
+			synchronized ( RelayFileCache.class )
+			{
+				this.size += delta;
+
+				if ( RelayFileCache.CACHE.get( this.file ) == this )
+				{
+					RelayFileCache.resize( delta );
+				}
+			}
+		}
+	}
+}
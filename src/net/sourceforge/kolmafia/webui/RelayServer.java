@@ -34,11 +34,22 @@
 
 package net.sourceforge.kolmafia.webui;
 
+import java.io.IOException;
+
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import net.sourceforge.kolmafia.KoLConstants;
@@ -58,7 +69,15 @@ public class RelayServer
 	private static long lastStatusMessage = 0;
 	private static Thread relayThread = null;
 
-	private ServerSocket serverSocket = null;
+	// Idle keep-alive connections are closed after this long
+	private static final long KEEP_ALIVE_TIMEOUT = 60 * 1000;
+
+	// Connections which agents have finished with but the browser has
+	// not closed.  The server thread watches them for new requests.
+	private static final List<SocketChannel> idleChannels = new ArrayList<SocketChannel>();
+
+	private ServerSocketChannel serverChannel = null;
+	private Selector selector = null;
 	private static int port = 60080;
 	private static boolean listening = false;
 	private static boolean updateStatus = false;
@@ -146,6 +165,35 @@ public class RelayServer
 	public static final void stop()
 	{
 		RelayServer.listening = false;
+
+		Selector selector = RelayServer.INSTANCE.selector;
+		if ( selector != null )
+		{
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Hands a kept-alive connection back to the server, which will
+	 * dispatch an agent when the browser sends another request on it.
+	 */
+
+	public static final void waitForRequest( final SocketChannel channel )
+	{
+		synchronized ( RelayServer.idleChannels )
+		{
+			RelayServer.idleChannels.add( channel );
+		}
+
+		Selector selector = RelayServer.INSTANCE.selector;
+		if ( selector != null )
+		{
+			selector.wakeup();
+		}
+		else
+		{
+			RelayServer.closeChannel( channel );
+		}
 	}
 
 	public void run()
@@ -169,7 +217,10 @@ public class RelayServer
 		{
 			try
 			{
-				this.dispatchAgent( this.serverSocket.accept() );
+				this.selector.select( RelayServer.KEEP_ALIVE_TIMEOUT / 4 );
+				this.watchIdleChannels();
+				this.handleSelectedKeys();
+				this.expireIdleChannels();
 			}
 			catch ( Exception e )
 			{
@@ -185,9 +236,22 @@ public class RelayServer
 
 		try
 		{
-			if ( this.serverSocket != null )
+			if ( this.selector != null )
 			{
-				this.serverSocket.close();
+				for ( SelectionKey key : this.selector.keys() )
+				{
+					if ( key.channel() instanceof SocketChannel )
+					{
+						RelayServer.closeChannel( (SocketChannel) key.channel() );
+					}
+				}
+
+				this.selector.close();
+			}
+
+			if ( this.serverChannel != null )
+			{
+				this.serverChannel.close();
 			}
 		}
 		catch ( Exception e )
@@ -197,27 +261,152 @@ public class RelayServer
 			// if it does, the socket closes.
 		}
 
-		this.serverSocket = null;
+		this.selector = null;
+		this.serverChannel = null;
 		RelayServer.relayThread = null;
 	}
 
+	private void watchIdleChannels()
+	{
+		synchronized ( RelayServer.idleChannels )
+		{
+			for ( SocketChannel channel : RelayServer.idleChannels )
+			{
+				try
+				{
+					channel.configureBlocking( false );
+					channel.register( this.selector, SelectionKey.OP_READ, new Long( System.currentTimeMillis() ) );
+				}
+				catch ( IOException e )
+				{
+					RelayServer.closeChannel( channel );
+				}
+			}
+
+			RelayServer.idleChannels.clear();
+		}
+	}
+
+	private void handleSelectedKeys()
+		throws IOException
+	{
+		List<SocketChannel> readable = new ArrayList<SocketChannel>();
+
+		Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+		while ( it.hasNext() )
+		{
+			SelectionKey key = it.next();
+			it.remove();
+
+			if ( !key.isValid() )
+			{
+				continue;
+			}
+
+			if ( key.isAcceptable() )
+			{
+				SocketChannel channel = this.serverChannel.accept();
+				if ( channel != null )
+				{
+					this.dispatchAgent( channel.socket() );
+				}
+			}
+			else if ( key.isReadable() )
+			{
+				key.cancel();
+				readable.add( (SocketChannel) key.channel() );
+			}
+		}
+
+		if ( readable.isEmpty() )
+		{
+			return;
+		}
+
+		// A channel cannot go back to blocking mode until its
+		// cancelled key has actually been removed from the selector.
+		this.selector.selectNow();
+
+		for ( SocketChannel channel : readable )
+		{
+			try
+			{
+				channel.configureBlocking( true );
+				this.dispatchAgent( channel.socket() );
+			}
+			catch ( IOException e )
+			{
+				RelayServer.closeChannel( channel );
+			}
+		}
+	}
+
+	private void expireIdleChannels()
+	{
+		long expired = System.currentTimeMillis() - RelayServer.KEEP_ALIVE_TIMEOUT;
+
+		for ( SelectionKey key : this.selector.keys() )
+		{
+			Object since = key.attachment();
+			if ( since instanceof Long && ( (Long) since ).longValue() < expired )
+			{
+				key.cancel();
+				RelayServer.closeChannel( (SocketChannel) key.channel() );
+			}
+		}
+	}
+
+	private static void closeChannel( final SocketChannel channel )
+	{
+		try
+		{
+			channel.close();
+		}
+		catch ( IOException e )
+		{
+			// The only time this happens is if the
+			// channel is already closed.  Ignore.
+		}
+	}
+
 	private synchronized boolean openServerSocket()
 	{
+		ServerSocketChannel channel = null;
+
 		try
 		{
+			channel = ServerSocketChannel.open();
+
 			if ( Preferences.getBoolean( "relayAllowRemoteAccess" ) )
 			{
-				this.serverSocket = new ServerSocket( RelayServer.port, 25 );
+				channel.socket().bind( new InetSocketAddress( RelayServer.port ), 25 );
 			}
 			else
 			{
-				this.serverSocket = new ServerSocket( RelayServer.port, 25, InetAddress.getByName( "127.0.0.1" ) );
+				channel.socket().bind( new InetSocketAddress( InetAddress.getByName( "127.0.0.1" ), RelayServer.port ), 25 );
 			}
 
+			channel.configureBlocking( false );
+
+			this.selector = Selector.open();
+			channel.register( this.selector, SelectionKey.OP_ACCEPT );
+			this.serverChannel = channel;
+
 			return true;
 		}
 		catch ( Exception e )
 		{
+			try
+			{
+				if ( channel != null )
+				{
+					channel.close();
+				}
+			}
+			catch ( IOException ioe )
+			{
+			}
+
 			return false;
 		}
 	}
@@ -0,0 +1,112 @@
+package net.sourceforge.kolmafia;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.kolmafia.utilities.FileUtilities;
+
+import org.junit.Test;
+
+public class ExpressionTest
+{
+	private static final Pattern EXPRESSION_PATTERN = Pattern.compile( "\\[([^\\[\\]]*)\\]" );
+
+	private static int compareAll( String fileName, int version, String type )
+		throws IOException
+	{
+		BufferedReader reader = FileUtilities.getVersionedReader( fileName, version );
+		int compiled = 0;
+		String line;
+		while ( ( line = reader.readLine() ) != null )
+		{
+			Matcher m = EXPRESSION_PATTERN.matcher( line );
+			while ( m.find() )
+			{
+				String text = m.group( 1 );
+				Expression expr =
+					type.equals( "monster" ) ? new MonsterExpression( text, "test" ) :
+					type.equals( "restore" ) ? new RestoreExpression( text, "test" ) :
+					new ModifierExpression( text, "Item:test" );
+				if ( expr.hasErrors() )
+				{
+					continue;
+				}
+				if ( expr.isCompiled() )
+				{
+					++compiled;
+				}
+				assertEquals( fileName + ": " + text, evaluate( expr, true ), evaluate( expr, false ) );
+			}
+		}
+		reader.close();
+		return compiled;
+	}
+
+	private static String evaluate( Expression expr, boolean interpret )
+	{
+		try
+		{
+			return String.valueOf( interpret ? expr.interpret() : expr.evalInternal() );
+		}
+		catch ( RuntimeException e )
+		{
+			return e.getClass().getName() + ": " + e.getMessage();
+		}
+	}
+
+	@Test
+	public void compiledModifierExpressionsMatchInterpreter()
+		throws IOException
+	{
+		assertTrue( compareAll( "modifiers.txt", KoLConstants.MODIFIERS_VERSION, "modifier" ) > 0 );
+	}
+
+	@Test
+	public void compiledMonsterExpressionsMatchInterpreter()
+		throws IOException
+	{
+		assertTrue( compareAll( "monsters.txt", KoLConstants.MONSTERS_VERSION, "monster" ) > 0 );
+	}
+
+	@Test
+	public void compiledRestoreExpressionsMatchInterpreter()
+		throws IOException
+	{
+		assertTrue( compareAll( "restores.txt", KoLConstants.RESTORES_VERSION, "restore" ) > 0 );
+	}
+
+	@Test
+	public void arithmeticMatchesInterpreter()
+	{
+		String[] texts = { "1-2-3", "2^3^2", "7%3", "1/0", "sqrt(-1)", "max(2,min(5,3))*-4", "2.5*4", "floor(2.5)+ceil(2.5)" };
+		for ( int i = 0; i < texts.length; ++i )
+		{
+			Expression expr = new ModifierExpression( texts[ i ], "Item:test" );
+			assertTrue( texts[ i ], expr.isCompiled() );
+			assertEquals( texts[ i ], evaluate( expr, true ), evaluate( expr, false ) );
+		}
+	}
+
+	@Test
+	public void contextOverridesStatics()
+	{
+		double weight = Modifiers.currentWeight;
+		EvaluationContext context = EvaluationContext.snapshot()
+			.withWeight( weight + 20.0 )
+			.withSmithsness( 5.0 )
+			.withMainhand( "club", false );
+		String[] texts = { "W", "K", "mainhand(club)", "mainhand(sword)" };
+		double[] expected = { weight + 20.0, 5.0, 1.0, 0.0 };
+		for ( int i = 0; i < texts.length; ++i )
+		{
+			Expression expr = new ModifierExpression( texts[ i ], "Item:test" );
+			assertEquals( texts[ i ], expected[ i ], expr.evalInternal( context ), 0.0 );
+			assertEquals( texts[ i ], expected[ i ], expr.interpret( context ), 0.0 );
+		}
+		assertEquals( weight, Modifiers.currentWeight, 0.0 );
+	}
+}
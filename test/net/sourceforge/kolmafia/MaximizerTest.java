@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import net.sourceforge.kolmafia.Modifiers;
 import net.sourceforge.kolmafia.maximizer.Maximizer;
+import net.sourceforge.kolmafia.preferences.Preferences;
 import net.sourceforge.kolmafia.session.InventoryManager;
 import net.sourceforge.kolmafia.session.EquipmentManager;
 
@@ -69,6 +70,125 @@ public class MaximizerTest
 					  3, Modifiers.getNumericModifier( "Generated", "_spec", "Hot Damage" ), 0.01 );
 	}
 
+	@Test
+	public void parallelSearchMatchesSerial()
+	{
+		KoLCharacter.addAvailableSkill( "Double-Fisted Skull Smashing" );
+		KoLCharacter.setStatPoints( 15, 225, 0, 0, 0, 0 );
+		try
+		{
+			// 2 flaming crutch, 2 white sword, 1 dense meat sword.
+			InventoryManager.parseInventory( new JSONObject( "{\"473\": \"2\", \"269\": \"2\", \"1728\": \"1\"}" ) );
+		}
+		catch ( JSONException e )
+		{
+			fail( "Inventory parsing failed." );
+		}
+		Preferences.setInteger( "maximizerThreadPoolSize", 4 );
+		try
+		{
+			assertTrue( Maximizer.maximize( "mus, club", 0, 0, true ) );
+		}
+		finally
+		{
+			Preferences.setInteger( "maximizerThreadPoolSize", 1 );
+		}
+		assertEquals( "Muscle as expected.",
+					  2, Modifiers.getNumericModifier( "Generated", "_spec", "Muscle" ), 0.01 );
+		assertEquals( "Hot damage as expected.",
+					  3, Modifiers.getNumericModifier( "Generated", "_spec", "Hot Damage" ), 0.01 );
+	}
+
+	@Test
+	public void parallelSearchStopsAtSameMaximum()
+	{
+		KoLCharacter.addAvailableSkill( "Double-Fisted Skull Smashing" );
+		KoLCharacter.setStatPoints( 15, 225, 0, 0, 0, 0 );
+		try
+		{
+			// 2 flaming crutch, 2 white sword, 1 dense meat sword.
+			InventoryManager.parseInventory( new JSONObject( "{\"473\": \"2\", \"269\": \"2\", \"1728\": \"1\"}" ) );
+		}
+		catch ( JSONException e )
+		{
+			fail( "Inventory parsing failed." );
+		}
+		assertTrue( Maximizer.maximize( "mus, 2 max", 0, 0, true ) );
+		double serialMuscle = Modifiers.getNumericModifier( "Generated", "_spec", "Muscle" );
+		double serialHot = Modifiers.getNumericModifier( "Generated", "_spec", "Hot Damage" );
+		Preferences.setInteger( "maximizerThreadPoolSize", 4 );
+		try
+		{
+			assertTrue( Maximizer.maximize( "mus, 2 max", 0, 0, true ) );
+		}
+		finally
+		{
+			Preferences.setInteger( "maximizerThreadPoolSize", 1 );
+		}
+		assertEquals( "Muscle as serial.",
+					  serialMuscle, Modifiers.getNumericModifier( "Generated", "_spec", "Muscle" ), 0.01 );
+		assertEquals( "Hot damage as serial.",
+					  serialHot, Modifiers.getNumericModifier( "Generated", "_spec", "Hot Damage" ), 0.01 );
+	}
+
+	@Test
+	public void pruningKeepsBestCombination()
+	{
+		KoLCharacter.addAvailableSkill( "Double-Fisted Skull Smashing" );
+		KoLCharacter.setStatPoints( 15, 225, 0, 0, 0, 0 );
+		try
+		{
+			// 2 flaming crutch, 2 white sword, 1 helmet turtle, 1 viking helmet.
+			InventoryManager.parseInventory( new JSONObject( "{\"473\": \"2\", \"269\": \"2\", \"3\": \"1\", \"37\": \"1\"}" ) );
+		}
+		catch ( JSONException e )
+		{
+			fail( "Inventory parsing failed." );
+		}
+		assertTrue( Maximizer.maximize( "hot damage, 0.1 DA", 0, 0, true ) );
+		assertEquals( "Hot damage as expected.",
+					  6, Modifiers.getNumericModifier( "Generated", "_spec", "Hot Damage" ), 0.01 );
+		assertEquals( "Damage absorption as expected.",
+					  20, Modifiers.getNumericModifier( "Generated", "_spec", "Damage Absorption" ), 0.01 );
+	}
+
+	@Test
+	public void pruningMatchesExhaustiveSearch()
+	{
+		try
+		{
+			// 1 helmet turtle, 1 viking helmet, 2 Mr. Accessory Jr., 1 observational glasses,
+			// 1 bottle-rocket crossbow, 1 white sword, 1 Bag o' Tricks.
+			InventoryManager.parseInventory( new JSONObject(
+				"{\"3\": \"1\", \"37\": \"1\", \"896\": \"2\", \"4668\": \"1\", \"2834\": \"1\", \"269\": \"1\", \"4136\": \"1\"}" ) );
+		}
+		catch ( JSONException e )
+		{
+			fail( "Inventory parsing failed." );
+		}
+		String[] modifiers = { "Item Drop", "Meat Drop", "Damage Absorption", "Spell Damage Percent" };
+		double[] exhaustive = new double[ modifiers.length ];
+		Preferences.setBoolean( "maximizerPruning", false );
+		try
+		{
+			assertTrue( Maximizer.maximize( "item, 0.5 meat, 0.1 DA", 0, 0, true ) );
+		}
+		finally
+		{
+			Preferences.setBoolean( "maximizerPruning", true );
+		}
+		for ( int i = 0; i < modifiers.length; ++i )
+		{
+			exhaustive[ i ] = Modifiers.getNumericModifier( "Generated", "_spec", modifiers[ i ] );
+		}
+		assertTrue( Maximizer.maximize( "item, 0.5 meat, 0.1 DA", 0, 0, true ) );
+		for ( int i = 0; i < modifiers.length; ++i )
+		{
+			assertEquals( modifiers[ i ] + " as without pruning.",
+				      exhaustive[ i ], Modifiers.getNumericModifier( "Generated", "_spec", modifiers[ i ] ), 0.01 );
+		}
+	}
+
 	// Sample test for https://kolmafia.us/showthread.php?23648&p=151903#post151903.
 	// Commented out, since it's currently failing.
 	/*
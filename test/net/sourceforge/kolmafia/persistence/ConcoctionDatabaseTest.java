@@ -0,0 +1,100 @@
+package net.sourceforge.kolmafia.persistence;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import net.sourceforge.kolmafia.AdventureResult;
+import net.sourceforge.kolmafia.KoLCharacter;
+import net.sourceforge.kolmafia.KoLConstants;
+import net.sourceforge.kolmafia.KoLConstants.CraftingType;
+
+import net.sourceforge.kolmafia.objectpool.Concoction;
+import net.sourceforge.kolmafia.objectpool.ConcoctionPool;
+import net.sourceforge.kolmafia.objectpool.ItemPool;
+
+import net.sourceforge.kolmafia.request.CreateItemRequest;
+
+/**
+ * Tests that refreshing only the concoctions affected by inventory changes leaves them in the same state as a
+ * full refresh.
+ */
+
+public class ConcoctionDatabaseTest {
+
+    // Every quantity a refresh computes, for every concoction, plus the creatable list.
+
+    private static String snapshot() {
+        StringBuilder buffer = new StringBuilder();
+        for ( Concoction item : ConcoctionPool.concoctions() ) {
+            buffer.append( item.getName() ).append( ':' )
+                .append( item.initial ).append( '/' )
+                .append( item.creatable ).append( '/' )
+                .append( item.total ).append( '/' )
+                .append( item.visibleTotal ).append( '\n' );
+        }
+        for ( CreateItemRequest request : ConcoctionDatabase.getCreatables() ) {
+            buffer.append( request.getName() ).append( ' ' ).append( request.getQuantityPossible() ).append( '\n' );
+        }
+        return buffer.toString();
+    }
+
+    @Test
+    public void itShouldMatchAFullRefreshAfterInventoryChanges() {
+        KoLCharacter.setAvailableMeat( 100000 );
+        KoLCharacter.setAdventuresLeft( 50 );
+        ConcoctionDatabase.refreshConcoctionsNow();
+
+        // Ingredients of ordinary meat paste recipes, several of which
+        // are themselves made from others.  Meat paste is left out, since
+        // every such recipe uses it implicitly and a change forces a full
+        // refresh.
+
+        TreeSet<Integer> ids = new TreeSet<Integer>();
+        for ( Concoction item : ConcoctionPool.concoctions() ) {
+            if ( ConcoctionDatabase.getMixingMethod( item.getItemId() ) != CraftingType.COMBINE ) {
+                continue;
+            }
+            for ( AdventureResult ingredient : item.getIngredients() ) {
+                if ( ingredient.getItemId() > 0 && ingredient.getItemId() != ItemPool.MEAT_PASTE ) {
+                    ids.add( ingredient.getItemId() );
+                }
+            }
+            if ( ids.size() >= 60 ) {
+                break;
+            }
+        }
+        List<Integer> ingredients = new ArrayList<Integer>( ids );
+
+        AdventureResult.addResultToList( KoLConstants.inventory, ItemPool.get( ItemPool.MEAT_PASTE, 20 ) );
+        Random random = new Random( 19 );
+        for ( Integer itemId : ingredients ) {
+            AdventureResult.addResultToList( KoLConstants.inventory, ItemPool.get( itemId.intValue(), 1 + random.nextInt( 3 ) ) );
+        }
+        ConcoctionDatabase.refreshConcoctionsNow();
+
+        int created = 0;
+        for ( int round = 0; round < 40; ++round ) {
+            for ( int change = 1 + random.nextInt( 3 ); change > 0; --change ) {
+                int itemId = ingredients.get( random.nextInt( ingredients.size() ) ).intValue();
+                int count = ItemPool.get( itemId, 1 ).getCount( KoLConstants.inventory );
+                int delta = count > 0 && random.nextBoolean() ? -1 - random.nextInt( count ) : 1 + random.nextInt( 2 );
+                AdventureResult.addResultToList( KoLConstants.inventory, ItemPool.get( itemId, delta ) );
+            }
+
+            assertTrue( "round " + round + " was not incremental", ConcoctionDatabase.refreshChangedConcoctions() );
+            String incremental = snapshot();
+
+            ConcoctionDatabase.refreshConcoctionsNow();
+            assertEquals( "round " + round, snapshot(), incremental );
+
+            created += ConcoctionDatabase.getCreatables().size();
+        }
+
+        assertTrue( "nothing was ever creatable", created > 0 );
+    }
+}
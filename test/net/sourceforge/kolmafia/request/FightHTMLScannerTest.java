@@ -0,0 +1,63 @@
+package net.sourceforge.kolmafia.request;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.sourceforge.kolmafia.utilities.ByteBufferUtilities;
+import net.sourceforge.kolmafia.utilities.StringUtilities;
+
+import org.htmlcleaner.TagNode;
+import org.junit.Test;
+
+/**
+ * Replays saved fight pages through FightHTMLScanner and through a clean of
+ * the whole page, and checks that both find the same fight node.
+ */
+
+public class FightHTMLScannerTest
+{
+	private static final String[] FIGHTS =
+	{
+		"round1.html",
+		"monname.html",
+		"won.html",
+		"style.html",
+		"textarea.html",
+	};
+
+	private static String load( final String name )
+		throws IOException
+	{
+		InputStream istream = FightHTMLScannerTest.class.getResourceAsStream( "fights/" + name );
+		assertNotNull( "Missing fixture " + name, istream );
+		return StringUtilities.getEncodedString( ByteBufferUtilities.read( istream ), "UTF-8" );
+	}
+
+	@Test
+	public void scannerMatchesFullClean()
+		throws IOException
+	{
+		for ( String name : FightHTMLScannerTest.FIGHTS )
+		{
+			String text = FightHTMLScannerTest.load( name );
+
+			TagNode expected = FightRequest.cleanFightNode( text, false );
+			assertNotNull( name + ": no fight node", expected );
+
+			TagNode actual = FightRequest.scanFightNode( text );
+			assertNotNull( name + ": scanner fell back to a full clean", actual );
+
+			assertNull( name, FightHTMLScanner.compare( expected, actual ) );
+		}
+	}
+
+	@Test
+	public void scannerFallsBackWithoutMonster()
+	{
+		String text = "<html><body><center><table><tr><td><center>Nothing here</center></td></tr></table></center></body></html>";
+		assertNull( FightHTMLScanner.extractFight( text ) );
+		assertNull( FightRequest.scanFightNode( text ) );
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.session;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a list of URLs through the handler table of ResponseTextParser
+ * and through a linear scan of the same prefixes, which is what the old
+ * chain of startsWith tests did, and prints how long each took.
+ *
+ * The URLs are read from the file named on the command line, one per
+ * line; any line of a session or debug log which mentions a .php script
+ * will do.  With no file, a small sample session is used.
+ */
+
+public class ResponseDispatchBenchmark
+{
+	static final String[] SAMPLE =
+	{
+		"main.php",
+		"charpane.php",
+		"api.php?what=status&for=KoLmafia",
+		"adventure.php?snarfblat=123",
+		"fight.php?action=attack",
+		"fight.php?action=skill&whichskill=1005",
+		"choice.php?whichchoice=1&option=1",
+		"inventory.php?which=1",
+		"inv_use.php?whichitem=1&ajax=1",
+		"inv_eat.php?whichitem=2",
+		"shop.php?whichshop=grimoire",
+		"place.php?whichplace=town_right",
+		"campground.php?action=rest",
+		"craft.php?mode=cook&a=1&b=2",
+		"mall.php?pudnuggler=test",
+		"skills.php?action=Skillz&whichskill=3&quantity=1",
+		"closet.php?action=closetpull&whichitem=1",
+		"storage.php?action=pull&whichitem1=1",
+		"volcanoisland.php?action=tniat",
+		"tiles.php",
+	};
+
+	public static void main( final String[] args )
+		throws IOException
+	{
+		String[] urls = args.length > 0 ? ResponseDispatchBenchmark.readURLs( args[ 0 ] ) : ResponseDispatchBenchmark.SAMPLE;
+		String[] prefixes = ResponseTextParser.HANDLERS.getPrefixes().toArray( new String[ 0 ] );
+		int rounds = Math.max( 1, 2000000 / Math.max( 1, urls.length ) );
+
+		System.out.println( urls.length + " URLs, " + prefixes.length + " prefixes, " + rounds + " rounds" );
+
+		for ( int pass = 0; pass < 3; ++pass )
+		{
+			long start = System.nanoTime();
+			int found = 0;
+			for ( int round = 0; round < rounds; ++round )
+			{
+				for ( String url : urls )
+				{
+					found += ResponseTextParser.HANDLERS.find( url ).size();
+				}
+			}
+			long table = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int scanned = 0;
+			for ( int round = 0; round < rounds; ++round )
+			{
+				for ( String url : urls )
+				{
+					for ( String prefix : prefixes )
+					{
+						if ( url.startsWith( prefix ) )
+						{
+							++scanned;
+						}
+					}
+				}
+			}
+			long linear = System.nanoTime() - start;
+
+			long lookups = (long) rounds * urls.length;
+			System.out.println( "table: " + ( table / lookups ) + " ns/URL (" + found + " matches), " +
+				"linear: " + ( linear / lookups ) + " ns/URL (" + scanned + " matches)" );
+		}
+	}
+
+	private static String[] readURLs( final String filename )
+		throws IOException
+	{
+		List<String> urls = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader( new FileReader( filename ) );
+
+		try
+		{
+			String line;
+			while ( ( line = reader.readLine() ) != null )
+			{
+				int end = line.indexOf( ".php" );
+				if ( end == -1 )
+				{
+					continue;
+				}
+
+				int start = line.lastIndexOf( ' ', end ) + 1;
+				int slash = line.lastIndexOf( '/', end );
+				if ( slash >= start )
+				{
+					start = slash + 1;
+				}
+
+				int space = line.indexOf( ' ', end );
+				urls.add( line.substring( start, space == -1 ? line.length() : space ) );
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return urls.toArray( new String[ urls.size() ] );
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.session;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import net.sourceforge.kolmafia.session.ResponseTextParser.ResponseHandler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The handler table of ResponseTextParser must pick, for every URL, the
+ * branch the old chain of startsWith tests took.  Each URL here is listed
+ * with the prefix of that branch and which of the handlers registered
+ * under the prefix it is, or with no prefix if the chain took none.
+ */
+
+public class ResponseDispatchTest
+{
+	private static final Object[][] SAMPLE_HANDLERS =
+	{
+		{ "main.php", null, 0 },
+		{ "charpane.php", null, 0 },
+		{ "api.php?what=status&for=KoLmafia", "api.php", 0 },
+		{ "adventure.php?snarfblat=123", "adventure.php", 0 },
+		{ "fight.php?action=attack", null, 0 },
+		{ "fight.php?action=skill&whichskill=1005", null, 0 },
+		{ "choice.php?whichchoice=1&option=1", "choice.php", 0 },
+		{ "inventory.php?which=1", "inventory.php", 0 },
+		{ "inv_use.php?whichitem=1&ajax=1", "inv_eat.php", 0 },
+		{ "inv_eat.php?whichitem=2", "inv_eat.php", 0 },
+		{ "shop.php?whichshop=grimoire", "shop.php", 0 },
+		{ "place.php?whichplace=town_right", "place.php", 0 },
+		{ "campground.php?action=rest", "campground.php", 0 },
+		{ "craft.php?mode=cook&a=1&b=2", "craft.php", 0 },
+		{ "mall.php?pudnuggler=test", null, 0 },
+		{ "skills.php?action=Skillz&whichskill=3&quantity=1", "skills.php", 1 },
+		{ "closet.php?action=closetpull&whichitem=1", "closet.php", 0 },
+		{ "storage.php?action=pull&whichitem1=1", "storage.php", 0 },
+		{ "volcanoisland.php?action=tniat", "volcanoisland.php", 0 },
+		{ "tiles.php", "tiles.php", 0 },
+	};
+
+	// Pages the old chain only took a branch for under some further
+	// condition, which the handlers now check in accepts.
+
+	private static final Object[][] DECLINE_HANDLERS =
+	{
+		{ "ascend.php?action=ascend&confirm_ascend=1", null, 0 },
+		// Nobody is logged in, so the king is not liberated
+		{ "ascend.php?alttext=communityservice", "ascend.php", 0 },
+		{ "charsheet.php", "charsheet.php", 0 },
+		{ "charsheet.php?ajax=1", null, 0 },
+		{ "desc_item.php?whichitem=123456789", "desc_item.php", 0 },
+		{ "desc_item.php?whichitem=123456789&otherplayer=1", null, 0 },
+		{ "inv_equip.php?action=equip&whichitem=1&ajax=1", "inv_equip.php", 0 },
+		{ "inv_equip.php?action=equip&whichitem=1", null, 0 },
+		{ "inv_use.php?pwd", null, 0 },
+		{ "inv_booze.php?whichitem=3", "inv_eat.php", 0 },
+		{ "multiuse.php?action=useitem&whichitem=1&quantity=2", "multiuse.php", 0 },
+		{ "multiuse.php", null, 0 },
+		{ "skills.php?action=useitem&whichitem=1", "multiuse.php", 0 },
+		{ "skills.php?action=useditem&itemid=1", "skills.php", 1 },
+		{ "skills.php", "skills.php", 1 },
+		{ "gamestore.php?action=buy", "gamestore.php", 0 },
+		{ "gamestore", "gamestore", 0 },
+		{ "gamestorex.php", "gamestore", 0 },
+	};
+
+	private static ResponseHandler handler( final String prefix, final int index )
+	{
+		return prefix == null ? null : ResponseTextParser.HANDLERS.find( prefix ).get( index );
+	}
+
+	private static void assertHandlers( final Object[][] expected )
+	{
+		for ( Object[] row : expected )
+		{
+			String location = (String) row[ 0 ];
+			ResponseHandler handler = ResponseDispatchTest.handler( (String) row[ 1 ], (Integer) row[ 2 ] );
+			assertSame( location, handler, ResponseTextParser.findHandler( location ) );
+		}
+	}
+
+	@Test
+	public void itShouldCoverTheBenchmarkSample()
+	{
+		Set<String> sample = new HashSet<String>();
+		for ( Object[] row : ResponseDispatchTest.SAMPLE_HANDLERS )
+		{
+			sample.add( (String) row[ 0 ] );
+		}
+		for ( String location : ResponseDispatchBenchmark.SAMPLE )
+		{
+			assertTrue( location, sample.contains( location ) );
+		}
+	}
+
+	@Test
+	public void itShouldPickTheOldHandlersForTheBenchmarkSample()
+	{
+		ResponseDispatchTest.assertHandlers( ResponseDispatchTest.SAMPLE_HANDLERS );
+	}
+
+	@Test
+	public void itShouldPickTheOldHandlersWhenOneDeclines()
+	{
+		ResponseDispatchTest.assertHandlers( ResponseDispatchTest.DECLINE_HANDLERS );
+	}
+}
@@ -0,0 +1,114 @@
+package net.sourceforge.kolmafia.textui;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import net.sourceforge.kolmafia.KoLConstants;
+
+import net.sourceforge.kolmafia.textui.parsetree.AggregateType;
+import net.sourceforge.kolmafia.textui.parsetree.MapValue;
+import net.sourceforge.kolmafia.textui.parsetree.Value;
+
+/**
+ * Tests for the parsed maps DataFileCache keeps for file_to_map: a map
+ * read again must be what is on disk now, not what was parsed before.
+ */
+
+public class DataFileCacheTest {
+
+    private final Interpreter interpreter = new Interpreter();
+
+    private String filename;
+    private File file;
+
+    @Before
+    public void pickFile() {
+        DataFileCache.clearCache();
+        filename = "datafilecachetest" + System.nanoTime() + ".txt";
+        file = new File( KoLConstants.DATA_LOCATION, filename );
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+        DataFileCache.clearCache();
+    }
+
+    private static MapValue newMap() {
+        // Each script that declares int [string] gets its own type
+        return new MapValue( new AggregateType( DataTypes.INT_TYPE, DataTypes.STRING_TYPE ) );
+    }
+
+    private MapValue read() {
+        MapValue map = newMap();
+        assertEquals( DataTypes.TRUE_VALUE, RuntimeLibrary.file_to_map( interpreter, new Value( filename ), map ) );
+        return map;
+    }
+
+    private void write( String key, long value ) {
+        MapValue map = newMap();
+        map.aset( new Value( key ), DataTypes.makeIntValue( value ) );
+        assertEquals( DataTypes.TRUE_VALUE, RuntimeLibrary.map_to_file( interpreter, map, new Value( filename ) ) );
+    }
+
+    private static long get( MapValue map, String key ) {
+        return map.aref( new Value( key ) ).intValue();
+    }
+
+    @Test
+    public void itShouldShareParsesBetweenEqualTypes() {
+        write( "a", 1 );
+        read();
+        assertTrue( DataFileCache.hasParsedMap( filename ) );
+
+        MapValue map = read();
+        assertEquals( 1, map.count() );
+        assertEquals( 1, get( map, "a" ) );
+        assertTrue( DataFileCache.hasParsedMap( filename ) );
+    }
+
+    @Test
+    public void itShouldNotShareParsesBetweenOtherTypes() {
+        write( "a", 1 );
+        read();
+
+        MapValue map = new MapValue( new AggregateType( DataTypes.STRING_TYPE, DataTypes.STRING_TYPE ) );
+        assertEquals( DataTypes.TRUE_VALUE, RuntimeLibrary.file_to_map( interpreter, new Value( filename ), map ) );
+        assertEquals( DataTypes.STRING_TYPE, map.aref( new Value( "a" ) ).getType() );
+    }
+
+    @Test
+    public void itShouldForgetTheParseOnMapToFile() {
+        write( "a", 1 );
+        read();
+        assertTrue( DataFileCache.hasParsedMap( filename ) );
+
+        write( "b", 2 );
+        assertFalse( DataFileCache.hasParsedMap( filename ) );
+
+        MapValue map = read();
+        assertEquals( 1, map.count() );
+        assertEquals( 2, get( map, "b" ) );
+    }
+
+    @Test
+    public void itShouldForgetTheParseWhenTheFileChanges() throws Exception {
+        write( "a", 1 );
+        read();
+        assertTrue( DataFileCache.hasParsedMap( filename ) );
+
+        FileOutputStream ostream = new FileOutputStream( file );
+        ostream.write( "c\t3\n".getBytes( "UTF-8" ) );
+        ostream.close();
+        file.setLastModified( file.lastModified() + 10000 );
+
+        MapValue map = read();
+        assertEquals( 1, map.count() );
+        assertEquals( 3, get( map, "c" ) );
+    }
+}
@@ -0,0 +1,158 @@
+package net.sourceforge.kolmafia.textui.parsetree;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import net.sourceforge.kolmafia.textui.DataTypes;
+import net.sourceforge.kolmafia.textui.Interpreter;
+import net.sourceforge.kolmafia.textui.Parser;
+import net.sourceforge.kolmafia.textui.ScriptException;
+
+/**
+ * Tests for CompiledExpression: a compiled expression must give the same
+ * value, of the same type, as the interpreted operators, and fail the
+ * same way.
+ */
+
+public class CompiledExpressionTest {
+
+    private static final Parser PARSER = new Parser();
+
+    private final Interpreter interpreter = new Interpreter();
+
+    private final Variable i = new Variable( "i", DataTypes.INT_TYPE );
+    private final Variable j = new Variable( "j", DataTypes.INT_TYPE );
+    private final Variable f = new Variable( "f", DataTypes.FLOAT_TYPE );
+    private final Variable g = new Variable( "g", DataTypes.FLOAT_TYPE );
+    private final Variable t = new Variable( "t", DataTypes.BOOLEAN_TYPE );
+    private final Variable u = new Variable( "u", DataTypes.BOOLEAN_TYPE );
+
+    private static Value op( Value lhs, String oper, Value rhs ) {
+        return new Operation( lhs, rhs, new Operator( oper, PARSER ) );
+    }
+
+    private static Value op( String oper, Value lhs ) {
+        return new Operation( lhs, new Operator( oper, PARSER ) );
+    }
+
+    private static Value ref( Variable variable ) {
+        return new VariableReference( variable );
+    }
+
+    private static Value num( long value ) {
+        return DataTypes.makeIntValue( value );
+    }
+
+    private static Value num( double value ) {
+        return DataTypes.makeFloatValue( value );
+    }
+
+    private Value[] expressions() {
+        Value i = ref( this.i ), j = ref( this.j ), f = ref( this.f ), g = ref( this.g );
+        Value t = ref( this.t ), u = ref( this.u );
+
+        return new Value[] {
+            op( op( i, "*", j ), "+", num( 4 ) ),
+            op( op( i, "-", op( "-", j ) ), "%", num( 5 ) ),
+            op( op( i, "/", num( 3 ) ), "*", j ),
+            op( op( i, "<<", num( 3 ) ), ">>", j ),
+            op( op( op( "-", i ), ">>>", num( 60 ) ), "|", j ),
+            op( op( i, "&", j ), "^", num( 255 ) ),
+            op( op( f, "*", i ), "+", num( 1.5 ) ),
+            op( op( i, "/", f ), "-", j ),
+            op( op( f, "%", num( 2.0 ) ), "*", g ),
+            op( op( "-", g ), "*", num( 1.0 ) ),
+            op( op( "-", op( g, "*", num( 0.0 ) ) ), "+", op( "-", num( 0.0 ) ) ),
+            op( op( i, "+", j ), "<", f ),
+            op( op( i, "+", j ), ">", f ),
+            op( op( i, "+", j ), "<=", g ),
+            op( op( i, "+", j ), ">=", g ),
+            op( op( i, "*", num( 2 ) ), "==", j ),
+            op( op( i, "*", num( 2 ) ), "!=", j ),
+            op( op( f, "+", g ), Parser.APPROX, num( 1.0 ) ),
+            op( op( f, "-", num( 1.0 ) ), "<", g ),
+            op( op( g, "*", num( 1.0 ) ), ">=", f ),
+            op( op( "!", op( i, "<", j ) ), "&", t ),
+            op( op( t, "==", u ), "|", op( t, "^", u ) ),
+            op( op( i, ">", j ), "!=", u ),
+        };
+    }
+
+    private void assertSameResults() {
+        for ( Value expression : this.expressions() ) {
+            CompiledExpression compiled = CompiledExpression.compile( (Operation) expression );
+            assertNotNull( expression.toString(), compiled );
+
+            Value interpreted = expression.execute( this.interpreter );
+            Value result = compiled.execute( this.interpreter );
+            assertEquals( expression.toString(), interpreted.getType(), result.getType() );
+            assertEquals( expression.toString(), interpreted.toString(), result.toString() );
+            assertEquals( expression.toString(), 0, Double.compare( interpreted.floatValue(), result.floatValue() ) );
+        }
+    }
+
+    private void set( long i, long j, double f, double g, boolean t, boolean u ) {
+        this.i.forceValue( DataTypes.makeIntValue( i ) );
+        this.j.forceValue( DataTypes.makeIntValue( j ) );
+        this.f.forceValue( DataTypes.makeFloatValue( f ) );
+        this.g.forceValue( DataTypes.makeFloatValue( g ) );
+        this.t.forceValue( DataTypes.makeBooleanValue( t ) );
+        this.u.forceValue( DataTypes.makeBooleanValue( u ) );
+    }
+
+    @Test
+    public void itShouldMatchTheInterpreter() {
+        set( 7, -3, 2.5, -0.0, true, false );
+        assertSameResults();
+        set( -20, 6, -1.0, 0.25, false, false );
+        assertSameResults();
+        set( Long.MIN_VALUE, -1, 1e300, -1e300, true, true );
+        assertSameResults();
+        set( 3, 3, 3.0, 3.0, false, true );
+        assertSameResults();
+    }
+
+    @Test
+    public void itShouldCompareNaNAsTheInterpreterDoes() {
+        set( 1, 2, Double.NaN, Double.NaN, true, false );
+        assertSameResults();
+    }
+
+    @Test
+    public void itShouldLeaveOtherExpressionsToTheInterpreter() {
+        // A single operator
+        assertNull( CompiledExpression.compile( (Operation) op( ref( this.i ), "+", num( 1 ) ) ) );
+        // A string operand
+        Variable s = new Variable( "s", DataTypes.STRING_TYPE );
+        assertNull( CompiledExpression.compile( (Operation) op( op( ref( s ), "+", num( 1 ) ), "+", num( 2 ) ) ) );
+        // Short-circuit operators
+        assertNull( CompiledExpression.compile( (Operation) op( op( ref( this.t ), "&&", ref( this.u ) ), "==", ref( this.t ) ) ) );
+    }
+
+    @Test
+    public void itShouldReportDivisionByZero() {
+        set( 7, 0, 2.5, 0.0, true, false );
+        Value[] divisions = {
+            op( op( ref( this.i ), "/", ref( this.j ) ), "+", num( 1 ) ),
+            op( op( ref( this.i ), "%", ref( this.j ) ), "+", num( 1 ) ),
+            op( op( ref( this.f ), "/", ref( this.g ) ), "+", num( 1 ) ),
+            op( op( ref( this.i ), "%", ref( this.g ) ), "+", num( 1 ) ),
+        };
+        for ( Value expression : divisions ) {
+            String interpreted = null;
+            try {
+                expression.execute( this.interpreter );
+            } catch ( ScriptException e ) {
+                interpreted = e.getMessage();
+            }
+            String compiled = null;
+            try {
+                CompiledExpression.compile( (Operation) expression ).execute( this.interpreter );
+            } catch ( ScriptException e ) {
+                compiled = e.getMessage();
+            }
+            assertNotNull( expression.toString(), interpreted );
+            assertEquals( expression.toString(), interpreted, compiled );
+        }
+    }
+}
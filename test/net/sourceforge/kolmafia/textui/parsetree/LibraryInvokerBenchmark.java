@@ -0,0 +1,68 @@
+package net.sourceforge.kolmafia.textui.parsetree;
+
+import java.lang.reflect.Method;
+
+import net.sourceforge.kolmafia.textui.DataTypes;
+import net.sourceforge.kolmafia.textui.Interpreter;
+import net.sourceforge.kolmafia.textui.RuntimeLibrary;
+
+/**
+ * Calls a few cheap built-in functions through Method.invoke and through
+ * the invokers LibraryInvoker binds, and prints how long each call took.
+ * The functions do almost nothing, so the difference is the cost of the
+ * call itself.
+ */
+
+public class LibraryInvokerBenchmark
+{
+	private static final String[] FUNCTIONS = { "min", "max", "length", "to_int" };
+
+	public static void main( final String[] args )
+		throws Exception
+	{
+		int calls = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 5000000;
+
+		Object[][] values = new Object[ FUNCTIONS.length ][];
+		Method[] methods = new Method[ FUNCTIONS.length ];
+		LibraryInvoker[] invokers = new LibraryInvoker[ FUNCTIONS.length ];
+		for ( int i = 0; i < FUNCTIONS.length; ++i )
+		{
+			boolean binary = FUNCTIONS[ i ].equals( "min" ) || FUNCTIONS[ i ].equals( "max" );
+			Class[] types = binary ?
+				new Class[] { Interpreter.class, Value.class, Value.class } :
+				new Class[] { Interpreter.class, Value.class };
+			values[ i ] = binary ?
+				new Object[] { null, DataTypes.makeIntValue( 3 ), DataTypes.makeIntValue( 5 ) } :
+				new Object[] { null, DataTypes.makeStringValue( "42" ) };
+			methods[ i ] = RuntimeLibrary.findMethod( FUNCTIONS[ i ], types );
+			methods[ i ].setAccessible( true );
+			invokers[ i ] = LibraryInvoker.bind( methods[ i ] );
+		}
+
+		System.out.println( calls + " calls of " + FUNCTIONS.length + " functions" );
+
+		for ( int pass = 0; pass < 5; ++pass )
+		{
+			long start = System.nanoTime();
+			long sum = 0;
+			for ( int call = 0; call < calls; ++call )
+			{
+				int i = call % FUNCTIONS.length;
+				sum += ( (Value) methods[ i ].invoke( null, values[ i ] ) ).intValue();
+			}
+			long reflected = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			long boundSum = 0;
+			for ( int call = 0; call < calls; ++call )
+			{
+				int i = call % FUNCTIONS.length;
+				boundSum += invokers[ i ].invoke( values[ i ] ).intValue();
+			}
+			long bound = System.nanoTime() - start;
+
+			System.out.println( "Method.invoke: " + ( reflected * 10 / calls ) / 10.0 + " ns/call (" + sum + "), " +
+				"bound: " + ( bound * 10 / calls ) / 10.0 + " ns/call (" + boundSum + ")" );
+		}
+	}
+}
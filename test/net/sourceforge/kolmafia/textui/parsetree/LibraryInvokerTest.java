@@ -0,0 +1,57 @@
+package net.sourceforge.kolmafia.textui.parsetree;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import net.sourceforge.kolmafia.textui.DataTypes;
+import net.sourceforge.kolmafia.textui.Interpreter;
+import net.sourceforge.kolmafia.textui.RuntimeLibrary;
+
+/**
+ * Tests for LibraryInvoker: generated invokers must call the same method
+ * with the same arguments as Method.invoke would.
+ */
+
+public class LibraryInvokerTest {
+
+    private static Method find( String name, int params ) throws NoSuchMethodException {
+        Class[] args = new Class[ params + 1 ];
+        args[ 0 ] = Interpreter.class;
+        for ( int i = 1; i <= params; ++i ) {
+            args[ i ] = Value.class;
+        }
+        return RuntimeLibrary.findMethod( name, args );
+    }
+
+    @Test
+    public void itShouldCallTheBoundMethod() throws Exception {
+        Method min = find( "min", 2 );
+        LibraryInvoker invoker = LibraryInvoker.bind( min );
+        assertFalse( invoker.getClass().getName().endsWith( "ReflectiveInvoker" ) );
+
+        Object[] values = { null, DataTypes.makeIntValue( 7 ), DataTypes.makeIntValue( -3 ) };
+        Value bound = invoker.invoke( values );
+        Value reflected = (Value) min.invoke( null, values );
+        assertEquals( -3, bound.intValue() );
+        assertEquals( reflected.intValue(), bound.intValue() );
+        assertEquals( reflected.getType(), bound.getType() );
+    }
+
+    @Test
+    public void itShouldBindEachMethodSeparately() throws Exception {
+        LibraryInvoker length = LibraryInvoker.bind( find( "length", 1 ) );
+        LibraryInvoker toInt = LibraryInvoker.bind( find( "to_int", 1 ) );
+        assertNotSame( length.getClass(), toInt.getClass() );
+
+        Value text = DataTypes.makeStringValue( "12345" );
+        assertEquals( 5, length.invoke( new Object[] { null, text } ).intValue() );
+        assertEquals( 12345, toInt.invoke( new Object[] { null, text } ).intValue() );
+    }
+
+    @Test( expected = ClassCastException.class )
+    public void itShouldCheckArgumentTypes() throws Exception {
+        LibraryInvoker.bind( find( "length", 1 ) ).invoke( new Object[] { null, "not a value" } );
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The snapshot must give every reader of a data file exactly what the
+ * text file would.
+ */
+
+public class DataSnapshotTest {
+    private File directory;
+    private File snapshot;
+    private Map<String, DataSnapshot.Entry> entries;
+
+    @Before
+    public void buildSnapshot() throws Exception {
+        directory = new File( DataSnapshot.class.getResource( "/data/items.txt" ).toURI() ).getParentFile();
+        snapshot = File.createTempFile( "data", ".snapshot" );
+        DataSnapshot.main( new String[] { directory.getPath(), snapshot.getPath() } );
+
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( snapshot ) ) );
+        try {
+            entries = DataSnapshot.read( in );
+        } finally {
+            in.close();
+        }
+    }
+
+    @After
+    public void deleteSnapshot() {
+        snapshot.delete();
+    }
+
+    private BufferedReader text( String filename ) throws Exception {
+        return new BufferedReader( new InputStreamReader( new FileInputStream( new File( directory, filename ) ), "UTF-8" ) );
+    }
+
+    @Test
+    public void itShouldHoldEveryDataFile() {
+        int files = 0;
+        for ( String name : directory.list() ) {
+            if ( name.endsWith( ".txt" ) && new File( directory, name ).isFile() ) {
+                assertTrue( name, entries.containsKey( name ) );
+                ++files;
+            }
+        }
+        assertEquals( files, entries.size() );
+    }
+
+    @Test
+    public void itShouldReadTheSameDataAsTheTextFiles() throws Exception {
+        for ( Map.Entry<String, DataSnapshot.Entry> entry : entries.entrySet() ) {
+            String name = entry.getKey();
+            BufferedReader expected = text( name );
+            BufferedReader actual = new DataSnapshot.SnapshotReader( entry.getValue() );
+            try {
+                int row = 0;
+                String[] data;
+                do {
+                    data = FileUtilities.readData( expected );
+                    assertArrayEquals( name + " row " + row, data, FileUtilities.readData( actual ) );
+                    ++row;
+                } while ( data != null );
+            } finally {
+                expected.close();
+            }
+        }
+    }
+
+    @Test
+    public void itShouldReadTheSameLinesAsTheTextFiles() throws Exception {
+        for ( Map.Entry<String, DataSnapshot.Entry> entry : entries.entrySet() ) {
+            String name = entry.getKey();
+            BufferedReader expected = text( name );
+            BufferedReader actual = new DataSnapshot.SnapshotReader( entry.getValue() );
+            try {
+                int line = 0;
+                String text;
+                do {
+                    text = expected.readLine();
+                    assertEquals( name + " line " + line, text, actual.readLine() );
+                    ++line;
+                } while ( text != null );
+            } finally {
+                expected.close();
+            }
+        }
+    }
+}
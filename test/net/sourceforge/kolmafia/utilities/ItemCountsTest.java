@@ -0,0 +1,92 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import net.sourceforge.kolmafia.AdventureResult;
+import net.sourceforge.kolmafia.objectpool.ItemPool;
+
+import org.json.JSONException;
+
+/**
+ * Tests for ItemCounts: reading api.php item lists and applying them to a list of items.
+ */
+
+public class ItemCountsTest {
+
+    @Test
+    public void itShouldReadQuotedAndBareCounts() throws JSONException {
+        ItemCounts counts = ItemCounts.parse( "junk {\"1\":\"3\", \"25\" : 7,\n\"100\":\"-2\"}" );
+        assertEquals( 3, counts.size() );
+        assertEquals( 1, counts.getItemId( 0 ) );
+        assertEquals( 3, counts.getCount( 0 ) );
+        assertEquals( 25, counts.getItemId( 1 ) );
+        assertEquals( 7, counts.getCount( 1 ) );
+        assertEquals( 100, counts.getItemId( 2 ) );
+        assertEquals( -2, counts.getCount( 2 ) );
+    }
+
+    @Test
+    public void itShouldReadAnEmptyObject() throws JSONException {
+        assertEquals( 0, ItemCounts.parse( "{ }" ).size() );
+        assertNull( ItemCounts.parse( "[]" ) );
+        assertNull( ItemCounts.parse( null ) );
+    }
+
+    @Test
+    public void itShouldRejectMalformedText() {
+        String[] texts = { "{\"1\":\"3\"", "{\"1\" \"3\"}", "{\"a\":\"3\"}", "{\"1\":\"3}", "{\"1\":\"3\";\"2\":\"4\"}" };
+        for ( int i = 0; i < texts.length; ++i ) {
+            try {
+                ItemCounts.parse( texts[ i ] );
+                fail( texts[ i ] );
+            } catch ( JSONException e ) {
+            }
+        }
+    }
+
+    @Test
+    public void itShouldOnlyTouchChangedItems() {
+        ItemList list = new ItemList();
+        for ( int id = 1; id <= 10; ++id ) {
+            list.add( ItemPool.get( id, id ) );
+        }
+        AdventureResult unchanged = list.get( list.indexOf( ItemPool.get( 5, 1 ) ) );
+
+        ItemCounts counts = new ItemCounts();
+        for ( int id = 1; id <= 10; ++id ) {
+            if ( id == 3 ) continue;
+            counts.add( id, id == 7 ? 2 : id );
+        }
+        counts.add( 11, 4 );
+
+        int[] changed = counts.applyTo( list );
+        Arrays.sort( changed );
+        assertArrayEquals( new int[] { 3, 7, 11 }, changed );
+        assertEquals( 10, list.size() );
+        assertEquals( 0, ItemPool.get( 3, 1 ).getCount( list ) );
+        assertEquals( 2, ItemPool.get( 7, 1 ).getCount( list ) );
+        assertEquals( 4, ItemPool.get( 11, 1 ).getCount( list ) );
+        assertSame( unchanged, list.get( list.indexOf( ItemPool.get( 5, 1 ) ) ) );
+
+        assertEquals( 0, counts.applyTo( list ).length );
+    }
+
+    @Test
+    public void itShouldReplaceAListThatMostlyChanged() {
+        ItemList list = new ItemList();
+        list.add( ItemPool.get( 1, 1 ) );
+        list.add( ItemPool.get( 2, 1 ) );
+
+        ItemCounts counts = new ItemCounts();
+        counts.add( 3, 1 );
+        counts.add( 4, 1 );
+
+        assertNull( counts.applyTo( list ) );
+        assertEquals( 2, list.size() );
+        assertEquals( 1, ItemPool.get( 3, 1 ).getCount( list ) );
+        assertEquals( 0, ItemPool.get( 1, 1 ).getCount( list ) );
+    }
+}
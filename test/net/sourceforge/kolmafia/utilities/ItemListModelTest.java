@@ -0,0 +1,62 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.List;
+
+import net.java.dev.spellcast.utilities.LockableListModel;
+
+import net.sourceforge.kolmafia.AdventureResult;
+import net.sourceforge.kolmafia.objectpool.ItemPool;
+
+/**
+ * Tests that changes made through the views of an ItemListModel keep its ItemIndex current.
+ */
+
+public class ItemListModelTest {
+
+    @Test
+    public void itShouldIndexChangesMadeThroughAMirror() {
+        ItemListModel list = new ItemListModel();
+        list.add( ItemPool.get( 1, 3 ) );
+        LockableListModel<AdventureResult> mirror = list.getMirrorImage();
+
+        mirror.add( ItemPool.get( 2, 5 ) );
+        assertEquals( 5, ItemPool.get( 2, 1 ).getCount( list ) );
+        assertEquals( 2, mirror.getSize() );
+
+        mirror.remove( ItemPool.get( 1, 3 ) );
+        assertEquals( 0, ItemPool.get( 1, 1 ).getCount( list ) );
+        assertEquals( -1, list.indexOf( ItemPool.get( 1, 1 ) ) );
+
+        mirror.set( 0, ItemPool.get( 2, 7 ) );
+        assertEquals( 7, ItemPool.get( 2, 1 ).getCount( list ) );
+
+        mirror.clear();
+        assertEquals( 0, ItemPool.get( 2, 1 ).getCount( list ) );
+        assertTrue( list.isEmpty() );
+    }
+
+    @Test
+    public void itShouldNotAllowWritesThroughASublist() {
+        ItemListModel model = new ItemListModel();
+        ItemList list = new ItemList();
+        for ( int id = 1; id <= 3; ++id ) {
+            model.add( ItemPool.get( id, id ) );
+            list.add( ItemPool.get( id, id ) );
+        }
+
+        List<?>[] views = { model.subList( 0, 2 ), list.subList( 0, 2 ) };
+        for ( int i = 0; i < views.length; ++i ) {
+            try {
+                views[ i ].clear();
+                fail( "sublist was writable" );
+            } catch ( UnsupportedOperationException e ) {
+            }
+        }
+
+        assertEquals( 1, ItemPool.get( 1, 1 ).getCount( model ) );
+        assertEquals( 1, ItemPool.get( 1, 1 ).getCount( list ) );
+    }
+}
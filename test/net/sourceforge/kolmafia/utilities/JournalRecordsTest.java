@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JournalRecordsTest {
+    @Test
+    public void itShouldReadBackWhatItWrote() {
+        String[] records = { "+name=12", "-gone", "1234\t567\t1500000000", "+" };
+        for ( String record : records ) {
+            assertEquals( record, JournalRecords.unseal( JournalRecords.seal( record ) ) );
+        }
+    }
+
+    @Test
+    public void itShouldRejectTornRecords() {
+        String line = JournalRecords.seal( "+name=1234" );
+        for ( int length = 0; length < line.length(); ++length ) {
+            assertNull( line.substring( 0, length ), JournalRecords.unseal( line.substring( 0, length ) ) );
+        }
+    }
+
+    @Test
+    public void itShouldRejectGluedRecords() {
+        String torn = JournalRecords.seal( "+a=1" );
+        torn = torn.substring( 0, torn.length() - 1 );
+        assertNull( JournalRecords.unseal( torn + JournalRecords.seal( "+b=2" ) ) );
+        assertNull( JournalRecords.unseal( JournalRecords.seal( "+a=1" ) + JournalRecords.seal( "+b=2" ) ) );
+    }
+
+    @Test
+    public void itShouldRejectUnsealedLines() {
+        assertNull( JournalRecords.unseal( "+name=12" ) );
+        assertNull( JournalRecords.unseal( "zzzzzzzz +name=12" ) );
+        assertNull( JournalRecords.unseal( "" ) );
+    }
+
+    @Test
+    public void itShouldNoticeATornLastLine() throws Exception {
+        File file = File.createTempFile( "journal", ".txt" );
+        try {
+            assertTrue( JournalRecords.endsCleanly( file ) );
+            write( file, JournalRecords.seal( "+a=1" ) + "\n" );
+            assertTrue( JournalRecords.endsCleanly( file ) );
+            write( file, "0000" );
+            assertFalse( JournalRecords.endsCleanly( file ) );
+        } finally {
+            file.delete();
+        }
+        assertTrue( JournalRecords.endsCleanly( file ) );
+    }
+
+    private static void write( File file, String text ) throws Exception {
+        FileOutputStream ostream = new FileOutputStream( file, true );
+        try {
+            ostream.write( text.getBytes( "UTF-8" ) );
+        } finally {
+            ostream.close();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogWriterTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = File.createTempFile( "logwriter", "" );
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void deleteDirectory() {
+        for ( File file : directory.listFiles() ) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void itShouldWriteEverythingBeforeFlushReturns() throws Exception {
+        File file = new File( directory, "session.txt" );
+        LogWriter writer = LogWriter.open( file, 0L );
+        PrintStream stream = new PrintStream( writer, true, "UTF-8" );
+        for ( int i = 0; i < 10000; ++i ) {
+            stream.println( "line " + i );
+        }
+        assertTrue( writer.flush( 10000L ) );
+        assertEquals( 10000, countLines( new FileReader( file ), "line " ) );
+        stream.close();
+    }
+
+    @Test
+    public void itShouldAppendToAnExistingLog() throws Exception {
+        File file = new File( directory, "mirror.txt" );
+        PrintStream stream = new PrintStream( LogWriter.open( file, 0L ), true, "UTF-8" );
+        stream.println( "line 1" );
+        stream.close();
+        stream = new PrintStream( LogWriter.open( file, 0L ), true, "UTF-8" );
+        stream.println( "line 2" );
+        stream.close();
+        assertEquals( 2, countLines( new FileReader( file ), "line " ) );
+    }
+
+    @Test
+    public void itShouldRollOverIntoCompressedSegments() throws Exception {
+        File file = new File( directory, "DEBUG_20181018.txt" );
+        PrintStream stream = new PrintStream( LogWriter.open( file, 200L ), true, "UTF-8" );
+        for ( int i = 0; i < 100; ++i ) {
+            stream.println( "line " + i );
+            if ( i % 10 == 9 ) {
+                LogWriter.flushAll( 10000L );
+            }
+        }
+        stream.close();
+
+        int lines = countLines( new FileReader( file ), "line " );
+        int segments = 0;
+        for ( int i = 1; ; ++i ) {
+            File segment = new File( directory, "DEBUG_20181018_" + i + ".txt.gz" );
+            if ( !segment.exists() ) {
+                break;
+            }
+            ++segments;
+            lines += countLines( new InputStreamReader( new GZIPInputStream( new FileInputStream( segment ) ), "UTF-8" ), "line " );
+        }
+        assertTrue( segments > 0 );
+        assertTrue( file.length() < 200L + 100L );
+        assertEquals( 100, lines );
+    }
+
+    @Test
+    public void itShouldIgnoreWritesAfterClose() throws Exception {
+        File file = new File( directory, "trace.txt" );
+        LogWriter writer = LogWriter.open( file, 0L );
+        writer.write( "before\n".getBytes( "UTF-8" ) );
+        writer.close();
+        writer.write( "after\n".getBytes( "UTF-8" ) );
+        assertTrue( writer.flush( 1000L ) );
+        assertEquals( 1, countLines( new FileReader( file ), "before" ) );
+        assertFalse( countLines( new FileReader( file ), "after" ) > 0 );
+    }
+
+    @Test( timeout = 20000L )
+    @SuppressWarnings( "deprecation" )
+    public void itShouldWriteItselfOnceTheWriterDies() throws Exception {
+        File file = new File( directory, "dead.txt" );
+        LogWriter writer = LogWriter.open( file, 0L );
+        PrintStream stream = new PrintStream( writer, true, "UTF-8" );
+        stream.println( "line before" );
+        assertTrue( writer.flush( 10000L ) );
+
+        Thread thread = null;
+        for ( Thread candidate : Thread.getAllStackTraces().keySet() ) {
+            if ( candidate.getName().equals( "LogWriter-" + file.getName() ) ) {
+                thread = candidate;
+            }
+        }
+        thread.stop();
+        thread.join();
+
+        // More lines than the ring holds, so nothing waits for the writer
+        for ( int i = 0; i < 10000; ++i ) {
+            stream.println( "line " + i );
+        }
+        assertEquals( 10001, countLines( new FileReader( file ), "line " ) );
+        stream.close();
+    }
+
+    private static int countLines( final Reader in, final String prefix ) throws Exception {
+        BufferedReader reader = new BufferedReader( in );
+        int count = 0;
+        String line;
+        while ( ( line = reader.readLine() ) != null ) {
+            if ( line.startsWith( prefix ) ) {
+                ++count;
+            }
+        }
+        reader.close();
+        return count;
+    }
+}
@@ -0,0 +1,121 @@
+package net.sourceforge.kolmafia.utilities;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that the NameIndex candidates used by getMatchingNames find the same names, in the same order,
+ * as testing every name.
+ */
+
+public class NameIndexTest {
+
+    private static final String[] NAMES = {
+        "chef-in-the-box", "bartender-in-the-box", "seal-clubbing club", "stolen accordion",
+        "helmet turtle", "old sweatpants", "disco mask", "disco ball", "mariachi pants",
+        "ten-leaf clover", "disassembled clover", "hermit permit", "worthless trinket",
+        "worthless gewgaw", "worthless knick-knack", "the big book of pirate insults",
+        "pirate fledges", "boxing glove", "box", "in the box", "bottle of gin", "bottle of rum",
+        "spooky sapling", "knob goblin elite helm", "knob goblin elite pants", "knob goblin harem veil",
+        "cobb's knob map", "a", "ab", "abc", "x-ray goggles", "meat paste", "meat stack", "dense meat stack",
+        "tiny plastic bitchin' meatcar", "bitchin' meatcar", "li'l ninja costume", "pumpkin", "pumpkin bomb",
+        "7-foot dwarven mattock", "#1 fan foam finger", "mr. accessory", "mr. a's bling",
+    };
+
+    private static String[] sortedNames() {
+        String[] names = NAMES.clone();
+        Arrays.sort( names );
+        return names;
+    }
+
+    // The three passes of getMatchingNames as they were before the index: every name is tested.
+
+    private static List<String> scanAll( final String[] names, final String search ) {
+        List<String> matches = new ArrayList<String>();
+        int hash = StringUtilities.stringHash( search );
+
+        for ( int i = 0; i < names.length; ++i ) {
+            if ( ( StringUtilities.stringHash( names[ i ] ) & hash ) == hash && StringUtilities.substringMatches( names[ i ], search, true ) ) {
+                matches.add( names[ i ] );
+            }
+        }
+        if ( !matches.isEmpty() ) {
+            return matches;
+        }
+
+        for ( int i = 0; i < names.length; ++i ) {
+            if ( ( StringUtilities.stringHash( names[ i ] ) & hash ) == hash && StringUtilities.substringMatches( names[ i ], search, false ) ) {
+                matches.add( names[ i ] );
+            }
+        }
+        if ( !matches.isEmpty() ) {
+            return matches;
+        }
+
+        hash &= ~StringUtilities.stringHash( " " );
+        for ( int i = 0; i < names.length; ++i ) {
+            if ( ( StringUtilities.stringHash( names[ i ] ) & hash ) == hash && StringUtilities.fuzzyMatches( names[ i ], search ) ) {
+                matches.add( names[ i ] );
+            }
+        }
+        return matches;
+    }
+
+    private static List<String> queries( final String[] names ) {
+        List<String> queries = new ArrayList<String>();
+        for ( String name : names ) {
+            for ( int start = 0; start < name.length(); ++start ) {
+                for ( int end = start + 1; end <= name.length() && end <= start + 6; ++end ) {
+                    queries.add( name.substring( start, end ) );
+                }
+            }
+        }
+        queries.addAll( Arrays.asList( new String[] {
+            "in the box", "sc club", "kge helm", "ten leaf", "worthless", "wk", "tpbm", "bm", "mr a",
+            "goblin pants", "the box", "zzz", "qq", "1 fan", "7 foot", "lil ninja",
+        } ) );
+        return queries;
+    }
+
+    @Test
+    public void itShouldMatchTheSameNamesAsAFullScan() {
+        String[] names = sortedNames();
+        for ( String query : queries( names ) ) {
+            String search = StringUtilities.getCanonicalName( query.trim() );
+            if ( search.length() == 0 || Arrays.binarySearch( names, search ) >= 0 ) {
+                continue;
+            }
+            assertEquals( query, scanAll( names, search ), StringUtilities.getMatchingNames( names, query ) );
+        }
+    }
+
+    @Test
+    public void itShouldKeepEveryMatchAmongTheCandidates() {
+        String[] names = sortedNames();
+        NameIndex index = new NameIndex( names );
+
+        for ( String search : queries( names ) ) {
+            int[] substring = index.substringCandidates( search );
+            int[] fuzzy = index.fuzzyCandidates( search );
+            for ( int i = 1; i < substring.length; ++i ) {
+                assertTrue( search, substring[ i - 1 ] < substring[ i ] );
+            }
+            for ( int i = 1; i < fuzzy.length; ++i ) {
+                assertTrue( search, fuzzy[ i - 1 ] < fuzzy[ i ] );
+            }
+
+            for ( int i = 0; i < names.length; ++i ) {
+                if ( names[ i ].contains( search ) ) {
+                    assertTrue( search + " in " + names[ i ], Arrays.binarySearch( substring, i ) >= 0 );
+                }
+                if ( StringUtilities.fuzzyMatches( names[ i ], search ) ) {
+                    assertTrue( search + " fuzzy " + names[ i ], Arrays.binarySearch( fuzzy, i ) >= 0 );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.dev.spellcast.utilities.DataUtilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ScriptIndex.find must return what walking the directory tree did
+ * before there was an index: the same matches, in the same order.
+ */
+
+public class ScriptIndexTest {
+    private static final String[] FILES = {
+        "top.ash", "shared.ash", "Case.ash", "case.ash",
+        "lib/shared.ash", "lib/util.ash", "lib/deep/shared.ash", "lib/deep/util.ash",
+        "Alpha/shared.ash", "alpha/shared.ash", "zed/top.ash", "zed/lib/util.ash",
+        "old~/shared.ash", "backup.bak/shared.ash", ".svn/shared.ash", "datamaps/shared.ash",
+        "lib/notes.txt", "lib/relay.bak",
+    };
+
+    private static final String[] NAMES = {
+        "top.ash", "shared.ash", "SHARED.ASH", "case.ash", "Case.ash", "util.ash", "notes.txt",
+        "relay.bak", "lib/util.ash", "deep/util.ash", "lib", "deep", "missing.ash", "lib/missing.ash",
+    };
+
+    private File root;
+
+    @Before
+    public void createTree() throws Exception {
+        root = File.createTempFile( "scripts", "" );
+        root.delete();
+        for ( String name : FILES ) {
+            create( name );
+        }
+    }
+
+    @After
+    public void deleteTree() {
+        delete( root );
+        ScriptIndex.invalidate();
+    }
+
+    private void create( String name ) throws Exception {
+        File file = new File( root, name );
+        file.getParentFile().mkdirs();
+        assertTrue( name, file.createNewFile() || file.exists() );
+    }
+
+    private static void delete( File file ) {
+        File[] contents = file.listFiles();
+        if ( contents != null ) {
+            for ( File child : contents ) {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+    // The recursive search ScriptIndex replaced
+
+    private static void walk( File directory, String filename, List<File> matches ) {
+        File scriptFile = new File( directory, filename );
+        if ( scriptFile.exists() && !scriptFile.isDirectory() ) {
+            matches.add( scriptFile );
+        }
+
+        for ( File child : DataUtilities.listFiles( directory ) ) {
+            if ( child.isDirectory() ) {
+                walk( child, filename, matches );
+            }
+        }
+    }
+
+    private void assertSameMatches() {
+        for ( String name : NAMES ) {
+            List<File> expected = new ArrayList<File>();
+            walk( root, name, expected );
+            List<File> actual = new ArrayList<File>();
+            ScriptIndex.find( root, name, actual );
+            assertEquals( name, expected, actual );
+        }
+    }
+
+    @Test
+    public void itShouldFindWhatTheWalkFound() {
+        assertSameMatches();
+    }
+
+    @Test
+    public void itShouldSeeChangesAfterInvalidate() throws Exception {
+        assertSameMatches();
+
+        create( "lib/deep/top.ash" );
+        create( "new/shared.ash" );
+        create( "new/missing.ash" );
+        new File( root, "lib/util.ash" ).delete();
+        ScriptIndex.invalidate();
+        assertSameMatches();
+
+        delete( new File( root, "lib/deep" ) );
+        ScriptIndex.invalidate();
+        assertSameMatches();
+    }
+
+    @Test
+    public void itShouldRereadTimestampsAfterInvalidate() {
+        File file = new File( root, "top.ash" );
+        assertTrue( file.setLastModified( 1000000000000L ) );
+        assertEquals( 1000000000000L, ScriptIndex.lastModified( file ) );
+
+        assertTrue( file.setLastModified( 1100000000000L ) );
+        ScriptIndex.invalidate();
+        assertEquals( 1100000000000L, ScriptIndex.lastModified( file ) );
+    }
+}
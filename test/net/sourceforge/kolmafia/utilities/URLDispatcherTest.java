@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2005-2018, KoLmafia development team
+ * http://kolmafia.sourceforge.net/
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  [1] Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *  [2] Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in
+ *      the documentation and/or other materials provided with the
+ *      distribution.
+ *  [3] Neither the name "KoLmafia" nor the names of its contributors may
+ *      be used to endorse or promote products derived from this software
+ *      without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package net.sourceforge.kolmafia.utilities;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class URLDispatcherTest {
+
+    @Test
+    public void itShouldFindHandlersByScriptName() {
+        URLDispatcher<String> dispatcher = new URLDispatcher<String>();
+        dispatcher.add( "shop.php", "shop" );
+        dispatcher.add( "shopping.php", "shopping" );
+        assertEquals( Arrays.asList( "shop" ), dispatcher.find( "shop.php?whichshop=grimoire" ) );
+        assertEquals( Arrays.asList( "shop" ), dispatcher.find( "shop.php" ) );
+        assertEquals( Arrays.asList( "shopping" ), dispatcher.find( "shopping.php" ) );
+        assertEquals( Collections.<String>emptyList(), dispatcher.find( "store.php" ) );
+    }
+
+    @Test
+    public void itShouldMatchOtherPrefixesWithStartsWith() {
+        URLDispatcher<String> dispatcher = new URLDispatcher<String>();
+        dispatcher.add( "inv_", "inv" );
+        dispatcher.add( "place.php?whichplace=town", "town" );
+        assertEquals( Arrays.asList( "inv" ), dispatcher.find( "inv_eat.php?whichitem=1" ) );
+        assertEquals( Arrays.asList( "town" ), dispatcher.find( "place.php?whichplace=town_right" ) );
+        assertEquals( Collections.<String>emptyList(), dispatcher.find( "place.php?whichplace=plains" ) );
+    }
+
+    @Test
+    public void itShouldKeepTheOrderHandlersWereAdded() {
+        URLDispatcher<String> dispatcher = new URLDispatcher<String>();
+        dispatcher.add( "game", "first" );
+        dispatcher.add( new String[] { "gamestore.php", "town_" }, "second" );
+        dispatcher.add( "gamestore.php", "third" );
+        dispatcher.add( "gamestore", "fourth" );
+        assertEquals( Arrays.asList( "first", "second", "third", "fourth" ), dispatcher.find( "gamestore.php?action=buy" ) );
+        assertEquals( Arrays.asList( "second" ), dispatcher.find( "town_wrong.php" ) );
+        assertEquals( Arrays.asList( "game", "gamestore.php", "town_", "gamestore.php", "gamestore" ), dispatcher.getPrefixes() );
+    }
+}